@@ -0,0 +1,53 @@
+/*
+ * #%L
+ * BroadleafCommerce CMS Module
+ * %%
+ * Copyright (C) 2009 - 2016 Broadleaf Commerce
+ * %%
+ * Licensed under the Broadleaf Fair Use License Agreement, Version 1.0
+ * (the "Fair Use License" located  at http://license.broadleafcommerce.org/fair_use_license-1.0.txt)
+ * unless the restrictions on use therein are violated and require payment to Broadleaf in which case
+ * the Broadleaf End User License Agreement (EULA), Version 1.1
+ * (the "Commercial License" located at http://license.broadleafcommerce.org/commercial_license-1.1.txt)
+ * shall apply.
+ * 
+ * Alternatively, the Commercial License may be replaced with a mutually agreed upon license (the "Custom License")
+ * between you and Broadleaf Commerce. You may not use this file except in compliance with the applicable license.
+ * #L%
+ */
+package org.broadleafcommerce.cms.file.service;
+
+import java.io.File;
+import java.util.concurrent.Callable;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Runs the conversions that produce derived static asset files (resized, recompressed, etc...). Conversions
+ * happen on a bounded worker pool and concurrent requests for the same derived file share a single conversion.
+ *
+ * @see StaticAssetStorageService#getCacheFileModel(String, java.util.Map)
+ */
+public interface StaticAssetDerivativeService {
+
+    /**
+     * Produces the derived file through the given conversion and waits for it to finish. If a conversion for the same
+     * file is already in flight, the caller waits on that conversion instead of starting another one.
+     *
+     * @param cacheFile the derived file that the conversion writes
+     * @param conversion the work that writes the derived file, run on a worker thread
+     * @return the file returned by the conversion
+     * @throws RejectedExecutionException if the worker queue is full
+     * @throws Exception whatever the conversion threw
+     */
+    File generateDerivative(File cacheFile, Callable<File> conversion) throws Exception;
+
+    /**
+     * Queues background work that pre-generates derived files. Pre-generation runs one task at a time, so it never
+     * occupies more than a single conversion worker.
+     *
+     * @param task the pre-generation work
+     * @return false if the pre-generation queue was full and the task was dropped
+     */
+    boolean queuePregeneration(Runnable task);
+
+}
@@ -0,0 +1,195 @@
+/*
+ * #%L
+ * BroadleafCommerce CMS Module
+ * %%
+ * Copyright (C) 2009 - 2016 Broadleaf Commerce
+ * %%
+ * Licensed under the Broadleaf Fair Use License Agreement, Version 1.0
+ * (the "Fair Use License" located  at http://license.broadleafcommerce.org/fair_use_license-1.0.txt)
+ * unless the restrictions on use therein are violated and require payment to Broadleaf in which case
+ * the Broadleaf End User License Agreement (EULA), Version 1.1
+ * (the "Commercial License" located at http://license.broadleafcommerce.org/commercial_license-1.1.txt)
+ * shall apply.
+ * 
+ * Alternatively, the Commercial License may be replaced with a mutually agreed upon license (the "Custom License")
+ * between you and Broadleaf Commerce. You may not use this file except in compliance with the applicable license.
+ * #L%
+ */
+package org.broadleafcommerce.cms.file.service;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.File;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.annotation.PreDestroy;
+
+/**
+ * Default {@link StaticAssetDerivativeService}. In-flight conversions are tracked by the absolute path of the derived
+ * file, so a burst of requests for a new variant decodes and encodes the source image once. Conversions run on a
+ * fixed-size pool with a bounded queue; once the queue is full new conversions are rejected rather than run on the
+ * request thread.
+ */
+@Service("blStaticAssetDerivativeService")
+public class StaticAssetDerivativeServiceImpl implements StaticAssetDerivativeService {
+
+    private static final Log LOG = LogFactory.getLog(StaticAssetDerivativeServiceImpl.class);
+
+    @Value("${asset.derivative.worker.threads:2}")
+    protected int workerThreads = 2;
+
+    @Value("${asset.derivative.worker.queue.size:100}")
+    protected int workerQueueSize = 100;
+
+    @Value("${asset.derivative.pregenerate.queue.size:500}")
+    protected int pregenerationQueueSize = 500;
+
+    protected final ConcurrentMap<String, FutureTask<File>> inFlightConversions = new ConcurrentHashMap<String, FutureTask<File>>();
+
+    protected volatile ThreadPoolExecutor workerExecutor;
+
+    protected volatile ThreadPoolExecutor pregenerationExecutor;
+
+    @Override
+    public File generateDerivative(File cacheFile, Callable<File> conversion) throws Exception {
+        final String key = cacheFile.getAbsolutePath();
+        FutureTask<File> task = inFlightConversions.get(key);
+        if (task == null) {
+            FutureTask<File> newTask = new FutureTask<File>(conversion) {
+                @Override
+                protected void done() {
+                    inFlightConversions.remove(key, this);
+                }
+            };
+            task = inFlightConversions.putIfAbsent(key, newTask);
+            if (task == null) {
+                task = newTask;
+                try {
+                    getWorkerExecutor().execute(newTask);
+                } catch (RejectedExecutionException e) {
+                    inFlightConversions.remove(key, newTask);
+                    throw e;
+                }
+            } else if (LOG.isDebugEnabled()) {
+                LOG.debug("Waiting on in-flight conversion for " + key);
+            }
+        }
+
+        try {
+            return task.get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof Exception) {
+                throw (Exception) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw e;
+        }
+    }
+
+    @Override
+    public boolean queuePregeneration(Runnable task) {
+        try {
+            getPregenerationExecutor().execute(task);
+            return true;
+        } catch (RejectedExecutionException e) {
+            if (LOG.isDebugEnabled()) {
+                LOG.debug("Static asset pre-generation queue is full, the derived files will be generated on request");
+            }
+            return false;
+        }
+    }
+
+    protected ThreadPoolExecutor getWorkerExecutor() {
+        if (workerExecutor == null) {
+            synchronized (this) {
+                if (workerExecutor == null) {
+                    workerExecutor = createExecutor(Math.max(1, workerThreads), workerQueueSize, "blStaticAssetDerivative");
+                }
+            }
+        }
+        return workerExecutor;
+    }
+
+    protected ThreadPoolExecutor getPregenerationExecutor() {
+        if (pregenerationExecutor == null) {
+            synchronized (this) {
+                if (pregenerationExecutor == null) {
+                    pregenerationExecutor = createExecutor(1, pregenerationQueueSize, "blStaticAssetPregeneration");
+                }
+            }
+        }
+        return pregenerationExecutor;
+    }
+
+    protected ThreadPoolExecutor createExecutor(int threads, int queueSize, final String threadName) {
+        final AtomicInteger threadCount = new AtomicInteger();
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<Runnable>(Math.max(1, queueSize)), new ThreadFactory() {
+                    @Override
+                    public Thread newThread(Runnable r) {
+                        Thread thread = new Thread(r, threadName + "-" + threadCount.incrementAndGet());
+                        thread.setDaemon(true);
+                        return thread;
+                    }
+                });
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (pregenerationExecutor != null) {
+            pregenerationExecutor.shutdownNow();
+        }
+        if (workerExecutor != null) {
+            workerExecutor.shutdownNow();
+        }
+    }
+
+    /**
+     * @return the number of conversions currently queued or running
+     */
+    public int getInFlightConversionCount() {
+        return inFlightConversions.size();
+    }
+
+    public int getWorkerThreads() {
+        return workerThreads;
+    }
+
+    public void setWorkerThreads(int workerThreads) {
+        this.workerThreads = workerThreads;
+    }
+
+    public int getWorkerQueueSize() {
+        return workerQueueSize;
+    }
+
+    public void setWorkerQueueSize(int workerQueueSize) {
+        this.workerQueueSize = workerQueueSize;
+    }
+
+    public int getPregenerationQueueSize() {
+        return pregenerationQueueSize;
+    }
+
+    public void setPregenerationQueueSize(int pregenerationQueueSize) {
+        this.pregenerationQueueSize = pregenerationQueueSize;
+    }
+}
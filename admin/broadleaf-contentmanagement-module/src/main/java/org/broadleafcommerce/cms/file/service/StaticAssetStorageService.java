@@ -108,6 +108,15 @@ public interface StaticAssetStorageService {
      */
     Map<String, String> getCacheFileModel(String fullUrl, Map<String, String> parameterMap) throws Exception;
 
+    /**
+     * Queues background generation of the derived files for the named operations configured by
+     * <code>asset.derivative.pregenerate.operations</code>, so the first storefront requests for those variants
+     * do not pay for the conversion. Only image assets are pre-generated.
+     *
+     * @param staticAsset the asset whose content has been stored
+     */
+    void pregenerateDerivatives(StaticAsset staticAsset);
+
     /**
      * Persists the file to the DB or FileSystem according to the staticAsset's StorageType. Typically, the 
      * MultipartFile is passed in from a Controller like the AdminAssetUploadController 
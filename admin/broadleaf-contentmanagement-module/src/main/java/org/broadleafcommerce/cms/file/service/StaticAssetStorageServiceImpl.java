@@ -39,6 +39,7 @@ import org.broadleafcommerce.common.file.service.GloballySharedInputStream;
 import org.broadleafcommerce.common.io.ConcurrentFileOutputStream;
 import org.broadleafcommerce.common.util.StreamCapableTransactionalOperationAdapter;
 import org.broadleafcommerce.common.util.StreamingTransactionCapableUtil;
+import org.broadleafcommerce.common.web.BroadleafRequestContext;
 import org.broadleafcommerce.openadmin.server.service.artifact.ArtifactService;
 import org.broadleafcommerce.openadmin.server.service.artifact.image.Operation;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -47,6 +48,8 @@ import org.springframework.boot.autoconfigure.web.servlet.MultipartProperties;
 import org.springframework.core.env.Environment;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.BufferedInputStream;
@@ -62,10 +65,12 @@ import java.security.NoSuchAlgorithmException;
 import java.sql.Blob;
 import java.sql.SQLException;
 import java.text.SimpleDateFormat;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
 
 import javax.annotation.Resource;
 
@@ -119,6 +124,16 @@ public class StaticAssetStorageServiceImpl implements StaticAssetStorageService
     @Resource(name = "blConcurrentFileOutputStream")
     protected ConcurrentFileOutputStream concurrentFileOutputStream;
 
+    @Resource(name = "blStaticAssetDerivativeService")
+    protected StaticAssetDerivativeService derivativeService;
+
+    /**
+     * Comma-separated named operations (e.g. smallAdminThumbnail) whose derived files are generated in the background
+     * as soon as an image asset's content is stored
+     */
+    @Value("${asset.derivative.pregenerate.operations:}")
+    protected String pregenerateOperations;
+
 
     protected StaticAsset findStaticAsset(String fullUrl) {
         StaticAsset staticAsset = staticAssetService.findStaticAssetByFullUrl(fullUrl);
@@ -203,6 +218,10 @@ public class StaticAssetStorageServiceImpl implements StaticAssetStorageService
         if (staticAsset == null) {
             throw new AssetNotFoundException("Unable to find an asset for the url (" + fullUrl + ")");
         }
+        return getCacheFileModel(staticAsset, parameterMap);
+    }
+
+    protected Map<String, String> getCacheFileModel(StaticAsset staticAsset, Map<String, String> parameterMap) throws Exception {
         String mimeType = staticAsset.getMimeType();
 
         //extract the values for any named parameters
@@ -242,19 +261,89 @@ public class StaticAssetStorageServiceImpl implements StaticAssetStorageService
             return buildModel(baseLocalFile.getAbsolutePath(), mimeType);
         } 
         else {
-            FileInputStream assetStream = new FileInputStream(baseLocalFile);
-            BufferedInputStream original = new BufferedInputStream(assetStream);
+            final File sourceFile = baseLocalFile;
+            final File derivedFile = cacheFile;
+            final Map<String, String> operationParameters = convertedParameters;
+            final String sourceMimeType = mimeType;
+            cacheFile = derivativeService.generateDerivative(cacheFile, new Callable<File>() {
+                @Override
+                public File call() throws Exception {
+                    return convertToCacheFile(sourceFile, derivedFile, operationParameters, sourceMimeType);
+                }
+            });
+            if ("image/gif".equals(mimeType)) {
+                mimeType = "image/png";
+            }
+            return buildModel(cacheFile.getAbsolutePath(), mimeType);
+        }
+    }
+
+    /**
+     * Runs the artifact conversion for a derived file. This is called on a derivative worker thread, so it should
+     * not depend on the request context.
+     */
+    protected File convertToCacheFile(File baseLocalFile, File cacheFile, Map<String, String> convertedParameters,
+                                      String mimeType) throws Exception {
+        // A caller that missed the in-flight conversion may get here after the file was already written
+        if (cacheFile.exists()) {
+            return cacheFile;
+        }
+        BufferedInputStream original = new BufferedInputStream(new FileInputStream(baseLocalFile));
+        try {
             original.mark(0);
 
-            Operation[] operations = artifactService.buildOperations(convertedParameters, original, staticAsset.getMimeType());
-            InputStream converted = artifactService.convert(original, operations, staticAsset.getMimeType());
+            Operation[] operations = artifactService.buildOperations(convertedParameters, original, mimeType);
+            InputStream converted = artifactService.convert(original, operations, mimeType);
 
             createLocalFileFromInputStream(converted, cacheFile);
-            if ("image/gif".equals(mimeType)) {
-                mimeType = "image/png";
+        } finally {
+            IOUtils.closeQuietly(original);
+        }
+        return cacheFile;
+    }
+
+    @Override
+    public void pregenerateDerivatives(final StaticAsset staticAsset) {
+        final List<String> operationNames = getPregenerateOperationNames();
+        if (operationNames.isEmpty() || staticAsset == null || staticAsset.getMimeType() == null
+                || !staticAsset.getMimeType().startsWith("image/")) {
+            return;
+        }
+        BroadleafRequestContext brc = BroadleafRequestContext.getBroadleafRequestContext();
+        final BroadleafRequestContext contextTemplate = brc == null ? null : brc.createLightWeightClone();
+        derivativeService.queuePregeneration(new Runnable() {
+            @Override
+            public void run() {
+                if (contextTemplate != null) {
+                    BroadleafRequestContext.setBroadleafRequestContext(contextTemplate.createLightWeightClone());
+                }
+                try {
+                    for (String operationName : operationNames) {
+                        Map<String, String> parameterMap = new HashMap<String, String>();
+                        parameterMap.put(operationName, "true");
+                        try {
+                            getCacheFileModel(staticAsset, parameterMap);
+                        } catch (Exception e) {
+                            LOG.warn("Unable to pre-generate " + operationName + " for static asset " + staticAsset.getFullUrl(), e);
+                        }
+                    }
+                } finally {
+                    BroadleafRequestContext.setBroadleafRequestContext(null);
+                }
+            }
+        });
+    }
+
+    protected List<String> getPregenerateOperationNames() {
+        List<String> operationNames = new ArrayList<String>();
+        if (StringUtils.isNotBlank(pregenerateOperations)) {
+            for (String operationName : pregenerateOperations.split(",")) {
+                if (StringUtils.isNotBlank(operationName)) {
+                    operationNames.add(operationName.trim());
+                }
             }
-            return buildModel(cacheFile.getAbsolutePath(), mimeType);
         }
+        return operationNames;
     }
 
     protected boolean shouldRecompress(String mimeType) {
@@ -428,7 +517,22 @@ public class StaticAssetStorageServiceImpl implements StaticAssetStorageService
 
     @Transactional("blTransactionManagerAssetStorageInfo")
     @Override
-    public void createStaticAssetStorage(InputStream fileInputStream, StaticAsset staticAsset) throws IOException {
+    public void createStaticAssetStorage(InputStream fileInputStream, final StaticAsset staticAsset) throws IOException {
+        storeStaticAssetContent(fileInputStream, staticAsset);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+
+                @Override
+                public void afterCommit() {
+                    pregenerateDerivatives(staticAsset);
+                }
+            });
+        } else {
+            pregenerateDerivatives(staticAsset);
+        }
+    }
+
+    protected void storeStaticAssetContent(InputStream fileInputStream, StaticAsset staticAsset) throws IOException {
         if (StorageType.DATABASE.equals(staticAsset.getStorageType())) {
             StaticAssetStorage storage = create();
             storage.setStaticAssetId(staticAsset.getId());
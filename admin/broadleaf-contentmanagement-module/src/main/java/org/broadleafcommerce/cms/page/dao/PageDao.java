@@ -69,6 +69,18 @@ public interface PageDao {
     @Nonnull
     List<Page> readOnlineAndIncludedPages(@Nonnull int limit, @Nonnull int offset, @Nonnull String sortBy);
 
+    /**
+     * Retrieve the next subset of online and site map included Pages, ordered by fullUrl, whose fullUrl sorts after
+     * the given one. Unlike {@link #readOnlineAndIncludedPages(int, int, String)}, this does not use an offset and
+     * so does not slow down as the position in the record set increases.
+     *
+     * @param limit the maximum number of results
+     * @param lastFullUrl the fullUrl of the last Page from the previous subset, or null to start from the beginning
+     * @return
+     */
+    @Nonnull
+    List<Page> readOnlineAndIncludedPages(@Nonnull int limit, String lastFullUrl);
+
     /**
      * Returns all page templates, regardless of any sandbox they are apart of
      * @return all {@link PageTemplate}s configured in the system
@@ -270,6 +270,27 @@ public class PageDaoImpl implements PageDao {
         return query.getResultList();
     }
 
+    @Override
+    public List<Page> readOnlineAndIncludedPages(int limit, String lastFullUrl) {
+        CriteriaBuilder builder = em.getCriteriaBuilder();
+        CriteriaQuery<Page> criteria = builder.createQuery(Page.class);
+        Root<PageImpl> page = criteria.from(PageImpl.class);
+        criteria.select(page);
+        List<Predicate> restrictions = new ArrayList<Predicate>();
+        restrictions.add(builder.or(builder.isFalse(page.get("offlineFlag").as(Boolean.class)), builder.isNull(page.get("offlineFlag").as(Boolean.class))));
+        restrictions.add(builder.or(builder.isFalse(page.get("excludeFromSiteMap").as(Boolean.class)), builder.isNull(page.get("excludeFromSiteMap").as(Boolean.class))));
+        restrictions.add(builder.isNotNull(page.get("fullUrl")));
+        if (lastFullUrl != null) {
+            restrictions.add(builder.greaterThan(page.get("fullUrl").as(String.class), lastFullUrl));
+        }
+        criteria.where(restrictions.toArray(new Predicate[restrictions.size()]));
+        criteria.orderBy(builder.asc(page.get("fullUrl")));
+        TypedQuery<Page> query = em.createQuery(criteria);
+        query.setMaxResults(limit);
+        query.setHint(QueryHints.HINT_CACHEABLE, true);
+        return query.getResultList();
+    }
+
     @Override
     public List<PageTemplate> readAllPageTemplates() {
         CriteriaBuilder builder = em.getCriteriaBuilder();
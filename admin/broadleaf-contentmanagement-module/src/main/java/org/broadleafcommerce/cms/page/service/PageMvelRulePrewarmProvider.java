@@ -0,0 +1,65 @@
+/*
+ * #%L
+ * BroadleafCommerce CMS Module
+ * %%
+ * Copyright (C) 2009 - 2016 Broadleaf Commerce
+ * %%
+ * Licensed under the Broadleaf Fair Use License Agreement, Version 1.0
+ * (the "Fair Use License" located  at http://license.broadleafcommerce.org/fair_use_license-1.0.txt)
+ * unless the restrictions on use therein are violated and require payment to Broadleaf in which case
+ * the Broadleaf End User License Agreement (EULA), Version 1.1
+ * (the "Commercial License" located at http://license.broadleafcommerce.org/commercial_license-1.1.txt)
+ * shall apply.
+ * 
+ * Alternatively, the Commercial License may be replaced with a mutually agreed upon license (the "Custom License")
+ * between you and Broadleaf Commerce. You may not use this file except in compliance with the applicable license.
+ * #L%
+ */
+package org.broadleafcommerce.cms.page.service;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.broadleafcommerce.cms.page.domain.Page;
+import org.broadleafcommerce.common.page.dto.PageDTO;
+import org.broadleafcommerce.common.rule.MvelHelper;
+import org.broadleafcommerce.common.rule.MvelRulePrewarmProvider;
+import org.broadleafcommerce.common.util.StringUtil;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.annotation.Resource;
+
+/**
+ * Compiles the rule expression of every page into {@link MvelHelper}'s default expression cache, which is the cache
+ * used by {@link PageDefaultRuleProcessor}.
+ */
+@Service("blPageMvelRulePrewarmProvider")
+public class PageMvelRulePrewarmProvider implements MvelRulePrewarmProvider {
+
+    private static final Log LOG = LogFactory.getLog(PageMvelRulePrewarmProvider.class);
+
+    @Resource(name = "blPageService")
+    protected PageService pageService;
+
+    @Resource(name = "blPageServiceUtility")
+    protected PageServiceUtility pageServiceUtility;
+
+    @Override
+    @Transactional(value = "blTransactionManager", readOnly = true)
+    public int prewarmRules() {
+        int count = 0;
+        for (Page page : pageService.readAllPages()) {
+            PageDTO dto = pageServiceUtility.buildPageDTO(page, false);
+            String rule = dto == null ? null : dto.getRuleExpression();
+            if (rule != null && rule.trim().length() != 0) {
+                try {
+                    MvelHelper.compileRule(rule, MvelHelper.getDefaultExpressionCache(), null);
+                    count++;
+                } catch (RuntimeException e) {
+                    LOG.warn("Unable to compile rule for page " + page.getId() + ": " + StringUtil.sanitize(rule), e);
+                }
+            }
+        }
+        return count;
+    }
+}
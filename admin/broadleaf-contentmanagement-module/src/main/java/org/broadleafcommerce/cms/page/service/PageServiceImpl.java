@@ -468,13 +468,15 @@ public class PageServiceImpl implements PageService {
             if (e != null && e.getObjectValue() != null) {
                 List<String> keys = (List<String>) e.getObjectValue();
 
+                int evictions = 0;
                 for (String k : keys) {
-                    if (success == null) {
-                        success = getPageCache().remove(k);
-                    } else {
-                        success = success && getPageCache().remove(k);
+                    boolean removed = getPageCache().remove(k);
+                    if (removed) {
+                        evictions++;
                     }
+                    success = success == null ? removed : success && removed;
                 }
+                statisticsService.addCacheEvictions(CacheStatType.PAGE_CACHE_HIT_RATE.toString(), evictions);
             }
         }
 
@@ -496,7 +498,9 @@ public class PageServiceImpl implements PageService {
             if (cKey.contains(":")) {
                 cKey = cKey.substring(cKey.indexOf(":")+1);
             }
-            getPageCache().remove(cKey);
+            if (getPageCache().remove(cKey)) {
+                statisticsService.addCacheEvictions(CacheStatType.PAGE_CACHE_HIT_RATE.toString(), 1);
+            }
         }
         return true;
     }
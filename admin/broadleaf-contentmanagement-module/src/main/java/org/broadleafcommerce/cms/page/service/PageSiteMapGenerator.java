@@ -56,14 +56,14 @@ public class PageSiteMapGenerator implements SiteMapGenerator {
     @Override
     public void addSiteMapEntries(SiteMapGeneratorConfiguration smgc, SiteMapBuilder siteMapBuilder) {
 
-        int rowOffset = 0;
+        String lastFullUrl = null;
         List<Page> pages;
         String previousUrl = "";
 
         do {
-            pages = pageDao.readOnlineAndIncludedPages(rowLimit, rowOffset, "fullUrl");
-            rowOffset += pages.size();
+            pages = pageDao.readOnlineAndIncludedPages(rowLimit, lastFullUrl);
             for (Page page : pages) {
+                lastFullUrl = page.getFullUrl();
 
                 if (page.getExcludeFromSiteMap()) {
                     continue;
@@ -56,16 +56,21 @@ import org.broadleafcommerce.common.util.FormatUtil;
 import org.broadleafcommerce.common.web.BroadleafRequestContext;
 import org.hibernate.Criteria;
 import org.hibernate.criterion.Projections;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import com.google.common.collect.MapMaker;
+
 import java.math.BigDecimal;
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.Collections;
 import java.util.Date;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentMap;
 
 import javax.annotation.Resource;
 
@@ -104,8 +109,18 @@ public class StructuredContentServiceImpl implements StructuredContentService {
     @Resource(name = "blStatisticsService")
     protected StatisticsService statisticsService;
 
+    @Value("${structured.content.targeting.index.enabled:true}")
+    protected boolean useTargetingIndex = true;
+
     protected Cache structuredContentCache;
 
+    /**
+     * Targeting indexes for the lists in the structured content cache. Weak keys are compared by identity, so an index
+     * lives exactly as long as its cached list.
+     */
+    protected final ConcurrentMap<List<StructuredContentDTO>, StructuredContentTargetingIndex> targetingIndexes =
+            new MapMaker().weakKeys().makeMap();
+
     @Override
     public StructuredContent findStructuredContentById(Long contentId) {
         return structuredContentDao.findStructuredContentById(contentId);
@@ -180,6 +195,11 @@ public class StructuredContentServiceImpl implements StructuredContentService {
 
         structuredContentList = modifyStructuredContentDtoList(structuredContentList);
 
+        StructuredContentTargetingIndex targetingIndex = targetingIndexes.get(structuredContentList);
+        if (targetingIndex != null) {
+            return evaluateAndPrioritizeIndexedContent(targetingIndex, count, ruleDTOs);
+        }
+
         Iterator<StructuredContentDTO> structuredContentIterator = structuredContentList.iterator();
         List<StructuredContentDTO> returnList = new ArrayList<>();
         List<StructuredContentDTO> tmpList = new ArrayList<>();
@@ -231,6 +251,44 @@ public class StructuredContentServiceImpl implements StructuredContentService {
         return returnList;
     }
 
+    /**
+     * Selects up to <b>count</b> items from the candidates that survive the index's discriminators. Each priority tier
+     * is shuffled before its rules are evaluated, which picks the same random subset of matching items as shuffling
+     * the matches would, so evaluation can stop as soon as <b>count</b> items are found.
+     */
+    protected List<StructuredContentDTO> evaluateAndPrioritizeIndexedContent(StructuredContentTargetingIndex targetingIndex,
+                                                                             int count, Map<String, Object> ruleDTOs) {
+        List<StructuredContentDTO> returnList = new ArrayList<>();
+        List<StructuredContentDTO> tmpList = new ArrayList<>();
+        BitSet candidates = targetingIndex.findCandidates(ruleDTOs);
+        int tierStart = candidates.nextSetBit(0);
+
+        while (tierStart >= 0 && returnList.size() < count) {
+            int tierEnd = targetingIndex.getTierEnd(tierStart);
+
+            tmpList.clear();
+            for (int i = tierStart; i >= 0 && i < tierEnd; i = candidates.nextSetBit(i + 1)) {
+                tmpList.add(targetingIndex.getCandidate(i));
+            }
+            if (tmpList.size() > 1) {
+                Collections.shuffle(tmpList);
+            }
+
+            for (StructuredContentDTO sc : tmpList) {
+                if (processContentRules(sc, ruleDTOs)) {
+                    returnList.add(sc);
+                    if (returnList.size() == count) {
+                        break;
+                    }
+                }
+            }
+
+            tierStart = candidates.nextSetBit(tierEnd);
+        }
+
+        return returnList;
+    }
+
     protected List<StructuredContentDTO> processUnprioritizedContent(List<StructuredContentDTO> structuredContentList, Map<String, Object> ruleDTOs) {
         if (processContentRules(structuredContentList.get(0), ruleDTOs)) {
             return structuredContentList;
@@ -398,6 +456,8 @@ public class StructuredContentServiceImpl implements StructuredContentService {
         if (!StringUtils.isEmpty(key)) {
             successSecure = getStructuredContentCache().remove(key + "-" + true);
             successNonSecure = getStructuredContentCache().remove(key + "-" + false);
+            statisticsService.addCacheEvictions(CacheStatType.STRUCTURED_CONTENT_CACHE_HIT_RATE.toString(),
+                    (successSecure ? 1 : 0) + (successNonSecure ? 1 : 0));
         }
 
         return successSecure || successNonSecure;
@@ -700,6 +760,29 @@ public class StructuredContentServiceImpl implements StructuredContentService {
     @Override
     public void addStructuredContentListToCache(String key, List<StructuredContentDTO> scDTOList) {
         getStructuredContentCache().put(new Element(key, scDTOList));
+
+        if (useTargetingIndex && scDTOList != null && scDTOList.size() > 1 && isContentRuleIndexable()) {
+            targetingIndexes.put(scDTOList, buildTargetingIndex(scDTOList));
+        }
+    }
+
+    protected StructuredContentTargetingIndex buildTargetingIndex(List<StructuredContentDTO> scDTOList) {
+        return new StructuredContentTargetingIndex(scDTOList);
+    }
+
+    /**
+     * The targeting index drops candidates based on terms of {@link StructuredContentDTO#getRuleExpression()}, which
+     * is only safe when that expression is actually enforced by the {@link StructuredContentDefaultRuleProcessor}
+     */
+    protected boolean isContentRuleIndexable() {
+        if (contentRuleProcessors != null) {
+            for (RuleProcessor<StructuredContentDTO> processor : contentRuleProcessors) {
+                if (processor instanceof StructuredContentDefaultRuleProcessor) {
+                    return true;
+                }
+            }
+        }
+        return false;
     }
 
     protected void addSingleStructuredContentToCache(String key, StructuredContentDTO scDTO) {
@@ -0,0 +1,515 @@
+/*
+ * #%L
+ * BroadleafCommerce CMS Module
+ * %%
+ * Copyright (C) 2009 - 2016 Broadleaf Commerce
+ * %%
+ * Licensed under the Broadleaf Fair Use License Agreement, Version 1.0
+ * (the "Fair Use License" located  at http://license.broadleafcommerce.org/fair_use_license-1.0.txt)
+ * unless the restrictions on use therein are violated and require payment to Broadleaf in which case
+ * the Broadleaf End User License Agreement (EULA), Version 1.1
+ * (the "Commercial License" located at http://license.broadleafcommerce.org/commercial_license-1.1.txt)
+ * shall apply.
+ *
+ * Alternatively, the Commercial License may be replaced with a mutually agreed upon license (the "Custom License")
+ * between you and Broadleaf Commerce. You may not use this file except in compliance with the applicable license.
+ * #L%
+ */
+package org.broadleafcommerce.cms.structure.service;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.broadleafcommerce.common.rule.MvelHelper;
+import org.broadleafcommerce.common.structure.dto.StructuredContentDTO;
+import org.mvel2.MVEL;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * A read-only view of a cached list of {@link StructuredContentDTO}s that is built once when the list is cached and
+ * narrows the candidates that need their rules evaluated for a request.
+ * <p/>
+ * The candidates are sorted by priority. Each rule expression is split into its top level <code>&&</code> terms and
+ * the simple ones become discriminators:
+ * <ul>
+ *     <li>equality with a string or boolean literal, e.g. <code>MvelHelper.toUpperCase(request.?requestURI)==MvelHelper.toUpperCase("/home")</code>,
+ *     which buckets the candidate by the literal</li>
+ *     <li>comparison with a converted date or number, e.g. <code>MvelHelper.convertField("DATE",time.?date)&gt;=MvelHelper.convertField("DATE","...")</code>,
+ *     which becomes a range check</li>
+ * </ul>
+ * At request time the left hand side of each discriminator is evaluated once, no matter how many candidates share it,
+ * and any candidate whose discriminator is known to be false is dropped. A discriminator whose value can't be compared
+ * without MVEL's type coercion never drops anything, so the survivors are always a superset of the matching content
+ * and still need their full rules checked.
+ *
+ * @see StructuredContentServiceImpl#evaluateAndPriortizeContent(List, int, Map)
+ */
+public class StructuredContentTargetingIndex {
+
+    private static final Log LOG = LogFactory.getLog(StructuredContentTargetingIndex.class);
+
+    protected static final Object UNKNOWN = new Object();
+
+    protected static final Pattern STRING_LITERAL = Pattern.compile("^\"([^\"\\\\]*)\"$|^'([^'\\\\]*)'$");
+    protected static final Pattern UPPER_CASE_LITERAL = Pattern.compile("^MvelHelper\\.toUpperCase\\(\"([^\"\\\\]*)\"\\)$");
+    protected static final Pattern BOOLEAN_LITERAL = Pattern.compile("^(true|false)$");
+    protected static final Pattern CONVERTED_LITERAL = Pattern.compile("^MvelHelper\\.convertField\\(\"(DATE|INTEGER|DECIMAL|MONEY)\",\"([^\"\\\\]*)\"\\)$");
+    protected static final Pattern FIELD_CHARACTERS = Pattern.compile("^[A-Za-z0-9_.?()\\[\\],]+$");
+
+    protected static final String EQ = "==";
+    protected static final String GT = ">";
+    protected static final String GTE = ">=";
+    protected static final String LT = "<";
+    protected static final String LTE = "<=";
+
+    protected final StructuredContentDTO[] candidates;
+    protected final int[] tierEnds;
+    protected final String[] fields;
+    protected final Class<?>[] fieldLiteralTypes;
+    protected final BitSet[] unconstrained;
+    protected final List<Map<Object, BitSet>> buckets;
+    protected final RangeGuard[][] rangeGuards;
+    protected final int discriminatorCount;
+
+    @SuppressWarnings("unchecked")
+    public StructuredContentTargetingIndex(List<StructuredContentDTO> structuredContentList) {
+        List<StructuredContentDTO> sorted = new ArrayList<StructuredContentDTO>(structuredContentList);
+        Collections.sort(sorted, new Comparator<StructuredContentDTO>() {
+            @Override
+            public int compare(StructuredContentDTO o1, StructuredContentDTO o2) {
+                if (o1.getPriority() == null) {
+                    return o2.getPriority() == null ? 0 : 1;
+                } else if (o2.getPriority() == null) {
+                    return -1;
+                }
+                return o1.getPriority().compareTo(o2.getPriority());
+            }
+        });
+
+        int size = sorted.size();
+        candidates = sorted.toArray(new StructuredContentDTO[size]);
+        tierEnds = new int[size];
+        int tierStart = 0;
+        for (int i = 1; i <= size; i++) {
+            if (i == size || !equal(candidates[i].getPriority(), candidates[tierStart].getPriority())) {
+                for (int j = tierStart; j < i; j++) {
+                    tierEnds[j] = i;
+                }
+                tierStart = i;
+            }
+        }
+
+        Map<String, Integer> fieldIndexes = new LinkedHashMap<String, Integer>();
+        List<Class<?>> literalTypes = new ArrayList<Class<?>>();
+        List<BitSet> constrained = new ArrayList<BitSet>();
+        List<Map<Object, BitSet>> valueBuckets = new ArrayList<Map<Object, BitSet>>();
+        rangeGuards = new RangeGuard[size][];
+        int discriminators = 0;
+
+        for (int i = 0; i < size; i++) {
+            List<String> terms = new ArrayList<String>();
+            if (candidates[i].getRuleExpression() != null) {
+                splitConjunction(candidates[i].getRuleExpression(), terms);
+            }
+
+            List<RangeGuard> guards = new ArrayList<RangeGuard>();
+            for (String term : terms) {
+                Discriminator discriminator = parseDiscriminator(term);
+                if (discriminator == null) {
+                    continue;
+                }
+
+                Integer field = fieldIndexes.get(discriminator.field);
+                if (field == null) {
+                    field = fieldIndexes.size();
+                    fieldIndexes.put(discriminator.field, field);
+                    literalTypes.add(null);
+                    constrained.add(new BitSet(size));
+                    valueBuckets.add(new HashMap<Object, BitSet>());
+                }
+
+                if (EQ.equals(discriminator.operator)) {
+                    Class<?> literalType = literalTypes.get(field);
+                    if (literalType == null) {
+                        literalTypes.set(field, discriminator.value.getClass());
+                    } else if (literalType != discriminator.value.getClass()) {
+                        // MVEL would coerce one of the two literals, so only bucket the first type seen for a field
+                        continue;
+                    }
+                    BitSet bucket = valueBuckets.get(field).get(discriminator.value);
+                    if (bucket == null) {
+                        bucket = new BitSet(size);
+                        valueBuckets.get(field).put(discriminator.value, bucket);
+                    }
+                    bucket.set(i);
+                    constrained.get(field).set(i);
+                } else {
+                    guards.add(new RangeGuard(field, discriminator.operator, (Comparable<Object>) discriminator.value));
+                }
+                discriminators++;
+            }
+
+            if (!guards.isEmpty()) {
+                rangeGuards[i] = guards.toArray(new RangeGuard[guards.size()]);
+            }
+        }
+
+        fields = fieldIndexes.keySet().toArray(new String[fieldIndexes.size()]);
+        fieldLiteralTypes = literalTypes.toArray(new Class<?>[literalTypes.size()]);
+        unconstrained = new BitSet[fields.length];
+        for (int f = 0; f < fields.length; f++) {
+            unconstrained[f] = new BitSet(size);
+            unconstrained[f].set(0, size);
+            unconstrained[f].andNot(constrained.get(f));
+        }
+        buckets = valueBuckets;
+        discriminatorCount = discriminators;
+
+        if (LOG.isTraceEnabled()) {
+            LOG.trace("Indexed " + size + " structured content items on " + fields.length + " fields using "
+                    + discriminators + " rule discriminators");
+        }
+    }
+
+    /**
+     * Returns the positions of the candidates that could still match the given rule parameters. Positions are in
+     * priority order and can be resolved with {@link #getCandidate(int)}.
+     *
+     * @param ruleDTOs the parameters the content rules are evaluated against
+     * @return the candidates whose discriminators did not rule them out
+     */
+    public BitSet findCandidates(Map<String, Object> ruleDTOs) {
+        BitSet survivors = new BitSet(candidates.length);
+        survivors.set(0, candidates.length);
+        if (fields.length == 0) {
+            return survivors;
+        }
+
+        Map<String, Object> vars = new HashMap<String, Object>();
+        if (ruleDTOs != null) {
+            vars.putAll(ruleDTOs);
+        }
+
+        Object[] values = new Object[fields.length];
+        for (int f = 0; f < fields.length; f++) {
+            values[f] = evaluateField(fields[f], vars);
+
+            Object value = values[f];
+            if (fieldLiteralTypes[f] == null || value == UNKNOWN) {
+                continue;
+            }
+            if (value != null && value.getClass() != fieldLiteralTypes[f]) {
+                // the comparison would need MVEL's type coercion, so leave it to the full rule
+                continue;
+            }
+
+            BitSet allowed = (BitSet) unconstrained[f].clone();
+            if (value != null) {
+                BitSet bucket = buckets.get(f).get(value);
+                if (bucket != null) {
+                    allowed.or(bucket);
+                }
+            }
+            survivors.and(allowed);
+        }
+
+        for (int i = survivors.nextSetBit(0); i >= 0; i = survivors.nextSetBit(i + 1)) {
+            if (rangeGuards[i] != null) {
+                for (RangeGuard guard : rangeGuards[i]) {
+                    if (guard.excludes(values[guard.field])) {
+                        survivors.clear(i);
+                        break;
+                    }
+                }
+            }
+        }
+
+        return survivors;
+    }
+
+    public StructuredContentDTO getCandidate(int position) {
+        return candidates[position];
+    }
+
+    /**
+     * @return the position just past the last candidate that shares the priority of the candidate at <b>position</b>
+     */
+    public int getTierEnd(int position) {
+        return tierEnds[position];
+    }
+
+    public int size() {
+        return candidates.length;
+    }
+
+    public int getDiscriminatorCount() {
+        return discriminatorCount;
+    }
+
+    /**
+     * Evaluates the left hand side of a discriminator, returning {@link #UNKNOWN} if MVEL can't evaluate it.
+     */
+    protected Object evaluateField(String field, Map<String, Object> vars) {
+        try {
+            Serializable exp = MvelHelper.compileRule(field, MvelHelper.getDefaultExpressionCache(), null);
+            return MVEL.executeExpression(exp, vars);
+        } catch (Exception e) {
+            if (LOG.isDebugEnabled()) {
+                LOG.debug("Unable to evaluate content rule discriminator (" + field + "), not filtering on it", e);
+            }
+            return UNKNOWN;
+        }
+    }
+
+    /**
+     * Adds the top level <code>&&</code> terms of the expression to <b>terms</b>. An expression that has a top level
+     * <code>||</code> is added as a single term.
+     */
+    protected static void splitConjunction(String expression, List<String> terms) {
+        String term = stripEnclosingParentheses(expression.trim());
+        List<Integer> ands = new ArrayList<Integer>();
+        int depth = 0;
+        char quote = 0;
+
+        for (int i = 0; i < term.length() - 1; i++) {
+            char c = term.charAt(i);
+            if (quote != 0) {
+                if (c == '\\') {
+                    i++;
+                } else if (c == quote) {
+                    quote = 0;
+                }
+            } else if (c == '"' || c == '\'') {
+                quote = c;
+            } else if (c == '(' || c == '[') {
+                depth++;
+            } else if (c == ')' || c == ']') {
+                depth--;
+            } else if (depth == 0 && c == '|' && term.charAt(i + 1) == '|') {
+                terms.add(term);
+                return;
+            } else if (depth == 0 && c == '&' && term.charAt(i + 1) == '&') {
+                ands.add(i);
+                i++;
+            }
+        }
+
+        if (ands.isEmpty()) {
+            terms.add(term);
+            return;
+        }
+
+        int start = 0;
+        for (Integer and : ands) {
+            splitConjunction(term.substring(start, and), terms);
+            start = and + 2;
+        }
+        splitConjunction(term.substring(start), terms);
+    }
+
+    protected static String stripEnclosingParentheses(String term) {
+        while (term.length() > 1 && term.charAt(0) == '(' && findClosingParenthesis(term) == term.length() - 1) {
+            term = term.substring(1, term.length() - 1).trim();
+        }
+        return term;
+    }
+
+    protected static int findClosingParenthesis(String term) {
+        int depth = 0;
+        char quote = 0;
+        for (int i = 0; i < term.length(); i++) {
+            char c = term.charAt(i);
+            if (quote != 0) {
+                if (c == '\\') {
+                    i++;
+                } else if (c == quote) {
+                    quote = 0;
+                }
+            } else if (c == '"' || c == '\'') {
+                quote = c;
+            } else if (c == '(') {
+                depth++;
+            } else if (c == ')') {
+                depth--;
+                if (depth == 0) {
+                    return i;
+                }
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Parses a single rule term of the form <code>field OPERATOR literal</code>, returning null if the term is
+     * anything else.
+     */
+    protected static Discriminator parseDiscriminator(String term) {
+        int depth = 0;
+        char quote = 0;
+        int operatorStart = -1;
+        String operator = null;
+
+        for (int i = 0; i < term.length(); i++) {
+            char c = term.charAt(i);
+            if (quote != 0) {
+                if (c == '\\') {
+                    i++;
+                } else if (c == quote) {
+                    quote = 0;
+                }
+            } else if (c == '"' || c == '\'') {
+                quote = c;
+            } else if (c == '(' || c == '[') {
+                depth++;
+            } else if (c == ')' || c == ']') {
+                depth--;
+            } else if (depth == 0 && (c == '=' || c == '!' || c == '<' || c == '>' || c == '&' || c == '|')) {
+                if (operator != null) {
+                    return null;
+                }
+                char next = i + 1 < term.length() ? term.charAt(i + 1) : 0;
+                if (c == '=' && next == '=') {
+                    operator = EQ;
+                } else if (c == '>') {
+                    operator = next == '=' ? GTE : GT;
+                } else if (c == '<') {
+                    operator = next == '=' ? LTE : LT;
+                } else {
+                    return null;
+                }
+                operatorStart = i;
+                i += operator.length() - 1;
+            }
+        }
+
+        if (operator == null) {
+            return null;
+        }
+
+        String field = term.substring(0, operatorStart).trim();
+        String literal = term.substring(operatorStart + operator.length()).trim();
+        if (!isField(field)) {
+            return null;
+        }
+
+        Object value = EQ.equals(operator) ? parseEqualityLiteral(literal) : parseComparableLiteral(literal);
+        if (value == null) {
+            return null;
+        }
+        return new Discriminator(field, operator, value);
+    }
+
+    /**
+     * Only simple property paths and method calls are accepted so that evaluating the field on its own can't mean
+     * anything different from evaluating it as part of the rule
+     */
+    protected static boolean isField(String field) {
+        if (field.isEmpty()) {
+            return false;
+        }
+        StringBuilder unquoted = new StringBuilder();
+        char quote = 0;
+        for (int i = 0; i < field.length(); i++) {
+            char c = field.charAt(i);
+            if (quote != 0) {
+                if (c == '\\') {
+                    return false;
+                } else if (c == quote) {
+                    quote = 0;
+                }
+            } else if (c == '"' || c == '\'') {
+                quote = c;
+            } else {
+                unquoted.append(c);
+            }
+        }
+        return quote == 0 && FIELD_CHARACTERS.matcher(unquoted).matches();
+    }
+
+    protected static Object parseEqualityLiteral(String literal) {
+        Matcher matcher = STRING_LITERAL.matcher(literal);
+        if (matcher.matches()) {
+            return matcher.group(1) != null ? matcher.group(1) : matcher.group(2);
+        }
+        matcher = UPPER_CASE_LITERAL.matcher(literal);
+        if (matcher.matches()) {
+            return matcher.group(1).toUpperCase();
+        }
+        matcher = BOOLEAN_LITERAL.matcher(literal);
+        if (matcher.matches()) {
+            return Boolean.valueOf(matcher.group(1));
+        }
+        return null;
+    }
+
+    protected static Object parseComparableLiteral(String literal) {
+        Matcher matcher = CONVERTED_LITERAL.matcher(literal);
+        if (matcher.matches()) {
+            try {
+                return MvelHelper.convertField(matcher.group(1), matcher.group(2));
+            } catch (RuntimeException e) {
+                return null;
+            }
+        }
+        return null;
+    }
+
+    protected static boolean equal(Integer priority1, Integer priority2) {
+        return priority1 == null ? priority2 == null : priority1.equals(priority2);
+    }
+
+    protected static class Discriminator {
+
+        protected final String field;
+        protected final String operator;
+        protected final Object value;
+
+        protected Discriminator(String field, String operator, Object value) {
+            this.field = field;
+            this.operator = operator;
+            this.value = value;
+        }
+    }
+
+    protected static class RangeGuard {
+
+        protected final int field;
+        protected final String operator;
+        protected final Comparable<Object> bound;
+
+        protected RangeGuard(int field, String operator, Comparable<Object> bound) {
+            this.field = field;
+            this.operator = operator;
+            this.bound = bound;
+        }
+
+        /**
+         * Only values of exactly the bound's type are compared, anything else is left to the full rule
+         */
+        @SuppressWarnings("unchecked")
+        protected boolean excludes(Object value) {
+            if (value == null || value == UNKNOWN || value.getClass() != bound.getClass()) {
+                return false;
+            }
+            int comparison = ((Comparable<Object>) value).compareTo(bound);
+            if (GT.equals(operator)) {
+                return comparison <= 0;
+            } else if (GTE.equals(operator)) {
+                return comparison < 0;
+            } else if (LT.equals(operator)) {
+                return comparison >= 0;
+            }
+            return comparison > 0;
+        }
+    }
+}
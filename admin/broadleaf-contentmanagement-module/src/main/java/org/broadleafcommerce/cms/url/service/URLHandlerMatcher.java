@@ -0,0 +1,321 @@
+/*
+ * #%L
+ * BroadleafCommerce CMS Module
+ * %%
+ * Copyright (C) 2009 - 2016 Broadleaf Commerce
+ * %%
+ * Licensed under the Broadleaf Fair Use License Agreement, Version 1.0
+ * (the "Fair Use License" located  at http://license.broadleafcommerce.org/fair_use_license-1.0.txt)
+ * unless the restrictions on use therein are violated and require payment to Broadleaf in which case
+ * the Broadleaf End User License Agreement (EULA), Version 1.1
+ * (the "Commercial License" located at http://license.broadleafcommerce.org/commercial_license-1.1.txt)
+ * shall apply.
+ * 
+ * Alternatively, the Commercial License may be replaced with a mutually agreed upon license (the "Custom License")
+ * between you and Broadleaf Commerce. You may not use this file except in compliance with the applicable license.
+ * #L%
+ */
+package org.broadleafcommerce.cms.url.service;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.broadleafcommerce.cms.url.domain.URLHandler;
+import org.broadleafcommerce.cms.url.domain.URLHandlerDTO;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * An immutable index over a list of {@link URLHandler}s that finds the same handler a sequential scan of the list would,
+ * without evaluating every handler's regular expression.
+ * <p>
+ * Each handler's incoming URL is anchored the way {@link URLHandlerServiceImpl#wrapStringsWithAnchors(String)} does and
+ * then classified:
+ * <ul>
+ * <li>patterns without any regex syntax go into a hash map keyed by the exact URI they match</li>
+ * <li>all other patterns go into a character trie under the literal prefix every URI they match must start with;
+ * patterns without such a prefix (e.g. ones starting with a group or containing an alternation) live at the root</li>
+ * </ul>
+ * A lookup walks the trie along the URI, collects the handlers found on the way plus the exact match, and evaluates
+ * them in their original list order, so the first handler in the list that matches still wins.
+ */
+public class URLHandlerMatcher {
+
+    private static final Log LOG = LogFactory.getLog(URLHandlerMatcher.class);
+
+    protected static final String REGEX_META_CHARS = "\\.[](){}*+?^$|";
+
+    protected final Entry[] entries;
+    protected final Map<String, Integer> literalEntries;
+    protected final TrieNode root;
+    protected final LongAdder regexEvaluations;
+
+    /**
+     * @param handlers the handlers, in the order they should be tried
+     * @param anchoredPatterns the anchored regular expression of each handler, in the same order; a null entry
+     * excludes that handler from matching
+     * @param regexEvaluations incremented each time a handler's regular expression is evaluated
+     */
+    public URLHandlerMatcher(List<URLHandler> handlers, List<String> anchoredPatterns, LongAdder regexEvaluations) {
+        this.regexEvaluations = regexEvaluations;
+        entries = new Entry[handlers.size()];
+        literalEntries = new HashMap<String, Integer>();
+        TrieNodeBuilder rootBuilder = new TrieNodeBuilder();
+        for (int i = 0; i < entries.length; i++) {
+            String regex = anchoredPatterns.get(i);
+            entries[i] = new Entry(handlers.get(i), regex);
+            if (regex == null) {
+                continue;
+            }
+
+            StringBuilder prefix = new StringBuilder();
+            if (extractLiteralPrefix(regex, prefix)) {
+                String literal = prefix.toString();
+                if (!literalEntries.containsKey(literal)) {
+                    literalEntries.put(literal, i);
+                }
+                continue;
+            }
+            TrieNodeBuilder node = rootBuilder;
+            for (int c = 0; c < prefix.length(); c++) {
+                node = node.child(prefix.charAt(c));
+            }
+            node.entries.add(i);
+        }
+        root = rootBuilder.build();
+    }
+
+    /**
+     * Reads the literal characters at the start of an anchored regular expression into {@code prefix}.
+     *
+     * @return true if the whole expression is literal, i.e. it only ever matches the URI held in {@code prefix}
+     */
+    protected static boolean extractLiteralPrefix(String regex, StringBuilder prefix) {
+        if (!regex.startsWith("^") || regex.indexOf('|') >= 0) {
+            return false;
+        }
+        int i = 1;
+        while (i < regex.length()) {
+            char c = regex.charAt(i);
+            char literal;
+            int next;
+            if (c == '\\') {
+                if (i + 1 >= regex.length() || Character.isLetterOrDigit(regex.charAt(i + 1))) {
+                    return false;
+                }
+                literal = regex.charAt(i + 1);
+                next = i + 2;
+            } else if (c == '$' && i == regex.length() - 1) {
+                return true;
+            } else if (REGEX_META_CHARS.indexOf(c) >= 0) {
+                return false;
+            } else {
+                literal = c;
+                next = i + 1;
+            }
+
+            if (next < regex.length()) {
+                char quantifier = regex.charAt(next);
+                if (quantifier == '?' || quantifier == '*' || quantifier == '{') {
+                    // the literal is optional, so it is not part of the prefix
+                    return false;
+                }
+                if (quantifier == '+') {
+                    prefix.append(literal);
+                    return false;
+                }
+            }
+            prefix.append(literal);
+            i = next;
+        }
+        return false;
+    }
+
+    /**
+     * Finds the first handler, in list order, whose pattern matches the URI.
+     *
+     * @param requestURI the URI to match
+     * @return the matching handler, a {@link URLHandlerDTO} carrying the rewritten URL if the handler's new URL refers
+     * to groups of the incoming pattern, or null if no handler matches
+     */
+    public URLHandler match(String requestURI) {
+        int[] candidates = findCandidates(requestURI);
+        for (int candidate : candidates) {
+            Entry entry = entries[candidate];
+            Pattern pattern = entry.getPattern();
+            if (pattern == null) {
+                continue;
+            }
+            URLHandler urlHandler = entry.handler;
+            try {
+                regexEvaluations.increment();
+                Matcher m = pattern.matcher(requestURI);
+                if (m.find()) {
+                    String newUrl = m.replaceFirst(urlHandler.getNewURL());
+                    if (newUrl.equals(urlHandler.getNewURL())) {
+                        return urlHandler;
+                    } else {
+                        return new URLHandlerDTO(newUrl, urlHandler.getUrlRedirectType());
+                    }
+                }
+            } catch (RuntimeException re) {
+                if (LOG.isWarnEnabled()) {
+                    LOG.warn("Error parsing URL Handler (incoming =" + urlHandler.getIncomingURL() + "), outgoing = ( "
+                            + urlHandler.getNewURL() + "), " + requestURI);
+                }
+                return null;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return the indexes of the handlers that could match the URI, in ascending order
+     */
+    protected int[] findCandidates(String requestURI) {
+        if (endsWithLineTerminator(requestURI)) {
+            // '$' also matches before a trailing line terminator, which the exact-match map can't express
+            int[] all = new int[entries.length];
+            for (int i = 0; i < all.length; i++) {
+                all[i] = i;
+            }
+            return all;
+        }
+
+        List<int[]> found = new ArrayList<int[]>();
+        int size = 0;
+        TrieNode node = root;
+        int position = 0;
+        while (node != null) {
+            if (node.entries.length > 0) {
+                found.add(node.entries);
+                size += node.entries.length;
+            }
+            node = position < requestURI.length() ? node.child(requestURI.charAt(position++)) : null;
+        }
+        Integer literal = literalEntries.get(requestURI);
+        if (literal != null) {
+            found.add(new int[] { literal });
+            size++;
+        }
+
+        int[] candidates = new int[size];
+        int offset = 0;
+        for (int[] indexes : found) {
+            System.arraycopy(indexes, 0, candidates, offset, indexes.length);
+            offset += indexes.length;
+        }
+        if (found.size() > 1) {
+            Arrays.sort(candidates);
+        }
+        return candidates;
+    }
+
+    protected boolean endsWithLineTerminator(String requestURI) {
+        if (requestURI.isEmpty()) {
+            return false;
+        }
+        char last = requestURI.charAt(requestURI.length() - 1);
+        return last == '\n' || last == '\r' || last == '\u0085' || last == '\u2028' || last == '\u2029';
+    }
+
+    public int getHandlerCount() {
+        return entries.length;
+    }
+
+    public int getLiteralHandlerCount() {
+        return literalEntries.size();
+    }
+
+    protected static class Entry {
+
+        protected final URLHandler handler;
+        protected final String regex;
+        protected volatile Pattern pattern;
+        protected volatile boolean invalid;
+
+        protected Entry(URLHandler handler, String regex) {
+            this.handler = handler;
+            this.regex = regex;
+            this.invalid = regex == null;
+        }
+
+        /**
+         * Compiles the pattern on first use. A pattern that does not compile is logged once and skipped from then on.
+         */
+        protected Pattern getPattern() {
+            Pattern p = pattern;
+            if (p == null && !invalid) {
+                try {
+                    p = Pattern.compile(regex);
+                    pattern = p;
+                } catch (PatternSyntaxException e) {
+                    invalid = true;
+                    if (LOG.isWarnEnabled()) {
+                        LOG.warn("Error parsing URL Handler (incoming =" + handler.getIncomingURL() + "), outgoing = ( "
+                                + handler.getNewURL() + ")", e);
+                    }
+                }
+            }
+            return p;
+        }
+    }
+
+    protected static class TrieNode {
+
+        protected final char[] labels;
+        protected final TrieNode[] children;
+        protected final int[] entries;
+
+        protected TrieNode(char[] labels, TrieNode[] children, int[] entries) {
+            this.labels = labels;
+            this.children = children;
+            this.entries = entries;
+        }
+
+        protected TrieNode child(char c) {
+            int index = Arrays.binarySearch(labels, c);
+            return index >= 0 ? children[index] : null;
+        }
+    }
+
+    protected static class TrieNodeBuilder {
+
+        protected final TreeMap<Character, TrieNodeBuilder> children = new TreeMap<Character, TrieNodeBuilder>();
+        protected final List<Integer> entries = new ArrayList<Integer>();
+
+        protected TrieNodeBuilder child(char c) {
+            TrieNodeBuilder child = children.get(c);
+            if (child == null) {
+                child = new TrieNodeBuilder();
+                children.put(c, child);
+            }
+            return child;
+        }
+
+        protected TrieNode build() {
+            char[] labels = new char[children.size()];
+            TrieNode[] nodes = new TrieNode[children.size()];
+            int i = 0;
+            for (Map.Entry<Character, TrieNodeBuilder> child : children.entrySet()) {
+                labels[i] = child.getKey();
+                nodes[i] = child.getValue().build();
+                i++;
+            }
+            int[] indexes = new int[entries.size()];
+            for (int e = 0; e < indexes.length; e++) {
+                indexes[e] = entries.get(e);
+            }
+            return new TrieNode(labels, nodes, indexes);
+        }
+    }
+
+}
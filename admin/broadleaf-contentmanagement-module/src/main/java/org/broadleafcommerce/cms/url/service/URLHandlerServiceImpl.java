@@ -26,15 +26,21 @@ import org.broadleafcommerce.cms.url.domain.URLHandler;
 import org.broadleafcommerce.cms.url.domain.URLHandlerDTO;
 import org.broadleafcommerce.common.cache.StatisticsService;
 import org.broadleafcommerce.common.site.domain.Site;
-import org.broadleafcommerce.common.util.EfficientLRUMap;
 import org.broadleafcommerce.common.web.BroadleafRequestContext;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedResource;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
+import java.util.ArrayList;
 import java.util.List;
-import java.util.Map;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
 
 import javax.annotation.Resource;
 
@@ -47,6 +53,7 @@ import net.sf.ehcache.Element;
  * Created by bpolster.
  */
 @Service("blURLHandlerService")
+@ManagedResource(objectName = "org.broadleafcommerce:name=URLHandlerService", description = "URL Handler Service", currencyTimeLimit = 15)
 public class URLHandlerServiceImpl implements URLHandlerService {
 
     protected static final String REGEX_SPECIAL_CHARS_PATTERN = "([\\[\\]\\.\\|\\?\\*\\+\\(\\)\\\\~`\\!@#%&\\-_+={}'\"\"<>:;, \\/])"; //other than ^ and $
@@ -61,7 +68,23 @@ public class URLHandlerServiceImpl implements URLHandlerService {
     @Resource(name = "blStatisticsService")
     protected StatisticsService statisticsService;
 
-    protected Map<String, Pattern> urlPatternMap = new EfficientLRUMap<String, Pattern>(2000);
+    /**
+     * How long, in seconds, a production matcher is used before it is rebuilt to pick up handlers changed on other nodes.
+     * Defaults to the time to live of the cmsUrlHandlerCache.
+     */
+    @Value("${url.handler.matcher.refresh.seconds:3600}")
+    protected long matcherRefreshSeconds = 3600L;
+
+    protected final ConcurrentMap<String, CachedURLHandlerMatcher> urlHandlerMatchers = new ConcurrentHashMap<String, CachedURLHandlerMatcher>();
+    protected final AtomicLong matcherGeneration = new AtomicLong();
+
+    protected final LongAdder matchCount = new LongAdder();
+    protected final LongAdder matchNanos = new LongAdder();
+    protected final LongAdder regexEvaluations = new LongAdder();
+    protected final LongAdder matcherBuilds = new LongAdder();
+    protected final LongAdder matcherBuildNanos = new LongAdder();
+    protected volatile int handlerCount;
+    protected volatile int literalHandlerCount;
 
     /**
      * Checks the passed in URL to determine if there is a matching URLHandler.
@@ -140,44 +163,131 @@ public class URLHandlerServiceImpl implements URLHandlerService {
     @Override
     @Transactional("blTransactionManager")
     public URLHandler saveURLHandler(URLHandler handler) {
-        return urlHandlerDao.saveURLHandler(handler);
+        URLHandler saved = urlHandlerDao.saveURLHandler(handler);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+
+                @Override
+                public void afterCommit() {
+                    invalidateURLHandlerMatchers();
+                }
+            });
+        } else {
+            invalidateURLHandlerMatchers();
+        }
+        return saved;
     }
 
     protected URLHandler checkForMatches(String requestURI) {
-        URLHandler currentHandler = null;
+        long start = System.nanoTime();
         try {
-            List<URLHandler> urlHandlers = findAllURLHandlers();
-            for (URLHandler urlHandler : urlHandlers) {
-                currentHandler = urlHandler;
-                String incomingUrl = wrapStringsWithAnchors(currentHandler.getIncomingURL());
-
-                Pattern p = urlPatternMap.get(incomingUrl);
-                if (p == null) {
-                    p = Pattern.compile(incomingUrl);
-                    urlPatternMap.put(incomingUrl, p);
-                }
-                Matcher m = p.matcher(requestURI);
-                if (m.find()) {
-                    String newUrl = m.replaceFirst(urlHandler.getNewURL());
-                    if (newUrl.equals(urlHandler.getNewURL())) {
-                        return urlHandler;
-                    } else {
-                        return new URLHandlerDTO(newUrl, urlHandler.getUrlRedirectType());
-                    }
-                }
+            return getURLHandlerMatcher().match(requestURI);
+        } finally {
+            matchCount.increment();
+            matchNanos.add(System.nanoTime() - start);
+        }
+    }
 
+    /**
+     * Returns the matcher for the current site. In production the matcher is built once from
+     * {@link #findAllURLHandlers()} and shared until a handler is saved or {@link #matcherRefreshSeconds} pass, at which
+     * point the next lookup builds a replacement and swaps it in. Outside of production the handlers are read and indexed
+     * on every call so that sandbox changes are visible immediately.
+     */
+    protected URLHandlerMatcher getURLHandlerMatcher() {
+        BroadleafRequestContext context = BroadleafRequestContext.getBroadleafRequestContext();
+        if (context != null && !context.isProductionSandBox()) {
+            return buildURLHandlerMatcher();
+        }
+
+        String key = buildURLHandlerMatcherKey(context);
+        CachedURLHandlerMatcher cached = urlHandlerMatchers.get(key);
+        long now = System.currentTimeMillis();
+        if (cached == null || now >= cached.expiresAt) {
+            long generation = matcherGeneration.get();
+            URLHandlerMatcher matcher = buildURLHandlerMatcher();
+            cached = new CachedURLHandlerMatcher(matcher, now + matcherRefreshSeconds * 1000L);
+            if (generation == matcherGeneration.get()) {
+                urlHandlerMatchers.put(key, cached);
             }
-        } catch (RuntimeException re) {
-            if (currentHandler != null) {
-                // We don't want an invalid regex to cause tons of logging                
+        }
+        return cached.matcher;
+    }
+
+    protected URLHandlerMatcher buildURLHandlerMatcher() {
+        long start = System.nanoTime();
+        List<URLHandler> urlHandlers = findAllURLHandlers();
+        List<String> anchoredPatterns = new ArrayList<String>(urlHandlers.size());
+        for (URLHandler urlHandler : urlHandlers) {
+            String anchoredPattern = null;
+            try {
+                anchoredPattern = wrapStringsWithAnchors(urlHandler.getIncomingURL());
+            } catch (RuntimeException re) {
                 if (LOG.isWarnEnabled()) {
-                    LOG.warn("Error parsing URL Handler (incoming =" + currentHandler.getIncomingURL() + "), outgoing = ( "
-                            + currentHandler.getNewURL() + "), " + requestURI);
+                    LOG.warn("Error parsing URL Handler (incoming =" + urlHandler.getIncomingURL() + "), outgoing = ( "
+                            + urlHandler.getNewURL() + ")");
                 }
             }
+            anchoredPatterns.add(anchoredPattern);
         }
+        URLHandlerMatcher matcher = new URLHandlerMatcher(urlHandlers, anchoredPatterns, regexEvaluations);
+        matcherBuilds.increment();
+        matcherBuildNanos.add(System.nanoTime() - start);
+        handlerCount = matcher.getHandlerCount();
+        literalHandlerCount = matcher.getLiteralHandlerCount();
+        return matcher;
+    }
 
-        return null;
+    protected String buildURLHandlerMatcherKey(BroadleafRequestContext context) {
+        Site site = context == null ? null : context.getNonPersistentSite();
+        return site == null ? "" : "site:" + site.getId();
+    }
+
+    /**
+     * Discards the cached matchers so that the next lookup rebuilds them from the current handlers. A matcher that is
+     * being built while this is called is used for its own request but not cached.
+     */
+    protected void invalidateURLHandlerMatchers() {
+        matcherGeneration.incrementAndGet();
+        urlHandlerMatchers.clear();
+    }
+
+    @ManagedAttribute(description = "The number of URIs matched against the URL handler patterns", currencyTimeLimit = 15)
+    public long getMatchCount() {
+        return matchCount.sum();
+    }
+
+    @ManagedAttribute(description = "The average time in microseconds to match a URI against the URL handler patterns", currencyTimeLimit = 15)
+    public double getAverageMatchMicros() {
+        long count = matchCount.sum();
+        return count == 0 ? 0D : matchNanos.sum() / 1000D / count;
+    }
+
+    @ManagedAttribute(description = "The average number of regular expressions evaluated per URI", currencyTimeLimit = 15)
+    public double getAverageRegexEvaluationsPerMatch() {
+        long count = matchCount.sum();
+        return count == 0 ? 0D : (double) regexEvaluations.sum() / count;
+    }
+
+    @ManagedAttribute(description = "The number of times the URL handler matcher was built", currencyTimeLimit = 15)
+    public long getMatcherBuildCount() {
+        return matcherBuilds.sum();
+    }
+
+    @ManagedAttribute(description = "The average time in milliseconds to build the URL handler matcher", currencyTimeLimit = 15)
+    public double getAverageMatcherBuildMillis() {
+        long count = matcherBuilds.sum();
+        return count == 0 ? 0D : matcherBuildNanos.sum() / 1000000D / count;
+    }
+
+    @ManagedAttribute(description = "The number of URL handlers in the most recently built matcher", currencyTimeLimit = 15)
+    public int getHandlerCount() {
+        return handlerCount;
+    }
+
+    @ManagedAttribute(description = "The number of URL handlers in the most recently built matcher that are matched by exact lookup", currencyTimeLimit = 15)
+    public int getLiteralHandlerCount() {
+        return literalHandlerCount;
     }
 
     @Override
@@ -190,6 +300,7 @@ public class URLHandlerServiceImpl implements URLHandlerService {
                 success = Boolean.valueOf(getUrlHandlerCache().remove(mapKey));
             }
         }
+        invalidateURLHandlerMatchers();
 
         return success;
     }
@@ -247,4 +358,15 @@ public class URLHandlerServiceImpl implements URLHandlerService {
 
         return incomingUrl;
     }
+
+    protected static class CachedURLHandlerMatcher {
+
+        protected final URLHandlerMatcher matcher;
+        protected final long expiresAt;
+
+        protected CachedURLHandlerMatcher(URLHandlerMatcher matcher, long expiresAt) {
+            this.matcher = matcher;
+            this.expiresAt = expiresAt;
+        }
+    }
 }
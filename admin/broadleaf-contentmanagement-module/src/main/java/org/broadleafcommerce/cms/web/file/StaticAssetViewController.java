@@ -39,6 +39,7 @@ import org.springframework.web.servlet.mvc.AbstractController;
 import java.io.FileNotFoundException;
 import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.concurrent.RejectedExecutionException;
 
 import javax.annotation.PostConstruct;
 import javax.annotation.Resource;
@@ -151,6 +152,12 @@ public class StaticAssetViewController extends AbstractController {
             response.setStatus(HttpServletResponse.SC_NOT_FOUND);
             LOG.error("Could not retrieve asset request " + fullUrl + " from the StaticAssetStorage. The underlying file path checked was " + e.getMessage());
             return null;
+        } catch (RejectedExecutionException e) {
+            // Too many derived files are already being generated, let the client retry instead of tying up the request
+            response.setStatus(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+            response.setHeader("Retry-After", "1");
+            LOG.warn("Unable to queue generation of static asset " + fullUrl + ", the derivative queue is full");
+            return null;
         } catch (Exception e) {
             LOG.error("Unable to retrieve static asset", e);
             throw new RuntimeException(e);
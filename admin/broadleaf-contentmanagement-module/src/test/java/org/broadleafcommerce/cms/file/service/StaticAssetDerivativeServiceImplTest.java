@@ -0,0 +1,121 @@
+/*
+ * #%L
+ * BroadleafCommerce CMS Module
+ * %%
+ * Copyright (C) 2009 - 2016 Broadleaf Commerce
+ * %%
+ * Licensed under the Broadleaf Fair Use License Agreement, Version 1.0
+ * (the "Fair Use License" located  at http://license.broadleafcommerce.org/fair_use_license-1.0.txt)
+ * unless the restrictions on use therein are violated and require payment to Broadleaf in which case
+ * the Broadleaf End User License Agreement (EULA), Version 1.1
+ * (the "Commercial License" located at http://license.broadleafcommerce.org/commercial_license-1.1.txt)
+ * shall apply.
+ * 
+ * Alternatively, the Commercial License may be replaced with a mutually agreed upon license (the "Custom License")
+ * between you and Broadleaf Commerce. You may not use this file except in compliance with the applicable license.
+ * #L%
+ */
+package org.broadleafcommerce.cms.file.service;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import junit.framework.TestCase;
+
+public class StaticAssetDerivativeServiceImplTest extends TestCase {
+
+    public void testConcurrentRequestsShareOneConversion() throws Exception {
+        final StaticAssetDerivativeServiceImpl derivativeService = new StaticAssetDerivativeServiceImpl();
+        final File cacheFile = new File("/tmp/derivative-test---resize.png");
+        final AtomicInteger conversions = new AtomicInteger();
+        final CountDownLatch release = new CountDownLatch(1);
+        final Callable<File> conversion = new Callable<File>() {
+            @Override
+            public File call() throws Exception {
+                conversions.incrementAndGet();
+                release.await(5, TimeUnit.SECONDS);
+                return cacheFile;
+            }
+        };
+
+        int requests = 8;
+        ExecutorService requestThreads = Executors.newFixedThreadPool(requests);
+        try {
+            List<Future<File>> results = new ArrayList<Future<File>>();
+            for (int i = 0; i < requests; i++) {
+                results.add(requestThreads.submit(new Callable<File>() {
+                    @Override
+                    public File call() throws Exception {
+                        return derivativeService.generateDerivative(cacheFile, conversion);
+                    }
+                }));
+            }
+            while (derivativeService.getInFlightConversionCount() == 0) {
+                Thread.sleep(5);
+            }
+            Thread.sleep(200);
+            release.countDown();
+            for (Future<File> result : results) {
+                assertEquals(cacheFile, result.get(5, TimeUnit.SECONDS));
+            }
+        } finally {
+            requestThreads.shutdownNow();
+            derivativeService.shutdown();
+        }
+
+        assertEquals(1, conversions.get());
+        assertEquals(0, derivativeService.getInFlightConversionCount());
+    }
+
+    public void testFullQueueRejectsNewConversions() throws Exception {
+        StaticAssetDerivativeServiceImpl derivativeService = new StaticAssetDerivativeServiceImpl();
+        derivativeService.setWorkerThreads(1);
+        derivativeService.setWorkerQueueSize(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        Callable<File> blocked = new Callable<File>() {
+            @Override
+            public File call() throws Exception {
+                release.await(5, TimeUnit.SECONDS);
+                return null;
+            }
+        };
+        ExecutorService requestThreads = Executors.newFixedThreadPool(2);
+        try {
+            requestThreads.submit(waitFor(derivativeService, new File("/tmp/derivative-test-1.png"), blocked));
+            requestThreads.submit(waitFor(derivativeService, new File("/tmp/derivative-test-2.png"), blocked));
+            while (derivativeService.getInFlightConversionCount() < 2) {
+                Thread.sleep(5);
+            }
+            try {
+                derivativeService.generateDerivative(new File("/tmp/derivative-test-3.png"), blocked);
+                fail("Expected the full worker queue to reject the conversion");
+            } catch (RejectedExecutionException e) {
+                // expected
+            }
+            assertEquals(2, derivativeService.getInFlightConversionCount());
+        } finally {
+            release.countDown();
+            requestThreads.shutdownNow();
+            derivativeService.shutdown();
+        }
+    }
+
+    protected Callable<File> waitFor(final StaticAssetDerivativeServiceImpl derivativeService, final File cacheFile,
+                                     final Callable<File> conversion) {
+        return new Callable<File>() {
+            @Override
+            public File call() throws Exception {
+                return derivativeService.generateDerivative(cacheFile, conversion);
+            }
+        };
+    }
+}
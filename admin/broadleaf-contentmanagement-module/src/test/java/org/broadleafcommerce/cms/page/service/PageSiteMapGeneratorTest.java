@@ -58,7 +58,7 @@ public class PageSiteMapGeneratorTest extends SiteMapGeneratorTest {
         pages.add(p3);
 
         PageDao pageDao = EasyMock.createMock(PageDao.class);
-        EasyMock.expect(pageDao.readOnlineAndIncludedPages(5, 0, "fullUrl")).andReturn(pages);
+        EasyMock.expect(pageDao.readOnlineAndIncludedPages(5, null)).andReturn(pages);
         EasyMock.replay(pageDao);
 
         PageSiteMapGenerator psmg = new PageSiteMapGenerator();
@@ -0,0 +1,125 @@
+/*
+ * #%L
+ * BroadleafCommerce CMS Module
+ * %%
+ * Copyright (C) 2009 - 2016 Broadleaf Commerce
+ * %%
+ * Licensed under the Broadleaf Fair Use License Agreement, Version 1.0
+ * (the "Fair Use License" located  at http://license.broadleafcommerce.org/fair_use_license-1.0.txt)
+ * unless the restrictions on use therein are violated and require payment to Broadleaf in which case
+ * the Broadleaf End User License Agreement (EULA), Version 1.1
+ * (the "Commercial License" located at http://license.broadleafcommerce.org/commercial_license-1.1.txt)
+ * shall apply.
+ *
+ * Alternatively, the Commercial License may be replaced with a mutually agreed upon license (the "Custom License")
+ * between you and Broadleaf Commerce. You may not use this file except in compliance with the applicable license.
+ * #L%
+ */
+package org.broadleafcommerce.cms.structure.service;
+
+import org.broadleafcommerce.common.RequestDTOImpl;
+import org.broadleafcommerce.common.TimeDTO;
+import org.broadleafcommerce.common.structure.dto.StructuredContentDTO;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Calendar;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import junit.framework.TestCase;
+
+public class StructuredContentTargetingIndexTest extends TestCase {
+
+    protected static final String URI_A = "MvelHelper.toUpperCase(request.?requestURI)==MvelHelper.toUpperCase(\"/a\")";
+    protected static final String URI_B = "MvelHelper.toUpperCase(request.?requestURI)==MvelHelper.toUpperCase(\"/b\")";
+    protected static final String STARTED = "time.?date>=MvelHelper.convertField(\"DATE\",\"2000.01.01 00:00:00 -0000\")";
+    protected static final String ENDED = "time.?date<MvelHelper.convertField(\"DATE\",\"2000.01.01 00:00:00 -0000\")";
+
+    public void testEqualityDiscriminatorsDropOtherValues() {
+        List<StructuredContentDTO> content = new ArrayList<StructuredContentDTO>();
+        content.add(buildContent(1L, 1, URI_A));
+        content.add(buildContent(2L, 1, URI_B));
+        content.add(buildContent(3L, 2, null));
+        content.add(buildContent(4L, 2, "(" + URI_A + "&&" + STARTED + ")"));
+
+        StructuredContentTargetingIndex index = new StructuredContentTargetingIndex(content);
+
+        assertEquals(4, index.getDiscriminatorCount());
+        assertEquals(Arrays.asList(1L, 3L, 4L), findCandidateIds(index, buildRuleDTOs("/a")));
+        assertEquals(Arrays.asList(2L, 3L), findCandidateIds(index, buildRuleDTOs("/b")));
+        assertEquals(Arrays.asList(3L), findCandidateIds(index, buildRuleDTOs("/c")));
+    }
+
+    public void testRangeDiscriminatorsDropEndedContent() {
+        List<StructuredContentDTO> content = new ArrayList<StructuredContentDTO>();
+        content.add(buildContent(1L, 1, STARTED));
+        content.add(buildContent(2L, 1, ENDED));
+        content.add(buildContent(3L, 1, URI_A + " && " + ENDED));
+
+        StructuredContentTargetingIndex index = new StructuredContentTargetingIndex(content);
+
+        assertEquals(Arrays.asList(1L), findCandidateIds(index, buildRuleDTOs("/a")));
+    }
+
+    public void testRulesThatCannotBeIndexedAreKept() {
+        List<StructuredContentDTO> content = new ArrayList<StructuredContentDTO>();
+        content.add(buildContent(1L, 1, URI_B + "||" + URI_A));
+        content.add(buildContent(2L, 1, "!(" + URI_B + ")"));
+        content.add(buildContent(3L, 1, "request.?requestURI!=\"/a\""));
+        content.add(buildContent(4L, 1, URI_B));
+
+        StructuredContentTargetingIndex index = new StructuredContentTargetingIndex(content);
+
+        assertEquals(1, index.getDiscriminatorCount());
+        assertEquals(Arrays.asList(1L, 2L, 3L), findCandidateIds(index, buildRuleDTOs("/a")));
+        assertEquals(Arrays.asList(1L, 2L, 3L, 4L), findCandidateIds(index, new HashMap<String, Object>()));
+    }
+
+    public void testCandidatesAreGroupedByPriority() {
+        List<StructuredContentDTO> content = new ArrayList<StructuredContentDTO>();
+        content.add(buildContent(1L, 3, null));
+        content.add(buildContent(2L, 1, null));
+        content.add(buildContent(3L, null, null));
+        content.add(buildContent(4L, 2, null));
+        content.add(buildContent(5L, 1, null));
+
+        StructuredContentTargetingIndex index = new StructuredContentTargetingIndex(content);
+
+        assertEquals(Arrays.asList(2L, 5L, 4L, 1L, 3L), findCandidateIds(index, buildRuleDTOs("/a")));
+        assertEquals(2, index.getTierEnd(0));
+        assertEquals(2, index.getTierEnd(1));
+        assertEquals(3, index.getTierEnd(2));
+        assertEquals(4, index.getTierEnd(3));
+        assertEquals(5, index.getTierEnd(4));
+    }
+
+    protected StructuredContentDTO buildContent(Long id, Integer priority, String ruleExpression) {
+        StructuredContentDTO sc = new StructuredContentDTO();
+        sc.setId(id);
+        sc.setPriority(priority);
+        sc.setRuleExpression(ruleExpression);
+        return sc;
+    }
+
+    protected Map<String, Object> buildRuleDTOs(String requestURI) {
+        RequestDTOImpl request = new RequestDTOImpl();
+        request.setRequestURI(requestURI);
+
+        Map<String, Object> ruleDTOs = new HashMap<String, Object>();
+        ruleDTOs.put("request", request);
+        ruleDTOs.put("time", new TimeDTO(Calendar.getInstance()));
+        return ruleDTOs;
+    }
+
+    protected List<Long> findCandidateIds(StructuredContentTargetingIndex index, Map<String, Object> ruleDTOs) {
+        List<Long> ids = new ArrayList<Long>();
+        BitSet candidates = index.findCandidates(ruleDTOs);
+        for (int i = candidates.nextSetBit(0); i >= 0; i = candidates.nextSetBit(i + 1)) {
+            ids.add(index.getCandidate(i).getId());
+        }
+        return ids;
+    }
+}
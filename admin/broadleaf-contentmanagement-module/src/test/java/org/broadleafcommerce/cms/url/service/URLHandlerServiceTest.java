@@ -105,4 +105,27 @@ public class URLHandlerServiceTest extends TestCase {
         assertTrue(expectedNewURL.equals(h.getNewURL()));
     }
 
+    @Test
+    public void testFirstMatchWinsAcrossLiteralAndRegexHandlers() {
+        List<URLHandler> handlerList = new ArrayList<URLHandler>();
+        handlerList.add(createHandler("/catalog/(.*)", "/products/$1"));
+        handlerList.add(createHandler("/catalog/hats", "/NewHats"));
+        handlerList.add(createHandler("/shoes", "/NewShoes"));
+        handlerList.add(createHandler("/shoes/?", "/NewShoesSlash"));
+
+        URLHandlerServiceImpl service = new URLHandlerServiceImpl();
+        URLHandlerDao handlerDao = EasyMock.createMock(URLHandlerDao.class);
+        service.urlHandlerDao = handlerDao;
+        EasyMock.expect(handlerDao.findAllURLHandlers()).andReturn(handlerList);
+        EasyMock.replay(handlerDao);
+
+        assertEquals("/products/hats", service.checkForMatches("/catalog/hats").getNewURL());
+        assertEquals("/NewShoes", service.checkForMatches("/shoes").getNewURL());
+        assertEquals("/NewShoesSlash", service.checkForMatches("/shoes/").getNewURL());
+        assertNull(service.checkForMatches("/shoesx"));
+        assertEquals(4, service.getHandlerCount());
+        assertEquals(2, service.getLiteralHandlerCount());
+        assertEquals(1, service.getMatcherBuildCount());
+    }
+
 }
@@ -41,6 +41,7 @@ public class CriteriaTransferObject {
     private Integer upperCount;
     private Integer lowerCount;
     private Boolean presentationFetch;
+    private Boolean countOnly;
 
     private Map<String, FilterAndSortCriteria> criteriaMap = new HashMap<String, FilterAndSortCriteria>();
 
@@ -123,6 +124,20 @@ public class CriteriaTransferObject {
         this.presentationFetch = presentationFetch;
     }
 
+    /**
+     * Whether or not only the exact total record count is requested, without retrieving any records. This is generally
+     * a follow up to a fetch that paged by primary key and did not compute a total.
+     *
+     * @return whether or not only the count is requested, or null
+     */
+    public Boolean getCountOnly() {
+        return countOnly;
+    }
+
+    public void setCountOnly(Boolean countOnly) {
+        this.countOnly = countOnly;
+    }
+
     /**
      * Add a {@link FilterAndSortCriteria} instance. Contains information about which records are retrieved
      * and in what direction they're sorted.
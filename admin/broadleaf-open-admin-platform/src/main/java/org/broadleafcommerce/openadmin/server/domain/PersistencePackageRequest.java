@@ -51,6 +51,7 @@ public class PersistencePackageRequest {
     protected Integer lowerCount;
     protected Integer pageSize;
     protected Boolean presentationFetch;
+    protected Boolean countOnly;
     protected SectionCrumb[] sectionCrumbs;
     protected String sectionEntityField;
     protected String requestingEntityName;
@@ -286,6 +287,11 @@ public class PersistencePackageRequest {
         return this;
     }
 
+    public PersistencePackageRequest withCountOnly(Boolean countOnly) {
+        setCountOnly(countOnly);
+        return this;
+    }
+
     public PersistencePackageRequest withSectionCrumbs(List<SectionCrumb> sectionCrumbs) {
         setSectionCrumbs(sectionCrumbs.toArray(new SectionCrumb[sectionCrumbs.size()]));
         return this;
@@ -703,5 +709,18 @@ public class PersistencePackageRequest {
     public void setPresentationFetch(Boolean presentationFetch) {
         this.presentationFetch = presentationFetch;
     }
+
+    /**
+     * Whether or not only the exact total record count should be computed, without retrieving any records.
+     *
+     * @return
+     */
+    public Boolean getCountOnly() {
+        return countOnly;
+    }
+
+    public void setCountOnly(Boolean countOnly) {
+        this.countOnly = countOnly;
+    }
 }
 
@@ -984,6 +984,7 @@ public class AdminEntityServiceImpl implements AdminEntityService {
             cto.setMaxResults(request.getPageSize());
         }
         cto.setPresentationFetch(request.getPresentationFetch());
+        cto.setCountOnly(request.getCountOnly());
 
         return service.fetch(pkg, cto);
     }
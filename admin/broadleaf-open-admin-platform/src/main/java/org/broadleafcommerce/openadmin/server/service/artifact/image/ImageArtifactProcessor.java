@@ -22,6 +22,9 @@ import org.apache.commons.lang3.ArrayUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.broadleafcommerce.openadmin.server.service.artifact.ArtifactProcessor;
 import org.broadleafcommerce.openadmin.server.service.artifact.image.effects.chain.EffectsManager;
+import org.broadleafcommerce.openadmin.server.service.artifact.image.effects.chain.UnmarshalledParameter;
+import org.broadleafcommerce.openadmin.server.service.artifact.image.effects.chain.conversion.Parameter;
+import org.broadleafcommerce.openadmin.server.service.artifact.image.effects.chain.filter.FilterTypeEnum;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
@@ -42,6 +45,7 @@ import java.util.Map;
 import javax.annotation.Resource;
 import javax.imageio.IIOImage;
 import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
 import javax.imageio.ImageReader;
 import javax.imageio.ImageWriteParam;
 import javax.imageio.ImageWriter;
@@ -58,6 +62,11 @@ import javax.imageio.stream.MemoryCacheImageOutputStream;
 @Service("blImageArtifactProcessor")
 public class ImageArtifactProcessor implements ArtifactProcessor {
 
+    /**
+     * How many times larger than the resize target a subsampled decode must remain in each direction
+     */
+    public static final int SUBSAMPLING_HEADROOM = 2;
+
     @Resource(name="blImageEffectsManager")
     protected EffectsManager effectsManager;
 
@@ -67,6 +76,12 @@ public class ImageArtifactProcessor implements ArtifactProcessor {
     @Value("${image.artifact.recompress.formats:png}")
     protected String recompressFormats = "png";
 
+    /**
+     * Whether images that are only being shrunk may be decoded with source subsampling
+     */
+    @Value("${image.artifact.subsampled.decode:true}")
+    protected boolean subsampledDecode = true;
+
     @Override
     public boolean isSupported(InputStream artifactStream, String filename) {
         for (String type : supportedUploadTypes) {
@@ -106,7 +121,7 @@ public class ImageArtifactProcessor implements ArtifactProcessor {
             ImageReader reader = iter.next();
             String formatName = reader.getFormatName();
             artifactStream.reset();
-            BufferedImage image = ImageIO.read(ImageIO.createImageInputStream(artifactStream));
+            BufferedImage image = readImage(artifactStream, operations);
 
             //before
             if (formatName.toLowerCase().equals("jpeg") || formatName.toLowerCase().equals("jpg")) {
@@ -135,6 +150,97 @@ public class ImageArtifactProcessor implements ArtifactProcessor {
         }
     }
 
+    /**
+     * Decodes the image for the given operations. When the operations only resize and adjust colors, and the resize
+     * target is much smaller than the source, the image is decoded with source subsampling so the full size raster is
+     * never built. The subsampled image stays at least {@link #SUBSAMPLING_HEADROOM} times the target size in each
+     * direction, so the resize still does the final, area averaged, reduction.
+     */
+    protected BufferedImage readImage(InputStream artifactStream, Operation[] operations) throws Exception {
+        ImageInputStream iis = ImageIO.createImageInputStream(artifactStream);
+        try {
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(iis);
+            if (!readers.hasNext()) {
+                return null;
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(iis, true, true);
+                ImageReadParam param = reader.getDefaultReadParam();
+                int subsampling = getDecodeSubsampling(operations, reader.getWidth(0), reader.getHeight(0));
+                if (subsampling > 1) {
+                    param.setSourceSubsampling(subsampling, subsampling, 0, 0);
+                }
+                return reader.read(0, param);
+            } finally {
+                reader.dispose();
+            }
+        } finally {
+            iis.close();
+        }
+    }
+
+    /**
+     * Returns the subsampling factor to decode the source with for the given operations, or 1 to decode every pixel
+     */
+    protected int getDecodeSubsampling(Operation[] operations, int sourceWidth, int sourceHeight) {
+        if (!subsampledDecode) {
+            return 1;
+        }
+        Operation resize = null;
+        for (Operation operation : operations) {
+            String name = operation.getName();
+            if (FilterTypeEnum.RESIZE.toString().toLowerCase().equals(name)) {
+                resize = operation;
+            } else if (!FilterTypeEnum.ALTERRGB.toString().toLowerCase().equals(name)
+                    && !FilterTypeEnum.ALTERHSB.toString().toLowerCase().equals(name)) {
+                // Crops, blurs and the like work in source pixels, so they need the full image
+                return 1;
+            }
+        }
+        if (resize == null || resize.getParameters() == null) {
+            return 1;
+        }
+
+        int targetWidth = 0;
+        int targetHeight = 0;
+        try {
+            for (UnmarshalledParameter parameter : resize.getParameters()) {
+                if ("target-width".equals(parameter.getName()) || "target-height".equals(parameter.getName())) {
+                    Parameter converted = effectsManager.getConversionManager().convertParameter(parameter.getValue(),
+                            parameter.getType(), resize.getFactor(), parameter.isApplyFactor());
+                    if ("target-width".equals(parameter.getName())) {
+                        targetWidth = (Integer) converted.getParameterInstance();
+                    } else {
+                        targetHeight = (Integer) converted.getParameterInstance();
+                    }
+                }
+            }
+        } catch (Exception e) {
+            // Let the resize itself report bad parameters
+            return 1;
+        }
+        if (targetWidth <= 0 || targetHeight <= 0) {
+            return 1;
+        }
+
+        int subsampling = Math.min(sourceWidth / (targetWidth * SUBSAMPLING_HEADROOM),
+                sourceHeight / (targetHeight * SUBSAMPLING_HEADROOM));
+        // Resize picks the side to fit by how far each side is from its target, which must not change
+        while (subsampling > 1 && !isSameResizeSide(sourceWidth, sourceHeight, subsampling, targetWidth, targetHeight)) {
+            subsampling--;
+        }
+        return Math.max(1, subsampling);
+    }
+
+    protected boolean isSameResizeSide(int sourceWidth, int sourceHeight, int subsampling, int targetWidth, int targetHeight) {
+        int decodedWidth = (sourceWidth + subsampling - 1) / subsampling;
+        int decodedHeight = (sourceHeight + subsampling - 1) / subsampling;
+        boolean fitsHeight = Math.abs(sourceWidth - targetWidth) > Math.abs(sourceHeight - targetHeight);
+        boolean decodedFitsHeight = Math.abs(decodedWidth - targetWidth) > Math.abs(decodedHeight - targetHeight);
+        return fitsHeight == decodedFitsHeight;
+    }
+
     public InputStream convert(InputStream artifactStream, BufferedImageOp filter) throws Exception {
         ImageInputStream iis = ImageIO.createImageInputStream(artifactStream);
         Iterator<ImageReader> iter = ImageIO.getImageReaders(iis);
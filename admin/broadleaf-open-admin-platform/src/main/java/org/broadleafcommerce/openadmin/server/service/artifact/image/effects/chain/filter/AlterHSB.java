@@ -127,45 +127,39 @@ public class AlterHSB extends BaseFilter {
             }
         }
         
-        int[] originalPixels = ImageConverter.getPixels(src);
-        int imageWidth = dst.getWidth();
+        final int[] pixels = RasterEngine.getArgbPixels(src);
+        final int imageWidth = dst.getWidth();
         int imageHeight = dst.getHeight();
-        
-        int r=0;
-        int g=0;
-        int b=0;
-        
-        int index=0;
-        for (int y=0;y<imageHeight;y++){
-            for (int x=0;x<imageWidth;x++){
-                r = (originalPixels[index] >> 16) & 0xff;
-                g = (originalPixels[index] >> 8) & 0xff;
-                b = (originalPixels[index] >> 0) & 0xff;
-
-                float[] hsb = Color.RGBtoHSB(r, g, b, null);
-                float h = hsb[0] * hue;
-                float s = hsb[1] * saturation;
-                float br = hsb[2] * brightness;
-
-                // fix overflows
-                if (h > 360) h = 360;
-                if (h < 0) h = 0;
-                if (s > 1) s = 1;
-                if (s < 0) s = 0;
-                if (br > 1) br = 1;
-                if (br < 0) br = 0;
-                
-                Color rgb = new Color(Color.HSBtoRGB(h, s, br));
-                r = rgb.getRed();
-                g = rgb.getGreen();
-                b = rgb.getBlue();
-
-                originalPixels[index] = (originalPixels[index] & 0xff000000)  | (r << 16) | (g << 8) | (b << 0);
-                index++;
+
+        RasterEngine.processRows(imageWidth, imageHeight, new RasterEngine.RowTask() {
+            @Override
+            public void process(int startRow, int endRow) {
+                float[] hsb = new float[3];
+                for (int index = startRow * imageWidth, end = endRow * imageWidth; index < end; index++) {
+                    int r = (pixels[index] >> 16) & 0xff;
+                    int g = (pixels[index] >> 8) & 0xff;
+                    int b = (pixels[index] >> 0) & 0xff;
+
+                    Color.RGBtoHSB(r, g, b, hsb);
+                    float h = hsb[0] * hue;
+                    float s = hsb[1] * saturation;
+                    float br = hsb[2] * brightness;
+
+                    // fix overflows
+                    if (h > 360) h = 360;
+                    if (h < 0) h = 0;
+                    if (s > 1) s = 1;
+                    if (s < 0) s = 0;
+                    if (br > 1) br = 1;
+                    if (br < 0) br = 0;
+
+                    int rgb = Color.HSBtoRGB(h, s, br);
+                    pixels[index] = (pixels[index] & 0xff000000) | (rgb & 0x00ffffff);
+                }
             }
-        }
-        
-        dst = ImageConverter.getImage(originalPixels, imageWidth, imageHeight);
+        });
+
+        dst = RasterEngine.createArgbImage(pixels, imageWidth, imageHeight);
          
         if (needToConvert) {
             ColorConvertOp ccop = new ColorConvertOp(hints);
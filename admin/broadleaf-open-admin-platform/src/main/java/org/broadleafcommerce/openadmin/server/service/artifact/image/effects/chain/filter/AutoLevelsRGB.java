@@ -25,7 +25,6 @@ import java.awt.image.ColorConvertOp;
 import java.awt.image.ColorModel;
 import java.awt.image.IndexColorModel;
 import java.io.InputStream;
-import java.util.Arrays;
 import java.util.Map;
 
 /**
@@ -108,139 +107,61 @@ public class AutoLevelsRGB extends BaseFilter {
             }
         }
         
-        int[] originalPixels = ImageConverter.getPixels(src);
-        int imageWidth = dst.getWidth();
+        final int[] pixels = RasterEngine.getArgbPixels(src);
+        final int imageWidth = dst.getWidth();
         int imageHeight = dst.getHeight();
-        
+
         /*
-         * Sort all the red pixels from low to high and establish
-         * the clipping regions. We also note the delta from the 
-         * lowest and highest leftover pixels to black and white,
-         * respectively.
+         * Count the red, green and blue values of every pixel. The counts stand in for sorting each channel from low
+         * to high: they give the value at any position of the sorted channel.
          */
-        int[] redPixels = new int[originalPixels.length];
-        for (int j=0;j<originalPixels.length;j++){
-            redPixels[j] = (originalPixels[j] >> 16) & 0xff;
-        }
-        Arrays.sort(redPixels);
-        int redStart = redPixels[(int) (redPixels.length * BOTTOMCLIP )];
-        int redEnd = redPixels[redPixels.length-(int) (redPixels.length * TOPCLIP)];
-        int redEndDelta = 255 - redEnd;
-        int redStartDelta = redStart;
-        
-        int[] greenPixels = new int[originalPixels.length];
-        for (int j=0;j<originalPixels.length;j++){
-            greenPixels[j] = (originalPixels[j] >> 8) & 0xff;
-        }
-        Arrays.sort(greenPixels);
-        int greenStart = greenPixels[(int) (greenPixels.length * BOTTOMCLIP )];
-        int greenEnd = greenPixels[greenPixels.length-(int) (greenPixels.length * TOPCLIP)];
-        int greenEndDelta = 255 - greenEnd;
-        int greenStartDelta = greenStart;
-        
-        int[] bluePixels = new int[originalPixels.length];
-        for (int j=0;j<originalPixels.length;j++){
-            bluePixels[j] = (originalPixels[j] >> 0) & 0xff;
-        }
-        Arrays.sort(bluePixels);
-        int blueStart = bluePixels[(int) (bluePixels.length * BOTTOMCLIP )];
-        int blueEnd = bluePixels[bluePixels.length-(int) (bluePixels.length * TOPCLIP)];
-        int blueEndDelta = 255 - blueEnd;
-        int blueStartDelta = blueStart;
-        
-        int r=0;
-        int g=0;
-        int b=0;
-        int index=0;
-        for (int y=0;y<imageHeight;y++){
-            for (int x=0;x<imageWidth;x++){
-                r = (originalPixels[index] >> 16) & 0xff;
-                g = (originalPixels[index] >> 8) & 0xff;
-                b = (originalPixels[index] >> 0) & 0xff;
-                
-                if (r > redStart && r < redEnd) {
-                    if (redEndDelta > 0) {
-                        if (redEnd - r == 0) {
-                            r = 255;
-                        } else {
-                            /*
-                             * If there was a white shift, distribute all the pixels proportionally up
-                             */
-                            r = redEnd + redEndDelta - (((redEnd - r) * (redEnd + redEndDelta)) / redEnd);
-                        }
-                    }
-                    if (redStartDelta > 0) {
-                        if (r - redStartDelta == 0) {
-                            r = 0;
-                        } else {
-                            /*
-                             * If there was a black shift, distribute all the pixels proportionally down
-                             */
-                            r = redEnd - (((redEnd -(redStart - redStartDelta)) * (redEnd - r))/(redEnd - redStart));
-                        }
-                    }
-                } else if (r <= redStart) {
-                    r = 0;
-                } else {
-                    r = 255;
+        final int[][] histograms = new int[3][256];
+        RasterEngine.processRows(imageWidth, imageHeight, new RasterEngine.RowTask() {
+            @Override
+            public void process(int startRow, int endRow) {
+                int[][] counts = new int[3][256];
+                for (int index = startRow * imageWidth, end = endRow * imageWidth; index < end; index++) {
+                    counts[0][(pixels[index] >> 16) & 0xff]++;
+                    counts[1][(pixels[index] >> 8) & 0xff]++;
+                    counts[2][(pixels[index] >> 0) & 0xff]++;
                 }
-                
-                if (g > greenStart && g < greenEnd) {
-                    if (greenEndDelta > 0){
-                        if (greenEnd - g == 0) {
-                            g = 255;
-                        } else {
-                            g = greenEnd + greenEndDelta - (((greenEnd - g) * (greenEnd + greenEndDelta)) / greenEnd);
-                        }
-                    }
-                    if (greenStartDelta > 0){
-                        if (g - greenStartDelta == 0) {
-                            g = 0;
-                        } else {
-                            g = greenEnd - (((greenEnd -(greenStart - greenStartDelta)) * (greenEnd - g))/(greenEnd - greenStart));
+                synchronized (histograms) {
+                    for (int channel = 0; channel < 3; channel++) {
+                        for (int v = 0; v < 256; v++) {
+                            histograms[channel][v] += counts[channel][v];
                         }
                     }
-                } else if (g <= greenStart) {
-                    g = 0;
-                } else {
-                    g = 255;
-                }
-                
-                if (b > blueStart && b < blueEnd) {
-                    if (blueEndDelta > 0){
-                        if (blueEnd - b == 0) {
-                            b = 255;
-                        } else {
-                            b = blueEnd + blueEndDelta - (((blueEnd - b) * (blueEnd + blueEndDelta)) / blueEnd);
-                        }
-                    }
-                    if (blueStartDelta > 0){
-                        if (b - blueStartDelta == 0) {
-                            b = 0;
-                        } else {
-                            b = blueEnd - (((blueEnd -(blueStart - blueStartDelta)) * (blueEnd - b))/(blueEnd - blueStart));
-                        }
-                    }
-                } else if (b <= blueStart) {
-                    b = 0;
-                } else {
-                    b = 255;
                 }
+            }
+        });
+
+        /*
+         * Establish the clipping regions of each channel. We also note the delta from the
+         * lowest and highest leftover pixels to black and white, respectively. Every pixel
+         * value then maps through a per-channel lookup table.
+         */
+        final int[][] levels = new int[3][];
+        for (int channel = 0; channel < 3; channel++) {
+            int[] histogram = histograms[channel];
+            int start = valueAt(histogram, (int) (pixels.length * BOTTOMCLIP));
+            int end = valueAt(histogram, pixels.length - (int) (pixels.length * TOPCLIP));
+            levels[channel] = buildLevels(start, end);
+        }
 
-                // fix overflows
-                if (r > 255) r = 255;
-                if (r < 0) r = 0;
-                if (g > 255) g = 255;
-                if (g < 0) g = 0;
-                if (b > 255) b = 255;
-                if (b < 0) b = 0;
+        RasterEngine.processRows(imageWidth, imageHeight, new RasterEngine.RowTask() {
+            @Override
+            public void process(int startRow, int endRow) {
+                for (int index = startRow * imageWidth, end = endRow * imageWidth; index < end; index++) {
+                    int r = levels[0][(pixels[index] >> 16) & 0xff];
+                    int g = levels[1][(pixels[index] >> 8) & 0xff];
+                    int b = levels[2][(pixels[index] >> 0) & 0xff];
 
-                originalPixels[index] = (originalPixels[index] & 0xff000000)  | (r << 16) | (g << 8) | (b << 0);
-                index++;
+                    pixels[index] = (pixels[index] & 0xff000000)  | (r << 16) | (g << 8) | (b << 0);
+                }
             }
-        }
-        
-        dst = ImageConverter.getImage(originalPixels, imageWidth, imageHeight);
+        });
+
+        dst = RasterEngine.createArgbImage(pixels, imageWidth, imageHeight);
          
         if (needToConvert) {
             ColorConvertOp ccop = new ColorConvertOp(hints);
@@ -258,4 +179,68 @@ public class AutoLevelsRGB extends BaseFilter {
         return origDst;
     }
 
+    /**
+     * Returns the value at the given position of the channel, were its values sorted from low to high. Positions past
+     * the end resolve to the highest value.
+     */
+    protected int valueAt(int[] histogram, int position) {
+        int seen = 0;
+        int highest = 0;
+        for (int v = 0; v < histogram.length; v++) {
+            if (histogram[v] > 0) {
+                seen += histogram[v];
+                highest = v;
+                if (seen > position) {
+                    return v;
+                }
+            }
+        }
+        return highest;
+    }
+
+    /**
+     * Builds the lookup table mapping each channel value to its leveled value, given the clipped low and high values of
+     * the channel
+     */
+    protected int[] buildLevels(int start, int end) {
+        int endDelta = 255 - end;
+        int startDelta = start;
+        int[] levels = new int[256];
+        for (int v = 0; v < 256; v++) {
+            int c = v;
+            if (c > start && c < end) {
+                if (endDelta > 0) {
+                    if (end - c == 0) {
+                        c = 255;
+                    } else {
+                        /*
+                         * If there was a white shift, distribute all the pixels proportionally up
+                         */
+                        c = end + endDelta - (((end - c) * (end + endDelta)) / end);
+                    }
+                }
+                if (startDelta > 0) {
+                    if (c - startDelta == 0) {
+                        c = 0;
+                    } else {
+                        /*
+                         * If there was a black shift, distribute all the pixels proportionally down
+                         */
+                        c = end - (((end -(start - startDelta)) * (end - c))/(end - start));
+                    }
+                }
+            } else if (c <= start) {
+                c = 0;
+            } else {
+                c = 255;
+            }
+
+            // fix overflows
+            if (c > 255) c = 255;
+            if (c < 0) c = 0;
+            levels[v] = c;
+        }
+        return levels;
+    }
+
 }
@@ -28,6 +28,7 @@ import java.awt.image.ColorModel;
 import java.awt.image.ConvolveOp;
 import java.awt.image.IndexColorModel;
 import java.awt.image.Kernel;
+import java.awt.image.WritableRaster;
 import java.io.InputStream;
 import java.util.Map;
 
@@ -162,9 +163,7 @@ public class GaussianBlur extends BaseFilter {
         }
         
         if (dst == null) {
-            dst = createCompatibleDestImage(src, null);
             dstCM = srcCM;
-            origDst = dst;
         } else {
             dstCM = dst.getColorModel();
             if (srcCM.getColorSpace().getType() !=
@@ -184,36 +183,69 @@ public class GaussianBlur extends BaseFilter {
 
         Kernel gaussianBlur1 = new Kernel(matrix.length, 1, matrix);
         Kernel gaussianBlur2 = new Kernel(1, matrix.length, matrix);
-        ConvolveOp gaussianOp1 = new ConvolveOp(gaussianBlur1, ConvolveOp.EDGE_NO_OP, null);
-        ConvolveOp gaussianOp2 = new ConvolveOp(gaussianBlur2, ConvolveOp.EDGE_NO_OP, null);
 
-        BufferedImage tempImage = new BufferedImage(src.getWidth(),
-                src.getHeight(), src.getType());
-        dst = new BufferedImage(src.getWidth(),
-                src.getHeight(), src.getType());
+        BufferedImage image;
+        if (srcCM.hasAlpha()) {
+            // ConvolveOp decides how alpha and color samples interact for each image type, so keep it for alpha images
+            image = convolveImage(src, gaussianBlur1, gaussianBlur2);
+        } else {
+            BufferedImage argb = RasterEngine.createArgbImage(RasterEngine.getArgbPixels(src), src.getWidth(), src.getHeight());
+            WritableRaster pixels = argb.getRaster();
+            WritableRaster tempPixels = pixels.createCompatibleWritableRaster();
 
-        BufferedImage nextSource = src;
+            for (int i = 0; i < numOfPasses; i++) {
+                RasterEngine.convolve(pixels, tempPixels, gaussianBlur1);
+                RasterEngine.convolve(tempPixels, pixels, gaussianBlur2);
+            }
 
+            image = argb;
+            if (origDst == null) {
+                image = createCompatibleDestImage(src, null);
+                RasterEngine.copyPixels(argb, image);
+            }
+        }
+
+        if (origDst == null) {
+            return image;
+        }
+        if (needToConvert) {
+            ColorConvertOp ccop = new ColorConvertOp(hints);
+            ccop.filter(image, origDst);
+        } else {
+            RasterEngine.copyPixels(image, origDst);
+        }
+
+        return origDst;
+    }
+
+    /**
+     * Runs every pass through {@link ConvolveOp} on whole images of the source's type
+     */
+    protected BufferedImage convolveImage(BufferedImage src, Kernel horizontal, Kernel vertical) {
+        ConvolveOp gaussianOp1 = new ConvolveOp(horizontal, ConvolveOp.EDGE_NO_OP, null);
+        ConvolveOp gaussianOp2 = new ConvolveOp(vertical, ConvolveOp.EDGE_NO_OP, null);
+
+        BufferedImage tempImage = createConvolveDestImage(src);
+        BufferedImage dst = createConvolveDestImage(src);
+
+        BufferedImage nextSource = src;
         for (int i = 0; i < numOfPasses; i++) {
             tempImage = gaussianOp1.filter(nextSource, tempImage);
             dst = gaussianOp2.filter(tempImage, dst);
 
             nextSource = dst;
         }
+        return dst;
+    }
 
-        if (needToConvert) {
-            ColorConvertOp ccop = new ColorConvertOp(hints);
-            ccop.filter(dst, origDst);
-        }
-        else if (origDst != dst) {
-            java.awt.Graphics2D g = origDst.createGraphics();
-        try {
-            g.drawImage(dst, 0, 0, null);
-        } finally {
-            g.dispose();
+    /**
+     * ConvolveOp does not always convert between rasters whose samples are laid out differently, so the images it
+     * writes into use the source's own layout whenever it has a predefined type
+     */
+    protected BufferedImage createConvolveDestImage(BufferedImage src) {
+        if (src.getType() == BufferedImage.TYPE_CUSTOM) {
+            return createCompatibleDestImage(src, null);
         }
-        }
-
-        return origDst;
+        return new BufferedImage(src.getWidth(), src.getHeight(), src.getType());
     }
 }
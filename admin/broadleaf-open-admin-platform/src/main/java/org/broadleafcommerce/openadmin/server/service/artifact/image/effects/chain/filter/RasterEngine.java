@@ -0,0 +1,355 @@
+/*
+ * #%L
+ * BroadleafCommerce Open Admin Platform
+ * %%
+ * Copyright (C) 2009 - 2016 Broadleaf Commerce
+ * %%
+ * Licensed under the Broadleaf Fair Use License Agreement, Version 1.0
+ * (the "Fair Use License" located  at http://license.broadleafcommerce.org/fair_use_license-1.0.txt)
+ * unless the restrictions on use therein are violated and require payment to Broadleaf in which case
+ * the Broadleaf End User License Agreement (EULA), Version 1.1
+ * (the "Commercial License" located at http://license.broadleafcommerce.org/commercial_license-1.1.txt)
+ * shall apply.
+ * 
+ * Alternatively, the Commercial License may be replaced with a mutually agreed upon license (the "Custom License")
+ * between you and Broadleaf Commerce. You may not use this file except in compliance with the applicable license.
+ * #L%
+ */
+package org.broadleafcommerce.openadmin.server.service.artifact.image.effects.chain.filter;
+
+import java.awt.AlphaComposite;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.awt.image.ColorModel;
+import java.awt.image.ConvolveOp;
+import java.awt.image.DataBuffer;
+import java.awt.image.DataBufferInt;
+import java.awt.image.DirectColorModel;
+import java.awt.image.Kernel;
+import java.awt.image.Raster;
+import java.awt.image.SinglePixelPackedSampleModel;
+import java.awt.image.WritableRaster;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Shared raster helpers for the effects filters. Pixels are handled as packed, non-premultiplied ARGB ints taken
+ * straight from the image's data buffer, rather than through getRGB/setRGB or a PixelGrabber. Work over an image is
+ * split into horizontal tiles of whole rows that run in parallel on a {@link ForkJoinPool}. Images smaller than a
+ * single tile are processed on the calling thread.
+ */
+public class RasterEngine {
+
+    /**
+     * The minimum number of pixels in a tile. Below this the fork/join overhead outweighs the work.
+     */
+    public static final int MIN_TILE_PIXELS = 1 << 16;
+
+    /**
+     * Tiles per pool thread for per-pixel work, so threads that finish early can pick up more
+     */
+    public static final int TILES_PER_THREAD = 4;
+
+    protected static volatile ForkJoinPool pool;
+
+    /**
+     * Work over a band of rows, from startRow inclusive to endRow exclusive. Tiles never overlap, so a task may write
+     * its own rows of a shared output array without synchronization.
+     */
+    public interface RowTask {
+
+        void process(int startRow, int endRow);
+
+    }
+
+    public static ForkJoinPool getPool() {
+        if (pool == null) {
+            synchronized (RasterEngine.class) {
+                if (pool == null) {
+                    pool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+                }
+            }
+        }
+        return pool;
+    }
+
+    /**
+     * Replaces the pool used for tile processing, for example to share a pool sized for the host
+     */
+    public static void setPool(ForkJoinPool pool) {
+        RasterEngine.pool = pool;
+    }
+
+    /**
+     * Runs the task over every row of a width x height raster, one tile at a time, in parallel when the raster is
+     * larger than a single tile.
+     */
+    public static void processRows(int width, int height, RowTask task) {
+        processTiles(height, getRowsPerTile(width, height, TILES_PER_THREAD), task);
+    }
+
+    protected static void processTiles(int height, int rowsPerTile, RowTask task) {
+        if (height <= rowsPerTile || getPool().getParallelism() == 1) {
+            task.process(0, height);
+        } else {
+            getPool().invoke(new RowAction(task, 0, height, rowsPerTile));
+        }
+    }
+
+    /**
+     * Sizes tiles so each thread gets about tilesPerThread of them, but none smaller than {@link #MIN_TILE_PIXELS}
+     */
+    protected static int getRowsPerTile(int width, int height, int tilesPerThread) {
+        int minRows = Math.max(1, MIN_TILE_PIXELS / Math.max(1, width));
+        int tiles = getPool().getParallelism() * tilesPerThread;
+        return Math.max(minRows, (height + tiles - 1) / tiles);
+    }
+
+    /**
+     * Returns the pixels of the image as packed, non-premultiplied ARGB ints in row-major order. The returned array
+     * is never shared with the image, so callers may modify it in place.
+     */
+    public static int[] getArgbPixels(BufferedImage image) {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        if (image.getType() == BufferedImage.TYPE_INT_ARGB) {
+            int[] data = getPackedData(image.getRaster(), width, height);
+            if (data != null) {
+                return data.clone();
+            }
+        }
+        BufferedImage argb = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+        copyPixels(image, argb);
+        return getPackedData(argb.getRaster(), width, height);
+    }
+
+    /**
+     * Replaces every pixel of dst with the matching pixel of src, converting between their color models. Unlike a plain
+     * drawImage, pixels are not composited over whatever dst held before.
+     */
+    public static void copyPixels(BufferedImage src, BufferedImage dst) {
+        Graphics2D g = dst.createGraphics();
+        try {
+            g.setComposite(AlphaComposite.Src);
+            g.drawImage(src, 0, 0, null);
+        } finally {
+            g.dispose();
+        }
+    }
+
+    /**
+     * Wraps the packed, non-premultiplied ARGB pixels in a TYPE_INT_ARGB image without copying them
+     */
+    public static BufferedImage createArgbImage(int[] pixels, int width, int height) {
+        DirectColorModel cm = (DirectColorModel) ColorModel.getRGBdefault();
+        WritableRaster raster = Raster.createPackedRaster(new DataBufferInt(pixels, width * height), width, height,
+                width, cm.getMasks(), null);
+        return new BufferedImage(cm, raster, false, null);
+    }
+
+    /**
+     * Applies the kernel to the raster with {@link ConvolveOp#EDGE_NO_OP} edges, tile by tile. Each tile is convolved
+     * together with enough neighbouring rows for the kernel to reach, so the result is the same as convolving the
+     * whole raster at once.
+     */
+    public static void convolve(final Raster src, final WritableRaster dst, final Kernel kernel) {
+        final int width = src.getWidth();
+        final int height = src.getHeight();
+        final int halo = kernel.getHeight() - 1;
+        int rowsPerTile = Math.max(getRowsPerTile(width, height, 1), halo * 8);
+        processTiles(height, rowsPerTile, new RowTask() {
+            @Override
+            public void process(int startRow, int endRow) {
+                int haloStart = Math.max(0, startRow - halo);
+                int haloEnd = Math.min(height, endRow + halo);
+                Raster tileSource = src.createChild(src.getMinX(), src.getMinY() + haloStart, width, haloEnd - haloStart, 0, 0, null);
+                WritableRaster tileResult = new ConvolveOp(kernel, ConvolveOp.EDGE_NO_OP, null).filter(tileSource, null);
+                dst.setDataElements(dst.getMinX(), dst.getMinY() + startRow, tileResult.createChild(0, startRow - haloStart, width, endRow - startRow, 0, 0, null));
+            }
+        });
+    }
+
+    /**
+     * Scales the pixels down by area averaging, the same weighting {@link java.awt.Image#SCALE_SMOOTH} uses. Each
+     * destination pixel is the average of the source pixels it covers, weighted by how much of each it covers. Colors
+     * are averaged premultiplied by alpha, so fully transparent pixels do not bleed their color into their neighbours.
+     */
+    public static int[] scaleDownAreaAveraging(final int[] src, final int srcWidth, final int srcHeight,
+                                               final int dstWidth, final int dstHeight) {
+        if (dstWidth > srcWidth || dstHeight > srcHeight) {
+            throw new IllegalArgumentException("Area averaging only scales down: " + srcWidth + "x" + srcHeight
+                    + " to " + dstWidth + "x" + dstHeight);
+        }
+        final AreaWeights columns = new AreaWeights(srcWidth, dstWidth);
+        final AreaWeights rows = new AreaWeights(srcHeight, dstHeight);
+
+        // Horizontal pass into four float channels per pixel, dstWidth x srcHeight
+        final float[] horizontal = new float[dstWidth * srcHeight * 4];
+        processRows(srcWidth, srcHeight, new RowTask() {
+            @Override
+            public void process(int startRow, int endRow) {
+                for (int y = startRow; y < endRow; y++) {
+                    int srcOffset = y * srcWidth;
+                    int outOffset = y * dstWidth * 4;
+                    for (int x = 0; x < dstWidth; x++) {
+                        float a = 0, r = 0, g = 0, b = 0;
+                        int first = columns.first[x];
+                        int weightOffset = columns.weightOffset[x];
+                        for (int i = 0; i < columns.count[x]; i++) {
+                            int p = src[srcOffset + first + i];
+                            float w = columns.weights[weightOffset + i];
+                            int alpha = p >>> 24;
+                            float cw = alpha == 255 ? w : w * alpha / 255f;
+                            a += alpha * w;
+                            r += ((p >> 16) & 0xff) * cw;
+                            g += ((p >> 8) & 0xff) * cw;
+                            b += (p & 0xff) * cw;
+                        }
+                        int out = outOffset + x * 4;
+                        horizontal[out] = a;
+                        horizontal[out + 1] = r;
+                        horizontal[out + 2] = g;
+                        horizontal[out + 3] = b;
+                    }
+                }
+            }
+        });
+
+        final int[] dst = new int[dstWidth * dstHeight];
+        processRows(dstWidth, dstHeight, new RowTask() {
+            @Override
+            public void process(int startRow, int endRow) {
+                int rowStride = dstWidth * 4;
+                for (int y = startRow; y < endRow; y++) {
+                    int first = rows.first[y];
+                    int weightOffset = rows.weightOffset[y];
+                    for (int x = 0; x < dstWidth; x++) {
+                        float a = 0, r = 0, g = 0, b = 0;
+                        int in = first * rowStride + x * 4;
+                        for (int i = 0; i < rows.count[y]; i++) {
+                            float w = rows.weights[weightOffset + i];
+                            a += horizontal[in] * w;
+                            r += horizontal[in + 1] * w;
+                            g += horizontal[in + 2] * w;
+                            b += horizontal[in + 3] * w;
+                            in += rowStride;
+                        }
+                        dst[y * dstWidth + x] = packPremultiplied(a, r, g, b);
+                    }
+                }
+            }
+        });
+        return dst;
+    }
+
+    protected static int pack(float a, float r, float g, float b) {
+        return (clamp(a) << 24) | (clamp(r) << 16) | (clamp(g) << 8) | clamp(b);
+    }
+
+    /**
+     * Packs averaged alpha and premultiplied colors, un-premultiplying the colors the way
+     * {@link java.awt.image.AreaAveragingScaleFilter} does
+     */
+    protected static int packPremultiplied(float a, float r, float g, float b) {
+        int alpha = clamp(a);
+        if (alpha > 0 && alpha < 255) {
+            float scale = 255f / a;
+            return pack(a, r * scale, g * scale, b * scale);
+        }
+        return pack(a, r, g, b);
+    }
+
+    protected static int clamp(float value) {
+        int v = (int) (value + 0.5f);
+        if (v > 255) {
+            return 255;
+        }
+        if (v < 0) {
+            return 0;
+        }
+        return v;
+    }
+
+    protected static int[] getPackedData(WritableRaster raster, int width, int height) {
+        DataBuffer buffer = raster.getDataBuffer();
+        if (!(buffer instanceof DataBufferInt) || buffer.getNumBanks() != 1 || buffer.getOffset() != 0
+                || !(raster.getSampleModel() instanceof SinglePixelPackedSampleModel)
+                || raster.getSampleModelTranslateX() != 0 || raster.getSampleModelTranslateY() != 0
+                || ((SinglePixelPackedSampleModel) raster.getSampleModel()).getScanlineStride() != width) {
+            return null;
+        }
+        int[] data = ((DataBufferInt) buffer).getData();
+        if (data.length != width * height) {
+            return null;
+        }
+        return data;
+    }
+
+    /**
+     * For each destination index along one axis, the run of source indexes it covers and the normalized weight of
+     * each
+     */
+    protected static class AreaWeights {
+
+        protected final int[] first;
+        protected final int[] count;
+        protected final int[] weightOffset;
+        protected final float[] weights;
+
+        protected AreaWeights(int srcSize, int dstSize) {
+            first = new int[dstSize];
+            count = new int[dstSize];
+            weightOffset = new int[dstSize];
+            double scale = (double) srcSize / dstSize;
+            float[] allWeights = new float[dstSize * ((int) Math.ceil(scale) + 1)];
+            int offset = 0;
+            for (int i = 0; i < dstSize; i++) {
+                double start = i * scale;
+                double end = Math.min(srcSize, (i + 1) * scale);
+                int firstIndex = (int) Math.floor(start);
+                int lastIndex = Math.min(srcSize - 1, (int) Math.ceil(end) - 1);
+                first[i] = firstIndex;
+                weightOffset[i] = offset;
+                int n = 0;
+                for (int s = firstIndex; s <= lastIndex; s++) {
+                    double coverage = Math.min(end, s + 1) - Math.max(start, s);
+                    if (coverage > 0) {
+                        allWeights[offset + n] = (float) (coverage / (end - start));
+                    }
+                    n++;
+                }
+                count[i] = n;
+                offset += n;
+            }
+            weights = allWeights;
+        }
+    }
+
+    protected static class RowAction extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        protected final RowTask task;
+        protected final int startRow;
+        protected final int endRow;
+        protected final int rowsPerTile;
+
+        protected RowAction(RowTask task, int startRow, int endRow, int rowsPerTile) {
+            this.task = task;
+            this.startRow = startRow;
+            this.endRow = endRow;
+            this.rowsPerTile = rowsPerTile;
+        }
+
+        @Override
+        protected void compute() {
+            int tiles = (endRow - startRow + rowsPerTile - 1) / rowsPerTile;
+            if (tiles <= 1) {
+                task.process(startRow, endRow);
+            } else {
+                int middle = startRow + (tiles / 2) * rowsPerTile;
+                invokeAll(new RowAction(task, startRow, middle, rowsPerTile), new RowAction(task, middle, endRow, rowsPerTile));
+            }
+        }
+    }
+}
@@ -210,10 +210,15 @@ public class Resize extends BaseFilter {
                 type = img.getType();
             }
 
-            BufferedImage tmp = new BufferedImage(w, h, type);
-            Graphics2D g2 = tmp.createGraphics();
-            g2.drawImage(ret.getScaledInstance(w, h, Image.SCALE_SMOOTH), 0, 0, w, h, null);
-            g2.dispose();
+            BufferedImage tmp;
+            if (w <= ret.getWidth() && h <= ret.getHeight()) {
+                tmp = scaleDown(ret, w, h, type);
+            } else {
+                tmp = new BufferedImage(w, h, type);
+                Graphics2D g2 = tmp.createGraphics();
+                g2.drawImage(ret.getScaledInstance(w, h, Image.SCALE_SMOOTH), 0, 0, w, h, null);
+                g2.dispose();
+            }
 
             ret = tmp;
         } while (w != destW || h != destH);
@@ -221,4 +226,18 @@ public class Resize extends BaseFilter {
         return ret;
     }
 
+    /**
+     * Scales down with the same area averaging as {@link Image#SCALE_SMOOTH}, but on the image's pixel array and in
+     * parallel tiles instead of through an image producer
+     */
+    protected BufferedImage scaleDown(BufferedImage img, int w, int h, int type) {
+        int[] pixels = RasterEngine.scaleDownAreaAveraging(RasterEngine.getArgbPixels(img), img.getWidth(), img.getHeight(), w, h);
+        if (type == BufferedImage.TYPE_INT_ARGB) {
+            return RasterEngine.createArgbImage(pixels, w, h);
+        }
+        BufferedImage tmp = new BufferedImage(w, h, type);
+        tmp.getRaster().setDataElements(0, 0, w, h, pixels);
+        return tmp;
+    }
+
 }
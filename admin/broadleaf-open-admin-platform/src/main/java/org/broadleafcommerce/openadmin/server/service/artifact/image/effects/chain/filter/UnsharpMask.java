@@ -119,42 +119,43 @@ public class UnsharpMask extends BaseFilter {
             }
         }
         
-        int[] originalPixels = ImageConverter.getPixels(src);
+        final int[] originalPixels = RasterEngine.getArgbPixels(src);
         GaussianBlur blur = new GaussianBlur(radius, 1, hints);
         dst = blur.filter(src, null);
-        int[] uMaskBlur = ImageConverter.getPixels(dst);
-        int imageWidth = dst.getWidth();
+        final int[] uMaskBlur = RasterEngine.getArgbPixels(dst);
+        final int imageWidth = dst.getWidth();
         int imageHeight = dst.getHeight();
-        
-        int index = 0;
-        for (int y=0;y<imageHeight;y++){
-            for (int x=0;x<imageWidth;x++){
-                int R1 = (originalPixels[index] >> 16) & 0xff;
-                int G1 = (originalPixels[index] >> 8) & 0xff;
-                int B1 = (originalPixels[index] >> 0) & 0xff;
-
-                int R2 = (uMaskBlur[index] >> 16) & 0xff;
-                int G2 = (uMaskBlur[index] >> 8) & 0xff;
-                int B2 = (uMaskBlur[index] >> 0) & 0xff;
-
-                int R3 = (int)(value *(float)R1 - (value -1F)*(float)R2);
-                int G3 = (int)(value *(float)G1 - (value -1F)*(float)G2);
-                int B3 = (int)(value *(float)B1- (value -1F)*(float)B2);
-
-                // fix overflows
-                if (R3 > 255) R3 = 255;
-                if (R3 < 0) R3 = 0;
-                if (G3 > 255) G3 = 255;
-                if (G3 < 0) G3 = 0;
-                if (B3 > 255) B3 = 255;
-                if (B3 < 0) B3 = 0;
-
-                originalPixels[index] = (originalPixels[index] & 0xff000000)  | (R3<<16) | (G3 << 8) | (B3 <<0);
-                index++;
+
+        RasterEngine.processRows(imageWidth, imageHeight, new RasterEngine.RowTask() {
+            @Override
+            public void process(int startRow, int endRow) {
+                for (int index = startRow * imageWidth, end = endRow * imageWidth; index < end; index++) {
+                    int R1 = (originalPixels[index] >> 16) & 0xff;
+                    int G1 = (originalPixels[index] >> 8) & 0xff;
+                    int B1 = (originalPixels[index] >> 0) & 0xff;
+
+                    int R2 = (uMaskBlur[index] >> 16) & 0xff;
+                    int G2 = (uMaskBlur[index] >> 8) & 0xff;
+                    int B2 = (uMaskBlur[index] >> 0) & 0xff;
+
+                    int R3 = (int)(value *(float)R1 - (value -1F)*(float)R2);
+                    int G3 = (int)(value *(float)G1 - (value -1F)*(float)G2);
+                    int B3 = (int)(value *(float)B1- (value -1F)*(float)B2);
+
+                    // fix overflows
+                    if (R3 > 255) R3 = 255;
+                    if (R3 < 0) R3 = 0;
+                    if (G3 > 255) G3 = 255;
+                    if (G3 < 0) G3 = 0;
+                    if (B3 > 255) B3 = 255;
+                    if (B3 < 0) B3 = 0;
+
+                    originalPixels[index] = (originalPixels[index] & 0xff000000)  | (R3<<16) | (G3 << 8) | (B3 <<0);
+                }
             }
-        }
-        
-        dst = ImageConverter.getImage(originalPixels, imageWidth, imageHeight);
+        });
+
+        dst = RasterEngine.createArgbImage(originalPixels, imageWidth, imageHeight);
          
         if (needToConvert) {
             ColorConvertOp ccop = new ColorConvertOp(hints);
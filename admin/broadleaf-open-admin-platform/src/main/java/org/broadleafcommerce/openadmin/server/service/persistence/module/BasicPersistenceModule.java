@@ -65,10 +65,12 @@ import org.broadleafcommerce.openadmin.server.service.persistence.module.provide
 import org.broadleafcommerce.openadmin.server.service.persistence.validation.EntityValidatorService;
 import org.broadleafcommerce.openadmin.server.service.persistence.validation.PopulateValueRequestValidator;
 import org.broadleafcommerce.openadmin.server.service.persistence.validation.PropertyValidationResult;
+import org.broadleafcommerce.openadmin.server.service.type.FetchType;
 import org.broadleafcommerce.openadmin.server.service.type.MetadataProviderResponse;
 import org.hibernate.FlushMode;
 import org.hibernate.Session;
 import org.springframework.beans.BeansException;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.ApplicationContext;
 import org.springframework.context.ApplicationContextAware;
 import org.springframework.context.annotation.Primary;
@@ -131,6 +133,13 @@ public class BasicPersistenceModule implements PersistenceModule, RecordHelper,
     @Resource(name = "blFetchWrapper")
     protected FetchWrapper fetchWrapper;
 
+    /**
+     * When greater than zero, unsorted and unfiltered fetches that match more than this number of records are paged by
+     * primary key ({@link FetchType#LARGERESULTSET}) and skip the exact count.
+     */
+    @Value("${admin.fetch.largeResultSet.threshold:0}")
+    protected int largeResultSetThreshold = 0;
+
     @PostConstruct
     public void init() {
         Collections.sort(fieldPersistenceProviders, new Comparator<FieldPersistenceProvider>() {
@@ -1139,6 +1148,7 @@ public class BasicPersistenceModule implements PersistenceModule, RecordHelper,
     public DynamicResultSet fetch(PersistencePackage persistencePackage, CriteriaTransferObject cto) throws ServiceException {
         Entity[] payload;
         int totalRecords;
+        FetchType fetchType = null;
         PersistencePerspective persistencePerspective = persistencePackage.getPersistencePerspective();
         String ceilingEntityFullyQualifiedClassname = persistencePackage.getCeilingEntityFullyQualifiedClassname();
         ForeignKey foreignKey = (ForeignKey) persistencePerspective.getPersistencePerspectiveItems().get(PersistencePerspectiveItemType.FOREIGNKEY);
@@ -1163,7 +1173,6 @@ public class BasicPersistenceModule implements PersistenceModule, RecordHelper,
 
             FetchRequest fetchRequest = new FetchRequest(persistencePackage, cto,
                     persistencePackage.getFetchTypeFullyQualifiedClassname(), standardFilterMappings);
-            List<Serializable> records = getPersistentRecords(fetchRequest);
 
             List<FilterMapping> countFilterMappings = new ArrayList<FilterMapping>(filterMappings);
             if (CollectionUtils.isNotEmpty(cto.getAdditionalFilterMappings())) {
@@ -1171,7 +1180,37 @@ public class BasicPersistenceModule implements PersistenceModule, RecordHelper,
             }
             FetchRequest countFetchRequest = new FetchRequest(persistencePackage, cto,
                     persistencePackage.getFetchTypeFullyQualifiedClassname(), countFilterMappings);
-            totalRecords = getTotalRecords(countFetchRequest);
+
+            List<Serializable> records;
+            if (BooleanUtils.isTrue(cto.getCountOnly())) {
+                records = new ArrayList<Serializable>();
+                totalRecords = getTotalRecords(countFetchRequest);
+            } else {
+                Integer boundedCount = null;
+                if (isKeysetPagingApplicable(fetchRequest)) {
+                    if (cto.getLastId() != null || cto.getFirstId() != null) {
+                        fetchRequest.setFetchType(FetchType.LARGERESULTSET);
+                    } else {
+                        countFetchRequest.setCountLimit(largeResultSetThreshold);
+                        boundedCount = getTotalRecords(countFetchRequest);
+                        if (boundedCount > largeResultSetThreshold) {
+                            fetchRequest.setFetchType(FetchType.LARGERESULTSET);
+                        }
+                    }
+                }
+                records = getPersistentRecords(fetchRequest);
+                if (FetchType.LARGERESULTSET == fetchRequest.getFetchType()) {
+                    //the total is not computed when paging by key, the client may request it separately
+                    fetchType = FetchType.LARGERESULTSET;
+                    totalRecords = records.size();
+                } else if (boundedCount != null && boundedCount <= largeResultSetThreshold) {
+                    //the bounded count did not exceed the limit, so it is exact
+                    totalRecords = boundedCount;
+                } else {
+                    countFetchRequest.setCountLimit(null);
+                    totalRecords = getTotalRecords(countFetchRequest);
+                }
+            }
 
             FetchExtractionRequest fetchExtractionRequest = new FetchExtractionRequest(persistencePackage, cto,
                     persistencePackage.getFetchTypeFullyQualifiedClassname(), mergedProperties, records);
@@ -1180,7 +1219,39 @@ public class BasicPersistenceModule implements PersistenceModule, RecordHelper,
             throw new ServiceException("Unable to fetch results for " + ceilingEntityFullyQualifiedClassname, e);
         }
 
-        return new DynamicResultSet(null, payload, totalRecords);
+        DynamicResultSet resultSet = new DynamicResultSet(null, payload, totalRecords);
+        resultSet.setFetchType(fetchType);
+        return resultSet;
+    }
+
+    /**
+     * Whether or not the fetch may page by primary key instead of by offset. This requires that the large result set
+     * threshold is enabled, that the records are not explicitly sorted or filtered by the user (the list grid only
+     * offers next and previous page links in that case), and that the entity has a numeric primary key.
+     *
+     * @param fetchRequest
+     * @return
+     */
+    protected boolean isKeysetPagingApplicable(FetchRequest fetchRequest) {
+        if (largeResultSetThreshold <= 0) {
+            return false;
+        }
+        for (FilterMapping filterMapping : fetchRequest.getFilterMappings()) {
+            if (filterMapping.getSortDirection() != null || CollectionUtils.isNotEmpty(filterMapping.getFilterValues())) {
+                return false;
+            }
+        }
+        try {
+            Class<?>[] entities = persistenceManager.getDynamicEntityDao().getAllPolymorphicEntitiesFromCeiling(Class.forName(fetchRequest.getCeilingEntity()));
+            if (ArrayUtils.isEmpty(entities)) {
+                return false;
+            }
+            Map<String, Object> idMetadata = persistenceManager.getDynamicEntityDao().getIdMetadata(entities[0]);
+            Object type = idMetadata == null ? null : idMetadata.get("type");
+            return type instanceof org.hibernate.type.Type && Long.class.equals(((org.hibernate.type.Type) type).getReturnedClass());
+        } catch (ClassNotFoundException e) {
+            throw ExceptionHelper.refineException(e);
+        }
     }
 
     @Override
@@ -1199,6 +1270,24 @@ public class BasicPersistenceModule implements PersistenceModule, RecordHelper,
         }
     }
 
+    /**
+     * Count the records matching the filter mappings, but stop counting once {@code countLimit} is exceeded. A result
+     * greater than {@code countLimit} means "more than countLimit" records.
+     *
+     * @param ceilingEntity
+     * @param filterMappings
+     * @param countLimit
+     * @return
+     */
+    public Integer getTotalRecords(String ceilingEntity, List<FilterMapping> filterMappings, Integer countLimit) {
+        try {
+            return criteriaTranslator.translateIdQuery(persistenceManager.getDynamicEntityDao(), ceilingEntity,
+                    filterMappings, countLimit + 1).getResultList().size();
+        } catch (CriteriaConversionException e) {
+            return getTotalRecords(ceilingEntity, filterMappings);
+        }
+    }
+
     @Override
     public Serializable getMaxValue(String ceilingEntity, List<FilterMapping> filterMappings, String maxField) {
         return criteriaTranslator.translateMaxQuery(persistenceManager.getDynamicEntityDao(),
@@ -1220,6 +1309,26 @@ public class BasicPersistenceModule implements PersistenceModule, RecordHelper,
         }
     }
 
+    /**
+     * Retrieve a page of records in primary key order, starting after {@code lastId} or ending before {@code firstId}.
+     * The records are always returned in ascending primary key order.
+     *
+     * @param ceilingEntity
+     * @param filterMappings
+     * @param lastId
+     * @param firstId
+     * @param maxResults
+     * @return
+     */
+    public List<Serializable> getPersistentRecordsByKey(String ceilingEntity, List<FilterMapping> filterMappings, Long lastId, Long firstId, Integer maxResults) {
+        List<Serializable> records = new ArrayList<Serializable>(criteriaTranslator.translateKeysetQuery(
+                persistenceManager.getDynamicEntityDao(), ceilingEntity, filterMappings, lastId, firstId, maxResults).getResultList());
+        if (lastId == null && firstId != null) {
+            Collections.reverse(records);
+        }
+        return records;
+    }
+
     @Override
     public boolean validate(Entity entity, Serializable populatedInstance, Map<String, FieldMetadata> mergedProperties) {
         return validate(entity, populatedInstance, mergedProperties, true);
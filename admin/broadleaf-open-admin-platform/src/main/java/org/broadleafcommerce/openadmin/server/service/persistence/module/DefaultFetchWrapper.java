@@ -21,6 +21,8 @@ import org.broadleafcommerce.common.presentation.client.OperationType;
 import org.broadleafcommerce.openadmin.dto.Entity;
 import org.broadleafcommerce.openadmin.server.service.persistence.PersistenceManager;
 import org.broadleafcommerce.openadmin.server.service.persistence.PersistenceManagerFactory;
+import org.broadleafcommerce.openadmin.server.service.persistence.module.criteria.CriteriaConversionException;
+import org.broadleafcommerce.openadmin.server.service.type.FetchType;
 import org.springframework.stereotype.Component;
 
 import java.io.Serializable;
@@ -36,12 +38,26 @@ public class DefaultFetchWrapper implements FetchWrapper {
 
     @Override
     public List<Serializable> getPersistentRecords(FetchRequest fetchRequest) {
+        if (FetchType.LARGERESULTSET == fetchRequest.getFetchType()) {
+            try {
+                return getBasicPersistenceModule().getPersistentRecordsByKey(fetchRequest.getCeilingEntity(),
+                        fetchRequest.getFilterMappings(), fetchRequest.getCto().getLastId(), fetchRequest.getCto().getFirstId(),
+                        fetchRequest.getCto().getMaxResults());
+            } catch (CriteriaConversionException e) {
+                //the criteria translator does not page by key, so page by offset instead
+                fetchRequest.setFetchType(FetchType.DEFAULT);
+            }
+        }
         return getBasicPersistenceModule().getPersistentRecords(fetchRequest.getCeilingEntity(),
                             fetchRequest.getFilterMappings(), fetchRequest.getCto().getFirstResult(), fetchRequest.getCto().getMaxResults());
     }
 
     @Override
     public Integer getTotalRecords(FetchRequest fetchRequest) {
+        if (fetchRequest.getCountLimit() != null) {
+            return getBasicPersistenceModule().getTotalRecords(fetchRequest.getCeilingEntity(),
+                    fetchRequest.getFilterMappings(), fetchRequest.getCountLimit());
+        }
         return getBasicPersistenceModule().getTotalRecords(fetchRequest.getCeilingEntity(), fetchRequest.getFilterMappings());
     }
 
@@ -21,6 +21,7 @@ import org.broadleafcommerce.openadmin.dto.CriteriaTransferObject;
 import org.broadleafcommerce.openadmin.dto.FieldMetadata;
 import org.broadleafcommerce.openadmin.dto.PersistencePackage;
 import org.broadleafcommerce.openadmin.server.service.persistence.module.criteria.FilterMapping;
+import org.broadleafcommerce.openadmin.server.service.type.FetchType;
 
 import java.util.List;
 import java.util.Map;
@@ -36,6 +37,8 @@ public class FetchRequest {
     protected CriteriaTransferObject cto;
     protected String ceilingEntity;
     protected List<FilterMapping> filterMappings;
+    protected FetchType fetchType = FetchType.DEFAULT;
+    protected Integer countLimit;
 
     public FetchRequest(PersistencePackage persistencePackage,
                         CriteriaTransferObject cto,
@@ -99,4 +102,33 @@ public class FetchRequest {
         this.filterMappings = filterMappings;
     }
 
+    /**
+     * The paging technique for the fetch. {@link FetchType#LARGERESULTSET} denotes that records should be retrieved
+     * by seeking past the {@link CriteriaTransferObject#getLastId()} or {@link CriteriaTransferObject#getFirstId()}
+     * boundary in primary key order, rather than by offset.
+     *
+     * @return
+     */
+    public FetchType getFetchType() {
+        return fetchType;
+    }
+
+    public void setFetchType(FetchType fetchType) {
+        this.fetchType = fetchType;
+    }
+
+    /**
+     * If not null, the total record count need not be exact beyond this value. A count greater than the limit
+     * means "more than countLimit" records.
+     *
+     * @return
+     */
+    public Integer getCountLimit() {
+        return countLimit;
+    }
+
+    public void setCountLimit(Integer countLimit) {
+        this.countLimit = countLimit;
+    }
+
 }
@@ -33,4 +33,43 @@ public interface CriteriaTranslator {
     TypedQuery<Serializable> translateCountQuery(DynamicEntityDao dynamicEntityDao, String ceilingEntity, List<FilterMapping> filterMappings);
 
     TypedQuery<Serializable> translateMaxQuery(DynamicEntityDao dynamicEntityDao, String ceilingEntity, List<FilterMapping> filterMappings, String maxField);
+
+    /**
+     * Build a query that pages by primary key rather than by offset. When {@code lastId} is provided, the records
+     * immediately following that id (ascending) are returned. When {@code firstId} is provided, the records immediately
+     * preceding that id are returned in descending id order. Any sorting requested by the filter mappings is replaced
+     * by the primary key ordering.
+     * <p>
+     * Translators that do not page by key may leave this unimplemented. The fetch then falls back to offset paging.
+     *
+     * @param dynamicEntityDao
+     * @param ceilingEntity
+     * @param filterMappings
+     * @param lastId the id of the last record on the current page, or null
+     * @param firstId the id of the first record on the current page, or null
+     * @param maxResults
+     * @return
+     * @throws CriteriaConversionException if the translator does not support paging by key
+     */
+    default TypedQuery<Serializable> translateKeysetQuery(DynamicEntityDao dynamicEntityDao, String ceilingEntity, List<FilterMapping> filterMappings, Long lastId, Long firstId, Integer maxResults) {
+        throw new CriteriaConversionException("Paging by key is not supported by " + getClass().getName(), null);
+    }
+
+    /**
+     * Build a query that selects at most {@code maxResults} primary key values for the records matching the filter
+     * mappings. The size of the result serves as a bounded count that is much cheaper than a full count on large tables.
+     * <p>
+     * Translators that do not support this may leave it unimplemented. The full count from
+     * {@link #translateCountQuery(DynamicEntityDao, String, List)} is then used instead.
+     *
+     * @param dynamicEntityDao
+     * @param ceilingEntity
+     * @param filterMappings
+     * @param maxResults
+     * @return
+     * @throws CriteriaConversionException if the translator does not support bounded id queries
+     */
+    default TypedQuery<Serializable> translateIdQuery(DynamicEntityDao dynamicEntityDao, String ceilingEntity, List<FilterMapping> filterMappings, Integer maxResults) {
+        throw new CriteriaConversionException("Bounded id queries are not supported by " + getClass().getName(), null);
+    }
 }
@@ -80,6 +80,16 @@ public class CriteriaTranslatorImpl implements CriteriaTranslator {
         return constructQuery(dynamicEntityDao, ceilingEntity, filterMappings, false, false, firstResult, maxResults, null);
     }
 
+    @Override
+    public TypedQuery<Serializable> translateKeysetQuery(DynamicEntityDao dynamicEntityDao, String ceilingEntity, List<FilterMapping> filterMappings, Long lastId, Long firstId, Integer maxResults) {
+        return constructQuery(dynamicEntityDao, ceilingEntity, filterMappings, false, false, null, maxResults, null, true, lastId, firstId, false);
+    }
+
+    @Override
+    public TypedQuery<Serializable> translateIdQuery(DynamicEntityDao dynamicEntityDao, String ceilingEntity, List<FilterMapping> filterMappings, Integer maxResults) {
+        return constructQuery(dynamicEntityDao, ceilingEntity, filterMappings, false, false, null, maxResults, null, false, null, null, true);
+    }
+
     /**
      * Determines the appropriate entity in this current class tree to use as the ceiling entity for the query. Because
      * we filter with AND instead of OR, we throw an exception if an attempt to utilize properties from mutually exclusive
@@ -163,8 +173,18 @@ public class CriteriaTranslatorImpl implements CriteriaTranslator {
         return null;
     }
 
-    @SuppressWarnings("unchecked")
     protected TypedQuery<Serializable> constructQuery(DynamicEntityDao dynamicEntityDao, String ceilingEntity, List<FilterMapping> filterMappings, boolean isCount, boolean isMax, Integer firstResult, Integer maxResults, String maxField) {
+        return constructQuery(dynamicEntityDao, ceilingEntity, filterMappings, isCount, isMax, firstResult, maxResults, maxField, false, null, null, false);
+    }
+
+    /**
+     * Builds the fetch query. When {@code isKeyset} is true, the results are ordered by primary key and restricted to the
+     * ids following {@code lastId} (or preceding {@code firstId}) instead of being paged by offset. When {@code isIdOnly}
+     * is true, only the primary key values are selected.
+     */
+    @SuppressWarnings("unchecked")
+    protected TypedQuery<Serializable> constructQuery(DynamicEntityDao dynamicEntityDao, String ceilingEntity, List<FilterMapping> filterMappings, boolean isCount, boolean isMax, Integer firstResult, Integer maxResults, String maxField,
+            boolean isKeyset, Long lastId, Long firstId, boolean isIdOnly) {
 
         CriteriaBuilder criteriaBuilder = dynamicEntityDao.getStandardEntityManager().getCriteriaBuilder();
 
@@ -184,10 +204,20 @@ public class CriteriaTranslatorImpl implements CriteriaTranslator {
         CriteriaQuery<Serializable> criteria = criteriaBuilder.createQuery(ceilingMarker);
         Root<Serializable> original = criteria.from(ceilingClass);
 
+        String idFieldName = null;
+        if (isKeyset || isIdOnly) {
+            idFieldName = getIdFieldName(dynamicEntityDao, ceilingClass);
+            if (idFieldName == null) {
+                throw new IllegalArgumentException("Unable to page by primary key for " + ceilingEntity + " as it does not declare a single column id");
+            }
+        }
+
         if (isCount) {
             criteria.select(criteriaBuilder.count(original));
         } else if (isMax) {
             criteria.select(criteriaBuilder.max((Path<Number>) ((Object) original.get(maxField))));
+        } else if (isIdOnly) {
+            criteria.select((Path<Serializable>) ((Object) original.get(idFieldName)));
         } else {
             criteria.select(original);
         }
@@ -196,20 +226,33 @@ public class CriteriaTranslatorImpl implements CriteriaTranslator {
         List<Order> sorts = new ArrayList<Order>();
         addRestrictions(ceilingEntity, filterMappings, criteriaBuilder, original, restrictions, sorts, criteria);
 
+        if (isKeyset) {
+            Path<Long> idPath = original.get(idFieldName);
+            if (lastId != null) {
+                restrictions.add(criteriaBuilder.gt(idPath, lastId));
+            } else if (firstId != null) {
+                restrictions.add(criteriaBuilder.lt(idPath, firstId));
+            }
+        }
+
         criteria.where(restrictions.toArray(new Predicate[restrictions.size()]));
-        if (!isCount && !isMax) {
+        if (isKeyset) {
+            //Seek past the boundary id using the primary key index. Previous pages are read backwards from the first
+            //id and are expected to be put back into ascending order by the caller.
+            if (lastId == null && firstId != null) {
+                criteria.orderBy(criteriaBuilder.desc(original.get(idFieldName)));
+            } else {
+                criteria.orderBy(criteriaBuilder.asc(original.get(idFieldName)));
+            }
+        } else if (!isCount && !isMax && !isIdOnly) {
             criteria.orderBy(sorts.toArray(new Order[sorts.size()]));
             //If someone provides a firstResult value, then there is generally pagination going on.
             //In order to produce consistent results, especially with certain databases such as PostgreSQL, 
             //there has to be an "order by" clause.  We'll add one here if we can.
             if (firstResult != null && sorts.isEmpty()) {
-                Map<String, Object> idMetaData = dynamicEntityDao.getIdMetadata(ceilingClass);
-                if (idMetaData != null) {
-                    Object idFldName = idMetaData.get("name");
-                    Object type = idMetaData.get("type");
-                    if ((idFldName instanceof String) && (type instanceof SingleColumnType)) {
-                        criteria.orderBy(criteriaBuilder.asc(original.get((String) idFldName)));
-                    }
+                String idFldName = getIdFieldName(dynamicEntityDao, ceilingClass);
+                if (idFldName != null) {
+                    criteria.orderBy(criteriaBuilder.asc(original.get(idFldName)));
                 }
             }
         }
@@ -222,6 +265,21 @@ public class CriteriaTranslatorImpl implements CriteriaTranslator {
         return response;
     }
 
+    /**
+     * @return the name of the primary key field for the given class, or null if it is not a single column id
+     */
+    protected String getIdFieldName(DynamicEntityDao dynamicEntityDao, Class<?> ceilingClass) {
+        Map<String, Object> idMetaData = dynamicEntityDao.getIdMetadata(ceilingClass);
+        if (idMetaData != null) {
+            Object idFldName = idMetaData.get("name");
+            Object type = idMetaData.get("type");
+            if ((idFldName instanceof String) && (type instanceof SingleColumnType)) {
+                return (String) idFldName;
+            }
+        }
+        return null;
+    }
+
     protected void addPaging(Query response, Integer firstResult, Integer maxResults) {
         if (firstResult != null) {
             response.setFirstResult(firstResult);
@@ -229,6 +229,35 @@ public class AdminBasicEntityController extends AdminAbstractController {
         return formService.constructSelectizeOptionMap(drs, cmd);
     }
 
+    /**
+     * Computes the exact number of records for the main entity listing with the given criteria. List grids that page
+     * by primary key skip the total count when fetching records, so the client may request it separately here.
+     *
+     * @param request
+     * @param response
+     * @param model
+     * @param pathVars
+     * @param requestParams a Map of property name -> list critiera values
+     * @return a map containing the "totalRecords" value
+     * @throws Exception
+     */
+    @RequestMapping(value = "/count", method = RequestMethod.GET)
+    public @ResponseBody Map<String, Object> viewEntityListCount(HttpServletRequest request,
+             HttpServletResponse response, Model model,
+             @PathVariable Map<String, String> pathVars,
+             @RequestParam MultiValueMap<String, String> requestParams) throws Exception {
+        String sectionKey = getSectionKey(pathVars);
+        String sectionClassName = getClassNameForSection(sectionKey);
+        List<SectionCrumb> crumbs = getSectionCrumbs(request, null, null);
+        PersistencePackageRequest ppr = getSectionPersistencePackageRequest(sectionClassName, requestParams, crumbs, pathVars)
+                .withCountOnly(true);
+        DynamicResultSet drs = service.getRecords(ppr).getDynamicResultSet();
+
+        Map<String, Object> responseMap = new HashMap<>();
+        responseMap.put("totalRecords", drs.getTotalRecords());
+        return responseMap;
+    }
+
     /**
      * Obtains the requested criteria parameter
      *
@@ -654,6 +654,10 @@
             if (!foundFilterOrSort && fetchType === 'LARGERESULTSET') {
                 $footer.find('.page-results').css('display', 'inline');
                 $footer.find('.scroll-results').css('display', 'none');
+                //grids paged by key do not fetch their total, main grids may request it separately
+                if ($headerTable.data('listgridtype') == 'main' && $footer.find('.page-total').css('display') === 'none') {
+                    $footer.find('.page-count').css('display', 'inline');
+                }
             } else {
                 $footer.find('.page-results').css('display', 'none');
                 $footer.find('.scroll-results').css('display', 'inline');
@@ -1135,6 +1139,23 @@ $(document).ready(function() {
         return false;
     });
 
+    $('body').on('click', 'a.page-count', function(event) {
+        var $pageLink = $(this);
+        var $footer = $pageLink.closest('div.listgrid-table-footer');
+        var $tbody = $footer.siblings('div.listgrid-body-wrapper').find('table.list-grid-table').find('tbody');
+        var countUrl = $tbody.closest('table').data('path') + '/count';
+        $pageLink.css('display', 'none');
+        BLC.ajax({
+            url: countUrl,
+            dataType: "json",
+            type: "GET"
+        }, function(data) {
+            $footer.find('.page-total-records').text(data.totalRecords);
+            $footer.find('.page-total').css('display', 'inline');
+        });
+        return false;
+    });
+
     $('body').on('click', 'a.next-page', function(event) {
         var $pageLink = $(this);
         var $parentSpan = $pageLink.closest('div.listgrid-table-footer');
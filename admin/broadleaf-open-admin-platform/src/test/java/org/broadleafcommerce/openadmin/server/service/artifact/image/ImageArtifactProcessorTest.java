@@ -0,0 +1,129 @@
+/*
+ * #%L
+ * BroadleafCommerce Open Admin Platform
+ * %%
+ * Copyright (C) 2009 - 2016 Broadleaf Commerce
+ * %%
+ * Licensed under the Broadleaf Fair Use License Agreement, Version 1.0
+ * (the "Fair Use License" located  at http://license.broadleafcommerce.org/fair_use_license-1.0.txt)
+ * unless the restrictions on use therein are violated and require payment to Broadleaf in which case
+ * the Broadleaf End User License Agreement (EULA), Version 1.1
+ * (the "Commercial License" located at http://license.broadleafcommerce.org/commercial_license-1.1.txt)
+ * shall apply.
+ * 
+ * Alternatively, the Commercial License may be replaced with a mutually agreed upon license (the "Custom License")
+ * between you and Broadleaf Commerce. You may not use this file except in compliance with the applicable license.
+ * #L%
+ */
+package org.broadleafcommerce.openadmin.server.service.artifact.image;
+
+import org.broadleafcommerce.openadmin.server.service.artifact.image.effects.chain.EffectsManager;
+import org.broadleafcommerce.openadmin.server.service.artifact.image.effects.chain.conversion.ConversionManager;
+import org.broadleafcommerce.openadmin.server.service.artifact.image.effects.chain.filter.FilterTypeEnum;
+import org.broadleafcommerce.openadmin.server.service.artifact.image.effects.chain.filter.Resize;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.imageio.ImageIO;
+
+import junit.framework.TestCase;
+
+public class ImageArtifactProcessorTest extends TestCase {
+
+    protected ImageArtifactProcessor processor;
+
+    @Override
+    protected void setUp() {
+        EffectsManager effectsManager = new EffectsManager();
+        effectsManager.setConversionManager(new ConversionManager());
+        processor = new ImageArtifactProcessor();
+        processor.effectsManager = effectsManager;
+    }
+
+    public void testSubsamplingKeepsHeadroomOverTheTarget() {
+        int subsampling = processor.getDecodeSubsampling(new Operation[]{buildResize(200, 150)}, 4000, 3000);
+
+        assertEquals(10, subsampling);
+        assertTrue(4000 / subsampling >= 200 * ImageArtifactProcessor.SUBSAMPLING_HEADROOM);
+        assertTrue(3000 / subsampling >= 150 * ImageArtifactProcessor.SUBSAMPLING_HEADROOM);
+    }
+
+    public void testSubsamplingOnlyAppliesToResizesAndColorAdjustments() {
+        Operation resize = buildResize(200, 150);
+
+        assertTrue(processor.getDecodeSubsampling(new Operation[]{buildOperation(FilterTypeEnum.ALTERRGB), resize}, 4000, 3000) > 1);
+        assertTrue(processor.getDecodeSubsampling(new Operation[]{buildOperation(FilterTypeEnum.ALTERHSB), resize}, 4000, 3000) > 1);
+        assertEquals(1, processor.getDecodeSubsampling(new Operation[]{buildOperation(FilterTypeEnum.GAUSSIANBLUR), resize}, 4000, 3000));
+        assertEquals(1, processor.getDecodeSubsampling(new Operation[]{buildOperation(FilterTypeEnum.CROP), resize}, 4000, 3000));
+        assertEquals(1, processor.getDecodeSubsampling(new Operation[]{buildOperation(FilterTypeEnum.ALTERRGB)}, 4000, 3000));
+    }
+
+    public void testSubsamplingDoesNotChangeTheResizedSide() {
+        // The full image is closer to the target width, so Resize fits the width. Decoded at 1/4 it would fit the height.
+        assertFalse(processor.isSameResizeSide(1000, 1100, 4, 100, 130));
+        assertEquals(3, processor.getDecodeSubsampling(new Operation[]{buildResize(100, 130)}, 1000, 1100));
+    }
+
+    public void testSubsamplingCanBeTurnedOff() {
+        processor.subsampledDecode = false;
+
+        assertEquals(1, processor.getDecodeSubsampling(new Operation[]{buildResize(200, 150)}, 4000, 3000));
+    }
+
+    public void testSubsampledDecodeMatchesFullDecode() throws Exception {
+        byte[] png = createGradientImage(1600, 1200);
+        Operation[] operations = {buildResize(200, 150)};
+        assertTrue(processor.getDecodeSubsampling(operations, 1600, 1200) > 1);
+
+        BufferedImage subsampled = ImageIO.read(processor.convert(new ByteArrayInputStream(png), operations, "image/png"));
+        processor.subsampledDecode = false;
+        BufferedImage full = ImageIO.read(processor.convert(new ByteArrayInputStream(png), operations, "image/png"));
+
+        assertEquals(full.getWidth(), subsampled.getWidth());
+        assertEquals(full.getHeight(), subsampled.getHeight());
+        for (int y = 0; y < full.getHeight(); y++) {
+            for (int x = 0; x < full.getWidth(); x++) {
+                int expected = full.getRGB(x, y);
+                int actual = subsampled.getRGB(x, y);
+                for (int shift = 0; shift < 24; shift += 8) {
+                    // Subsampling skips pixels the full decode averages in, so smooth images stay close
+                    assertTrue("Pixel " + x + "," + y, Math.abs(((expected >> shift) & 0xff) - ((actual >> shift) & 0xff)) <= 2);
+                }
+            }
+        }
+    }
+
+    protected Operation buildResize(int width, int height) {
+        Map<String, String> parameters = new HashMap<String, String>();
+        parameters.put("resize-width-amount", String.valueOf(width));
+        parameters.put("resize-height-amount", String.valueOf(height));
+        parameters.put("resize-high-quality", "true");
+        parameters.put("resize-maintain-aspect-ratio", "true");
+        return new Resize().buildOperation(parameters, null, null);
+    }
+
+    protected Operation buildOperation(FilterTypeEnum type) {
+        Operation operation = new Operation();
+        operation.setName(type.toString().toLowerCase());
+        return operation;
+    }
+
+    protected byte[] createGradientImage(int width, int height) throws Exception {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                int r = x * 255 / width;
+                int g = y * 255 / height;
+                int b = (x + y) * 255 / (width + height);
+                image.setRGB(x, y, (r << 16) | (g << 8) | b);
+            }
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(image, "png", out);
+        return out.toByteArray();
+    }
+}
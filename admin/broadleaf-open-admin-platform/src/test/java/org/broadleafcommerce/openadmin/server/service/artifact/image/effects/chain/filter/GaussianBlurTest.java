@@ -0,0 +1,100 @@
+/*
+ * #%L
+ * BroadleafCommerce Open Admin Platform
+ * %%
+ * Copyright (C) 2009 - 2016 Broadleaf Commerce
+ * %%
+ * Licensed under the Broadleaf Fair Use License Agreement, Version 1.0
+ * (the "Fair Use License" located  at http://license.broadleafcommerce.org/fair_use_license-1.0.txt)
+ * unless the restrictions on use therein are violated and require payment to Broadleaf in which case
+ * the Broadleaf End User License Agreement (EULA), Version 1.1
+ * (the "Commercial License" located at http://license.broadleafcommerce.org/commercial_license-1.1.txt)
+ * shall apply.
+ * 
+ * Alternatively, the Commercial License may be replaced with a mutually agreed upon license (the "Custom License")
+ * between you and Broadleaf Commerce. You may not use this file except in compliance with the applicable license.
+ * #L%
+ */
+package org.broadleafcommerce.openadmin.server.service.artifact.image.effects.chain.filter;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.awt.image.ConvolveOp;
+import java.awt.image.Kernel;
+import java.util.concurrent.ForkJoinPool;
+
+import junit.framework.TestCase;
+
+public class GaussianBlurTest extends TestCase {
+
+    protected ForkJoinPool pool;
+
+    @Override
+    protected void setUp() {
+        pool = new ForkJoinPool(4);
+        RasterEngine.setPool(pool);
+    }
+
+    @Override
+    protected void tearDown() {
+        RasterEngine.setPool(null);
+        pool.shutdown();
+    }
+
+    public void testOpaqueImagesMatchConvolveOp() {
+        int[] types = {BufferedImage.TYPE_INT_RGB, BufferedImage.TYPE_3BYTE_BGR};
+        for (int type : types) {
+            BufferedImage src = RasterEngineTest.createRandomImage(300, 260, type, type);
+            BufferedImage actual = new GaussianBlur(5, 2, null).filter(src, null);
+
+            RasterEngineTest.assertPixelsEqual(convolveOpBlur(src, 5, 2), actual, 0);
+        }
+    }
+
+    public void testAlphaImagesMatchConvolveOp() {
+        int[] types = {BufferedImage.TYPE_INT_ARGB, BufferedImage.TYPE_4BYTE_ABGR};
+        for (int type : types) {
+            BufferedImage src = RasterEngineTest.createRandomImage(300, 260, type, type);
+            BufferedImage actual = new GaussianBlur(5, 2, null).filter(src, null);
+
+            RasterEngineTest.assertPixelsEqual(convolveOpBlur(src, 5, 2), actual, 0);
+        }
+    }
+
+    public void testCallerDestinationIsReplaced() {
+        int[] types = {BufferedImage.TYPE_INT_RGB, BufferedImage.TYPE_INT_ARGB};
+        for (int type : types) {
+            BufferedImage src = RasterEngineTest.createRandomImage(120, 90, type, type);
+            BufferedImage dst = new BufferedImage(120, 90, type);
+            Graphics2D g = dst.createGraphics();
+            g.setColor(Color.RED);
+            g.fillRect(0, 0, 120, 90);
+            g.dispose();
+
+            BufferedImage actual = new GaussianBlur(3, 1, null).filter(src, dst);
+
+            assertSame(dst, actual);
+            RasterEngineTest.assertPixelsEqual(new GaussianBlur(3, 1, null).filter(src, null), dst, 0);
+        }
+    }
+
+    /**
+     * The blur as it was done before {@link RasterEngine}, with {@link ConvolveOp} on whole images
+     */
+    protected BufferedImage convolveOpBlur(BufferedImage src, int kernelSize, int numOfPasses) {
+        float[] matrix = GaussianBlur.GAUSSIAN_BLUR_KERNELS[kernelSize - 1];
+        ConvolveOp gaussianOp1 = new ConvolveOp(new Kernel(matrix.length, 1, matrix), ConvolveOp.EDGE_NO_OP, null);
+        ConvolveOp gaussianOp2 = new ConvolveOp(new Kernel(1, matrix.length, matrix), ConvolveOp.EDGE_NO_OP, null);
+
+        BufferedImage tempImage = new BufferedImage(src.getWidth(), src.getHeight(), src.getType());
+        BufferedImage dst = new BufferedImage(src.getWidth(), src.getHeight(), src.getType());
+        BufferedImage nextSource = src;
+        for (int i = 0; i < numOfPasses; i++) {
+            tempImage = gaussianOp1.filter(nextSource, tempImage);
+            dst = gaussianOp2.filter(tempImage, dst);
+            nextSource = dst;
+        }
+        return dst;
+    }
+}
@@ -0,0 +1,150 @@
+/*
+ * #%L
+ * BroadleafCommerce Open Admin Platform
+ * %%
+ * Copyright (C) 2009 - 2016 Broadleaf Commerce
+ * %%
+ * Licensed under the Broadleaf Fair Use License Agreement, Version 1.0
+ * (the "Fair Use License" located  at http://license.broadleafcommerce.org/fair_use_license-1.0.txt)
+ * unless the restrictions on use therein are violated and require payment to Broadleaf in which case
+ * the Broadleaf End User License Agreement (EULA), Version 1.1
+ * (the "Commercial License" located at http://license.broadleafcommerce.org/commercial_license-1.1.txt)
+ * shall apply.
+ * 
+ * Alternatively, the Commercial License may be replaced with a mutually agreed upon license (the "Custom License")
+ * between you and Broadleaf Commerce. You may not use this file except in compliance with the applicable license.
+ * #L%
+ */
+package org.broadleafcommerce.openadmin.server.service.artifact.image.effects.chain.filter;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.Image;
+import java.awt.image.BufferedImage;
+import java.awt.image.ConvolveOp;
+import java.awt.image.Kernel;
+import java.awt.image.WritableRaster;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import junit.framework.TestCase;
+
+public class RasterEngineTest extends TestCase {
+
+    protected ForkJoinPool pool;
+
+    @Override
+    protected void setUp() {
+        // Several threads, so images larger than one tile are really split up
+        pool = new ForkJoinPool(4);
+        RasterEngine.setPool(pool);
+    }
+
+    @Override
+    protected void tearDown() {
+        RasterEngine.setPool(null);
+        pool.shutdown();
+    }
+
+    public void testConvolveMatchesConvolveOp() {
+        BufferedImage src = createRandomImage(320, 700, BufferedImage.TYPE_INT_ARGB, 7);
+        float[] matrix = GaussianBlur.GAUSSIAN_BLUR_KERNELS[7];
+        Kernel[] kernels = {new Kernel(matrix.length, 1, matrix), new Kernel(1, matrix.length, matrix)};
+
+        for (Kernel kernel : kernels) {
+            BufferedImage expected = new ConvolveOp(kernel, ConvolveOp.EDGE_NO_OP, null).filter(src, null);
+            WritableRaster actual = src.getRaster().createCompatibleWritableRaster();
+            RasterEngine.convolve(src.getRaster(), actual, kernel);
+
+            assertPixelsEqual(expected, new BufferedImage(src.getColorModel(), actual, false, null), 0);
+        }
+    }
+
+    public void testScaleDownMatchesScaleSmooth() {
+        BufferedImage src = createRandomImage(640, 480, BufferedImage.TYPE_INT_ARGB, 11);
+        int[][] sizes = {{320, 240}, {213, 97}, {640, 120}, {1, 1}};
+
+        for (int[] size : sizes) {
+            BufferedImage expected = new BufferedImage(size[0], size[1], BufferedImage.TYPE_INT_ARGB);
+            Graphics2D g = expected.createGraphics();
+            g.drawImage(src.getScaledInstance(size[0], size[1], Image.SCALE_SMOOTH), 0, 0, size[0], size[1], null);
+            g.dispose();
+
+            int[] pixels = RasterEngine.scaleDownAreaAveraging(RasterEngine.getArgbPixels(src), src.getWidth(),
+                    src.getHeight(), size[0], size[1]);
+
+            assertPremultipliedPixelsEqual(expected, RasterEngine.createArgbImage(pixels, size[0], size[1]), 1);
+        }
+    }
+
+    public void testArgbPixelsAreNotShared() {
+        BufferedImage src = createRandomImage(16, 16, BufferedImage.TYPE_INT_ARGB, 3);
+        int before = src.getRGB(0, 0);
+
+        int[] pixels = RasterEngine.getArgbPixels(src);
+        pixels[0] = ~pixels[0];
+
+        assertEquals(before, src.getRGB(0, 0));
+    }
+
+    public void testCopyPixelsReplacesDestination() {
+        BufferedImage src = createRandomImage(40, 30, BufferedImage.TYPE_INT_ARGB, 5);
+        BufferedImage dst = new BufferedImage(40, 30, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g = dst.createGraphics();
+        g.setColor(Color.RED);
+        g.fillRect(0, 0, 40, 30);
+        g.dispose();
+
+        RasterEngine.copyPixels(src, dst);
+
+        assertPixelsEqual(src, dst, 0);
+    }
+
+    protected static BufferedImage createRandomImage(int width, int height, int type, long seed) {
+        Random random = new Random(seed);
+        BufferedImage image = new BufferedImage(width, height, type);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                image.setRGB(x, y, random.nextInt());
+            }
+        }
+        return image;
+    }
+
+    protected static void assertPixelsEqual(BufferedImage expected, BufferedImage actual, int tolerance) {
+        assertPixelsEqual(expected, actual, tolerance, false);
+    }
+
+    /**
+     * Compares colors premultiplied by alpha. Drawing a translucent image goes through premultiplied values, so its
+     * colors are only that precise, and the less so the more transparent the pixel is.
+     */
+    protected static void assertPremultipliedPixelsEqual(BufferedImage expected, BufferedImage actual, int tolerance) {
+        assertPixelsEqual(expected, actual, tolerance, true);
+    }
+
+    protected static void assertPixelsEqual(BufferedImage expected, BufferedImage actual, int tolerance,
+                                            boolean premultiplied) {
+        assertEquals(expected.getWidth(), actual.getWidth());
+        assertEquals(expected.getHeight(), actual.getHeight());
+        for (int y = 0; y < expected.getHeight(); y++) {
+            for (int x = 0; x < expected.getWidth(); x++) {
+                int e = expected.getRGB(x, y);
+                int a = actual.getRGB(x, y);
+                for (int shift = 0; shift < 32; shift += 8) {
+                    int diff;
+                    if (premultiplied && shift < 24) {
+                        diff = Math.round(Math.abs(((e >>> shift) & 0xff) * (e >>> 24)
+                                - ((a >>> shift) & 0xff) * (a >>> 24)) / 255f);
+                    } else {
+                        diff = Math.abs(((e >>> shift) & 0xff) - ((a >>> shift) & 0xff));
+                    }
+                    if (diff > tolerance) {
+                        fail("Pixel " + x + "," + y + " differs: expected " + Integer.toHexString(e) + " but was "
+                                + Integer.toHexString(a));
+                    }
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,87 @@
+/*
+ * #%L
+ * BroadleafCommerce Open Admin Platform
+ * %%
+ * Copyright (C) 2009 - 2016 Broadleaf Commerce
+ * %%
+ * Licensed under the Broadleaf Fair Use License Agreement, Version 1.0
+ * (the "Fair Use License" located  at http://license.broadleafcommerce.org/fair_use_license-1.0.txt)
+ * unless the restrictions on use therein are violated and require payment to Broadleaf in which case
+ * the Broadleaf End User License Agreement (EULA), Version 1.1
+ * (the "Commercial License" located at http://license.broadleafcommerce.org/commercial_license-1.1.txt)
+ * shall apply.
+ * 
+ * Alternatively, the Commercial License may be replaced with a mutually agreed upon license (the "Custom License")
+ * between you and Broadleaf Commerce. You may not use this file except in compliance with the applicable license.
+ * #L%
+ */
+package org.broadleafcommerce.openadmin.server.service.artifact.image.effects.chain.filter;
+
+import java.awt.Graphics2D;
+import java.awt.Image;
+import java.awt.image.BufferedImage;
+import java.util.concurrent.ForkJoinPool;
+
+import junit.framework.TestCase;
+
+public class ResizeTest extends TestCase {
+
+    protected ForkJoinPool pool;
+
+    @Override
+    protected void setUp() {
+        pool = new ForkJoinPool(4);
+        RasterEngine.setPool(pool);
+    }
+
+    @Override
+    protected void tearDown() {
+        RasterEngine.setPool(null);
+        pool.shutdown();
+    }
+
+    public void testOneStepResizeMatchesScaleSmooth() {
+        int[] types = {BufferedImage.TYPE_INT_RGB, BufferedImage.TYPE_INT_ARGB, BufferedImage.TYPE_3BYTE_BGR};
+        for (int type : types) {
+            BufferedImage src = RasterEngineTest.createRandomImage(800, 600, type, type);
+            BufferedImage actual = new Resize(210, 140, false, false, false, false, null).filter(src, null);
+
+            BufferedImage expected = scaleSmooth(src, 210, 140, getResizeType(type));
+            assertEquals(expected.getType(), actual.getType());
+            RasterEngineTest.assertPremultipliedPixelsEqual(expected, actual, 1);
+        }
+    }
+
+    public void testHighQualityResizeMatchesScaleSmoothSteps() {
+        BufferedImage src = RasterEngineTest.createRandomImage(800, 600, BufferedImage.TYPE_INT_RGB, 13);
+        BufferedImage actual = new Resize(150, 100, true, false, false, false, null).filter(src, null);
+
+        // High quality halves each side until it reaches the target
+        BufferedImage expected = scaleSmooth(src, 400, 300, BufferedImage.TYPE_INT_RGB);
+        expected = scaleSmooth(expected, 200, 150, BufferedImage.TYPE_INT_RGB);
+        expected = scaleSmooth(expected, 150, 100, BufferedImage.TYPE_INT_RGB);
+        RasterEngineTest.assertPremultipliedPixelsEqual(expected, actual, 1);
+    }
+
+    public void testAspectRatioResizeMatchesScaleSmooth() {
+        BufferedImage src = RasterEngineTest.createRandomImage(900, 300, BufferedImage.TYPE_INT_ARGB, 17);
+        BufferedImage actual = new Resize(200, 200, false, true, false, true, null).filter(src, null);
+
+        RasterEngineTest.assertPremultipliedPixelsEqual(scaleSmooth(src, 200, 66, BufferedImage.TYPE_INT_ARGB), actual, 1);
+    }
+
+    /**
+     * A resize step as it was done before {@link RasterEngine}, through {@link Image#SCALE_SMOOTH}
+     */
+    protected BufferedImage scaleSmooth(BufferedImage src, int w, int h, int type) {
+        BufferedImage tmp = new BufferedImage(w, h, type);
+        Graphics2D g2 = tmp.createGraphics();
+        g2.drawImage(src.getScaledInstance(w, h, Image.SCALE_SMOOTH), 0, 0, w, h, null);
+        g2.dispose();
+        return tmp;
+    }
+
+    protected int getResizeType(int type) {
+        return type == BufferedImage.TYPE_INT_RGB ? type : BufferedImage.TYPE_INT_ARGB;
+    }
+}
@@ -0,0 +1,54 @@
+/*
+ * #%L
+ * BroadleafCommerce Benchmarks
+ * %%
+ * Copyright (C) 2009 - 2016 Broadleaf Commerce
+ * %%
+ * Licensed under the Broadleaf Fair Use License Agreement, Version 1.0
+ * (the "Fair Use License" located  at http://license.broadleafcommerce.org/fair_use_license-1.0.txt)
+ * unless the restrictions on use therein are violated and require payment to Broadleaf in which case
+ * the Broadleaf End User License Agreement (EULA), Version 1.1
+ * (the "Commercial License" located at http://license.broadleafcommerce.org/commercial_license-1.1.txt)
+ * shall apply.
+ * 
+ * Alternatively, the Commercial License may be replaced with a mutually agreed upon license (the "Custom License")
+ * between you and Broadleaf Commerce. You may not use this file except in compliance with the applicable license.
+ * #L%
+ */
+package org.broadleafcommerce.benchmark;
+
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Entry point of the shaded benchmarks jar. Runs every benchmark (or those matching the first argument) and writes the
+ * results as JSON so that runs from different commits can be compared, e.g.
+ * 
+ * <pre>
+ * java -jar benchmarks/target/benchmarks.jar                                  (everything, to jmh-result.json)
+ * java -jar benchmarks/target/benchmarks.jar OfferApplication offers.json    (one suite, to offers.json)
+ * </pre>
+ * 
+ * The regular JMH command line is still available through {@code org.openjdk.jmh.Main}.
+ */
+public class BenchmarkRunner {
+
+    public static final String DEFAULT_INCLUDE = "org\\.broadleafcommerce\\..*Benchmark.*";
+    public static final String DEFAULT_RESULT_FILE = "jmh-result.json";
+
+    public static void main(String[] args) throws RunnerException {
+        String include = args.length > 0 ? args[0] : DEFAULT_INCLUDE;
+        String resultFile = args.length > 1 ? args[1] : DEFAULT_RESULT_FILE;
+
+        Options options = new OptionsBuilder()
+                .include(include)
+                .resultFormat(ResultFormatType.JSON)
+                .result(resultFile)
+                .build();
+        new Runner(options).run();
+    }
+
+}
@@ -0,0 +1,91 @@
+/*
+ * #%L
+ * BroadleafCommerce Benchmarks
+ * %%
+ * Copyright (C) 2009 - 2016 Broadleaf Commerce
+ * %%
+ * Licensed under the Broadleaf Fair Use License Agreement, Version 1.0
+ * (the "Fair Use License" located  at http://license.broadleafcommerce.org/fair_use_license-1.0.txt)
+ * unless the restrictions on use therein are violated and require payment to Broadleaf in which case
+ * the Broadleaf End User License Agreement (EULA), Version 1.1
+ * (the "Commercial License" located at http://license.broadleafcommerce.org/commercial_license-1.1.txt)
+ * shall apply.
+ * 
+ * Alternatively, the Commercial License may be replaced with a mutually agreed upon license (the "Custom License")
+ * between you and Broadleaf Commerce. You may not use this file except in compliance with the applicable license.
+ * #L%
+ */
+package org.broadleafcommerce.common.rule;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.Serializable;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Rule evaluation through {@link MvelHelper}, with the shared expression cache and with a cold cache so that the cost of
+ * compiling the expression is visible on its own.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class MvelRuleBenchmark {
+
+    protected static final Map<String, String> RULES = new HashMap<String, String>();
+
+    static {
+        RULES.put("comparison", "customer.registered == true && order.subTotal > 20");
+        RULES.put("collection", "([MVEL.eval(\"toUpperCase()\",\"test1\"), MVEL.eval(\"toUpperCase()\",\"test2\")] "
+                + "contains MVEL.eval(\"toUpperCase()\", item.category))");
+    }
+
+    @Param({ "comparison", "collection" })
+    public String ruleName;
+
+    protected String rule;
+    protected Map<String, Object> ruleParameters;
+
+    @Setup
+    public void setUp() {
+        MvelHelper.setTestMode(true);
+        rule = RULES.get(ruleName);
+
+        Map<String, Object> customer = new HashMap<String, Object>();
+        customer.put("registered", Boolean.TRUE);
+        Map<String, Object> order = new HashMap<String, Object>();
+        order.put("subTotal", 42);
+        Map<String, Object> item = new HashMap<String, Object>();
+        item.put("category", "test2");
+
+        ruleParameters = new HashMap<String, Object>();
+        ruleParameters.put("customer", customer);
+        ruleParameters.put("order", order);
+        ruleParameters.put("item", item);
+    }
+
+    @Benchmark
+    public boolean evaluateCached() {
+        return MvelHelper.evaluateRule(rule, ruleParameters);
+    }
+
+    @Benchmark
+    public boolean evaluateUncached() {
+        return MvelHelper.evaluateRule(rule, ruleParameters, new HashMap<String, Serializable>());
+    }
+
+}
@@ -0,0 +1,96 @@
+/*
+ * #%L
+ * BroadleafCommerce Benchmarks
+ * %%
+ * Copyright (C) 2009 - 2016 Broadleaf Commerce
+ * %%
+ * Licensed under the Broadleaf Fair Use License Agreement, Version 1.0
+ * (the "Fair Use License" located  at http://license.broadleafcommerce.org/fair_use_license-1.0.txt)
+ * unless the restrictions on use therein are violated and require payment to Broadleaf in which case
+ * the Broadleaf End User License Agreement (EULA), Version 1.1
+ * (the "Commercial License" located at http://license.broadleafcommerce.org/commercial_license-1.1.txt)
+ * shall apply.
+ * 
+ * Alternatively, the Commercial License may be replaced with a mutually agreed upon license (the "Custom License")
+ * between you and Broadleaf Commerce. You may not use this file except in compliance with the applicable license.
+ * #L%
+ */
+package org.broadleafcommerce.common.util;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reads and writes against {@link EfficientLRUMap}, both below its size limit (backed by a ConcurrentHashMap) and past
+ * it (backed by the synchronized LRU map), from one thread and from four.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class EfficientLRUMapBenchmark {
+
+    protected static final int KEY_COUNT = 1000;
+
+    /**
+     * "concurrent" keeps the map under its limit, "lru" forces the switch to the LRU map
+     */
+    @Param({ "concurrent", "lru" })
+    public String mode;
+
+    protected EfficientLRUMap<String, Object> map;
+    protected String[] keys;
+
+    @Setup
+    public void setUp() {
+        int maxEntries = "lru".equals(mode) ? KEY_COUNT / 2 : KEY_COUNT * 2;
+        map = new EfficientLRUMap<String, Object>(maxEntries);
+        keys = new String[KEY_COUNT];
+        for (int i = 0; i < KEY_COUNT; i++) {
+            keys[i] = "key-" + i;
+            map.put(keys[i], Integer.valueOf(i));
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Cursor {
+        int next;
+
+        int nextIndex() {
+            next = (next + 7) % KEY_COUNT;
+            return next;
+        }
+    }
+
+    @Benchmark
+    public Object get(Cursor cursor) {
+        return map.get(keys[cursor.nextIndex()]);
+    }
+
+    @Benchmark
+    public Object put(Cursor cursor) {
+        int index = cursor.nextIndex();
+        return map.put(keys[index], Integer.valueOf(index));
+    }
+
+    @Benchmark
+    @Threads(4)
+    public Object getConcurrent(Cursor cursor) {
+        return map.get(keys[cursor.nextIndex()]);
+    }
+
+}
@@ -0,0 +1,92 @@
+/*
+ * #%L
+ * BroadleafCommerce Benchmarks
+ * %%
+ * Copyright (C) 2009 - 2016 Broadleaf Commerce
+ * %%
+ * Licensed under the Broadleaf Fair Use License Agreement, Version 1.0
+ * (the "Fair Use License" located  at http://license.broadleafcommerce.org/fair_use_license-1.0.txt)
+ * unless the restrictions on use therein are violated and require payment to Broadleaf in which case
+ * the Broadleaf End User License Agreement (EULA), Version 1.1
+ * (the "Commercial License" located at http://license.broadleafcommerce.org/commercial_license-1.1.txt)
+ * shall apply.
+ * 
+ * Alternatively, the Commercial License may be replaced with a mutually agreed upon license (the "Custom License")
+ * between you and Broadleaf Commerce. You may not use this file except in compliance with the applicable license.
+ * #L%
+ */
+package org.broadleafcommerce.common.web;
+
+import org.broadleafcommerce.common.currency.domain.BroadleafCurrency;
+import org.broadleafcommerce.common.currency.domain.BroadleafCurrencyImpl;
+import org.broadleafcommerce.common.locale.domain.Locale;
+import org.broadleafcommerce.common.locale.domain.LocaleImpl;
+import org.broadleafcommerce.common.site.domain.Site;
+import org.broadleafcommerce.common.site.domain.SiteImpl;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The per-request work done on {@link BroadleafRequestContext}: populating a context and binding it to the thread, and
+ * the lightweight clone taken whenever work is handed to another thread.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class BroadleafRequestContextBenchmark {
+
+    protected Site site;
+    protected Locale locale;
+    protected BroadleafCurrency currency;
+    protected BroadleafRequestContext populated;
+
+    @Setup
+    public void setUp() {
+        site = new SiteImpl();
+        site.setId(1L);
+        site.setName("benchmark");
+
+        locale = new LocaleImpl();
+        locale.setLocaleCode("en_US");
+
+        currency = new BroadleafCurrencyImpl();
+        currency.setCurrencyCode("USD");
+
+        populated = populate(new BroadleafRequestContext());
+    }
+
+    protected BroadleafRequestContext populate(BroadleafRequestContext context) {
+        context.setNonPersistentSite(site);
+        context.setLocale(locale);
+        context.setBroadleafCurrency(currency);
+        context.setIgnoreSite(false);
+        return context;
+    }
+
+    @Benchmark
+    public Object setUpAndClear() {
+        BroadleafRequestContext.setBroadleafRequestContext(populate(new BroadleafRequestContext()));
+        Object result = BroadleafRequestContext.getBroadleafRequestContext().getNonPersistentSite();
+        BroadleafRequestContext.setBroadleafRequestContext(null);
+        return result;
+    }
+
+    @Benchmark
+    public BroadleafRequestContext createLightWeightClone() {
+        return populated.createLightWeightClone();
+    }
+
+}
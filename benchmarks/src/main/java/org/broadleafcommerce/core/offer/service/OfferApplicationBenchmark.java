@@ -0,0 +1,162 @@
+/*
+ * #%L
+ * BroadleafCommerce Benchmarks
+ * %%
+ * Copyright (C) 2009 - 2016 Broadleaf Commerce
+ * %%
+ * Licensed under the Broadleaf Fair Use License Agreement, Version 1.0
+ * (the "Fair Use License" located  at http://license.broadleafcommerce.org/fair_use_license-1.0.txt)
+ * unless the restrictions on use therein are violated and require payment to Broadleaf in which case
+ * the Broadleaf End User License Agreement (EULA), Version 1.1
+ * (the "Commercial License" located at http://license.broadleafcommerce.org/commercial_license-1.1.txt)
+ * shall apply.
+ * 
+ * Alternatively, the Commercial License may be replaced with a mutually agreed upon license (the "Custom License")
+ * between you and Broadleaf Commerce. You may not use this file except in compliance with the applicable license.
+ * #L%
+ */
+package org.broadleafcommerce.core.offer.service;
+
+import org.broadleafcommerce.core.offer.dao.CustomerOfferDao;
+import org.broadleafcommerce.core.offer.dao.OfferCodeDao;
+import org.broadleafcommerce.core.offer.dao.OfferDao;
+import org.broadleafcommerce.core.offer.domain.Offer;
+import org.broadleafcommerce.core.offer.domain.OfferCode;
+import org.broadleafcommerce.core.offer.domain.OfferImpl;
+import org.broadleafcommerce.core.offer.service.discount.domain.PromotableItemFactoryImpl;
+import org.broadleafcommerce.core.offer.service.processor.FulfillmentGroupOfferProcessor;
+import org.broadleafcommerce.core.offer.service.processor.FulfillmentGroupOfferProcessorImpl;
+import org.broadleafcommerce.core.offer.service.processor.ItemOfferProcessorImpl;
+import org.broadleafcommerce.core.offer.service.processor.OfferTimeZoneProcessor;
+import org.broadleafcommerce.core.offer.service.processor.OrderOfferProcessorImpl;
+import org.broadleafcommerce.core.offer.service.type.OfferDiscountType;
+import org.broadleafcommerce.core.order.OrderFixtures;
+import org.broadleafcommerce.core.order.dao.OrderItemDao;
+import org.broadleafcommerce.core.order.domain.Order;
+import org.broadleafcommerce.core.order.service.OrderService;
+import org.easymock.EasyMock;
+import org.easymock.IAnswer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.TimeZone;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Applies an order offer and a percent-off item offer with qualifier and target criteria to carts of 1, 10 and 100 items
+ * through {@link OfferServiceImpl#applyAndSaveOffersToOrder(List, Order)}. Persistence is mocked the same way as in
+ * OfferServiceTest, so the numbers reflect offer processing (candidate building, permutations, rule evaluation) only.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class OfferApplicationBenchmark {
+
+    protected static final String ITEM_CRITERIA = "([MVEL.eval(\"toUpperCase()\",\"test1\"), MVEL.eval(\"toUpperCase()\",\"test2\")] "
+            + "contains MVEL.eval(\"toUpperCase()\", discreteOrderItem.category.name))";
+
+    @Param({ "1", "10", "100" })
+    public int itemCount;
+
+    protected OfferDataItemProvider dataProvider = new OfferDataItemProvider();
+    protected OfferServiceImpl offerService;
+    protected List<Offer> offers;
+    protected Order order;
+    protected final ThreadLocal<Order> currentOrder = new ThreadLocal<Order>();
+
+    @Setup(Level.Trial)
+    public void setUpServices() {
+        offerService = new OfferServiceImpl() {
+            @Override
+            protected List<OfferCode> refreshOfferCodesIfApplicable(Order order) {
+                return order.getAddedOfferCodes();
+            }
+        };
+        CustomerOfferDao customerOfferDao = EasyMock.createNiceMock(CustomerOfferDao.class);
+        OfferCodeDao offerCodeDao = EasyMock.createNiceMock(OfferCodeDao.class);
+        OfferDao offerDao = EasyMock.createNiceMock(OfferDao.class);
+        OrderItemDao orderItemDao = EasyMock.createNiceMock(OrderItemDao.class);
+        OrderService orderService = EasyMock.createNiceMock(OrderService.class);
+        OfferTimeZoneProcessor offerTimeZoneProcessor = EasyMock.createNiceMock(OfferTimeZoneProcessor.class);
+
+        EasyMock.expect(offerDao.createOrderItemPriceDetailAdjustment()).andAnswer(OfferDataItemProvider.getCreateOrderItemPriceDetailAdjustmentAnswer()).anyTimes();
+        EasyMock.expect(orderItemDao.createOrderItemPriceDetail()).andAnswer(OfferDataItemProvider.getCreateOrderItemPriceDetailAnswer()).anyTimes();
+        EasyMock.expect(orderItemDao.createOrderItemQualifier()).andAnswer(OfferDataItemProvider.getCreateOrderItemQualifierAnswer()).anyTimes();
+        EasyMock.expect(orderService.getAutomaticallyMergeLikeItems()).andReturn(true).anyTimes();
+        EasyMock.expect(orderService.save(EasyMock.isA(Order.class), EasyMock.isA(Boolean.class))).andAnswer(OfferDataItemProvider.getSaveOrderAnswer()).anyTimes();
+        EasyMock.expect(orderService.findOrderById(EasyMock.isA(Long.class))).andAnswer(new IAnswer<Order>() {
+            @Override
+            public Order answer() throws Throwable {
+                return currentOrder.get();
+            }
+        }).anyTimes();
+        EasyMock.expect(offerTimeZoneProcessor.getTimeZone(EasyMock.isA(OfferImpl.class))).andReturn(TimeZone.getTimeZone("CST")).anyTimes();
+        EasyMock.replay(customerOfferDao, offerCodeDao, offerDao, orderItemDao, orderService, offerTimeZoneProcessor);
+
+        OfferServiceUtilitiesImpl offerServiceUtilities = new OfferServiceUtilitiesImpl();
+        offerServiceUtilities.setOfferDao(offerDao);
+        offerServiceUtilities.setPromotableItemFactory(new PromotableItemFactoryImpl());
+
+        OrderOfferProcessorImpl orderProcessor = new OrderOfferProcessorImpl();
+        orderProcessor.setOfferDao(offerDao);
+        orderProcessor.setOrderItemDao(orderItemDao);
+        orderProcessor.setPromotableItemFactory(new PromotableItemFactoryImpl());
+        orderProcessor.setOfferTimeZoneProcessor(offerTimeZoneProcessor);
+        orderProcessor.setOfferServiceUtilities(offerServiceUtilities);
+
+        ItemOfferProcessorImpl itemProcessor = new ItemOfferProcessorImpl();
+        itemProcessor.setOfferDao(offerDao);
+        itemProcessor.setOrderItemDao(orderItemDao);
+        itemProcessor.setOfferTimeZoneProcessor(offerTimeZoneProcessor);
+        itemProcessor.setPromotableItemFactory(new PromotableItemFactoryImpl());
+        itemProcessor.setOfferServiceUtilities(offerServiceUtilities);
+
+        FulfillmentGroupOfferProcessor fgProcessor = new FulfillmentGroupOfferProcessorImpl();
+        fgProcessor.setOfferDao(offerDao);
+        fgProcessor.setPromotableItemFactory(new PromotableItemFactoryImpl());
+
+        offerService.setCustomerOfferDao(customerOfferDao);
+        offerService.setOfferCodeDao(offerCodeDao);
+        offerService.setOfferDao(offerDao);
+        offerService.setOrderService(orderService);
+        offerService.setOrderOfferProcessor(orderProcessor);
+        offerService.setItemOfferProcessor(itemProcessor);
+        offerService.setFulfillmentGroupOfferProcessor(fgProcessor);
+        offerService.setPromotableItemFactory(new PromotableItemFactoryImpl());
+    }
+
+    @Setup(Level.Invocation)
+    public void setUpOrder() {
+        order = OrderFixtures.createOrder(itemCount);
+        currentOrder.set(order);
+        offers = dataProvider.createItemBasedOfferWithItemCriteria("order.subTotal.getAmount()>20",
+                OfferDiscountType.PERCENT_OFF, ITEM_CRITERIA, ITEM_CRITERIA);
+        offers.addAll(dataProvider.createOrderBasedOffer("order.subTotal.getAmount()>100", OfferDiscountType.AMOUNT_OFF));
+    }
+
+    @TearDown(Level.Invocation)
+    public void clearSavedOrders() {
+        OfferDataItemProvider.orders.clear();
+    }
+
+    @Benchmark
+    public Order applyOffers() throws Exception {
+        return offerService.applyAndSaveOffersToOrder(offers, order);
+    }
+
+}
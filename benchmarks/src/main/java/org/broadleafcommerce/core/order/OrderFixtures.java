@@ -0,0 +1,129 @@
+/*
+ * #%L
+ * BroadleafCommerce Benchmarks
+ * %%
+ * Copyright (C) 2009 - 2016 Broadleaf Commerce
+ * %%
+ * Licensed under the Broadleaf Fair Use License Agreement, Version 1.0
+ * (the "Fair Use License" located  at http://license.broadleafcommerce.org/fair_use_license-1.0.txt)
+ * unless the restrictions on use therein are violated and require payment to Broadleaf in which case
+ * the Broadleaf End User License Agreement (EULA), Version 1.1
+ * (the "Commercial License" located at http://license.broadleafcommerce.org/commercial_license-1.1.txt)
+ * shall apply.
+ * 
+ * Alternatively, the Commercial License may be replaced with a mutually agreed upon license (the "Custom License")
+ * between you and Broadleaf Commerce. You may not use this file except in compliance with the applicable license.
+ * #L%
+ */
+package org.broadleafcommerce.core.order;
+
+import org.broadleafcommerce.common.money.Money;
+import org.broadleafcommerce.core.catalog.domain.Category;
+import org.broadleafcommerce.core.catalog.domain.CategoryImpl;
+import org.broadleafcommerce.core.catalog.domain.CategoryProductXref;
+import org.broadleafcommerce.core.catalog.domain.CategoryProductXrefImpl;
+import org.broadleafcommerce.core.catalog.domain.Product;
+import org.broadleafcommerce.core.catalog.domain.ProductImpl;
+import org.broadleafcommerce.core.catalog.domain.Sku;
+import org.broadleafcommerce.core.catalog.domain.SkuImpl;
+import org.broadleafcommerce.core.offer.service.OfferDataItemProvider;
+import org.broadleafcommerce.core.order.domain.DiscreteOrderItem;
+import org.broadleafcommerce.core.order.domain.DiscreteOrderItemImpl;
+import org.broadleafcommerce.core.order.domain.FulfillmentGroup;
+import org.broadleafcommerce.core.order.domain.FulfillmentGroupImpl;
+import org.broadleafcommerce.core.order.domain.FulfillmentGroupItem;
+import org.broadleafcommerce.core.order.domain.FulfillmentGroupItemImpl;
+import org.broadleafcommerce.core.order.domain.Order;
+import org.broadleafcommerce.core.order.domain.OrderImpl;
+import org.broadleafcommerce.core.order.domain.OrderItemPriceDetail;
+import org.broadleafcommerce.core.order.domain.OrderItemPriceDetailImpl;
+import org.broadleafcommerce.core.order.service.type.FulfillmentType;
+import org.broadleafcommerce.core.order.service.type.OrderItemType;
+import org.broadleafcommerce.profile.core.domain.Customer;
+import org.broadleafcommerce.profile.core.domain.CustomerImpl;
+
+/**
+ * Builds detached, in-memory orders of any size for the benchmarks. Items alternate between the "test1" and "test2"
+ * categories used by the offer rules of {@link OfferDataItemProvider}, and all of them ship in a single fulfillment group.
+ */
+public class OrderFixtures {
+
+    public static Order createOrder(int itemCount) {
+        Order order = new OrderImpl();
+        order.setId(OfferDataItemProvider.getOrderId());
+
+        Customer customer = new CustomerImpl();
+        customer.setEmailAddress("test@test.com");
+        customer.setFirstName("John");
+        customer.setLastName("Tester");
+        customer.setRegistered(true);
+        order.setCustomer(customer);
+        order.setEmailAddress("test@test.com");
+
+        FulfillmentGroup fulfillmentGroup = new FulfillmentGroupImpl();
+        fulfillmentGroup.setId(1L);
+        fulfillmentGroup.setOrder(order);
+        fulfillmentGroup.setPrimary(true);
+        fulfillmentGroup.setRetailShippingPrice(new Money(10D));
+        fulfillmentGroup.setShippingPrice(new Money(10D));
+        fulfillmentGroup.setType(FulfillmentType.PHYSICAL_SHIP);
+        order.getFulfillmentGroups().add(fulfillmentGroup);
+
+        Category[] categories = new Category[] { createCategory(1L, "test1"), createCategory(2L, "test2") };
+        double subTotal = 0D;
+        for (int i = 0; i < itemCount; i++) {
+            Category category = categories[i % categories.length];
+            double price = 10D + (i % 20);
+            int quantity = 1 + (i % 3);
+
+            Sku sku = new SkuImpl();
+            sku.setId(Long.valueOf(i + 1));
+            sku.setName("sku" + i);
+            sku.setDiscountable(true);
+            sku.setRetailPrice(new Money(price));
+
+            Product product = new ProductImpl();
+            product.setDefaultSku(sku);
+            CategoryProductXref xref = new CategoryProductXrefImpl();
+            xref.setProduct(product);
+            xref.setCategory(category);
+            category.getAllProductXrefs().add(xref);
+
+            DiscreteOrderItem orderItem = new DiscreteOrderItemImpl();
+            orderItem.setId(OfferDataItemProvider.getOrderItemId());
+            orderItem.setName("item" + i);
+            orderItem.setCategory(category);
+            orderItem.setProduct(product);
+            orderItem.setSku(sku);
+            orderItem.setOrder(order);
+            orderItem.setOrderItemType(OrderItemType.DISCRETE);
+            orderItem.setQuantity(quantity);
+            orderItem.setRetailPrice(new Money(price));
+            orderItem.setSalePrice(new Money(price));
+
+            OrderItemPriceDetail priceDetail = new OrderItemPriceDetailImpl();
+            priceDetail.setOrderItem(orderItem);
+            priceDetail.setQuantity(quantity);
+            orderItem.getOrderItemPriceDetails().add(priceDetail);
+            order.getOrderItems().add(orderItem);
+
+            FulfillmentGroupItem fulfillmentGroupItem = new FulfillmentGroupItemImpl();
+            fulfillmentGroupItem.setFulfillmentGroup(fulfillmentGroup);
+            fulfillmentGroupItem.setOrderItem(orderItem);
+            fulfillmentGroupItem.setQuantity(quantity);
+            fulfillmentGroup.getFulfillmentGroupItems().add(fulfillmentGroupItem);
+
+            subTotal += price * quantity;
+        }
+        order.setSubTotal(new Money(subTotal));
+        return order;
+    }
+
+    protected static Category createCategory(Long id, String name) {
+        Category category = new CategoryImpl();
+        category.setId(id);
+        category.setName(name);
+        return category;
+    }
+
+}
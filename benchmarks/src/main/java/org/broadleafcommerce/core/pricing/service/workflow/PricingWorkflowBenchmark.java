@@ -0,0 +1,102 @@
+/*
+ * #%L
+ * BroadleafCommerce Benchmarks
+ * %%
+ * Copyright (C) 2009 - 2016 Broadleaf Commerce
+ * %%
+ * Licensed under the Broadleaf Fair Use License Agreement, Version 1.0
+ * (the "Fair Use License" located  at http://license.broadleafcommerce.org/fair_use_license-1.0.txt)
+ * unless the restrictions on use therein are violated and require payment to Broadleaf in which case
+ * the Broadleaf End User License Agreement (EULA), Version 1.1
+ * (the "Commercial License" located at http://license.broadleafcommerce.org/commercial_license-1.1.txt)
+ * shall apply.
+ * 
+ * Alternatively, the Commercial License may be replaced with a mutually agreed upon license (the "Custom License")
+ * between you and Broadleaf Commerce. You may not use this file except in compliance with the applicable license.
+ * #L%
+ */
+package org.broadleafcommerce.core.pricing.service.workflow;
+
+import org.broadleafcommerce.core.order.OrderFixtures;
+import org.broadleafcommerce.core.order.domain.Order;
+import org.broadleafcommerce.core.workflow.Activity;
+import org.broadleafcommerce.core.workflow.DefaultErrorHandler;
+import org.broadleafcommerce.core.workflow.ProcessContext;
+import org.broadleafcommerce.core.workflow.SequenceProcessor;
+import org.broadleafcommerce.core.workflow.state.ActivityStateManagerImpl;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs the pricing workflow through a real {@link SequenceProcessor}, including the activity state manager bookkeeping,
+ * on orders of 1, 10 and 100 items. Only the activities that price the order in memory are wired in
+ * (item pricing, merchandise totals and order totals); offer, shipping and tax activities need their services and are
+ * covered by {@link org.broadleafcommerce.core.offer.service.OfferApplicationBenchmark} or left out.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class PricingWorkflowBenchmark {
+
+    @Param({ "1", "10", "100" })
+    public int itemCount;
+
+    protected AnnotationConfigApplicationContext context;
+    protected SequenceProcessor<Order, Order> workflow;
+    protected Order order;
+
+    @Setup(Level.Trial)
+    @SuppressWarnings({ "rawtypes", "unchecked" })
+    public void setUpWorkflow() {
+        context = new AnnotationConfigApplicationContext();
+        context.register(ActivityStateManagerImpl.class);
+        context.refresh();
+
+        List<Activity<ProcessContext<Order>>> activities = new ArrayList<Activity<ProcessContext<Order>>>();
+        activities.add((Activity) new FulfillmentItemPricingActivity());
+        activities.add((Activity) new FulfillmentGroupMerchandiseTotalActivity());
+        activities.add((Activity) new TotalActivity());
+
+        workflow = new SequenceProcessor<Order, Order>();
+        workflow.setBeanName("blPricingWorkflow");
+        workflow.setBeanFactory(context);
+        workflow.setProcessContextFactory(new PricingProcessContextFactory());
+        workflow.setDefaultErrorHandler(new DefaultErrorHandler());
+        workflow.setActivities(activities);
+    }
+
+    @Setup(Level.Invocation)
+    public void setUpOrder() {
+        order = OrderFixtures.createOrder(itemCount);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public ProcessContext<Order> executePricingWorkflow() throws Exception {
+        return workflow.doActivities(order);
+    }
+
+}
@@ -0,0 +1,118 @@
+/*
+ * #%L
+ * BroadleafCommerce Benchmarks
+ * %%
+ * Copyright (C) 2009 - 2016 Broadleaf Commerce
+ * %%
+ * Licensed under the Broadleaf Fair Use License Agreement, Version 1.0
+ * (the "Fair Use License" located  at http://license.broadleafcommerce.org/fair_use_license-1.0.txt)
+ * unless the restrictions on use therein are violated and require payment to Broadleaf in which case
+ * the Broadleaf End User License Agreement (EULA), Version 1.1
+ * (the "Commercial License" located at http://license.broadleafcommerce.org/commercial_license-1.1.txt)
+ * shall apply.
+ * 
+ * Alternatively, the Commercial License may be replaced with a mutually agreed upon license (the "Custom License")
+ * between you and Broadleaf Commerce. You may not use this file except in compliance with the applicable license.
+ * #L%
+ */
+package org.broadleafcommerce.core.search.service.solr;
+
+import org.apache.solr.common.SolrInputDocument;
+import org.broadleafcommerce.common.money.Money;
+import org.broadleafcommerce.core.catalog.domain.Product;
+import org.broadleafcommerce.core.catalog.domain.ProductImpl;
+import org.broadleafcommerce.core.catalog.domain.Sku;
+import org.broadleafcommerce.core.catalog.domain.SkuImpl;
+import org.broadleafcommerce.core.search.domain.Field;
+import org.broadleafcommerce.core.search.domain.FieldImpl;
+import org.broadleafcommerce.core.search.domain.IndexField;
+import org.broadleafcommerce.core.search.domain.IndexFieldImpl;
+import org.broadleafcommerce.core.search.domain.solr.FieldType;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Builds the Solr document fields for a product the way the indexer does for each indexable: for every index field
+ * and field type, resolve the Solr property name and read the property value reflectively through
+ * {@link SolrHelperServiceImpl}. The extension manager has no handlers registered, as in a default install.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class SolrDocumentBenchmark {
+
+    protected SolrHelperServiceImpl helper;
+    protected List<IndexField> indexFields;
+    protected List<FieldType[]> fieldTypes;
+    protected Product product;
+
+    @Setup
+    public void setUp() {
+        helper = new SolrHelperServiceImpl();
+        helper.searchExtensionManager = new SolrSearchServiceExtensionManager();
+
+        indexFields = new ArrayList<IndexField>();
+        fieldTypes = new ArrayList<FieldType[]>();
+        addIndexField("name", "name", FieldType.STRING, FieldType.TEXT);
+        addIndexField("manufacturer", "mfg", FieldType.STRING, FieldType.TEXT);
+        addIndexField("model", "model", FieldType.STRING);
+        addIndexField("defaultSku.description", "desc", FieldType.TEXT);
+        addIndexField("defaultSku.retailPrice", "price", FieldType.PRICE);
+        addIndexField("defaultSku.salePrice", "salePrice", FieldType.PRICE);
+
+        Sku sku = new SkuImpl();
+        sku.setId(1L);
+        sku.setName("Hoppin' Hot Sauce");
+        sku.setDescription("As you may have guessed, this hot sauce has a little extra kick");
+        sku.setRetailPrice(new Money(4.99D));
+        sku.setSalePrice(new Money(3.99D));
+        product = new ProductImpl();
+        product.setId(1L);
+        product.setDefaultSku(sku);
+        product.setManufacturer("Salsa Express");
+        product.setModel("Hot Sauce");
+    }
+
+    protected void addIndexField(String propertyName, String abbreviation, FieldType... types) {
+        Field field = new FieldImpl();
+        field.setPropertyName(propertyName);
+        field.setAbbreviation(abbreviation);
+        IndexField indexField = new IndexFieldImpl();
+        indexField.setField(field);
+        indexFields.add(indexField);
+        fieldTypes.add(types);
+    }
+
+    @Benchmark
+    public SolrInputDocument buildDocument() throws Exception {
+        SolrInputDocument document = new SolrInputDocument();
+        document.addField(helper.getIdFieldName(), "product" + product.getId());
+        for (int i = 0; i < indexFields.size(); i++) {
+            IndexField indexField = indexFields.get(i);
+            Object value = helper.getPropertyValue(product, indexField.getField());
+            if (value == null) {
+                continue;
+            }
+            for (FieldType fieldType : fieldTypes.get(i)) {
+                document.addField(helper.getPropertyNameForIndexField(indexField, fieldType), value);
+            }
+        }
+        return document;
+    }
+
+}
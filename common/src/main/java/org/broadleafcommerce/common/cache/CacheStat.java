@@ -19,6 +19,7 @@ package org.broadleafcommerce.common.cache;
 
 import java.math.BigDecimal;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
 
 import org.broadleafcommerce.common.time.SystemTime;
 
@@ -27,32 +28,73 @@ import org.broadleafcommerce.common.time.SystemTime;
  */
 public class CacheStat {
 
-    protected AtomicLong requestCount = new AtomicLong(0L);
-    protected AtomicLong cacheHitCount = new AtomicLong(0L);
-    protected Long lastLogTime = SystemTime.asMillis(true);
+    protected LongAdder requestCount = new LongAdder();
+    protected LongAdder cacheHitCount = new LongAdder();
+    protected LongAdder evictionCount = new LongAdder();
+    protected LatencyHistogram loadTimes = new LatencyHistogram();
+    protected AtomicLong lastLogTime = new AtomicLong(SystemTime.asMillis(true));
 
     public Long getCacheHitCount() {
-        return cacheHitCount.longValue();
+        return cacheHitCount.sum();
     }
 
     public Long getLastLogTime() {
-        return lastLogTime;
+        return lastLogTime.get();
     }
 
-    public synchronized void setLastLogTime(Long lastLogTime) {
-        this.lastLogTime = lastLogTime;
+    public void setLastLogTime(Long lastLogTime) {
+        this.lastLogTime.set(lastLogTime);
+    }
+
+    /**
+     * Moves the last log time to now if at least logResolution milliseconds have passed since it was last moved. Only
+     * one of several concurrent callers will succeed.
+     *
+     * @return whether or not the caller should log these statistics
+     */
+    public boolean advanceLastLogTime(long now, long logResolution) {
+        long last = lastLogTime.get();
+        return last + logResolution < now && lastLogTime.compareAndSet(last, now);
     }
 
     public Long getRequestCount() {
-        return requestCount.longValue();
+        return requestCount.sum();
     }
 
     public void incrementRequest() {
-        requestCount.incrementAndGet();
+        requestCount.increment();
     }
 
     public void incrementHit() {
-        cacheHitCount.incrementAndGet();
+        cacheHitCount.increment();
+    }
+
+    public Long getEvictionCount() {
+        return evictionCount.sum();
+    }
+
+    public void addEvictions(long count) {
+        evictionCount.add(count);
+    }
+
+    /**
+     * @return the times it took to load values that were not found in the cache
+     */
+    public LatencyHistogram getLoadTimes() {
+        return loadTimes;
+    }
+
+    public void addLoadTime(long nanos) {
+        loadTimes.record(nanos);
+    }
+
+    /**
+     * @return the ratio of requests that were hits, between 0 and 1, or 0 if there were no requests
+     */
+    public double getHitRatio() {
+        long hits = getCacheHitCount();
+        long requests = getRequestCount();
+        return requests == 0 ? 0D : (double) hits / requests;
     }
 
     public BigDecimal getHitRate() {
@@ -29,5 +29,6 @@ public enum CacheStatType {
     SKU_URL_MISSING_CACHE_HIT_RATE,
     TRANSLATION_CACHE_HIT_RATE,
     RESOURCE_BUNDLING_CACHE_HIT_RATE,
-    GENERATED_RESOURCE_CACHE_HIT_RATE
+    GENERATED_RESOURCE_CACHE_HIT_RATE,
+    TRANSLATION_PREFETCH_HIT_RATE
 }
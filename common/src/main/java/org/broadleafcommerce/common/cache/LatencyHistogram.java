@@ -0,0 +1,147 @@
+/*
+ * #%L
+ * BroadleafCommerce Common Libraries
+ * %%
+ * Copyright (C) 2009 - 2016 Broadleaf Commerce
+ * %%
+ * Licensed under the Broadleaf Fair Use License Agreement, Version 1.0
+ * (the "Fair Use License" located  at http://license.broadleafcommerce.org/fair_use_license-1.0.txt)
+ * unless the restrictions on use therein are violated and require payment to Broadleaf in which case
+ * the Broadleaf End User License Agreement (EULA), Version 1.1
+ * (the "Commercial License" located at http://license.broadleafcommerce.org/commercial_license-1.1.txt)
+ * shall apply.
+ * 
+ * Alternatively, the Commercial License may be replaced with a mutually agreed upon license (the "Custom License")
+ * between you and Broadleaf Commerce. You may not use this file except in compliance with the applicable license.
+ * #L%
+ */
+package org.broadleafcommerce.common.cache;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free histogram of latencies, recorded in nanoseconds. Values are counted in log-linear buckets: every power of
+ * two is split into {@link #SUB_BUCKET_COUNT} equally sized buckets, so a reported percentile is never more than about
+ * 6% above the value that was actually recorded, regardless of magnitude. The memory used is fixed and recording is a
+ * couple of atomic increments, which makes it cheap enough to keep for every cache.
+ */
+public class LatencyHistogram {
+
+    protected static final int SUB_BUCKET_BITS = 4;
+    protected static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+    protected static final int BUCKET_COUNT = SUB_BUCKET_COUNT + (63 - SUB_BUCKET_BITS) * SUB_BUCKET_COUNT;
+
+    protected final AtomicLongArray counts = new AtomicLongArray(BUCKET_COUNT);
+    protected final LongAdder count = new LongAdder();
+    protected final LongAdder total = new LongAdder();
+    protected final AtomicLong max = new AtomicLong();
+
+    public void record(long nanos) {
+        long value = Math.max(0L, nanos);
+        counts.incrementAndGet(getBucketIndex(value));
+        count.increment();
+        total.add(value);
+        long currentMax = max.get();
+        while (value > currentMax && !max.compareAndSet(currentMax, value)) {
+            currentMax = max.get();
+        }
+    }
+
+    /**
+     * Adds everything recorded by the other histogram to this one
+     */
+    public void add(LatencyHistogram other) {
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            long bucketCount = other.counts.get(i);
+            if (bucketCount > 0) {
+                counts.addAndGet(i, bucketCount);
+            }
+        }
+        count.add(other.getCount());
+        total.add(other.getTotal());
+        long otherMax = other.getMax();
+        long currentMax = max.get();
+        while (otherMax > currentMax && !max.compareAndSet(currentMax, otherMax)) {
+            currentMax = max.get();
+        }
+    }
+
+    /**
+     * @return the number of recorded values
+     */
+    public long getCount() {
+        return count.sum();
+    }
+
+    /**
+     * @return the sum of all recorded values, in nanoseconds
+     */
+    public long getTotal() {
+        return total.sum();
+    }
+
+    /**
+     * @return the largest recorded value, in nanoseconds
+     */
+    public long getMax() {
+        return max.get();
+    }
+
+    /**
+     * @return the mean of the recorded values, in nanoseconds, or 0 if nothing has been recorded
+     */
+    public double getMean() {
+        long count = getCount();
+        return count == 0 ? 0D : (double) getTotal() / count;
+    }
+
+    /**
+     * @param percentile the percentile, between 0 and 100
+     * @return the highest value, in nanoseconds, that is equivalent to the value at the given percentile, or 0 if
+     * nothing has been recorded
+     */
+    public long getValueAtPercentile(double percentile) {
+        long[] snapshot = new long[BUCKET_COUNT];
+        long recorded = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            snapshot[i] = counts.get(i);
+            recorded += snapshot[i];
+        }
+        if (recorded == 0) {
+            return 0L;
+        }
+        double boundedPercentile = Math.min(100D, Math.max(0D, percentile));
+        long target = Math.max(1L, (long) Math.ceil(boundedPercentile / 100D * recorded));
+        long cumulative = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            cumulative += snapshot[i];
+            if (cumulative >= target) {
+                return Math.min(getHighestEquivalentValue(i), getMax());
+            }
+        }
+        return getMax();
+    }
+
+    protected static int getBucketIndex(long value) {
+        if (value < SUB_BUCKET_COUNT) {
+            return (int) value;
+        }
+        int magnitude = 63 - Long.numberOfLeadingZeros(value);
+        int shift = magnitude - SUB_BUCKET_BITS;
+        int subBucket = (int) (value >>> shift) - SUB_BUCKET_COUNT;
+        return SUB_BUCKET_COUNT + shift * SUB_BUCKET_COUNT + subBucket;
+    }
+
+    protected static long getHighestEquivalentValue(int index) {
+        if (index < SUB_BUCKET_COUNT) {
+            return index;
+        }
+        int shift = (index - SUB_BUCKET_COUNT) / SUB_BUCKET_COUNT;
+        long subBucket = (index - SUB_BUCKET_COUNT) % SUB_BUCKET_COUNT + SUB_BUCKET_COUNT;
+        long upper = ((subBucket + 1) << shift) - 1;
+        return upper < 0 ? Long.MAX_VALUE : upper;
+    }
+
+}
@@ -0,0 +1,66 @@
+/*
+ * #%L
+ * BroadleafCommerce Common Libraries
+ * %%
+ * Copyright (C) 2009 - 2016 Broadleaf Commerce
+ * %%
+ * Licensed under the Broadleaf Fair Use License Agreement, Version 1.0
+ * (the "Fair Use License" located  at http://license.broadleafcommerce.org/fair_use_license-1.0.txt)
+ * unless the restrictions on use therein are violated and require payment to Broadleaf in which case
+ * the Broadleaf End User License Agreement (EULA), Version 1.1
+ * (the "Commercial License" located at http://license.broadleafcommerce.org/commercial_license-1.1.txt)
+ * shall apply.
+ * 
+ * Alternatively, the Commercial License may be replaced with a mutually agreed upon license (the "Custom License")
+ * between you and Broadleaf Commerce. You may not use this file except in compliance with the applicable license.
+ * #L%
+ */
+package org.broadleafcommerce.common.cache;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A {@link LatencyHistogram} that only reflects recent values. Values are recorded into the current window, and every
+ * {@code windowSeconds} the current window becomes the previous one and the window before that is dropped. A
+ * {@link #getSnapshot() snapshot} covers the previous and the current window, so it always spans between one and two
+ * windows worth of values.
+ */
+public class RollingLatencyHistogram {
+
+    protected final long windowNanos;
+    protected final AtomicLong windowStart;
+    protected volatile LatencyHistogram current = new LatencyHistogram();
+    protected volatile LatencyHistogram previous = new LatencyHistogram();
+
+    public RollingLatencyHistogram(long windowSeconds) {
+        this.windowNanos = TimeUnit.SECONDS.toNanos(Math.max(1L, windowSeconds));
+        this.windowStart = new AtomicLong(System.nanoTime());
+    }
+
+    public void record(long value) {
+        rotate(System.nanoTime());
+        current.record(value);
+    }
+
+    /**
+     * @return a histogram of the values recorded in the previous and the current window
+     */
+    public LatencyHistogram getSnapshot() {
+        rotate(System.nanoTime());
+        LatencyHistogram snapshot = new LatencyHistogram();
+        snapshot.add(previous);
+        snapshot.add(current);
+        return snapshot;
+    }
+
+    protected void rotate(long now) {
+        long start = windowStart.get();
+        long elapsed = now - start;
+        if (elapsed >= windowNanos && windowStart.compareAndSet(start, now)) {
+            previous = elapsed >= 2 * windowNanos ? new LatencyHistogram() : current;
+            current = new LatencyHistogram();
+        }
+    }
+
+}
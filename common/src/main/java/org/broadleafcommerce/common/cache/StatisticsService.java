@@ -17,12 +17,29 @@
  */
 package org.broadleafcommerce.common.cache;
 
+import java.util.Map;
+
 /**
  * @author Jeff Fischer
  */
 public interface StatisticsService {
     void addCacheStat(String key, boolean isHit);
 
+    /**
+     * Records how long it took to load a value that was not found in the cache identified by the key
+     */
+    void addCacheLoadTime(String key, long nanos);
+
+    /**
+     * Records items that were explicitly removed from the cache identified by the key
+     */
+    void addCacheEvictions(String key, long count);
+
+    /**
+     * @return the statistics gathered so far, sorted by cache key
+     */
+    Map<String, CacheStat> getCacheStats();
+
     Long getLogResolution();
 
     void setLogResolution(Long logResolution);
@@ -27,11 +27,14 @@ import org.springframework.jmx.support.ObjectNameManager;
 import org.springframework.stereotype.Service;
 import java.math.BigDecimal;
 import java.util.Collections;
-import java.util.HashMap;
 import java.util.Iterator;
 import java.util.Map;
+import java.util.SortedMap;
 import java.util.SortedSet;
+import java.util.TreeMap;
 import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import javax.management.Attribute;
 import javax.management.AttributeList;
 import javax.management.AttributeNotFoundException;
@@ -60,30 +63,49 @@ public class StatisticsServiceImpl implements DynamicMBean, StatisticsService, S
 
     protected StatisticsServiceLogAdapter adapter;
 
-    protected Map<String, CacheStat> cacheStats = Collections.synchronizedMap(new HashMap<String, CacheStat>());
+    protected ConcurrentMap<String, CacheStat> cacheStats = new ConcurrentHashMap<String, CacheStat>();
 
     @Override
     public void addCacheStat(String key, boolean isHit) {
         CacheStat myStat = getCacheStat(key);
+        myStat.incrementRequest();
         if (isHit) {
             myStat.incrementHit();
         }
-        myStat.incrementRequest();
-        if (myStat.getLastLogTime() + logResolution < SystemTime.asMillis()) {
-            myStat.setLastLogTime(SystemTime.asMillis());
+        if (LOG.isInfoEnabled() && myStat.advanceLastLogTime(SystemTime.asMillis(), logResolution)) {
             BigDecimal percentage = myStat.getHitRate();
-            if (LOG.isInfoEnabled()) {
-                LOG.info("Cache hit percentage for " + key + " is: " + percentage.toString() + "%");
-            }
+            LOG.info("Cache hit percentage for " + key + " is: " + percentage.toString() + "%");
+        }
+    }
+
+    @Override
+    public void addCacheLoadTime(String key, long nanos) {
+        getCacheStat(key).addLoadTime(nanos);
+    }
+
+    @Override
+    public void addCacheEvictions(String key, long count) {
+        if (count > 0) {
+            getCacheStat(key).addEvictions(count);
         }
     }
 
+    @Override
+    public Map<String, CacheStat> getCacheStats() {
+        SortedMap<String, CacheStat> stats = new TreeMap<String, CacheStat>(cacheStats);
+        return Collections.unmodifiableSortedMap(stats);
+    }
+
     protected CacheStat getCacheStat(String key) {
-        if (!cacheStats.containsKey(key)) {
-            CacheStat stat = new CacheStat();
-            cacheStats.put(key, stat);
+        CacheStat stat = cacheStats.get(key);
+        if (stat == null) {
+            CacheStat newStat = new CacheStat();
+            stat = cacheStats.putIfAbsent(key, newStat);
+            if (stat == null) {
+                stat = newStat;
+            }
         }
-        return cacheStats.get(key);
+        return stat;
     }
 
     @Override
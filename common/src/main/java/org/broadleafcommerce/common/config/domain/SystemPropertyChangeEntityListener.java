@@ -0,0 +1,76 @@
+/*
+ * #%L
+ * BroadleafCommerce Common Libraries
+ * %%
+ * Copyright (C) 2009 - 2016 Broadleaf Commerce
+ * %%
+ * Licensed under the Broadleaf Fair Use License Agreement, Version 1.0
+ * (the "Fair Use License" located  at http://license.broadleafcommerce.org/fair_use_license-1.0.txt)
+ * unless the restrictions on use therein are violated and require payment to Broadleaf in which case
+ * the Broadleaf End User License Agreement (EULA), Version 1.1
+ * (the "Commercial License" located at http://license.broadleafcommerce.org/commercial_license-1.1.txt)
+ * shall apply.
+ * 
+ * Alternatively, the Commercial License may be replaced with a mutually agreed upon license (the "Custom License")
+ * between you and Broadleaf Commerce. You may not use this file except in compliance with the applicable license.
+ * #L%
+ */
+package org.broadleafcommerce.common.config.domain;
+
+import org.broadleafcommerce.common.config.service.SystemPropertiesService;
+import org.broadleafcommerce.common.config.service.SystemPropertyChangeNotifier;
+import org.broadleafcommerce.common.extensibility.jpa.SiteDiscriminator;
+import org.broadleafcommerce.common.util.ApplicationContextHolder;
+import org.springframework.context.ApplicationContext;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.persistence.PrePersist;
+import javax.persistence.PreRemove;
+import javax.persistence.PreUpdate;
+
+/**
+ * Evicts a {@link SystemProperty} from the {@link SystemPropertiesService} caches as soon as it is saved or removed, so
+ * that the rest of the transaction sees the new value, and again once the transaction commits. After the commit the
+ * change is also handed to the {@link SystemPropertyChangeNotifier} so that other nodes can evict it as well.
+ *
+ * @see SystemPropertyChangeNotifier
+ */
+public class SystemPropertyChangeEntityListener {
+
+    @PrePersist
+    @PreUpdate
+    @PreRemove
+    public void systemPropertyChanged(final Object entity) {
+        final ApplicationContext context = ApplicationContextHolder.getApplicationContext();
+        if (context == null || !(entity instanceof SystemProperty)) {
+            return;
+        }
+        final SystemProperty systemProperty = (SystemProperty) entity;
+        context.getBean("blSystemPropertiesService", SystemPropertiesService.class).removeFromCache(systemProperty);
+
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+                @Override
+                public void afterCompletion(int status) {
+                    if (status == TransactionSynchronization.STATUS_COMMITTED) {
+                        notifyChanged(context, systemProperty);
+                    }
+                }
+            });
+        } else {
+            notifyChanged(context, systemProperty);
+        }
+    }
+
+    protected void notifyChanged(ApplicationContext context, SystemProperty systemProperty) {
+        context.getBean("blSystemPropertiesService", SystemPropertiesService.class).removeFromCache(systemProperty);
+        Long siteId = null;
+        if (systemProperty instanceof SiteDiscriminator) {
+            siteId = ((SiteDiscriminator) systemProperty).getSiteDiscriminator();
+        }
+        context.getBean("blSystemPropertyChangeNotifier", SystemPropertyChangeNotifier.class).notifyChanged(systemProperty.getName(), siteId);
+    }
+
+}
@@ -35,6 +35,7 @@ import org.hibernate.annotations.Parameter;
 
 import javax.persistence.Column;
 import javax.persistence.Entity;
+import javax.persistence.EntityListeners;
 import javax.persistence.GeneratedValue;
 import javax.persistence.Id;
 import javax.persistence.Inheritance;
@@ -48,6 +49,7 @@ import javax.persistence.Table;
  * Date: 6/20/12
  */
 @Entity
+@EntityListeners(value = { SystemPropertyChangeEntityListener.class })
 @Table(name="BLC_SYSTEM_PROPERTY")
 @Inheritance(strategy = InheritanceType.JOINED)
 @Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region="blStandardElements")
@@ -0,0 +1,46 @@
+/*
+ * #%L
+ * BroadleafCommerce Common Libraries
+ * %%
+ * Copyright (C) 2009 - 2016 Broadleaf Commerce
+ * %%
+ * Licensed under the Broadleaf Fair Use License Agreement, Version 1.0
+ * (the "Fair Use License" located  at http://license.broadleafcommerce.org/fair_use_license-1.0.txt)
+ * unless the restrictions on use therein are violated and require payment to Broadleaf in which case
+ * the Broadleaf End User License Agreement (EULA), Version 1.1
+ * (the "Commercial License" located at http://license.broadleafcommerce.org/commercial_license-1.1.txt)
+ * shall apply.
+ * 
+ * Alternatively, the Commercial License may be replaced with a mutually agreed upon license (the "Custom License")
+ * between you and Broadleaf Commerce. You may not use this file except in compliance with the applicable license.
+ * #L%
+ */
+package org.broadleafcommerce.common.config.service;
+
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Default {@link SystemPropertyChangeNotifier} that delivers changes to the listeners of this JVM only. Other nodes
+ * fall back to the expiration configured for the "blSystemPropertyElements" cache.
+ */
+@Component("blSystemPropertyChangeNotifier")
+public class LocalSystemPropertyChangeNotifier implements SystemPropertyChangeNotifier {
+
+    protected List<SystemPropertyChangeListener> listeners = new CopyOnWriteArrayList<SystemPropertyChangeListener>();
+
+    @Override
+    public void addListener(SystemPropertyChangeListener listener) {
+        listeners.add(listener);
+    }
+
+    @Override
+    public void notifyChanged(String name, Long siteId) {
+        for (SystemPropertyChangeListener listener : listeners) {
+            listener.systemPropertyChanged(name, siteId);
+        }
+    }
+
+}
@@ -0,0 +1,83 @@
+/*
+ * #%L
+ * BroadleafCommerce Common Libraries
+ * %%
+ * Copyright (C) 2009 - 2016 Broadleaf Commerce
+ * %%
+ * Licensed under the Broadleaf Fair Use License Agreement, Version 1.0
+ * (the "Fair Use License" located  at http://license.broadleafcommerce.org/fair_use_license-1.0.txt)
+ * unless the restrictions on use therein are violated and require payment to Broadleaf in which case
+ * the Broadleaf End User License Agreement (EULA), Version 1.1
+ * (the "Commercial License" located at http://license.broadleafcommerce.org/commercial_license-1.1.txt)
+ * shall apply.
+ * 
+ * Alternatively, the Commercial License may be replaced with a mutually agreed upon license (the "Custom License")
+ * between you and Broadleaf Commerce. You may not use this file except in compliance with the applicable license.
+ * #L%
+ */
+package org.broadleafcommerce.common.config.service;
+
+import org.apache.commons.lang3.StringUtils;
+
+/**
+ * The resolved value of a system property as held by a {@link SystemPropertySnapshot}. The int, long and boolean forms
+ * are parsed the first time they are asked for and reused afterwards.
+ */
+public class ResolvedSystemProperty {
+
+    public static final ResolvedSystemProperty NULL = new ResolvedSystemProperty(null);
+
+    protected final String value;
+    protected final boolean blank;
+
+    protected int intValue;
+    protected volatile boolean intParsed;
+    protected long longValue;
+    protected volatile boolean longParsed;
+    protected boolean booleanValue;
+    protected volatile boolean booleanParsed;
+
+    public ResolvedSystemProperty(String value) {
+        this.value = value;
+        this.blank = StringUtils.isBlank(value);
+    }
+
+    public String getValue() {
+        return value;
+    }
+
+    public boolean isBlank() {
+        return blank;
+    }
+
+    /**
+     * @throws NumberFormatException if the value is not an int, same as {@link Integer#valueOf(String)}
+     */
+    public int getIntValue() {
+        if (!intParsed) {
+            intValue = Integer.valueOf(value).intValue();
+            intParsed = true;
+        }
+        return intValue;
+    }
+
+    /**
+     * @throws NumberFormatException if the value is not a long, same as {@link Long#valueOf(String)}
+     */
+    public long getLongValue() {
+        if (!longParsed) {
+            longValue = Long.valueOf(value).longValue();
+            longParsed = true;
+        }
+        return longValue;
+    }
+
+    public boolean getBooleanValue() {
+        if (!booleanParsed) {
+            booleanValue = Boolean.valueOf(value).booleanValue();
+            booleanParsed = true;
+        }
+        return booleanValue;
+    }
+
+}
@@ -20,6 +20,7 @@ package org.broadleafcommerce.common.config.service;
 import net.sf.ehcache.Cache;
 import net.sf.ehcache.CacheManager;
 import net.sf.ehcache.Element;
+import net.sf.ehcache.config.CacheConfiguration;
 
 import org.apache.commons.lang3.BooleanUtils;
 import org.apache.commons.lang3.StringUtils;
@@ -35,16 +36,22 @@ import org.springframework.beans.factory.annotation.Value;
 import org.springframework.core.env.Environment;
 import org.springframework.stereotype.Service;
 
+import javax.annotation.PostConstruct;
 import javax.annotation.Resource;
 
 /**
  * Service that retrieves property settings from the database.   If not set in
  * the DB then returns the value from property files.
+ * <p>
+ * Resolved values are kept in two levels. The first is a {@link SystemPropertySnapshot} held in a volatile field and
+ * read without building a cache key; the second is the "blSystemPropertyElements" cache. Saving or removing a
+ * {@link SystemProperty} replaces the snapshot and is announced to other nodes through the
+ * {@link SystemPropertyChangeNotifier}. The snapshot expires no later than the entries of the second level cache.
  *
  * @author bpolster
  */
 @Service("blSystemPropertiesService")
-public class SystemPropertiesServiceImpl implements SystemPropertiesService{
+public class SystemPropertiesServiceImpl implements SystemPropertiesService, SystemPropertyChangeListener {
 
     public static final String PROPERTY_SOURCE_NAME = "systemPropertySource";
     protected static final String ENV_CACHE_PREFIX = "ORIGIN_FROM_ENV";
@@ -65,35 +72,109 @@ public class SystemPropertiesServiceImpl implements SystemPropertiesService{
     @Resource(name = "blSystemPropertyServiceExtensionManager")
     protected SystemPropertyServiceExtensionManager extensionManager;
 
+    @Resource(name = "blSystemPropertyChangeNotifier")
+    protected SystemPropertyChangeNotifier changeNotifier;
+
     @Value("${system.property.cache.timeout}")
     protected int systemPropertyCacheTimeout;
 
     @Autowired
     protected Environment env;
 
+    protected volatile SystemPropertySnapshot snapshot;
+
+    @PostConstruct
+    public void init() {
+        if (changeNotifier != null) {
+            changeNotifier.addListener(this);
+        }
+    }
+
     @Override
     public String resolveSystemProperty(String name, String defaultValue) {
-        String result = resolveSystemProperty(name);
-        if (StringUtils.isBlank(result)) {
+        ResolvedSystemProperty property = resolveProperty(name);
+        if (property.isBlank()) {
             return defaultValue;
         }
-        return result;
+        return property.getValue();
     }
 
     @Override
     public String resolveSystemProperty(String name) {
-        if (extensionManager != null) {
+        return resolveProperty(name).getValue();
+    }
+
+    /**
+     * Resolves the property from the current {@link SystemPropertySnapshot}, filling it in from
+     * {@link #lookupSystemProperty(String, boolean)} on a miss. Never returns null.
+     */
+    protected ResolvedSystemProperty resolveProperty(String name) {
+        if (extensionManager != null && !extensionManager.getHandlers().isEmpty()) {
             ExtensionResultHolder holder = new ExtensionResultHolder();
             extensionManager.getProxy().resolveProperty(name, holder);
             if (holder.getResult() != null) {
-                return holder.getResult().toString();
+                return new ResolvedSystemProperty(holder.getResult().toString());
             }
         }
 
-        String result;
+        BroadleafRequestContext brc = BroadleafRequestContext.getBroadleafRequestContext();
         // We don't want to utilize this cache for sandboxes
-        if (BroadleafRequestContext.getBroadleafRequestContext() == null
-            || BroadleafRequestContext.getBroadleafRequestContext().getSandBox() == null) {
+        if (brc != null && brc.getSandBox() != null) {
+            return toResolvedProperty(lookupSystemProperty(name, false));
+        }
+
+        Long siteId = null;
+        if (brc != null && brc.getSite() != null) {
+            siteId = brc.getSite().getId();
+        }
+        boolean fromEnvironment = BooleanUtils.isTrue(originatedFromEnvironment.get());
+        SystemPropertySnapshot current = getSnapshot();
+        ResolvedSystemProperty property = current.get(name, siteId, fromEnvironment);
+        if (property == null) {
+            property = toResolvedProperty(lookupSystemProperty(name, true));
+            current.put(name, siteId, fromEnvironment, property);
+        }
+        return property;
+    }
+
+    protected ResolvedSystemProperty toResolvedProperty(String value) {
+        return value == null ? ResolvedSystemProperty.NULL : new ResolvedSystemProperty(value);
+    }
+
+    protected SystemPropertySnapshot getSnapshot() {
+        SystemPropertySnapshot current = snapshot;
+        if (current == null || current.isExpired()) {
+            current = new SystemPropertySnapshot(getSnapshotTimeToLiveMillis());
+            snapshot = current;
+        }
+        return current;
+    }
+
+    /**
+     * Keeps the snapshot from outliving the entries of the "blSystemPropertyElements" cache, which is what lets other
+     * nodes pick up changes when no clustered {@link SystemPropertyChangeNotifier} is configured.
+     */
+    protected long getSnapshotTimeToLiveMillis() {
+        if (systemPropertyCacheTimeout >= 0) {
+            return systemPropertyCacheTimeout * 1000L;
+        }
+        CacheConfiguration config = getSystemPropertyCache().getCacheConfiguration();
+        if (config.isEternal() || config.getTimeToLiveSeconds() <= 0) {
+            return -1L;
+        }
+        return config.getTimeToLiveSeconds() * 1000L;
+    }
+
+    /**
+     * Resolves the property from the second level cache, the database and finally the Spring Environment
+     *
+     * @param name the property name
+     * @param useCache whether a value may be read from the second level cache
+     * @return the value, or null if it is not set anywhere
+     */
+    protected String lookupSystemProperty(String name, boolean useCache) {
+        String result;
+        if (useCache) {
             result = getPropertyFromCache(name);
         } else {
             result = null;
@@ -220,6 +301,16 @@ public class SystemPropertiesServiceImpl implements SystemPropertiesService{
         return systemPropertiesDao.readById(id);
     }
 
+    @Override
+    public void systemPropertyChanged(String name, Long siteId) {
+        SystemProperty systemProperty = systemPropertiesDao.createNewSystemProperty();
+        systemProperty.setName(name);
+        if (siteId != null && systemProperty instanceof SiteDiscriminator) {
+            ((SiteDiscriminator) systemProperty).setSiteDiscriminator(siteId);
+        }
+        removeFromCache(systemProperty);
+    }
+
     @Override
     public void removeFromCache(SystemProperty systemProperty) {
         //Could have come from a cache invalidation service that does not
@@ -234,42 +325,43 @@ public class SystemPropertiesServiceImpl implements SystemPropertiesService{
         getSystemPropertyCache().remove(key);
 
         systemPropertiesDao.removeFromCache(systemProperty);
+
+        // Drop the snapshot last. Clearing it first would let a concurrent read refill it from
+        // cache entries that had not been evicted yet.
+        snapshot = null;
     }
 
     @Override
     public int resolveIntSystemProperty(String name) {
-        String systemProperty = resolveSystemProperty(name, "0");
-        return Integer.valueOf(systemProperty).intValue();
+        return resolveIntSystemProperty(name, 0);
     }
 
     @Override
     public int resolveIntSystemProperty(String name, int defaultValue) {
-        String systemProperty = resolveSystemProperty(name, Integer.toString(defaultValue));
-        return Integer.valueOf(systemProperty).intValue();
+        ResolvedSystemProperty property = resolveProperty(name);
+        return property.isBlank() ? defaultValue : property.getIntValue();
     }
 
     @Override
     public boolean resolveBooleanSystemProperty(String name) {
-        String systemProperty = resolveSystemProperty(name, "false");
-        return Boolean.valueOf(systemProperty).booleanValue();
+        return resolveBooleanSystemProperty(name, false);
     }
 
     @Override
     public boolean resolveBooleanSystemProperty(String name, boolean defaultValue) {
-        String systemProperty = resolveSystemProperty(name, Boolean.toString(defaultValue));
-        return Boolean.valueOf(systemProperty).booleanValue();
+        ResolvedSystemProperty property = resolveProperty(name);
+        return property.isBlank() ? defaultValue : property.getBooleanValue();
     }
 
     @Override
     public long resolveLongSystemProperty(String name) {
-        String systemProperty = resolveSystemProperty(name, "0");
-        return Long.valueOf(systemProperty).longValue();
+        return resolveLongSystemProperty(name, 0L);
     }
 
     @Override
     public long resolveLongSystemProperty(String name, long defaultValue) {
-        String systemProperty = resolveSystemProperty(name, Long.toString(defaultValue));
-        return Long.valueOf(systemProperty).longValue();
+        ResolvedSystemProperty property = resolveProperty(name);
+        return property.isBlank() ? defaultValue : property.getLongValue();
     }
 
     @Override
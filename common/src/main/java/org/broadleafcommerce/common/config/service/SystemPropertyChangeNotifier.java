@@ -0,0 +1,46 @@
+/*
+ * #%L
+ * BroadleafCommerce Common Libraries
+ * %%
+ * Copyright (C) 2009 - 2016 Broadleaf Commerce
+ * %%
+ * Licensed under the Broadleaf Fair Use License Agreement, Version 1.0
+ * (the "Fair Use License" located  at http://license.broadleafcommerce.org/fair_use_license-1.0.txt)
+ * unless the restrictions on use therein are violated and require payment to Broadleaf in which case
+ * the Broadleaf End User License Agreement (EULA), Version 1.1
+ * (the "Commercial License" located at http://license.broadleafcommerce.org/commercial_license-1.1.txt)
+ * shall apply.
+ * 
+ * Alternatively, the Commercial License may be replaced with a mutually agreed upon license (the "Custom License")
+ * between you and Broadleaf Commerce. You may not use this file except in compliance with the applicable license.
+ * #L%
+ */
+package org.broadleafcommerce.common.config.service;
+
+/**
+ * Tells the {@link SystemPropertiesService} of every node that a {@link org.broadleafcommerce.common.config.domain.SystemProperty}
+ * was saved or removed so that it can drop its cached values.
+ * <p>
+ * The default implementation, {@link LocalSystemPropertyChangeNotifier}, only reaches listeners in this JVM. Clustered
+ * deployments can override the "blSystemPropertyChangeNotifier" bean with one that relays changes through a message
+ * broker or similar and calls {@link SystemPropertyChangeListener#systemPropertyChanged(String, Long)} on every node
+ * when a change arrives.
+ */
+public interface SystemPropertyChangeNotifier {
+
+    /**
+     * Registers a listener that should be told about changes, including those made on other nodes
+     *
+     * @param listener
+     */
+    void addListener(SystemPropertyChangeListener listener);
+
+    /**
+     * Announces that the property with the given name changed
+     *
+     * @param name the property name
+     * @param siteId the site discriminator of the property, or null for a property shared by all sites
+     */
+    void notifyChanged(String name, Long siteId);
+
+}
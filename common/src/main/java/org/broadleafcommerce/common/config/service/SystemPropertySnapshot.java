@@ -0,0 +1,75 @@
+/*
+ * #%L
+ * BroadleafCommerce Common Libraries
+ * %%
+ * Copyright (C) 2009 - 2016 Broadleaf Commerce
+ * %%
+ * Licensed under the Broadleaf Fair Use License Agreement, Version 1.0
+ * (the "Fair Use License" located  at http://license.broadleafcommerce.org/fair_use_license-1.0.txt)
+ * unless the restrictions on use therein are violated and require payment to Broadleaf in which case
+ * the Broadleaf End User License Agreement (EULA), Version 1.1
+ * (the "Commercial License" located at http://license.broadleafcommerce.org/commercial_license-1.1.txt)
+ * shall apply.
+ * 
+ * Alternatively, the Commercial License may be replaced with a mutually agreed upon license (the "Custom License")
+ * between you and Broadleaf Commerce. You may not use this file except in compliance with the applicable license.
+ * #L%
+ */
+package org.broadleafcommerce.common.config.service;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * One generation of resolved system properties, partitioned by site and by whether the lookup originated from the
+ * Spring Environment so that a lookup never has to build a composite key.
+ * <p>
+ * A snapshot is never cleared. When a property changes, {@link SystemPropertiesServiceImpl} replaces the whole
+ * snapshot with an empty one; lookups that were resolving against the old snapshot store their result into the old
+ * instance, which is then simply dropped, so a value read before the change can never leak into the new generation.
+ */
+public class SystemPropertySnapshot {
+
+    protected final long expiresAt;
+    protected final ConcurrentMap<String, ResolvedSystemProperty> noSite = new ConcurrentHashMap<String, ResolvedSystemProperty>();
+    protected final ConcurrentMap<String, ResolvedSystemProperty> noSiteFromEnvironment = new ConcurrentHashMap<String, ResolvedSystemProperty>();
+    protected final ConcurrentMap<Long, ConcurrentMap<String, ResolvedSystemProperty>> bySite = new ConcurrentHashMap<Long, ConcurrentMap<String, ResolvedSystemProperty>>();
+    protected final ConcurrentMap<Long, ConcurrentMap<String, ResolvedSystemProperty>> bySiteFromEnvironment = new ConcurrentHashMap<Long, ConcurrentMap<String, ResolvedSystemProperty>>();
+
+    /**
+     * @param timeToLiveMillis how long this snapshot may serve values, or a negative number to never expire
+     */
+    public SystemPropertySnapshot(long timeToLiveMillis) {
+        this.expiresAt = timeToLiveMillis < 0 ? Long.MAX_VALUE : System.currentTimeMillis() + timeToLiveMillis;
+    }
+
+    public boolean isExpired() {
+        return expiresAt != Long.MAX_VALUE && System.currentTimeMillis() > expiresAt;
+    }
+
+    public ResolvedSystemProperty get(String name, Long siteId, boolean fromEnvironment) {
+        ConcurrentMap<String, ResolvedSystemProperty> properties = getProperties(siteId, fromEnvironment, false);
+        return properties == null ? null : properties.get(name);
+    }
+
+    public void put(String name, Long siteId, boolean fromEnvironment, ResolvedSystemProperty property) {
+        getProperties(siteId, fromEnvironment, true).put(name, property);
+    }
+
+    protected ConcurrentMap<String, ResolvedSystemProperty> getProperties(Long siteId, boolean fromEnvironment, boolean create) {
+        if (siteId == null) {
+            return fromEnvironment ? noSiteFromEnvironment : noSite;
+        }
+        ConcurrentMap<Long, ConcurrentMap<String, ResolvedSystemProperty>> sites = fromEnvironment ? bySiteFromEnvironment : bySite;
+        ConcurrentMap<String, ResolvedSystemProperty> properties = sites.get(siteId);
+        if (properties == null && create) {
+            ConcurrentMap<String, ResolvedSystemProperty> created = new ConcurrentHashMap<String, ResolvedSystemProperty>();
+            properties = sites.putIfAbsent(siteId, created);
+            if (properties == null) {
+                properties = created;
+            }
+        }
+        return properties;
+    }
+
+}
@@ -18,15 +18,24 @@
 package org.broadleafcommerce.common.extension;
 
 import org.apache.commons.beanutils.BeanComparator;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.beans.factory.annotation.Value;
 
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.InvocationHandler;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.lang.reflect.Proxy;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 /**
  * The ExtensionManager pattern is intended for out of box components to be extended by Broadleaf modules.
@@ -37,18 +46,35 @@ import java.util.List;
  * The default extension manager pattern loops through all handlers and examines their {@link ExtensionResultStatusType} 
  * to determine whether or not to continue with other handlers.
  * 
+ * When "extension.manager.optimized.dispatch" is true, calls through the proxy skip {@link Method#invoke(Object, Object...)}.
+ * Each extension point gets a {@link MethodHandle} and an immutable copy of {@link #getHandlers()}, so any
+ * {@link #sortHandlers()} override still decides the order. Managers that override {@link #getHandlers()} may return
+ * different handlers from call to call, so they keep the regular dispatch.
+ * Invocation counts and time spent are kept per extension point, see {@link #getExtensionPointStatistics()}.
+ * 
  * @author bpolster
  *
  * @param <T>
  */
 public abstract class ExtensionManager<T extends ExtensionHandler> implements InvocationHandler {
 
+    private static final Log LOG = LogFactory.getLog(ExtensionManager.class);
+    private static final Object[] NO_ARGS = new Object[0];
+
     protected boolean handlersSorted = false;
     protected static String LOCK_OBJECT = new String("EM_LOCK");
     
     protected T extensionHandler;
     protected List<T> handlers = new ArrayList<T>();
 
+    @Value("${extension.manager.optimized.dispatch:false}")
+    protected boolean optimizedDispatch = false;
+
+    protected final boolean handlersOverridden;
+    protected volatile HandlerSnapshot handlerSnapshot;
+    protected volatile int handlerModificationCount = 0;
+    protected final ConcurrentMap<Method, ExtensionPointStatistics> statistics = new ConcurrentHashMap<Method, ExtensionPointStatistics>();
+
     /**
      * Should take in a className that matches the ExtensionHandler interface being managed.
      * @param className
@@ -58,6 +84,7 @@ public abstract class ExtensionManager<T extends ExtensionHandler> implements In
         extensionHandler = (T) Proxy.newProxyInstance(_clazz.getClassLoader(),
                 new Class[] { _clazz },
                 this);
+        handlersOverridden = isGetHandlersOverridden();
     }
     
     public T getProxy() {
@@ -69,6 +96,7 @@ public abstract class ExtensionManager<T extends ExtensionHandler> implements In
      * subclass, consider using {@link #registerHandler(ExtensionHandler)} instead.
      * 
      * While the sorting of the handlers prior to their return is thread safe, adding directly to this list is not.
+     * Handlers added directly to this list are also not seen by optimized dispatch once it has been used.
      * 
      * @return a list of handlers sorted by their priority
      * @see {@link #registerHandler(ExtensionHandler)}
@@ -113,6 +141,7 @@ public abstract class ExtensionManager<T extends ExtensionHandler> implements In
             if (add) {
                 this.handlers.add(handler);
                 handlersSorted = false;
+                handlerModificationCount++;
             }
             
             return add;
@@ -120,7 +149,10 @@ public abstract class ExtensionManager<T extends ExtensionHandler> implements In
     }
 
     public void setHandlers(List<T> handlers) {
-        this.handlers = handlers;
+        synchronized (LOCK_OBJECT) {
+            this.handlers = handlers;
+            handlerModificationCount++;
+        }
     }
     
     /**
@@ -164,8 +196,26 @@ public abstract class ExtensionManager<T extends ExtensionHandler> implements In
         throw new UnsupportedOperationException();
     }
 
+    public boolean isOptimizedDispatch() {
+        return optimizedDispatch;
+    }
+
+    public void setOptimizedDispatch(boolean optimizedDispatch) {
+        this.optimizedDispatch = optimizedDispatch;
+    }
+
+    /**
+     * @return the invocation count and time spent for every extension point called so far with optimized dispatch
+     */
+    public List<ExtensionPointStatistics> getExtensionPointStatistics() {
+        return new ArrayList<ExtensionPointStatistics>(statistics.values());
+    }
+
     @Override
     public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+        if (isOptimizedDispatchApplicable() && method.getReturnType() == ExtensionResultStatusType.class) {
+            return invokeOptimized(method, args);
+        }
         boolean notHandled = true;
         for (ExtensionHandler handler : getHandlers()) {
             try {
@@ -189,6 +239,114 @@ public abstract class ExtensionManager<T extends ExtensionHandler> implements In
         }
     }
 
+    protected ExtensionResultStatusType invokeOptimized(Method method, Object[] args) throws Throwable {
+        MethodDispatch dispatch = getMethodDispatch(method);
+        Object[] params = args == null ? NO_ARGS : args;
+        boolean notHandled = true;
+        long start = System.nanoTime();
+        try {
+            for (ExtensionHandler handler : dispatch.handlers) {
+                if (handler.isEnabled()) {
+                    ExtensionResultStatusType result = dispatch.invoke(handler, params);
+                    if (!ExtensionResultStatusType.NOT_HANDLED.equals(result)) {
+                        notHandled = false;
+                    }
+                    if (!shouldContinue(result, handler, method, args)) {
+                        break;
+                    }
+                }
+            }
+        } finally {
+            dispatch.statistics.record(System.nanoTime() - start);
+        }
+        if (notHandled) {
+            return ExtensionResultStatusType.NOT_HANDLED;
+        } else {
+            return ExtensionResultStatusType.HANDLED;
+        }
+    }
+
+    /**
+     * Whether calls go through the cached handler snapshot. Managers that override {@link #getHandlers()} are left out,
+     * since the handlers they return may depend on the request (e.g. none in the admin).
+     */
+    protected boolean isOptimizedDispatchApplicable() {
+        return optimizedDispatch && !handlersOverridden;
+    }
+
+    protected boolean isGetHandlersOverridden() {
+        try {
+            return getClass().getMethod("getHandlers").getDeclaringClass() != ExtensionManager.class;
+        } catch (NoSuchMethodException e) {
+            return true;
+        }
+    }
+
+    /**
+     * Returns a copy of {@link #getHandlers()}, taking a new one whenever {@link #registerHandler(ExtensionHandler)}
+     * or {@link #setHandlers(List)} has been called since the last copy
+     */
+    protected HandlerSnapshot getHandlerSnapshot() {
+        HandlerSnapshot snapshot = handlerSnapshot;
+        if (snapshot == null || snapshot.modificationCount != handlerModificationCount) {
+            synchronized (LOCK_OBJECT) {
+                snapshot = handlerSnapshot;
+                if (snapshot == null || snapshot.modificationCount != handlerModificationCount) {
+                    int modificationCount = handlerModificationCount;
+                    List<T> sorted = getHandlers();
+                    snapshot = new HandlerSnapshot(modificationCount, sorted.toArray(new ExtensionHandler[sorted.size()]));
+                    handlerSnapshot = snapshot;
+                }
+            }
+        }
+        return snapshot;
+    }
+
+    protected MethodDispatch getMethodDispatch(Method method) {
+        HandlerSnapshot snapshot = getHandlerSnapshot();
+        MethodDispatch dispatch = snapshot.dispatches.get(method);
+        if (dispatch == null) {
+            dispatch = new MethodDispatch(method, snapshot.handlers, createInvoker(method), getStatistics(method));
+            MethodDispatch existing = snapshot.dispatches.putIfAbsent(method, dispatch);
+            if (existing != null) {
+                dispatch = existing;
+            }
+        }
+        return dispatch;
+    }
+
+    protected ExtensionPointStatistics getStatistics(Method method) {
+        ExtensionPointStatistics stats = statistics.get(method);
+        if (stats == null) {
+            ExtensionPointStatistics created = new ExtensionPointStatistics(method.getDeclaringClass().getSimpleName() + "." + method.getName());
+            stats = statistics.putIfAbsent(method, created);
+            if (stats == null) {
+                stats = created;
+            }
+        }
+        return stats;
+    }
+
+    /**
+     * Builds a handle that takes the handler and an argument array and returns the result as an Object, so that it can be
+     * called with {@link MethodHandle#invokeExact(Object...)}. Returns null if the method cannot be unreflected, in which
+     * case the call falls back to reflection.
+     */
+    protected MethodHandle createInvoker(Method method) {
+        try {
+            if (!method.isAccessible()) {
+                method.setAccessible(true);
+            }
+            int parameterCount = method.getParameterTypes().length;
+            return MethodHandles.lookup().unreflect(method)
+                    .asType(MethodType.genericMethodType(parameterCount + 1))
+                    .asSpreader(Object[].class, parameterCount);
+        } catch (Exception e) {
+            LOG.debug("Falling back to reflection for " + method, e);
+            return null;
+        }
+    }
+
     /**
      * Provides a mechanism for executing multiple extension handler touchpoints without utilizing reflection. This is a reasonable
      * alternative when the ExtensionManager is used in an operation that is very sensitive to the time cost involved in reflection
@@ -200,7 +358,13 @@ public abstract class ExtensionManager<T extends ExtensionHandler> implements In
      */
     protected ExtensionResultStatusType execute(ExtensionManagerOperation operation, Object... params) {
         boolean notHandled = true;
-        for (ExtensionHandler handler : getHandlers()) {
+        Iterable<? extends ExtensionHandler> handlers;
+        if (isOptimizedDispatchApplicable()) {
+            handlers = Arrays.asList(getHandlerSnapshot().handlers);
+        } else {
+            handlers = getHandlers();
+        }
+        for (ExtensionHandler handler : handlers) {
             if (handler.isEnabled()) {
                 ExtensionResultStatusType result = operation.execute(handler, params);
                 if (!ExtensionResultStatusType.NOT_HANDLED.equals(result)) {
@@ -217,4 +381,48 @@ public abstract class ExtensionManager<T extends ExtensionHandler> implements In
             return ExtensionResultStatusType.HANDLED;
         }
     }
+
+    /**
+     * An immutable, sorted copy of the registered handlers along with the per-method dispatch built from it
+     */
+    protected static class HandlerSnapshot {
+
+        protected final int modificationCount;
+        protected final ExtensionHandler[] handlers;
+        protected final ConcurrentMap<Method, MethodDispatch> dispatches = new ConcurrentHashMap<Method, MethodDispatch>();
+
+        protected HandlerSnapshot(int modificationCount, ExtensionHandler[] handlers) {
+            this.modificationCount = modificationCount;
+            this.handlers = handlers;
+        }
+    }
+
+    /**
+     * The handlers that implement one extension point and the handle used to call them
+     */
+    protected static class MethodDispatch {
+
+        protected final Method method;
+        protected final ExtensionHandler[] handlers;
+        protected final MethodHandle invoker;
+        protected final ExtensionPointStatistics statistics;
+
+        protected MethodDispatch(Method method, ExtensionHandler[] handlers, MethodHandle invoker, ExtensionPointStatistics statistics) {
+            this.method = method;
+            this.handlers = handlers;
+            this.invoker = invoker;
+            this.statistics = statistics;
+        }
+
+        protected ExtensionResultStatusType invoke(ExtensionHandler handler, Object[] args) throws Throwable {
+            if (invoker != null) {
+                return (ExtensionResultStatusType) (Object) invoker.invokeExact((Object) handler, args);
+            }
+            try {
+                return (ExtensionResultStatusType) method.invoke(handler, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+    }
 }
@@ -0,0 +1,68 @@
+/*
+ * #%L
+ * BroadleafCommerce Common Libraries
+ * %%
+ * Copyright (C) 2009 - 2016 Broadleaf Commerce
+ * %%
+ * Licensed under the Broadleaf Fair Use License Agreement, Version 1.0
+ * (the "Fair Use License" located  at http://license.broadleafcommerce.org/fair_use_license-1.0.txt)
+ * unless the restrictions on use therein are violated and require payment to Broadleaf in which case
+ * the Broadleaf End User License Agreement (EULA), Version 1.1
+ * (the "Commercial License" located at http://license.broadleafcommerce.org/commercial_license-1.1.txt)
+ * shall apply.
+ * 
+ * Alternatively, the Commercial License may be replaced with a mutually agreed upon license (the "Custom License")
+ * between you and Broadleaf Commerce. You may not use this file except in compliance with the applicable license.
+ * #L%
+ */
+package org.broadleafcommerce.common.extension;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Invocation count and time spent for one extension point (one method of an {@link ExtensionHandler} interface) of an
+ * {@link ExtensionManager}. Only gathered when optimized dispatch is enabled.
+ *
+ * @see ExtensionManager#getExtensionPointStatistics()
+ */
+public class ExtensionPointStatistics {
+
+    protected final String extensionPoint;
+    protected final LongAdder invocations = new LongAdder();
+    protected final LongAdder totalNanos = new LongAdder();
+
+    public ExtensionPointStatistics(String extensionPoint) {
+        this.extensionPoint = extensionPoint;
+    }
+
+    public void record(long nanos) {
+        invocations.increment();
+        totalNanos.add(nanos);
+    }
+
+    /**
+     * @return the handler interface and method name, e.g. "SystemPropertyServiceExtensionHandler.resolveProperty"
+     */
+    public String getExtensionPoint() {
+        return extensionPoint;
+    }
+
+    public long getInvocationCount() {
+        return invocations.sum();
+    }
+
+    public long getTotalNanos() {
+        return totalNanos.sum();
+    }
+
+    public double getAverageMicros() {
+        long count = invocations.sum();
+        return count == 0 ? 0D : totalNanos.sum() / (double) count / 1000D;
+    }
+
+    @Override
+    public String toString() {
+        return extensionPoint + " invocations=" + getInvocationCount() + " avgMicros=" + getAverageMicros();
+    }
+
+}
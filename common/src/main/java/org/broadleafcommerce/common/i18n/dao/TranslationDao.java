@@ -160,4 +160,17 @@ public interface TranslationDao {
      * @return
      */
     Translation readTranslation(TranslatedEntity entityType, String entityId, String fieldName, String localeCode, String localeCountryCode, ResultType stage);
+
+    /**
+     * Picks the translation that {@link #readTranslation(TranslatedEntity, String, String, String, String, ResultType)}
+     * returns out of the translations whose locale code starts with the given language. When a country is requested,
+     * this is the translation for that exact locale, or else the first candidate, which may be for the bare language
+     * or for another country of the same language. When only a language is requested, only an exact match is returned.
+     *
+     * @param localeCode the language, e.g. fr
+     * @param localeCountryCode the language and country, e.g. fr_CA, or the same value as localeCode
+     * @param translations the candidates, in the order they were read
+     * @return the best candidate, or null if there is none
+     */
+    Translation selectTranslation(String localeCode, String localeCountryCode, List<Translation> translations);
 }
@@ -267,17 +267,7 @@ public class TranslationDaoImpl implements TranslationDao {
                 extensionManager.getProxy().refineQuery(TranslationImpl.class, stage, query);
             }
             query.setHint(QueryHints.HINT_CACHEABLE, true);
-            List<Translation> translations = query.getResultList();
-
-            if (!translations.isEmpty()) {
-                if (!localeCode.equals(localeCountryCode)) {
-                    return findBestTranslation(localeCountryCode, translations);
-                } else {
-                    return findSpecificTranslation(localeCountryCode, translations);
-                }
-            } else {
-                return null;
-            }
+            return selectTranslation(localeCode, localeCountryCode, query.getResultList());
         } finally {
             if (extensionManager != null) {
                 extensionManager.getProxy().breakdown(TranslationImpl.class, stage);
@@ -285,6 +275,18 @@ public class TranslationDaoImpl implements TranslationDao {
         }
     }
 
+    @Override
+    public Translation selectTranslation(String localeCode, String localeCountryCode, List<Translation> translations) {
+        if (translations == null || translations.isEmpty()) {
+            return null;
+        }
+        if (!localeCode.equals(localeCountryCode)) {
+            return findBestTranslation(localeCountryCode, translations);
+        } else {
+            return findSpecificTranslation(localeCountryCode, translations);
+        }
+    }
+
     protected String getUpdatedEntityId(TranslatedEntity entityType, String entityId) {
         return getUpdatedEntityId(entityType, Long.parseLong(entityId));
     }
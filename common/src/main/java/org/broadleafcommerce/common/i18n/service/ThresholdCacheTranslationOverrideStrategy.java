@@ -79,6 +79,7 @@ public class ThresholdCacheTranslationOverrideStrategy implements TranslationOve
         if (cacheResult == null) {
             statisticsService.addCacheStat(CacheStatType.TRANSLATION_CACHE_HIT_RATE.toString(), false);
             if (dao.countTranslationEntries(entityType, ResultType.STANDARD_CACHE) < translationSupport.getThresholdForFullCache()) {
+                long start = System.nanoTime();
                 Map<String, Map<String, StandardCacheItem>> propertyTranslationMap = new HashMap<String, Map<String, StandardCacheItem>>();
                 List<StandardCacheItem> convertedList = dao.readConvertedTranslationEntries(entityType, ResultType.STANDARD_CACHE);
                 if (!CollectionUtils.isEmpty(convertedList)) {
@@ -93,6 +94,7 @@ public class ThresholdCacheTranslationOverrideStrategy implements TranslationOve
                 }
                 Element newElement = new Element(basicCacheKey, propertyTranslationMap);
                 translationSupport.getCache().put(newElement);
+                statisticsService.addCacheLoadTime(CacheStatType.TRANSLATION_CACHE_HIT_RATE.toString(), System.nanoTime() - start);
                 result = newElement;
             } else {
                 //Translation is dual discriminated by site and catalog, which can make it impossible to find results under normal
@@ -125,6 +127,7 @@ public class ThresholdCacheTranslationOverrideStrategy implements TranslationOve
         if (cacheResult == null) {
             statisticsService.addCacheStat(CacheStatType.TRANSLATION_CACHE_HIT_RATE.toString(), false);
             if (dao.countTranslationEntries(entityType, ResultType.TEMPLATE_CACHE) < translationSupport.getTemplateThresholdForFullCache()) {
+                long start = System.nanoTime();
                 Map<String, Map<String, Translation>> propertyTranslationMap = new HashMap<String, Map<String, Translation>>();
                 List<Translation> translationList = dao.readAllTranslationEntries(entityType, ResultType.TEMPLATE_CACHE);
                 if (!CollectionUtils.isEmpty(translationList)) {
@@ -137,6 +140,7 @@ public class ThresholdCacheTranslationOverrideStrategy implements TranslationOve
                     }
                 }
                 translationSupport.getCache().put(new Element(templateCacheKey, propertyTranslationMap));
+                statisticsService.addCacheLoadTime(CacheStatType.TRANSLATION_CACHE_HIT_RATE.toString(), System.nanoTime() - start);
                 Translation translation = translationSupport.findBestTemplateTranslation(specificPropertyKey, generalPropertyKey, propertyTranslationMap, entityId);
                 if (translation != null) {
                     buildSingleItemResponse(response, translation);
@@ -20,16 +20,10 @@
  */
 package org.broadleafcommerce.common.i18n.service;
 
-import net.sf.ehcache.Cache;
-import net.sf.ehcache.CacheManager;
-import net.sf.ehcache.Element;
-
-import org.apache.commons.lang.StringUtils;
 import org.broadleafcommerce.common.i18n.domain.TranslatedEntity;
 import org.broadleafcommerce.common.i18n.domain.Translation;
-import org.broadleafcommerce.common.util.BLCMapUtils;
-import org.broadleafcommerce.common.util.TypedClosure;
 
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -41,70 +35,58 @@ import java.util.Map;
  * use this instead.
  * 
  * @author Phillip Verheyden (phillipuniverse)
+ * @deprecated this is now a thin wrapper around the request scoped {@link TranslationPrefetchContext}, use
+ * {@link TranslationService#prefetchTranslations(TranslatedEntity, List, org.broadleafcommerce.common.extension.ResultType)}
+ * instead
  */
+@Deprecated
 public class TranslationBatchReadCache {
     
-    public static final String CACHE_NAME = "blBatchTranslationCache";
-
-    protected static Cache getCache() {
-        return CacheManager.getInstance().getCache(CACHE_NAME);
-    }
-    
-    protected static Map<String, Translation> getThreadlocalCache() {
-        long threadId = Thread.currentThread().getId();
-        Element cacheElement = getCache().get(threadId);
-        return cacheElement == null ? null : (Map<String, Translation>) cacheElement.getObjectValue();
-    }
-    
     public static void clearCache() {
-        long threadId = Thread.currentThread().getId();
-        getCache().remove(threadId);
+        TranslationPrefetchContext.removeTranslationPrefetchContext();
     }
     
     public static boolean hasCache() {
-        return getThreadlocalCache() != null;
+        return TranslationPrefetchContext.hasTranslationPrefetchContext();
     }
     
     public static void addToCache(List<Translation> translations) {
-        long threadId = Thread.currentThread().getId();
-        Map<String, Translation> threadlocalCache = getThreadlocalCache();
-        if (threadlocalCache == null) {
-            threadlocalCache = new HashMap<String, Translation>();
+        Map<TranslatedEntity, List<Translation>> translationsByType = new HashMap<TranslatedEntity, List<Translation>>();
+        for (Translation translation : translations) {
+            List<Translation> typeTranslations = translationsByType.get(translation.getEntityType());
+            if (typeTranslations == null) {
+                typeTranslations = new ArrayList<Translation>();
+                translationsByType.put(translation.getEntityType(), typeTranslations);
+            }
+            typeTranslations.add(translation);
         }
         
-        Map<String, Translation> additionalTranslations = BLCMapUtils.keyedMap(translations, new TypedClosure<String, Translation>() {
-
-            @Override
-            public String getKey(Translation translation) {
-                return buildCacheKey(translation);
+        TranslationPrefetchContext context = TranslationPrefetchContext.getOrCreateTranslationPrefetchContext();
+        for (Map.Entry<TranslatedEntity, List<Translation>> entry : translationsByType.entrySet()) {
+            List<String> entityIds = new ArrayList<String>();
+            for (Translation translation : entry.getValue()) {
+                entityIds.add(translation.getEntityId());
             }
-        });
-        
-        threadlocalCache.putAll(additionalTranslations);
-        
-        getCache().put(new Element(threadId, threadlocalCache));
+            context.addTranslations(entry.getKey(), entityIds, entry.getValue());
+        }
     }
     
     public static Translation getFromCache(TranslatedEntity entityType, String id, String propertyName, String localeCode) {
-        Map<String, Translation> threadlocalCache = getThreadlocalCache();
-        Translation translation = threadlocalCache.get(buildCacheKey(entityType, id, propertyName, localeCode));
-        
-        if (translation == null && StringUtils.contains(localeCode, '_')) {
-            String languageWithoutCountryCode = localeCode.substring(localeCode.indexOf('_') + 1);
-            translation = threadlocalCache.get(buildCacheKey(entityType, id, propertyName, languageWithoutCountryCode));
+        TranslationPrefetchContext context = TranslationPrefetchContext.getTranslationPrefetchContext();
+        if (context == null) {
+            return null;
         }
-        
-        return translation;
-    }
-    
-    protected static String buildCacheKey(Translation translation) {
-        return buildCacheKey(translation.getEntityType(),
-            translation.getEntityId(),
-            translation.getFieldName(),
-            translation.getLocaleCode());
-    }
-    
-    protected static String buildCacheKey(TranslatedEntity entityType, String id, String propertyName, String localeCode) {
-        return StringUtils.join(new String[]{entityType.getType(), id, propertyName, localeCode}, "-");
+        int pos = localeCode.indexOf('_');
+        String languageCode = pos > 0 ? localeCode.substring(0, pos) : localeCode;
+        Translation languageTranslation = null;
+        for (Translation translation : context.getTranslations(entityType, id, propertyName, languageCode)) {
+            if (localeCode.equals(translation.getLocaleCode())) {
+                return translation;
+            }
+            if (languageCode.equals(translation.getLocaleCode())) {
+                languageTranslation = translation;
+            }
+        }
+        return languageTranslation;
     }
 }
@@ -0,0 +1,249 @@
+/*
+ * #%L
+ * BroadleafCommerce Common Libraries
+ * %%
+ * Copyright (C) 2009 - 2016 Broadleaf Commerce
+ * %%
+ * Licensed under the Broadleaf Fair Use License Agreement, Version 1.0
+ * (the "Fair Use License" located  at http://license.broadleafcommerce.org/fair_use_license-1.0.txt)
+ * unless the restrictions on use therein are violated and require payment to Broadleaf in which case
+ * the Broadleaf End User License Agreement (EULA), Version 1.1
+ * (the "Commercial License" located at http://license.broadleafcommerce.org/commercial_license-1.1.txt)
+ * shall apply.
+ * 
+ * Alternatively, the Commercial License may be replaced with a mutually agreed upon license (the "Custom License")
+ * between you and Broadleaf Commerce. You may not use this file except in compliance with the applicable license.
+ * #L%
+ */
+package org.broadleafcommerce.common.i18n.service;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.broadleafcommerce.common.classloader.release.ThreadLocalManager;
+import org.broadleafcommerce.common.i18n.domain.TranslatedEntity;
+import org.broadleafcommerce.common.i18n.domain.Translation;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Request scoped holder for {@link Translation}s that were bulk loaded for a set of entities that are about to be
+ * rendered (or indexed). Once an entity has been prefetched, {@link TranslationService#getTranslatedValue} answers
+ * every property and locale of that entity from here instead of going back to the database or the override strategies.
+ * An entity that was prefetched but has no {@link Translation} for a property simply has no translation. The context
+ * only hands out the candidates for a lookup; picking one of them is left to
+ * {@link org.broadleafcommerce.common.i18n.dao.TranslationDao#selectTranslation}, just like for a single lookup.
+ * <p>
+ * The context lives in a {@link ThreadLocalManager} managed thread local, so it is discarded along with the rest of the
+ * request state. Lookups reuse a single mutable key, which is safe since the context is confined to one thread.
+ *
+ * @see TranslationService#prefetchTranslations(List)
+ */
+public class TranslationPrefetchContext {
+
+    private static final Log LOG = LogFactory.getLog(TranslationPrefetchContext.class);
+
+    private static final ThreadLocal<TranslationPrefetchContext> translationPrefetchContext = ThreadLocalManager.createThreadLocal(TranslationPrefetchContext.class, false);
+
+    public static TranslationPrefetchContext getTranslationPrefetchContext() {
+        return translationPrefetchContext.get();
+    }
+
+    public static TranslationPrefetchContext getOrCreateTranslationPrefetchContext() {
+        TranslationPrefetchContext context = translationPrefetchContext.get();
+        if (context == null) {
+            context = new TranslationPrefetchContext();
+            translationPrefetchContext.set(context);
+        }
+        return context;
+    }
+
+    public static boolean hasTranslationPrefetchContext() {
+        return translationPrefetchContext.get() != null;
+    }
+
+    public static void removeTranslationPrefetchContext() {
+        TranslationPrefetchContext context = translationPrefetchContext.get();
+        if (context != null && LOG.isDebugEnabled()) {
+            LOG.debug("Translation prefetch for this request: " + context);
+        }
+        ThreadLocalManager.remove(translationPrefetchContext);
+    }
+
+    protected final Map<TranslatedEntity, Set<String>> prefetchedIds = new HashMap<TranslatedEntity, Set<String>>();
+    protected final Map<TranslationKey, List<Translation>> translations = new HashMap<TranslationKey, List<Translation>>();
+    protected final TranslationKey lookupKey = new TranslationKey();
+
+    protected int translationCount;
+    protected int hitCount;
+    protected int missCount;
+    protected int prefetchCount;
+    protected int prefetchedEntityCount;
+
+    /**
+     * Returns the ids from the given list that have not been prefetched yet for the given entity type, so that callers
+     * only query for what is still missing.
+     */
+    public List<String> filterNotPrefetched(TranslatedEntity entityType, Collection<String> entityIds) {
+        Set<String> ids = prefetchedIds.get(entityType);
+        Set<String> response = new LinkedHashSet<String>(entityIds.size());
+        for (String entityId : entityIds) {
+            if (entityId != null && (ids == null || !ids.contains(entityId))) {
+                response.add(entityId);
+            }
+        }
+        return new ArrayList<String>(response);
+    }
+
+    /**
+     * Registers the result of a bulk read. Every id in {@code entityIds} is considered complete afterwards, whether or
+     * not {@code translations} contained anything for it. Translations of entities that were already prefetched are
+     * ignored, so that their candidates are not duplicated.
+     */
+    public void addTranslations(TranslatedEntity entityType, Collection<String> entityIds, List<Translation> translations) {
+        Set<String> ids = prefetchedIds.get(entityType);
+        if (ids == null) {
+            ids = new HashSet<String>();
+            prefetchedIds.put(entityType, ids);
+        }
+        if (translations != null) {
+            for (Translation translation : translations) {
+                if (ids.contains(translation.getEntityId())) {
+                    continue;
+                }
+                TranslationKey key = new TranslationKey(entityType, translation.getEntityId(), translation.getFieldName());
+                List<Translation> candidates = this.translations.get(key);
+                if (candidates == null) {
+                    candidates = new ArrayList<Translation>(2);
+                    this.translations.put(key, candidates);
+                }
+                candidates.add(translation);
+                translationCount++;
+            }
+        }
+        for (String entityId : entityIds) {
+            if (ids.add(entityId)) {
+                prefetchedEntityCount++;
+            }
+        }
+        prefetchCount++;
+    }
+
+    public boolean isPrefetched(TranslatedEntity entityType, String entityId) {
+        Set<String> ids = prefetchedIds.get(entityType);
+        return ids != null && ids.contains(entityId);
+    }
+
+    /**
+     * Returns the prefetched translations of the property whose locale code starts with the given language, in the
+     * order they were read, which are the same candidates a single database lookup would choose from. Callers are
+     * expected to check {@link #isPrefetched(TranslatedEntity, String)} first.
+     */
+    public List<Translation> getTranslations(TranslatedEntity entityType, String entityId, String propertyName, String localeCode) {
+        hitCount++;
+        List<Translation> candidates = translations.get(lookupKey.set(entityType, entityId, propertyName));
+        if (candidates == null) {
+            return Collections.emptyList();
+        }
+        List<Translation> response = new ArrayList<Translation>(candidates.size());
+        for (Translation translation : candidates) {
+            if (translation.getLocaleCode() != null && translation.getLocaleCode().startsWith(localeCode)) {
+                response.add(translation);
+            }
+        }
+        return response;
+    }
+
+    /**
+     * Records a lookup for an entity that was not prefetched and had to be resolved the regular way.
+     */
+    public void recordMiss() {
+        missCount++;
+    }
+
+    public int getHitCount() {
+        return hitCount;
+    }
+
+    public int getMissCount() {
+        return missCount;
+    }
+
+    public int getPrefetchCount() {
+        return prefetchCount;
+    }
+
+    public int getPrefetchedEntityCount() {
+        return prefetchedEntityCount;
+    }
+
+    public int getPrefetchedTranslationCount() {
+        return translationCount;
+    }
+
+    @Override
+    public String toString() {
+        return "TranslationPrefetchContext [hits=" + hitCount + ", misses=" + missCount + ", prefetches=" + prefetchCount
+                + ", entities=" + prefetchedEntityCount + ", translations=" + translationCount + "]";
+    }
+
+    /**
+     * Composite key of entity type, entity id and field name. The hash is computed once when the values are set.
+     */
+    protected static class TranslationKey {
+
+        protected TranslatedEntity entityType;
+        protected String entityId;
+        protected String fieldName;
+        protected int hash;
+
+        protected TranslationKey() {
+        }
+
+        protected TranslationKey(TranslatedEntity entityType, String entityId, String fieldName) {
+            set(entityType, entityId, fieldName);
+        }
+
+        protected TranslationKey set(TranslatedEntity entityType, String entityId, String fieldName) {
+            this.entityType = entityType;
+            this.entityId = entityId;
+            this.fieldName = fieldName;
+            int result = entityType == null ? 0 : entityType.hashCode();
+            result = 31 * result + (entityId == null ? 0 : entityId.hashCode());
+            result = 31 * result + (fieldName == null ? 0 : fieldName.hashCode());
+            this.hash = result;
+            return this;
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof TranslationKey)) {
+                return false;
+            }
+            TranslationKey other = (TranslationKey) obj;
+            return hash == other.hash
+                    && equal(entityId, other.entityId)
+                    && equal(fieldName, other.fieldName)
+                    && equal(entityType, other.entityType);
+        }
+
+        protected static boolean equal(Object a, Object b) {
+            return a == null ? b == null : a.equals(b);
+        }
+    }
+}
@@ -167,4 +167,25 @@ public interface TranslationService {
      * @return
      */
     List<Translation> findAllTranslationEntries(TranslatedEntity translatedEntity, ResultType standard, List<String> entityIds);
+
+    /**
+     * Bulk loads the translations for entities that are about to be rendered into the request scoped
+     * {@link TranslationPrefetchContext}, so that {@link #getTranslatedValue(Object, String, Locale)} does not have to
+     * look each property up on its own. The entities may be of mixed translatable types. Nothing is loaded when the
+     * current request would not read translations one by one anyway (for example when the full translation cache
+     * for an entity type is in use).
+     *
+     * @param entities the translatable entities
+     */
+    void prefetchTranslations(List<?> entities);
+
+    /**
+     * Unconditionally bulk loads the translations for the given entity ids into the {@link TranslationPrefetchContext},
+     * skipping ids that are already there.
+     *
+     * @param entityType
+     * @param entityIds the {@link Translation#getEntityId()} values to load
+     * @param stage drives whether to look for entries at a template level or standard site level
+     */
+    void prefetchTranslations(TranslatedEntity entityType, List<String> entityIds, ResultType stage);
 }
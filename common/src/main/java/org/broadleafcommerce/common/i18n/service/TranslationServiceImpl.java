@@ -20,6 +20,7 @@ package org.broadleafcommerce.common.i18n.service;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import org.broadleafcommerce.common.cache.CacheStatType;
 import org.broadleafcommerce.common.cache.StatisticsService;
 import org.broadleafcommerce.common.extension.ExtensionResultHolder;
 import org.broadleafcommerce.common.extension.ItemStatus;
@@ -38,6 +39,7 @@ import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
@@ -47,11 +49,14 @@ import javax.annotation.Resource;
 
 import net.sf.ehcache.Cache;
 import net.sf.ehcache.CacheManager;
+import net.sf.ehcache.Element;
 
 @Service("blTranslationService")
 public class TranslationServiceImpl implements TranslationService, TranslationSupport {
 
     protected static final Log LOG = LogFactory.getLog(TranslationServiceImpl.class);
+
+    protected static final String COUNT_CACHE_KEY_SUFFIX = "|count";
     private static final Translation DELETED_TRANSLATION = new TranslationImpl();
     
     @Resource(name = "blTranslationDao")
@@ -178,16 +183,33 @@ public class TranslationServiceImpl implements TranslationService, TranslationSu
             localeCountryCode += "_" + locale.getCountry();
         }
         
-        if (TranslationBatchReadCache.hasCache()) {
-            Translation translation = TranslationBatchReadCache.getFromCache(entityType, entityId, property, localeCountryCode);
+        TranslationPrefetchContext prefetchContext = TranslationPrefetchContext.getTranslationPrefetchContext();
+        if (prefetchContext != null) {
+            if (prefetchContext.isPrefetched(entityType, entityId)) {
+                statisticsService.addCacheStat(CacheStatType.TRANSLATION_PREFETCH_HIT_RATE.toString(), true);
+                // There is no translation for a prefetched entity if it is not in the context
+                Translation translation = dao.selectTranslation(localeCode, localeCountryCode,
+                        prefetchContext.getTranslations(entityType, entityId, property, localeCode));
+                return translation == null ? null : translation.getTranslatedValue();
+            }
+            prefetchContext.recordMiss();
+            statisticsService.addCacheStat(CacheStatType.TRANSLATION_PREFETCH_HIT_RATE.toString(), false);
+        }
+
+        if (!BroadleafRequestContext.getBroadleafRequestContext().isProductionSandBox() || !isValidForCache()) {
+            Translation translation = dao.readTranslation(entityType, entityId, property, localeCode, localeCountryCode,
+                    ResultType.CATALOG_ONLY);
             if (translation != null) {
                 return translation.getTranslatedValue();
             } else {
-                // There is no translation for this entity if it is not in the cache
                 return null;
             }
         }
-        
+
+        return getOverrideTranslatedValue(property, entityType, entityId, localeCode, localeCountryCode);
+    }
+
+    protected boolean isValidForCache() {
         boolean isValidForCache = false;
         if (extensionManager != null) {
             ExtensionResultHolder<Boolean> response = new ExtensionResultHolder<Boolean>();
@@ -195,17 +217,79 @@ public class TranslationServiceImpl implements TranslationService, TranslationSu
             extensionManager.getProxy().isValidState(response);
             isValidForCache = response.getResult();
         }
-        if (!BroadleafRequestContext.getBroadleafRequestContext().isProductionSandBox() || !isValidForCache) {
-            Translation translation = dao.readTranslation(entityType, entityId, property, localeCode, localeCountryCode,
-                    ResultType.CATALOG_ONLY);
-            if (translation != null) {
-                return translation.getTranslatedValue();
-            } else {
-                return null;
+        return isValidForCache;
+    }
+
+    @Override
+    public void prefetchTranslations(List<?> entities) {
+        if (entities == null || entities.isEmpty() || BroadleafRequestContext.getBroadleafRequestContext() == null) {
+            return;
+        }
+        Map<TranslatedEntity, List<String>> entityIdsByType = new HashMap<TranslatedEntity, List<String>>();
+        for (Object entity : entities) {
+            if (entity == null) {
+                continue;
+            }
+            TranslatedEntity entityType = getEntityType(entity);
+            List<String> entityIds = entityIdsByType.get(entityType);
+            if (entityIds == null) {
+                entityIds = new ArrayList<String>(entities.size());
+                entityIdsByType.put(entityType, entityIds);
             }
+            entityIds.add(dao.getEntityId(entityType, entity));
         }
+        for (Entry<TranslatedEntity, List<String>> entry : entityIdsByType.entrySet()) {
+            if (isPrefetchApplicable(entry.getKey())) {
+                prefetchTranslations(entry.getKey(), entry.getValue(), ResultType.CATALOG_ONLY);
+            }
+        }
+    }
 
-        return getOverrideTranslatedValue(property, entityType, entityId, localeCode, localeCountryCode);
+    @Override
+    public void prefetchTranslations(TranslatedEntity entityType, List<String> entityIds, ResultType stage) {
+        TranslationPrefetchContext context = TranslationPrefetchContext.getOrCreateTranslationPrefetchContext();
+        List<String> idsToRead = context.filterNotPrefetched(entityType, entityIds);
+        if (!idsToRead.isEmpty()) {
+            context.addTranslations(entityType, idsToRead, dao.readAllTranslationEntries(entityType, stage, idsToRead));
+        }
+    }
+
+    /**
+     * Prefetched translations are read with {@link ResultType#CATALOG_ONLY}, which is exactly what
+     * {@link #getTranslatedValue(Object, String, Locale)} does outside of production, and what the default
+     * {@link ThresholdCacheTranslationOverrideStrategy} does for each lookup once an entity type has more translations
+     * than {@link #getThresholdForFullCache()}. Any other strategy, a template catalog or an already populated full
+     * cache means prefetching would either change the result or not save anything.
+     */
+    protected boolean isPrefetchApplicable(TranslatedEntity entityType) {
+        if (!BroadleafRequestContext.getBroadleafRequestContext().isProductionSandBox() || !isValidForCache()) {
+            return true;
+        }
+        for (TranslationOverrideStrategy strategy : strategies) {
+            if (!(strategy instanceof ThresholdCacheTranslationOverrideStrategy)) {
+                return false;
+            }
+        }
+        String cacheKey = getCacheKey(ResultType.STANDARD, entityType);
+        if (!cacheKey.equals(getCacheKey(ResultType.TEMPLATE, entityType)) || getCache().get(cacheKey) != null) {
+            return false;
+        }
+        return getStandardTranslationCount(entityType, cacheKey) >= getThresholdForFullCache();
+    }
+
+    /**
+     * The count is cached next to the full cache of the entity type and evicted along with it, so that deciding whether
+     * to prefetch doesn't cost a query per request.
+     */
+    protected long getStandardTranslationCount(TranslatedEntity entityType, String cacheKey) {
+        String countCacheKey = cacheKey + COUNT_CACHE_KEY_SUFFIX;
+        Element element = getCache().get(countCacheKey);
+        if (element != null) {
+            return (Long) element.getObjectValue();
+        }
+        Long count = dao.countTranslationEntries(entityType, ResultType.STANDARD_CACHE);
+        getCache().put(new Element(countCacheKey, count));
+        return count;
     }
 
     @Override
@@ -219,13 +303,18 @@ public class TranslationServiceImpl implements TranslationService, TranslationSu
                 if (ResultType.STANDARD == resultType) {
                     String key = getCacheKey(resultType, translation.getEntityType());
                     LOG.debug("Removing key [" + key + "] for STANDARD site");
-                    getCache().remove(key);
+                    if (getCache().remove(key)) {
+                        statisticsService.addCacheEvictions(CacheStatType.TRANSLATION_CACHE_HIT_RATE.toString(), 1);
+                    }
+                    getCache().remove(key + COUNT_CACHE_KEY_SUFFIX);
                 } else {
                     List<String> cacheKeysList =
                             getCacheKeyListForTemplateSite(translation.getEntityType().getFriendlyType());
                     for (String key: cacheKeysList) {
                         LOG.debug("Removing key [" + key + "] for TEMPLATE site");
-                        getCache().remove(key);
+                        if (getCache().remove(key)) {
+                            statisticsService.addCacheEvictions(CacheStatType.TRANSLATION_CACHE_HIT_RATE.toString(), 1);
+                        }
                     }
                 }
             }
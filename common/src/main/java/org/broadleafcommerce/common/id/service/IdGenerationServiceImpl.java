@@ -17,9 +17,20 @@
  */
 package org.broadleafcommerce.common.id.service;
 
-import java.util.HashMap;
-import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
 
+import javax.annotation.PreDestroy;
 import javax.annotation.Resource;
 import javax.persistence.OptimisticLockException;
 
@@ -27,9 +38,25 @@ import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.broadleafcommerce.common.id.dao.IdGenerationDao;
 import org.broadleafcommerce.common.id.domain.IdGeneration;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedResource;
 import org.springframework.stereotype.Service;
 
+/**
+ * Hands out ids from batches reserved in the database through {@link IdGenerationDao}.
+ * <p>
+ * Taking an id from the current batch is a single atomic increment; no lock is held. Each id type keeps a second
+ * batch in reserve: once the current batch has handed out all but "id.generation.prefetch.lowWaterPercent" percent
+ * of its ids, the next batch is reserved on a background thread. When the current batch runs out, the reserved batch
+ * is swapped in, so callers normally never wait on the database. Batches are always consumed in the order they were
+ * reserved, which keeps ids for an id type in the same order as before.
+ * <p>
+ * Set "id.generation.prefetch.enabled" to false to reserve batches on the calling thread only when the current batch
+ * is exhausted.
+ */
 @Service("blIdGenerationService")
+@ManagedResource(objectName = "org.broadleafcommerce:name=IdGenerationService", description = "Id Generation Service", currencyTimeLimit = 15)
 public class IdGenerationServiceImpl implements IdGenerationService {
 
     private static final Log LOG = LogFactory.getLog(IdGenerationServiceImpl.class);
@@ -37,7 +64,22 @@ public class IdGenerationServiceImpl implements IdGenerationService {
     @Resource(name="blIdGenerationDao")
     protected IdGenerationDao idGenerationDao;
 
-    protected Map<String, Id> idTypeIdMap = new HashMap<String, Id>();
+    @Value("${id.generation.prefetch.enabled:true}")
+    protected boolean prefetchEnabled = true;
+
+    @Value("${id.generation.prefetch.lowWaterPercent:25}")
+    protected int prefetchLowWaterPercent = 25;
+
+    protected ConcurrentMap<String, IdType> idTypeIdMap = new ConcurrentHashMap<String, IdType>();
+
+    protected volatile ExecutorService prefetchExecutor;
+
+    protected final LongAdder idsAllocated = new LongAdder();
+    protected final LongAdder databaseFetches = new LongAdder();
+    protected final LongAdder databaseFetchNanos = new LongAdder();
+    protected final LongAdder prefetches = new LongAdder();
+    protected final LongAdder blockedAllocations = new LongAdder();
+    protected final LongAdder blockedAllocationNanos = new LongAdder();
 
     @Override
     public Long findNextId(String idType) {
@@ -46,39 +88,90 @@ public class IdGenerationServiceImpl implements IdGenerationService {
 
     @Override
     public Long findNextId(String idType, Long batchSize) {
-        Id id;
-        synchronized (idTypeIdMap) {
-            id = idTypeIdMap.get(idType);
+        IdType id = idTypeIdMap.get(idType);
+        if (id == null) {
+            IdType created = new IdType(idType, batchSize);
+            id = idTypeIdMap.putIfAbsent(idType, created);
             if (id == null) {
-                // recheck, another thread may have added this.
-                id = idTypeIdMap.get(idType);
-                if (id == null) {
-                    if (LOG.isDebugEnabled()) {
-                        LOG.debug("Getting the initial id from the database.");
+                id = created;
+            }
+        }
+
+        while (true) {
+            IdBatch batch = id.current;
+            if (batch != null) {
+                long offset = batch.cursor.getAndIncrement();
+                if (offset < batch.size) {
+                    if (offset == batch.lowWaterOffset) {
+                        prefetch(id);
                     }
-                    IdGeneration idGeneration = getCurrentIdRange(idType, batchSize);
-                    id = new Id(idGeneration.getBatchStart(), idGeneration.getBatchSize());
+                    idsAllocated.increment();
+                    return batch.start + offset;
                 }
-                idTypeIdMap.put(idType, id);
             }
+            advance(id, batch);
         }
+    }
 
-        synchronized(id) {
-            if (id.batchSize == 0L) {
-                if (LOG.isDebugEnabled()) {
-                    LOG.debug("Updating batch size for idType " + idType);
+    /**
+     * Replaces an exhausted (or missing) batch with the prefetched one, or reads a new batch on the calling thread if
+     * nothing was prefetched. Only threads that find the current batch exhausted get here.
+     */
+    protected void advance(IdType id, IdBatch exhausted) {
+        long start = System.nanoTime();
+        synchronized (id) {
+            if (id.current != exhausted) {
+                // another thread already swapped in a new batch
+                return;
+            }
+            if (LOG.isDebugEnabled()) {
+                LOG.debug("Updating batch for idType " + id.idType);
+            }
+            IdBatch next = null;
+            Future<IdBatch> prefetched = id.next.getAndSet(null);
+            if (prefetched != null) {
+                try {
+                    next = prefetched.get();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new RuntimeException("Interrupted while waiting for the id range for " + id.idType, e);
+                } catch (ExecutionException e) {
+                    LOG.warn("Unable to prefetch the id range for " + id.idType + ". Retrying on the calling thread.", e.getCause());
                 }
-                IdGeneration idGeneration = getCurrentIdRange(idType, batchSize);
-                id.nextId = idGeneration.getBatchStart();
-                id.batchSize = idGeneration.getBatchSize();
             }
-            Long retId = id.nextId++;
-            id.batchSize--;
+            if (next == null) {
+                next = fetchBatch(id);
+            }
+            id.current = next;
+        }
+        blockedAllocations.increment();
+        blockedAllocationNanos.add(System.nanoTime() - start);
+    }
 
-            return retId;
+    protected void prefetch(final IdType id) {
+        if (!prefetchEnabled) {
+            return;
+        }
+        FutureTask<IdBatch> task = new FutureTask<IdBatch>(new Callable<IdBatch>() {
+            @Override
+            public IdBatch call() {
+                return fetchBatch(id);
+            }
+        });
+        if (id.next.compareAndSet(null, task)) {
+            prefetches.increment();
+            getPrefetchExecutor().execute(task);
         }
     }
-    
+
+    protected IdBatch fetchBatch(IdType id) {
+        long start = System.nanoTime();
+        IdGeneration idGeneration = getCurrentIdRange(id.idType, id.batchSize);
+        databaseFetches.increment();
+        databaseFetchNanos.add(System.nanoTime() - start);
+        return new IdBatch(idGeneration.getBatchStart(), idGeneration.getBatchSize(), prefetchLowWaterPercent);
+    }
+
     private IdGeneration getCurrentIdRange(String idType, Long batchSize) {
         IdGeneration idGeneration = null;
         int retryCount = 0;
@@ -103,13 +196,95 @@ public class IdGenerationServiceImpl implements IdGenerationService {
         return idGeneration;
     }
 
-    private class Id {
-        public Long nextId;
-        public Long batchSize;
+    protected ExecutorService getPrefetchExecutor() {
+        if (prefetchExecutor == null) {
+            synchronized (this) {
+                if (prefetchExecutor == null) {
+                    prefetchExecutor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+                        @Override
+                        public Thread newThread(Runnable r) {
+                            Thread thread = new Thread(r, "blIdGenerationPrefetch");
+                            thread.setDaemon(true);
+                            return thread;
+                        }
+                    });
+                }
+            }
+        }
+        return prefetchExecutor;
+    }
 
-        public Id(Long nextId, Long batchSize) {
-            this.nextId = nextId;
+    @PreDestroy
+    public void shutdown() {
+        if (prefetchExecutor != null) {
+            prefetchExecutor.shutdownNow();
+        }
+    }
+
+    @ManagedAttribute(description = "The number of ids handed out", currencyTimeLimit = 15)
+    public long getIdsAllocated() {
+        return idsAllocated.sum();
+    }
+
+    @ManagedAttribute(description = "The number of id ranges read from the database", currencyTimeLimit = 15)
+    public long getDatabaseFetchCount() {
+        return databaseFetches.sum();
+    }
+
+    @ManagedAttribute(description = "The average time in milliseconds to read an id range from the database", currencyTimeLimit = 15)
+    public double getAverageDatabaseFetchMs() {
+        long count = databaseFetches.sum();
+        return count == 0 ? 0D : databaseFetchNanos.sum() / (double) count / 1000000D;
+    }
+
+    @ManagedAttribute(description = "The number of id ranges reserved in the background", currencyTimeLimit = 15)
+    public long getPrefetchCount() {
+        return prefetches.sum();
+    }
+
+    @ManagedAttribute(description = "The number of allocations that had to wait for a new id range", currencyTimeLimit = 15)
+    public long getBlockedAllocationCount() {
+        return blockedAllocations.sum();
+    }
+
+    @ManagedAttribute(description = "The average time in milliseconds an allocation waited for a new id range", currencyTimeLimit = 15)
+    public double getAverageBlockedAllocationMs() {
+        long count = blockedAllocations.sum();
+        return count == 0 ? 0D : blockedAllocationNanos.sum() / (double) count / 1000000D;
+    }
+
+    /**
+     * The current and reserved batches of one id type
+     */
+    protected static class IdType {
+
+        protected final String idType;
+        protected final Long batchSize;
+        protected volatile IdBatch current;
+        protected final AtomicReference<Future<IdBatch>> next = new AtomicReference<Future<IdBatch>>();
+
+        protected IdType(String idType, Long batchSize) {
+            this.idType = idType;
             this.batchSize = batchSize;
         }
     }
+
+    /**
+     * A contiguous range of ids. {@link #cursor} is the offset of the next id to hand out; it keeps growing past
+     * {@link #size} once the range is exhausted.
+     */
+    protected static class IdBatch {
+
+        protected final long start;
+        protected final long size;
+        protected final long lowWaterOffset;
+        protected final AtomicLong cursor = new AtomicLong();
+
+        protected IdBatch(long start, long size, int lowWaterPercent) {
+            this.start = start;
+            this.size = size;
+            long remaining = size * Math.max(0, Math.min(100, lowWaterPercent)) / 100;
+            this.lowWaterOffset = Math.max(0, size - 1 - remaining);
+        }
+    }
 }
@@ -0,0 +1,283 @@
+/*
+ * #%L
+ * BroadleafCommerce Common Libraries
+ * %%
+ * Copyright (C) 2009 - 2016 Broadleaf Commerce
+ * %%
+ * Licensed under the Broadleaf Fair Use License Agreement, Version 1.0
+ * (the "Fair Use License" located  at http://license.broadleafcommerce.org/fair_use_license-1.0.txt)
+ * unless the restrictions on use therein are violated and require payment to Broadleaf in which case
+ * the Broadleaf End User License Agreement (EULA), Version 1.1
+ * (the "Commercial License" located at http://license.broadleafcommerce.org/commercial_license-1.1.txt)
+ * shall apply.
+ * 
+ * Alternatively, the Commercial License may be replaced with a mutually agreed upon license (the "Custom License")
+ * between you and Broadleaf Commerce. You may not use this file except in compliance with the applicable license.
+ * #L%
+ */
+package org.broadleafcommerce.common.rule;
+
+import java.io.Serializable;
+import java.util.AbstractMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Size-bounded cache of compiled MVEL expressions that does not serialize rule evaluation on a single monitor.
+ * <p>
+ * Entries are spread across a fixed number of {@link ConcurrentHashMap} segments. Reads never lock. Each entry holds a
+ * {@link FutureTask} so that concurrent requests for an expression that is not cached yet wait on the same compilation
+ * instead of compiling it again (see {@link #getOrCompile(String, Callable)}). When a segment grows past its share of
+ * the maximum size, its least recently used entry is evicted. Recency is an approximation based on a global access
+ * counter, which is good enough for rule expressions and avoids the shared linked list of an access-ordered map.
+ * <p>
+ * This class also implements {@link Map} so it can be passed anywhere an expression cache map is accepted, such as
+ * {@link MvelHelper#evaluateRule(String, Map, Map)}.
+ */
+public class MvelExpressionCache extends AbstractMap<String, Serializable> {
+
+    protected static final int DEFAULT_SEGMENTS = 16;
+
+    protected final Segment[] segments;
+    protected final int segmentMask;
+    protected final int maxEntriesPerSegment;
+    protected final AtomicLong accessClock = new AtomicLong();
+
+    protected final LongAdder hits = new LongAdder();
+    protected final LongAdder misses = new LongAdder();
+    protected final LongAdder evictions = new LongAdder();
+
+    public MvelExpressionCache(int maxEntries) {
+        this(maxEntries, DEFAULT_SEGMENTS);
+    }
+
+    public MvelExpressionCache(int maxEntries, int segmentCount) {
+        int size = 1;
+        while (size < segmentCount) {
+            size <<= 1;
+        }
+        segments = new Segment[size];
+        for (int i = 0; i < size; i++) {
+            segments[i] = new Segment();
+        }
+        segmentMask = size - 1;
+        maxEntriesPerSegment = Math.max(1, (maxEntries + size - 1) / size);
+    }
+
+    /**
+     * Returns the compiled expression for the given key, compiling it with the given compiler if it is not cached. The
+     * compiler runs at most once per key, no matter how many threads ask for the key at the same time. If compilation
+     * fails, nothing is cached and the failure is rethrown to every waiting caller.
+     *
+     * @param key the cache key, usually the unmodified rule
+     * @param compiler produces the compiled expression
+     * @return the compiled expression
+     */
+    public Serializable getOrCompile(String key, Callable<Serializable> compiler) {
+        Segment segment = segmentFor(key);
+        Entry entry = segment.map.get(key);
+        if (entry != null) {
+            hits.increment();
+        } else {
+            Entry created = new Entry(new FutureTask<>(compiler));
+            entry = segment.map.putIfAbsent(key, created);
+            if (entry == null) {
+                misses.increment();
+                entry = created;
+                entry.task.run();
+                segment.evictIfNecessary(key);
+            } else {
+                hits.increment();
+            }
+        }
+        entry.lastAccess = accessClock.incrementAndGet();
+        try {
+            return entry.task.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        } catch (ExecutionException e) {
+            segment.map.remove(key, entry);
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new RuntimeException(cause);
+        }
+    }
+
+    @Override
+    public Serializable get(Object key) {
+        Entry entry = segmentFor(key).map.get(key);
+        if (entry == null || !entry.task.isDone()) {
+            return null;
+        }
+        entry.lastAccess = accessClock.incrementAndGet();
+        try {
+            return entry.task.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        } catch (ExecutionException e) {
+            return null;
+        }
+    }
+
+    @Override
+    public Serializable put(String key, final Serializable value) {
+        FutureTask<Serializable> task = new FutureTask<>(new Callable<Serializable>() {
+            @Override
+            public Serializable call() {
+                return value;
+            }
+        });
+        task.run();
+        Entry entry = new Entry(task);
+        entry.lastAccess = accessClock.incrementAndGet();
+        Segment segment = segmentFor(key);
+        Entry previous = segment.map.put(key, entry);
+        segment.evictIfNecessary(key);
+        return previous == null || !previous.task.isDone() ? null : unwrap(previous);
+    }
+
+    @Override
+    public Serializable remove(Object key) {
+        Entry previous = segmentFor(key).map.remove(key);
+        return previous == null || !previous.task.isDone() ? null : unwrap(previous);
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return segmentFor(key).map.containsKey(key);
+    }
+
+    @Override
+    public int size() {
+        int size = 0;
+        for (Segment segment : segments) {
+            size += segment.map.size();
+        }
+        return size;
+    }
+
+    @Override
+    public void clear() {
+        for (Segment segment : segments) {
+            segment.map.clear();
+        }
+    }
+
+    /**
+     * A point in time copy of the cached, successfully compiled expressions.
+     */
+    @Override
+    public Set<Map.Entry<String, Serializable>> entrySet() {
+        Set<Map.Entry<String, Serializable>> entries = new HashSet<>();
+        for (Segment segment : segments) {
+            for (Map.Entry<String, Entry> item : segment.map.entrySet()) {
+                if (item.getValue().task.isDone()) {
+                    Serializable value = unwrap(item.getValue());
+                    if (value != null) {
+                        entries.add(new SimpleImmutableEntry<>(item.getKey(), value));
+                    }
+                }
+            }
+        }
+        return entries;
+    }
+
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    public long getEvictionCount() {
+        return evictions.sum();
+    }
+
+    /**
+     * @return the percentage of lookups that were served from the cache, or 0 if there have been no lookups
+     */
+    public double getHitPercentage() {
+        long hitCount = getHitCount();
+        long total = hitCount + getMissCount();
+        return total == 0 ? 0D : (double) hitCount / total * 100D;
+    }
+
+    @Override
+    public String toString() {
+        return "MvelExpressionCache[size=" + size() + ", hits=" + getHitCount() + ", misses=" + getMissCount()
+                + ", evictions=" + getEvictionCount() + "]";
+    }
+
+    protected Segment segmentFor(Object key) {
+        int hash = key == null ? 0 : key.hashCode();
+        hash ^= (hash >>> 16);
+        return segments[hash & segmentMask];
+    }
+
+    protected Serializable unwrap(Entry entry) {
+        try {
+            return entry.task.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        } catch (ExecutionException e) {
+            return null;
+        }
+    }
+
+    protected static class Entry {
+
+        protected final FutureTask<Serializable> task;
+        protected volatile long lastAccess;
+
+        protected Entry(FutureTask<Serializable> task) {
+            this.task = task;
+        }
+    }
+
+    protected class Segment {
+
+        protected final ConcurrentHashMap<String, Entry> map = new ConcurrentHashMap<>();
+
+        /**
+         * Evicts least recently used entries until the segment is back within its bound. Only the thread that just
+         * added an entry gets here, and the scan is limited to one segment, so the cost is paid on misses only.
+         */
+        protected void evictIfNecessary(String addedKey) {
+            while (map.size() > maxEntriesPerSegment) {
+                String eldestKey = null;
+                Entry eldest = null;
+                for (Map.Entry<String, Entry> item : map.entrySet()) {
+                    if (item.getKey().equals(addedKey)) {
+                        continue;
+                    }
+                    if (eldest == null || item.getValue().lastAccess < eldest.lastAccess) {
+                        eldestKey = item.getKey();
+                        eldest = item.getValue();
+                    }
+                }
+                if (eldest == null) {
+                    return;
+                }
+                if (map.remove(eldestKey, eldest)) {
+                    evictions.increment();
+                }
+            }
+        }
+    }
+}
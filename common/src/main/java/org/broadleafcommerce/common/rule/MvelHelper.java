@@ -24,7 +24,6 @@ import org.broadleafcommerce.common.RequestDTO;
 import org.broadleafcommerce.common.TimeDTO;
 import org.broadleafcommerce.common.presentation.client.SupportedFieldType;
 import org.broadleafcommerce.common.time.SystemTime;
-import org.broadleafcommerce.common.util.EfficientLRUMap;
 import org.broadleafcommerce.common.util.FormatUtil;
 import org.broadleafcommerce.common.util.StringUtil;
 import org.broadleafcommerce.common.web.BroadleafRequestContext;
@@ -36,6 +35,7 @@ import java.text.ParseException;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.concurrent.Callable;
 import javax.servlet.http.HttpServletRequest;
 
 /**
@@ -52,7 +52,7 @@ import javax.servlet.http.HttpServletRequest;
  */
 public class MvelHelper {
 
-    private static final Map<String, Serializable> DEFAULT_EXPRESSION_CACHE = new EfficientLRUMap<String, Serializable>(5000);
+    private static final MvelExpressionCache DEFAULT_EXPRESSION_CACHE = new MvelExpressionCache(5000);
     private static final Log LOG = LogFactory.getLog(MvelHelper.class);
 
     private static boolean TEST_MODE = false;
@@ -106,7 +106,7 @@ public class MvelHelper {
      * 
      * Calls the {@link #evaluateRule(String, Map, Map)} method passing in the DEFAULT_EXPRESSION_CACHE.
      * For systems that need to cache a large number of rule expressions, an alternate cache can be passed in.   The
-     * default cache is able to cache up to 1,000 rule expressions which should suffice for most systems.
+     * default cache is able to cache up to 5,000 rule expressions which should suffice for most systems.
      * 
      * @param rule
      * @param ruleParameters
@@ -144,28 +144,7 @@ public class MvelHelper {
             return true;
         } else {
             // MVEL expression compiling can be expensive so let's cache the expression
-            Serializable exp = null;
-            if (expressionCache != null) {
-                exp = expressionCache.get(rule);
-            }
-            if (exp == null) {
-                ParserContext context = new ParserContext();
-                context.addImport("MVEL", MVEL.class);
-                context.addImport("MvelHelper", MvelHelper.class);
-                context.addImport("CollectionUtils", SelectizeCollectionUtils.class);
-                if (MapUtils.isNotEmpty(additionalContextImports)) {
-                    for (Entry<String, Class<?>> entry : additionalContextImports.entrySet()) {
-                        context.addImport(entry.getKey(), entry.getValue());
-                    }
-                }
-                
-                String modifiedRule = modifyExpression(rule, ruleParameters, context);
-
-                synchronized (expressionCache) {
-                    exp = MVEL.compileExpression(modifiedRule, context);
-                    expressionCache.put(rule, exp);
-                }
-            }
+            Serializable exp = compileRule(rule, ruleParameters, expressionCache, additionalContextImports);
 
             Map<String, Object> mvelParameters = new HashMap<String, Object>();
 
@@ -194,6 +173,75 @@ public class MvelHelper {
         }
     }
     
+    /**
+     * Compiles the passed in rule and stores it in the expression cache without evaluating it. Useful for warming the
+     * cache with known rules at startup so that the first requests do not pay the compilation cost.
+     *
+     * @param rule
+     * @param expressionCache
+     * @param additionalContextImports
+     * @return the compiled expression
+     */
+    public static Serializable compileRule(String rule, Map<String, Serializable> expressionCache,
+            Map<String, Class<?>> additionalContextImports) {
+        return compileRule(rule, null, expressionCache, additionalContextImports);
+    }
+
+    /**
+     * Returns the compiled expression for the rule, compiling and caching it if needed. When the cache is a
+     * {@link MvelExpressionCache}, concurrent callers for the same rule share a single compilation and no lock is held
+     * while other rules are read or compiled.
+     */
+    protected static Serializable compileRule(final String rule, final Map<String, Object> ruleParameters,
+            Map<String, Serializable> expressionCache, final Map<String, Class<?>> additionalContextImports) {
+        if (expressionCache instanceof MvelExpressionCache) {
+            return ((MvelExpressionCache) expressionCache).getOrCompile(rule, new Callable<Serializable>() {
+                @Override
+                public Serializable call() {
+                    return compileExpression(rule, ruleParameters, additionalContextImports);
+                }
+            });
+        }
+
+        Serializable exp = null;
+        if (expressionCache != null) {
+            exp = expressionCache.get(rule);
+        }
+        if (exp == null) {
+            exp = compileExpression(rule, ruleParameters, additionalContextImports);
+            if (expressionCache != null) {
+                synchronized (expressionCache) {
+                    expressionCache.put(rule, exp);
+                }
+            }
+        }
+        return exp;
+    }
+
+    protected static Serializable compileExpression(String rule, Map<String, Object> ruleParameters,
+            Map<String, Class<?>> additionalContextImports) {
+        ParserContext context = new ParserContext();
+        context.addImport("MVEL", MVEL.class);
+        context.addImport("MvelHelper", MvelHelper.class);
+        context.addImport("CollectionUtils", SelectizeCollectionUtils.class);
+        if (MapUtils.isNotEmpty(additionalContextImports)) {
+            for (Entry<String, Class<?>> entry : additionalContextImports.entrySet()) {
+                context.addImport(entry.getKey(), entry.getValue());
+            }
+        }
+
+        String modifiedRule = modifyExpression(rule, ruleParameters, context);
+        return MVEL.compileExpression(modifiedRule, context);
+    }
+
+    /**
+     * @return the cache used by {@link #evaluateRule(String, Map)}, exposed so its hit, miss and eviction counts can
+     * be monitored
+     */
+    public static MvelExpressionCache getDefaultExpressionCache() {
+        return DEFAULT_EXPRESSION_CACHE;
+    }
+
     /**
      * <p>
      * Provides a hook point to modify the final expression before it's built. By default, this looks for attribute
@@ -0,0 +1,34 @@
+/*
+ * #%L
+ * BroadleafCommerce Common Libraries
+ * %%
+ * Copyright (C) 2009 - 2016 Broadleaf Commerce
+ * %%
+ * Licensed under the Broadleaf Fair Use License Agreement, Version 1.0
+ * (the "Fair Use License" located  at http://license.broadleafcommerce.org/fair_use_license-1.0.txt)
+ * unless the restrictions on use therein are violated and require payment to Broadleaf in which case
+ * the Broadleaf End User License Agreement (EULA), Version 1.1
+ * (the "Commercial License" located at http://license.broadleafcommerce.org/commercial_license-1.1.txt)
+ * shall apply.
+ * 
+ * Alternatively, the Commercial License may be replaced with a mutually agreed upon license (the "Custom License")
+ * between you and Broadleaf Commerce. You may not use this file except in compliance with the applicable license.
+ * #L%
+ */
+package org.broadleafcommerce.common.rule;
+
+/**
+ * Supplies rules that {@link MvelRulePrewarmer} should compile at startup. Implementations read their rules (offers,
+ * structured content, pages, ...) and compile each one into the same expression cache that is used when the rule is
+ * evaluated, typically through {@link MvelHelper#compileRule(String, java.util.Map, java.util.Map)}.
+ */
+public interface MvelRulePrewarmProvider {
+
+    /**
+     * Compiles every known rule for this provider into its expression cache
+     *
+     * @return the number of rules compiled
+     */
+    int prewarmRules();
+
+}
@@ -0,0 +1,70 @@
+/*
+ * #%L
+ * BroadleafCommerce Common Libraries
+ * %%
+ * Copyright (C) 2009 - 2016 Broadleaf Commerce
+ * %%
+ * Licensed under the Broadleaf Fair Use License Agreement, Version 1.0
+ * (the "Fair Use License" located  at http://license.broadleafcommerce.org/fair_use_license-1.0.txt)
+ * unless the restrictions on use therein are violated and require payment to Broadleaf in which case
+ * the Broadleaf End User License Agreement (EULA), Version 1.1
+ * (the "Commercial License" located at http://license.broadleafcommerce.org/commercial_license-1.1.txt)
+ * shall apply.
+ * 
+ * Alternatively, the Commercial License may be replaced with a mutually agreed upon license (the "Custom License")
+ * between you and Broadleaf Commerce. You may not use this file except in compliance with the applicable license.
+ * #L%
+ */
+package org.broadleafcommerce.common.rule;
+
+import org.apache.commons.collections.CollectionUtils;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.broadleafcommerce.common.util.StopWatch;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationListener;
+import org.springframework.context.event.ContextRefreshedEvent;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Compiles the rules supplied by every {@link MvelRulePrewarmProvider} once the application context has started, so
+ * that the first requests after a deployment do not all pay the MVEL compilation cost at the same time.
+ * <p>
+ * Disabled by default. Set "mvel.rule.prewarm.enabled" to true to enable it.
+ */
+@Component("blMvelRulePrewarmer")
+public class MvelRulePrewarmer implements ApplicationListener<ContextRefreshedEvent> {
+
+    private static final Log LOG = LogFactory.getLog(MvelRulePrewarmer.class);
+
+    @Value("${mvel.rule.prewarm.enabled:false}")
+    protected boolean prewarmEnabled = false;
+
+    @Autowired(required = false)
+    protected List<MvelRulePrewarmProvider> providers;
+
+    protected final AtomicBoolean prewarmed = new AtomicBoolean(false);
+
+    @Override
+    public void onApplicationEvent(ContextRefreshedEvent event) {
+        if (!prewarmEnabled || CollectionUtils.isEmpty(providers) || !prewarmed.compareAndSet(false, true)) {
+            return;
+        }
+        for (MvelRulePrewarmProvider provider : providers) {
+            StopWatch s = new StopWatch();
+            try {
+                int count = provider.prewarmRules();
+                LOG.info(String.format("Compiled %s rules from %s in %s", count, provider.getClass().getSimpleName(),
+                        s.toLapString()));
+            } catch (RuntimeException e) {
+                // A rule that does not compile will fail again when it is evaluated; it should not prevent startup
+                LOG.warn("Unable to prewarm rules from " + provider.getClass().getName(), e);
+            }
+        }
+        LOG.info("Default MVEL expression cache after prewarming: " + MvelHelper.getDefaultExpressionCache());
+    }
+}
@@ -23,115 +23,151 @@ import org.apache.commons.logging.LogFactory;
 import org.broadleafcommerce.common.file.domain.FileWorkArea;
 import org.broadleafcommerce.common.file.service.BroadleafFileUtils;
 import org.broadleafcommerce.common.sitemap.domain.SiteMapConfiguration;
-import org.broadleafcommerce.common.sitemap.wrapper.SiteMapIndexWrapper;
-import org.broadleafcommerce.common.sitemap.wrapper.SiteMapURLSetWrapper;
 import org.broadleafcommerce.common.sitemap.wrapper.SiteMapURLWrapper;
 import org.broadleafcommerce.common.sitemap.wrapper.SiteMapWrapper;
 import org.broadleafcommerce.common.util.FormatUtil;
 
-import java.io.BufferedWriter;
 import java.io.File;
-import java.io.FileWriter;
 import java.io.IOException;
-import java.io.Writer;
 import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
 
-import javax.xml.bind.JAXBContext;
-import javax.xml.bind.JAXBException;
-import javax.xml.bind.Marshaller;
-
 /**
  * Handles creating the various sitemap files. 
  * 
+ * Url entries are streamed to the current sitemap file as they are added. A new file is started once the current
+ * one holds {@link SiteMapConfiguration#getMaximumUrlEntriesPerFile()} entries or approaches the 50MB uncompressed
+ * size limit from the sitemap protocol. Generators running concurrently should each be given their own builder via
+ * {@link #createChildBuilder()}; children share the file numbering and file list of their parent.
+ * 
  * @author bpolster
  */
 public class SiteMapBuilder {
 
     protected static final Log LOG = LogFactory.getLog(SiteMapBuilder.class);
+
+    /**
+     * The sitemap protocol caps a single uncompressed file at 50MB
+     */
+    public static final long MAX_BYTES_PER_FILE = 50L * 1024 * 1024;
+
+    /**
+     * Room left below {@link #MAX_BYTES_PER_FILE} for buffered output and the next entry when deciding to rotate
+     */
+    protected static final long BYTE_LIMIT_HEADROOM = 256L * 1024;
+
     protected FileWorkArea fileWorkArea;
 
     protected SiteMapConfiguration siteMapConfig;
-    protected SiteMapURLSetWrapper currentURLSetWrapper;
-    protected List<String> indexedFileNames = new ArrayList<String>();
+    protected SiteMapXMLWriter currentWriter;
+    protected List<String> indexedFileNames;
     protected String baseUrl;
     protected boolean gzipSiteMapFiles = true;
+    protected long maxBytesPerFile = MAX_BYTES_PER_FILE;
+    protected long urlCount = 0;
 
     public SiteMapBuilder(SiteMapConfiguration siteMapConfig, FileWorkArea fileWorkArea, String baseUrl, boolean gzipSiteMapFiles) {
+        this(siteMapConfig, fileWorkArea, baseUrl, gzipSiteMapFiles, new ArrayList<String>());
+    }
+
+    protected SiteMapBuilder(SiteMapConfiguration siteMapConfig, FileWorkArea fileWorkArea, String baseUrl, boolean gzipSiteMapFiles,
+                             List<String> indexedFileNames) {
         this.fileWorkArea = fileWorkArea;
         this.siteMapConfig = siteMapConfig;
-        this.currentURLSetWrapper = new SiteMapURLSetWrapper();
         this.baseUrl = baseUrl;
         this.gzipSiteMapFiles = gzipSiteMapFiles;
+        this.indexedFileNames = indexedFileNames;
     }
 
     /**
-     * Returns the SiteMapURLSetWrapper that a Generator should use to add its next URL element.
-     * 
+     * Creates a builder that writes its own sitemap files but shares file numbering with this one, so that a
+     * generator can add urls on another thread. The child must be {@link #close() closed} before
+     * {@link #persistSiteMap()} is called on the parent.
      */
-    public void addUrl(SiteMapURLWrapper urlWrapper) {
-        if (currentURLSetWrapper.getSiteMapUrlWrappers().size() >= siteMapConfig.getMaximumUrlEntriesPerFile()) {
-            persistIndexedURLSetWrapper(currentURLSetWrapper);
-            currentURLSetWrapper = new SiteMapURLSetWrapper();
-        }
-        currentURLSetWrapper.getSiteMapUrlWrappers().add(urlWrapper);
+    public SiteMapBuilder createChildBuilder() {
+        SiteMapBuilder child = new SiteMapBuilder(siteMapConfig, fileWorkArea, baseUrl, gzipSiteMapFiles, indexedFileNames);
+        child.setMaxBytesPerFile(maxBytesPerFile);
+        return child;
     }
 
     /**
-     * Method takes in a valid JAXB object (e.g. has a RootElement) and persists it to 
-     * the temporary directory associated with this builder. 
-     * 
-     * @param fileName
+     * Writes the url element to the current sitemap file, starting a new file first if the current one is full.
      */
-    protected void persistXMLDocument(String fileName, Object xmlObject) {
-
+    public void addUrl(SiteMapURLWrapper urlWrapper) {
         try {
-            JAXBContext context = JAXBContext.newInstance(xmlObject.getClass());
-            Marshaller m = context.createMarshaller();
-            m.setProperty(Marshaller.JAXB_FORMATTED_OUTPUT, true);
-            m.setProperty(Marshaller.JAXB_FRAGMENT, true);
-
-            File file = new File(fileWorkArea.getFilePathLocation() + fileName);
-            if (LOG.isTraceEnabled()) {
-                LOG.trace("Persisting SiteMap document " + file.getAbsolutePath());
+            if (currentWriter != null && isFull(currentWriter)) {
+                currentWriter.close();
+                currentWriter = null;
             }
-
-            if (!file.exists()) {
-                file.createNewFile();
+            if (currentWriter == null) {
+                currentWriter = openIndexedFile();
             }
-            Writer writer = new BufferedWriter(new FileWriter(file.getAbsoluteFile()));
-            writer.write("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
-            m.marshal(xmlObject, writer);
-            writer.close();
+            currentWriter.writeUrl(urlWrapper);
+            urlCount++;
         } catch (IOException ioe) {
-            LOG.error("IOException occurred persisting XML Document", ioe);
-            throw new RuntimeException("Error persisting XML document when trying to build Sitemap", ioe);
-        } catch (JAXBException je) {
-            LOG.error("JAXBException occurred persisting XML Document", je);
-            throw new RuntimeException("Error persisting XML document when trying to build Sitemap", je);
+            LOG.error("IOException occurred writing SiteMap url", ioe);
+            throw new RuntimeException("Error writing url when trying to build Sitemap", ioe);
         }
     }
 
+    protected boolean isFull(SiteMapXMLWriter writer) {
+        return writer.getEntryCount() >= siteMapConfig.getMaximumUrlEntriesPerFile()
+                || writer.getByteCount() >= maxBytesPerFile - BYTE_LIMIT_HEADROOM;
+    }
+
     /**
-     * Save the passed in URL set to a new indexed file. 
-     * 
-     * @return
+     * Reserves the next indexed file name and opens a streaming writer for it.
      */
-    protected void persistIndexedURLSetWrapper(SiteMapURLSetWrapper urlSetWrapper) {
-        String indexedFileName = createNextIndexedFileName();
-        indexedFileNames.add(indexedFileName);
-        persistXMLDocument(indexedFileName, urlSetWrapper);
+    protected SiteMapXMLWriter openIndexedFile() throws IOException {
+        String indexedFileName;
+        synchronized (indexedFileNames) {
+            indexedFileName = createNextIndexedFileName();
+            indexedFileNames.add(indexedFileName);
+        }
+        if (LOG.isTraceEnabled()) {
+            LOG.trace("Streaming SiteMap document " + indexedFileName);
+        }
+        return new SiteMapXMLWriter(getWorkAreaFile(indexedFileName), "urlset", gzipSiteMapFiles);
     }
 
     /**
-     * Save the passed in URL set to a non-indexed file. 
-     * 
-     * @return
+     * Finishes the file currently being written by this builder, if any.
+     */
+    public void close() {
+        if (currentWriter != null) {
+            try {
+                currentWriter.close();
+            } catch (IOException ioe) {
+                LOG.error("IOException occurred completing SiteMap document", ioe);
+                throw new RuntimeException("Error completing XML document when trying to build Sitemap", ioe);
+            } finally {
+                currentWriter = null;
+            }
+        }
+    }
+
+    /**
+     * If everything fit into a single file, it is renamed to the non-indexed site map name. An empty url set is
+     * written under that name when no urls were added at all.
      */
     protected void persistNonIndexedSiteMap() {
-        indexedFileNames.add(siteMapConfig.getSiteMapFileName());
-        persistXMLDocument(siteMapConfig.getSiteMapFileName(), currentURLSetWrapper);
+        String fileName = siteMapConfig.getSiteMapFileName();
+        try {
+            if (indexedFileNames.isEmpty()) {
+                new SiteMapXMLWriter(getWorkAreaFile(fileName), "urlset", gzipSiteMapFiles).close();
+            } else {
+                String indexedFileName = indexedFileNames.remove(0);
+                moveWorkAreaFile(indexedFileName, fileName);
+                if (gzipSiteMapFiles) {
+                    moveWorkAreaFile(indexedFileName + SiteMapXMLWriter.ENCODING_EXTENSION, fileName + SiteMapXMLWriter.ENCODING_EXTENSION);
+                }
+            }
+        } catch (IOException ioe) {
+            LOG.error("IOException occurred persisting XML Document", ioe);
+            throw new RuntimeException("Error persisting XML document when trying to build Sitemap", ioe);
+        }
+        indexedFileNames.add(fileName);
     }
 
     /**
@@ -141,31 +177,34 @@ public class SiteMapBuilder {
      */
     protected void persistIndexedSiteMap() {
         String now = FormatUtil.formatDateUsingW3C(new Date());
-        
-        // Save the leftover URL set
-        persistIndexedURLSetWrapper(currentURLSetWrapper);
-
-        // Build the siteMapIndex
-        SiteMapIndexWrapper siteMapIndexWrapper = new SiteMapIndexWrapper();
-        for (String fileName : indexedFileNames) {
-            SiteMapWrapper siteMapWrapper = new SiteMapWrapper();
-            String fileLoc = null;
-            if (gzipSiteMapFiles) {
-                fileLoc = BroadleafFileUtils.appendUnixPaths(baseUrl, fileName + ".gz");
-            } else {
-                fileLoc = BroadleafFileUtils.appendUnixPaths(baseUrl, fileName);
-            }
-            siteMapWrapper.setLoc(fileLoc)   ;         
-            siteMapWrapper.setLastmod(now);
-            siteMapIndexWrapper.getSiteMapWrappers().add(siteMapWrapper);
-        }
 
         if (LOG.isTraceEnabled()) {
             LOG.trace("Persisting sitemap.xml file for indexed site map ");
         }
-        indexedFileNames.add(siteMapConfig.getIndexedSiteMapFileName());
-        persistXMLDocument(siteMapConfig.getIndexedSiteMapFileName(),
-                siteMapIndexWrapper);
+        String indexFileName = siteMapConfig.getIndexedSiteMapFileName();
+        try {
+            SiteMapXMLWriter indexWriter = new SiteMapXMLWriter(getWorkAreaFile(indexFileName), "sitemapindex", gzipSiteMapFiles);
+            try {
+                for (String fileName : indexedFileNames) {
+                    SiteMapWrapper siteMapWrapper = new SiteMapWrapper();
+                    String fileLoc = null;
+                    if (gzipSiteMapFiles) {
+                        fileLoc = BroadleafFileUtils.appendUnixPaths(baseUrl, fileName + SiteMapXMLWriter.ENCODING_EXTENSION);
+                    } else {
+                        fileLoc = BroadleafFileUtils.appendUnixPaths(baseUrl, fileName);
+                    }
+                    siteMapWrapper.setLoc(fileLoc);
+                    siteMapWrapper.setLastmod(now);
+                    indexWriter.writeSiteMap(siteMapWrapper);
+                }
+            } finally {
+                indexWriter.close();
+            }
+        } catch (IOException ioe) {
+            LOG.error("IOException occurred persisting XML Document", ioe);
+            throw new RuntimeException("Error persisting XML document when trying to build Sitemap", ioe);
+        }
+        indexedFileNames.add(indexFileName);
     }
 
     /**
@@ -182,13 +221,29 @@ public class SiteMapBuilder {
     }
 
     protected void persistSiteMap() {
-        if (indexedFileNames.size() > 0) {
+        close();
+        if (indexedFileNames.size() > 1) {
             persistIndexedSiteMap();
         } else {
             persistNonIndexedSiteMap();
         }
     }
 
+    protected File getWorkAreaFile(String fileName) {
+        return new File(fileWorkArea.getFilePathLocation() + fileName);
+    }
+
+    protected void moveWorkAreaFile(String fromFileName, String toFileName) throws IOException {
+        File from = getWorkAreaFile(fromFileName);
+        File to = getWorkAreaFile(toFileName);
+        if (to.exists() && !to.delete()) {
+            throw new IOException("Unable to replace " + to.getAbsolutePath());
+        }
+        if (!from.renameTo(to)) {
+            throw new IOException("Unable to rename " + from.getAbsolutePath() + " to " + to.getAbsolutePath());
+        }
+    }
+
     public List<String> getIndexedFileNames() {
         return indexedFileNames;
     }
@@ -197,4 +252,19 @@ public class SiteMapBuilder {
         return baseUrl;
     }
 
+    /**
+     * @return the number of urls added through this builder (not including any children)
+     */
+    public long getUrlCount() {
+        return urlCount;
+    }
+
+    public long getMaxBytesPerFile() {
+        return maxBytesPerFile;
+    }
+
+    public void setMaxBytesPerFile(long maxBytesPerFile) {
+        this.maxBytesPerFile = maxBytesPerFile;
+    }
+
 }
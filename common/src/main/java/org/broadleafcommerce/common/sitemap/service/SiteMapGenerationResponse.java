@@ -19,7 +19,9 @@
 package org.broadleafcommerce.common.sitemap.service;
 
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Represents the outcome of a SiteMap generation request.   Can be extended for specific domain objectives but 
@@ -33,6 +35,7 @@ public class SiteMapGenerationResponse {
     private List<String> siteMapFilePaths = new ArrayList<String>();
     private boolean hasError = false;
     private String errorCode;
+    private Map<String, Double> entriesPerSecondByGenerator = new LinkedHashMap<String, Double>();
 
     /**
      * Returns the name of the main SiteMap index file.
@@ -100,4 +103,20 @@ public class SiteMapGenerationResponse {
     public void setErrorCode(String errorCode) {
         this.errorCode = errorCode;
     }
+
+    /**
+     * Returns the throughput of each generator that ran, keyed by generator type and configuration id.
+     * @return
+     */
+    public Map<String, Double> getEntriesPerSecondByGenerator() {
+        return entriesPerSecondByGenerator;
+    }
+
+    /**
+     * Sets the throughput of each generator that ran.
+     * @param entriesPerSecondByGenerator
+     */
+    public void setEntriesPerSecondByGenerator(Map<String, Double> entriesPerSecondByGenerator) {
+        this.entriesPerSecondByGenerator = entriesPerSecondByGenerator;
+    }
 }
@@ -30,7 +30,10 @@ import org.broadleafcommerce.common.sitemap.domain.SiteMapConfiguration;
 import org.broadleafcommerce.common.sitemap.domain.SiteMapGeneratorConfiguration;
 import org.broadleafcommerce.common.sitemap.exception.SiteMapException;
 import org.broadleafcommerce.common.util.BLCSystemProperty;
+import org.broadleafcommerce.common.util.StreamingTransactionCapable;
 import org.broadleafcommerce.common.web.BaseUrlResolver;
+import org.broadleafcommerce.common.web.BroadleafRequestContext;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import java.io.File;
@@ -39,6 +42,10 @@ import java.io.FileOutputStream;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.zip.GZIPOutputStream;
 
 import javax.annotation.Resource;
@@ -73,6 +80,17 @@ public class SiteMapServiceImpl implements SiteMapService {
     @Resource(name = "blBaseUrlResolver")
     protected BaseUrlResolver baseUrlResolver;
 
+    @Resource(name = "blStreamingTransactionCapableUtil")
+    protected StreamingTransactionCapable transactionUtil;
+
+    /**
+     * Number of threads used to run the configured generators. With a single thread the generators share one
+     * builder, so their urls are packed into the same run of sitemap files; with more, each generator writes its
+     * own files.
+     */
+    @Value("${sitemap.generator.threads:1}")
+    protected int generatorThreads = 1;
+
     @Override
     public SiteMapGenerationResponse generateSiteMap() throws SiteMapException, IOException {
         SiteMapGenerationResponse smgr = new SiteMapGenerationResponse();
@@ -92,6 +110,8 @@ public class SiteMapServiceImpl implements SiteMapService {
         if (LOG.isTraceEnabled()) {
             LOG.trace("File work area initalized with path " + fileWorkArea.getFilePathLocation());
         }
+        List<SiteMapGeneratorConfiguration> configurations = new ArrayList<SiteMapGeneratorConfiguration>();
+        List<SiteMapGenerator> generators = new ArrayList<SiteMapGenerator>();
         for (SiteMapGeneratorConfiguration currentConfiguration : smc.getSiteMapGeneratorConfigurations()) {
             if (currentConfiguration.isDisabled()) {
                 if (LOG.isTraceEnabled()) {
@@ -101,21 +121,28 @@ public class SiteMapServiceImpl implements SiteMapService {
             }
             SiteMapGenerator generator = selectSiteMapGenerator(currentConfiguration);
             if (generator != null) {
-                if (LOG.isTraceEnabled()) {
-                    LOG.trace("SiteMapGenerator found, adding entries" + generator.getClass());
-                }
-                generator.addSiteMapEntries(currentConfiguration, siteMapBuilder);
+                configurations.add(currentConfiguration);
+                generators.add(generator);
             } else {
                 LOG.warn("No site map generator found to process generator configuration for " + currentConfiguration.getSiteMapGeneratorType());
             }
         }
 
-        siteMapBuilder.persistSiteMap();
-
+        try {
+            if (generatorThreads > 1 && configurations.size() > 1) {
+                runSiteMapGeneratorsConcurrently(configurations, generators, siteMapBuilder, smgr);
+            } else {
+                for (int i = 0; i < configurations.size(); i++) {
+                    runSiteMapGenerator(configurations.get(i), generators.get(i), siteMapBuilder, smgr);
+                }
+            }
+            siteMapBuilder.persistSiteMap();
+        } finally {
+            siteMapBuilder.close();
+        }
 
-        // Check for GZip
+        // The writers produce the gzipped copies alongside the plain files as they stream
         if (getGzipSiteMapFiles()) {
-            gzipAndDeleteFiles(fileWorkArea, siteMapBuilder.getIndexedFileNames(), false);
             List<String> indexFileNames = new ArrayList<String>();
             for (String fileName: siteMapBuilder.getIndexedFileNames()) {
                 indexFileNames.add(fileName + ENCODING_EXTENSION);
@@ -133,6 +160,104 @@ public class SiteMapServiceImpl implements SiteMapService {
         return smgr;
     }
 
+    /**
+     * Runs a single generator against the given builder and records its throughput on the response.
+     */
+    protected void runSiteMapGenerator(SiteMapGeneratorConfiguration configuration, SiteMapGenerator generator,
+                                       SiteMapBuilder siteMapBuilder, SiteMapGenerationResponse smgr) {
+        if (LOG.isTraceEnabled()) {
+            LOG.trace("SiteMapGenerator found, adding entries" + generator.getClass());
+        }
+        long startUrlCount = siteMapBuilder.getUrlCount();
+        long start = System.nanoTime();
+        generator.addSiteMapEntries(configuration, siteMapBuilder);
+        long elapsedNanos = System.nanoTime() - start;
+        long entries = siteMapBuilder.getUrlCount() - startUrlCount;
+        double entriesPerSecond = elapsedNanos > 0 ? entries * 1000000000d / elapsedNanos : 0d;
+
+        String key = configuration.getSiteMapGeneratorType() + "-" + configuration.getId();
+        synchronized (smgr) {
+            smgr.getEntriesPerSecondByGenerator().put(key, entriesPerSecond);
+        }
+        if (LOG.isInfoEnabled()) {
+            LOG.info(String.format("SiteMapGenerator %s added %d entries in %d ms (%.1f entries/sec)",
+                    key, entries, elapsedNanos / 1000000, entriesPerSecond));
+        }
+    }
+
+    /**
+     * Runs the generators on a bounded pool, each writing to its own child of the main builder. Workers get a
+     * lightweight copy of the calling thread's request context and, when available, their own EntityManager.
+     */
+    protected void runSiteMapGeneratorsConcurrently(final List<SiteMapGeneratorConfiguration> configurations,
+                                                    final List<SiteMapGenerator> generators, SiteMapBuilder siteMapBuilder,
+                                                    final SiteMapGenerationResponse smgr) throws SiteMapException {
+        BroadleafRequestContext brc = BroadleafRequestContext.getBroadleafRequestContext();
+        final BroadleafRequestContext contextTemplate = brc == null ? null : brc.createLightWeightClone();
+        int threads = Math.min(generatorThreads, configurations.size());
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        List<SiteMapBuilder> childBuilders = new ArrayList<SiteMapBuilder>();
+        List<Future<?>> futures = new ArrayList<Future<?>>();
+        try {
+            for (int i = 0; i < configurations.size(); i++) {
+                final SiteMapGeneratorConfiguration configuration = configurations.get(i);
+                final SiteMapGenerator generator = generators.get(i);
+                final SiteMapBuilder childBuilder = siteMapBuilder.createChildBuilder();
+                childBuilders.add(childBuilder);
+                futures.add(executor.submit(new Runnable() {
+                    @Override
+                    public void run() {
+                        runSiteMapGeneratorOnWorker(configuration, generator, childBuilder, smgr, contextTemplate);
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SiteMapException("Interrupted while generating the site map", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new SiteMapException("Unable to generate the site map", cause);
+        } finally {
+            executor.shutdownNow();
+            for (SiteMapBuilder childBuilder : childBuilders) {
+                childBuilder.close();
+            }
+        }
+    }
+
+    protected void runSiteMapGeneratorOnWorker(final SiteMapGeneratorConfiguration configuration, final SiteMapGenerator generator,
+                                               final SiteMapBuilder childBuilder, final SiteMapGenerationResponse smgr,
+                                               BroadleafRequestContext contextTemplate) {
+        if (contextTemplate != null) {
+            BroadleafRequestContext.setBroadleafRequestContext(contextTemplate.createLightWeightClone());
+        }
+        try {
+            Runnable operation = new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        runSiteMapGenerator(configuration, generator, childBuilder, smgr);
+                    } finally {
+                        childBuilder.close();
+                    }
+                }
+            };
+            if (transactionUtil != null) {
+                transactionUtil.runOptionalEntityManagerInViewOperation(operation);
+            } else {
+                operation.run();
+            }
+        } finally {
+            BroadleafRequestContext.setBroadleafRequestContext(null);
+        }
+    }
+
     @Override
     public File getSiteMapFile(String fileName) throws SiteMapException, IOException {
         if (LOG.isTraceEnabled()) {
@@ -293,6 +418,14 @@ public class SiteMapServiceImpl implements SiteMapService {
     }
 
 
+    public int getGeneratorThreads() {
+        return generatorThreads;
+    }
+
+    public void setGeneratorThreads(int generatorThreads) {
+        this.generatorThreads = generatorThreads;
+    }
+
     public void setGzipSiteMapFiles(Boolean gzipSiteMapFiles) {
         this.gzipSiteMapFiles = gzipSiteMapFiles;
     }
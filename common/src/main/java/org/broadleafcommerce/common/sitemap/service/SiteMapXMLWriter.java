@@ -0,0 +1,203 @@
+/*
+ * #%L
+ * BroadleafCommerce Common Libraries
+ * %%
+ * Copyright (C) 2009 - 2016 Broadleaf Commerce
+ * %%
+ * Licensed under the Broadleaf Fair Use License Agreement, Version 1.0
+ * (the "Fair Use License" located  at http://license.broadleafcommerce.org/fair_use_license-1.0.txt)
+ * unless the restrictions on use therein are violated and require payment to Broadleaf in which case
+ * the Broadleaf End User License Agreement (EULA), Version 1.1
+ * (the "Commercial License" located at http://license.broadleafcommerce.org/commercial_license-1.1.txt)
+ * shall apply.
+ * 
+ * Alternatively, the Commercial License may be replaced with a mutually agreed upon license (the "Custom License")
+ * between you and Broadleaf Commerce. You may not use this file except in compliance with the applicable license.
+ * #L%
+ */
+
+package org.broadleafcommerce.common.sitemap.service;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.output.CountingOutputStream;
+import org.apache.commons.io.output.TeeOutputStream;
+import org.broadleafcommerce.common.sitemap.wrapper.SiteMapImageWrapper;
+import org.broadleafcommerce.common.sitemap.wrapper.SiteMapURLWrapper;
+import org.broadleafcommerce.common.sitemap.wrapper.SiteMapWrapper;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.GZIPOutputStream;
+
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+
+/**
+ * Streams a single sitemap document (either a urlset or a sitemapindex) to disk with a StAX writer, so that
+ * url entries are written as they are produced rather than collected into an object graph and marshalled at the end.
+ * 
+ * When gzip is requested, the same bytes are written to a sibling ".gz" file in the same pass. The output keeps one
+ * element per line, matching the layout previously produced by the formatted JAXB marshaller.
+ */
+public class SiteMapXMLWriter {
+
+    public static final String SITEMAP_NAMESPACE = "http://www.sitemaps.org/schemas/sitemap/0.9";
+    public static final String IMAGE_NAMESPACE = "http://www.google.com/schemas/sitemap-image/1.1";
+    public static final String IMAGE_PREFIX = "image";
+    public static final String ENCODING_EXTENSION = ".gz";
+
+    protected static final XMLOutputFactory OUTPUT_FACTORY = XMLOutputFactory.newFactory();
+    protected static final int BUFFER_SIZE = 64 * 1024;
+    protected static final String[] LINE_INDENTS = { "\n", "\n    ", "\n        ", "\n            " };
+
+    protected final File file;
+    protected final CountingOutputStream countingStream;
+    protected final Writer writer;
+    protected final XMLStreamWriter xmlWriter;
+    protected int entryCount = 0;
+    protected boolean closed = false;
+
+    /**
+     * @param file the uncompressed file to write
+     * @param rootElement either "urlset" or "sitemapindex"
+     * @param gzip whether a gzipped copy should be written alongside the uncompressed file
+     */
+    public SiteMapXMLWriter(File file, String rootElement, boolean gzip) throws IOException {
+        this.file = file;
+        OutputStream out = new BufferedOutputStream(new FileOutputStream(file), BUFFER_SIZE);
+        if (gzip) {
+            try {
+                OutputStream gzipOut = new GZIPOutputStream(new FileOutputStream(file.getPath() + ENCODING_EXTENSION), BUFFER_SIZE);
+                out = new TeeOutputStream(out, gzipOut);
+            } catch (IOException e) {
+                IOUtils.closeQuietly(out);
+                throw e;
+            }
+        }
+        countingStream = new CountingOutputStream(out);
+        writer = new OutputStreamWriter(countingStream, StandardCharsets.UTF_8);
+        try {
+            xmlWriter = OUTPUT_FACTORY.createXMLStreamWriter(writer);
+            xmlWriter.writeStartDocument("UTF-8", "1.0");
+            xmlWriter.writeCharacters("\n");
+            xmlWriter.writeStartElement(rootElement);
+            xmlWriter.writeDefaultNamespace(SITEMAP_NAMESPACE);
+            xmlWriter.writeNamespace(IMAGE_PREFIX, IMAGE_NAMESPACE);
+        } catch (XMLStreamException e) {
+            IOUtils.closeQuietly(writer);
+            throw new IOException("Unable to start sitemap document " + file.getAbsolutePath(), e);
+        }
+    }
+
+    /**
+     * Writes a url element to a urlset document. Null values are omitted, as they were by the JAXB marshaller.
+     */
+    public void writeUrl(SiteMapURLWrapper url) throws IOException {
+        try {
+            newLine(1);
+            xmlWriter.writeStartElement("url");
+            writeElement(2, "loc", url.getLoc());
+            writeElement(2, "lastmod", url.getLastmod());
+            writeElement(2, "changefreq", url.getChangefreq());
+            writeElement(2, "priority", url.getPriority());
+            for (SiteMapImageWrapper image : url.getSiteMapImageWrappers()) {
+                newLine(2);
+                xmlWriter.writeStartElement(IMAGE_PREFIX, "image", IMAGE_NAMESPACE);
+                if (image.getLoc() != null) {
+                    newLine(3);
+                    xmlWriter.writeStartElement(IMAGE_PREFIX, "loc", IMAGE_NAMESPACE);
+                    xmlWriter.writeCharacters(image.getLoc());
+                    xmlWriter.writeEndElement();
+                }
+                newLine(2);
+                xmlWriter.writeEndElement();
+            }
+            newLine(1);
+            xmlWriter.writeEndElement();
+            entryCount++;
+        } catch (XMLStreamException e) {
+            throw new IOException("Unable to write sitemap url to " + file.getAbsolutePath(), e);
+        }
+    }
+
+    /**
+     * Writes a sitemap element to a sitemapindex document.
+     */
+    public void writeSiteMap(SiteMapWrapper siteMap) throws IOException {
+        try {
+            newLine(1);
+            xmlWriter.writeStartElement("sitemap");
+            writeElement(2, "loc", siteMap.getLoc());
+            writeElement(2, "lastmod", siteMap.getLastmod());
+            newLine(1);
+            xmlWriter.writeEndElement();
+            entryCount++;
+        } catch (XMLStreamException e) {
+            throw new IOException("Unable to write sitemap entry to " + file.getAbsolutePath(), e);
+        }
+    }
+
+    /**
+     * Ends the document and closes the underlying files. Subsequent calls have no effect.
+     */
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            newLine(0);
+            xmlWriter.writeEndElement();
+            xmlWriter.writeEndDocument();
+            xmlWriter.close();
+        } catch (XMLStreamException e) {
+            throw new IOException("Unable to complete sitemap document " + file.getAbsolutePath(), e);
+        } finally {
+            writer.close();
+        }
+    }
+
+    protected void writeElement(int depth, String name, String value) throws XMLStreamException {
+        if (value == null) {
+            return;
+        }
+        newLine(depth);
+        xmlWriter.writeStartElement(name);
+        xmlWriter.writeCharacters(value);
+        xmlWriter.writeEndElement();
+    }
+
+    protected void newLine(int depth) throws XMLStreamException {
+        xmlWriter.writeCharacters(LINE_INDENTS[depth]);
+    }
+
+    /**
+     * @return the number of url or sitemap entries written so far
+     */
+    public int getEntryCount() {
+        return entryCount;
+    }
+
+    /**
+     * @return the number of uncompressed bytes that have reached the file so far. This trails the logical size by
+     * whatever is still held in the writer buffers.
+     */
+    public long getByteCount() {
+        return countingStream.getByteCount();
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    public boolean isClosed() {
+        return closed;
+    }
+}
@@ -18,6 +18,7 @@
 package org.broadleafcommerce.common.web.filter;
 
 import org.broadleafcommerce.common.i18n.service.TranslationConsiderationContext;
+import org.broadleafcommerce.common.i18n.service.TranslationPrefetchContext;
 import org.broadleafcommerce.common.i18n.service.TranslationService;
 import org.broadleafcommerce.common.util.BLCSystemProperty;
 import org.broadleafcommerce.common.web.AbstractBroadleafWebRequestProcessor;
@@ -48,4 +49,9 @@ public class TranslationRequestProcessor extends AbstractBroadleafWebRequestProc
         TranslationConsiderationContext.setTranslationConsiderationContext(getTranslationEnabled());
         TranslationConsiderationContext.setTranslationService(translationService);
     }
+
+    @Override
+    public void postProcess(WebRequest request) {
+        TranslationPrefetchContext.removeTranslationPrefetchContext();
+    }
 }
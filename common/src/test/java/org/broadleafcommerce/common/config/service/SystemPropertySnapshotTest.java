@@ -0,0 +1,61 @@
+/*
+ * #%L
+ * BroadleafCommerce Common Libraries
+ * %%
+ * Copyright (C) 2009 - 2016 Broadleaf Commerce
+ * %%
+ * Licensed under the Broadleaf Fair Use License Agreement, Version 1.0
+ * (the "Fair Use License" located  at http://license.broadleafcommerce.org/fair_use_license-1.0.txt)
+ * unless the restrictions on use therein are violated and require payment to Broadleaf in which case
+ * the Broadleaf End User License Agreement (EULA), Version 1.1
+ * (the "Commercial License" located at http://license.broadleafcommerce.org/commercial_license-1.1.txt)
+ * shall apply.
+ * 
+ * Alternatively, the Commercial License may be replaced with a mutually agreed upon license (the "Custom License")
+ * between you and Broadleaf Commerce. You may not use this file except in compliance with the applicable license.
+ * #L%
+ */
+package org.broadleafcommerce.common.config.service;
+
+import junit.framework.TestCase;
+
+public class SystemPropertySnapshotTest extends TestCase {
+
+    public void testPartitionsBySiteAndOrigin() {
+        SystemPropertySnapshot snapshot = new SystemPropertySnapshot(-1L);
+        snapshot.put("prop", null, false, new ResolvedSystemProperty("global"));
+        snapshot.put("prop", 1L, false, new ResolvedSystemProperty("site1"));
+        snapshot.put("prop", null, true, ResolvedSystemProperty.NULL);
+
+        assertEquals("global", snapshot.get("prop", null, false).getValue());
+        assertEquals("site1", snapshot.get("prop", 1L, false).getValue());
+        assertNull(snapshot.get("prop", null, true).getValue());
+        assertNull(snapshot.get("prop", 2L, false));
+        assertNull(snapshot.get("prop", 1L, true));
+        assertFalse(snapshot.isExpired());
+    }
+
+    public void testExpires() throws Exception {
+        SystemPropertySnapshot snapshot = new SystemPropertySnapshot(0L);
+        Thread.sleep(5);
+        assertTrue(snapshot.isExpired());
+    }
+
+    public void testTypedValues() {
+        assertEquals(42, new ResolvedSystemProperty("42").getIntValue());
+        assertEquals(42L, new ResolvedSystemProperty("42").getLongValue());
+        assertTrue(new ResolvedSystemProperty("TRUE").getBooleanValue());
+        assertFalse(new ResolvedSystemProperty("yes").getBooleanValue());
+        assertTrue(new ResolvedSystemProperty(" ").isBlank());
+        assertTrue(ResolvedSystemProperty.NULL.isBlank());
+
+        ResolvedSystemProperty invalid = new ResolvedSystemProperty("abc");
+        try {
+            invalid.getIntValue();
+            fail();
+        } catch (NumberFormatException e) {
+            // expected, same as Integer.valueOf
+        }
+    }
+
+}
@@ -0,0 +1,235 @@
+/*
+ * #%L
+ * BroadleafCommerce Common Libraries
+ * %%
+ * Copyright (C) 2009 - 2016 Broadleaf Commerce
+ * %%
+ * Licensed under the Broadleaf Fair Use License Agreement, Version 1.0
+ * (the "Fair Use License" located  at http://license.broadleafcommerce.org/fair_use_license-1.0.txt)
+ * unless the restrictions on use therein are violated and require payment to Broadleaf in which case
+ * the Broadleaf End User License Agreement (EULA), Version 1.1
+ * (the "Commercial License" located at http://license.broadleafcommerce.org/commercial_license-1.1.txt)
+ * shall apply.
+ * 
+ * Alternatively, the Commercial License may be replaced with a mutually agreed upon license (the "Custom License")
+ * between you and Broadleaf Commerce. You may not use this file except in compliance with the applicable license.
+ * #L%
+ */
+package org.broadleafcommerce.common.extension;
+
+import org.broadleafcommerce.common.breadcrumbs.dto.BreadcrumbDTO;
+import org.broadleafcommerce.common.breadcrumbs.service.BreadcrumbServiceExtensionHandler;
+import org.broadleafcommerce.common.breadcrumbs.service.BreadcrumbServiceExtensionManager;
+import org.broadleafcommerce.common.web.BroadleafRequestContext;
+import org.broadleafcommerce.common.web.BroadleafTemplateViewResolverExtensionHandler;
+import org.broadleafcommerce.common.web.BroadleafTemplateViewResolverExtensionManager;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import junit.framework.TestCase;
+
+public class ExtensionManagerTest extends TestCase {
+
+    protected TestExtensionManager manager;
+    protected List<String> calls;
+
+    @Override
+    protected void setUp() throws Exception {
+        manager = new TestExtensionManager();
+        manager.setOptimizedDispatch(true);
+        calls = new ArrayList<String>();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        BroadleafRequestContext.setBroadleafRequestContext(null);
+    }
+
+    public void testNotHandledHandlerLeavesTheResultNotHandled() {
+        manager.setHandlers(new ArrayList<TestExtensionHandler>(Arrays.<TestExtensionHandler>asList(new NotHandledExtensionHandler())));
+
+        assertEquals(ExtensionResultStatusType.NOT_HANDLED, manager.getProxy().record(calls));
+    }
+
+    public void testHandlerWithABodyIsCalled() {
+        RecordingExtensionHandler handler = new RecordingExtensionHandler("first", 1);
+        manager.setHandlers(new ArrayList<TestExtensionHandler>(Arrays.asList(new NotHandledExtensionHandler(), handler)));
+
+        assertEquals(ExtensionResultStatusType.HANDLED, manager.getProxy().record(calls));
+        assertEquals(Arrays.asList("first"), calls);
+    }
+
+    public void testBreadcrumbHandlersRunInReversePriorityOrder() {
+        BreadcrumbServiceExtensionManager breadcrumbManager = new BreadcrumbServiceExtensionManager();
+        breadcrumbManager.setOptimizedDispatch(true);
+        breadcrumbManager.registerHandler(new FirstBreadcrumbExtensionHandler(calls));
+        breadcrumbManager.registerHandler(new SecondBreadcrumbExtensionHandler(calls));
+
+        breadcrumbManager.getProxy().modifyBreadcrumbList("/", new HashMap<String, String[]>(),
+                new ExtensionResultHolder<List<BreadcrumbDTO>>());
+
+        assertEquals(Arrays.asList("second", "first"), calls);
+    }
+
+    public void testTemplateViewResolverHandlersDoNotRunInTheAdmin() {
+        BroadleafTemplateViewResolverExtensionManager viewResolverManager = new BroadleafTemplateViewResolverExtensionManager();
+        viewResolverManager.setOptimizedDispatch(true);
+        viewResolverManager.registerHandler(new RecordingViewResolverExtensionHandler(calls));
+        BroadleafRequestContext context = new BroadleafRequestContext();
+        context.setAdmin(true);
+        BroadleafRequestContext.setBroadleafRequestContext(context);
+
+        assertEquals(ExtensionResultStatusType.NOT_HANDLED,
+                viewResolverManager.getProxy().overrideView(new ExtensionResultHolder<String>(), "view", false));
+        assertTrue(calls.isEmpty());
+
+        context.setAdmin(false);
+        assertEquals(ExtensionResultStatusType.HANDLED,
+                viewResolverManager.getProxy().overrideView(new ExtensionResultHolder<String>(), "view", false));
+        assertEquals(Arrays.asList("view"), calls);
+    }
+
+    public void testReplacingAHandlerRebuildsTheDispatch() {
+        List<TestExtensionHandler> handlers = new ArrayList<TestExtensionHandler>();
+        handlers.add(new RecordingExtensionHandler("first", 1));
+        manager.setHandlers(handlers);
+        manager.getProxy().record(calls);
+
+        // Same list instance and the same size, only the handler differs
+        handlers.set(0, new RecordingExtensionHandler("second", 1));
+        manager.setHandlers(handlers);
+        manager.getProxy().record(calls);
+
+        manager.setHandlers(new ArrayList<TestExtensionHandler>(Arrays.<TestExtensionHandler>asList(new RecordingExtensionHandler("third", 1))));
+        manager.getProxy().record(calls);
+
+        assertEquals(Arrays.asList("first", "second", "third"), calls);
+    }
+
+    public void testRegisteredHandlerIsPickedUp() {
+        manager.registerHandler(new RecordingExtensionHandler("late", 2));
+        manager.getProxy().record(calls);
+        manager.registerHandler(new OtherRecordingExtensionHandler("early", 1));
+        manager.getProxy().record(calls);
+
+        assertEquals(Arrays.asList("late", "early", "late"), calls);
+    }
+
+    public static class FirstBreadcrumbExtensionHandler extends AbstractExtensionHandler implements BreadcrumbServiceExtensionHandler {
+
+        protected final List<String> calls;
+
+        public FirstBreadcrumbExtensionHandler(List<String> calls) {
+            this.calls = calls;
+            setPriority(1);
+        }
+
+        @Override
+        public ExtensionResultStatusType modifyBreadcrumbList(String url, Map<String, String[]> queryParams,
+                ExtensionResultHolder<List<BreadcrumbDTO>> holder) {
+            calls.add("first");
+            return ExtensionResultStatusType.HANDLED_CONTINUE;
+        }
+    }
+
+    public static class SecondBreadcrumbExtensionHandler extends AbstractExtensionHandler implements BreadcrumbServiceExtensionHandler {
+
+        protected final List<String> calls;
+
+        public SecondBreadcrumbExtensionHandler(List<String> calls) {
+            this.calls = calls;
+            setPriority(2);
+        }
+
+        @Override
+        public ExtensionResultStatusType modifyBreadcrumbList(String url, Map<String, String[]> queryParams,
+                ExtensionResultHolder<List<BreadcrumbDTO>> holder) {
+            calls.add("second");
+            return ExtensionResultStatusType.HANDLED_CONTINUE;
+        }
+    }
+
+    public static class RecordingViewResolverExtensionHandler extends AbstractExtensionHandler
+            implements BroadleafTemplateViewResolverExtensionHandler {
+
+        protected final List<String> calls;
+
+        public RecordingViewResolverExtensionHandler(List<String> calls) {
+            this.calls = calls;
+        }
+
+        @Override
+        public ExtensionResultStatusType overrideView(ExtensionResultHolder<String> erh, String originalViewName,
+                boolean isAjaxRequest) {
+            calls.add(originalViewName);
+            return ExtensionResultStatusType.HANDLED;
+        }
+
+        @Override
+        public ExtensionResultStatusType appendCacheKey(ExtensionResultHolder<String> erh, String originalViewName,
+                boolean isAjaxRequest) {
+            return ExtensionResultStatusType.NOT_HANDLED;
+        }
+
+        @Override
+        public ExtensionResultStatusType provideTemplateWrapper(ExtensionResultHolder<String> erh, String originalViewName,
+                boolean isAjaxRequest) {
+            return ExtensionResultStatusType.NOT_HANDLED;
+        }
+    }
+
+    public interface TestExtensionHandler extends ExtensionHandler {
+
+        ExtensionResultStatusType record(List<String> calls);
+    }
+
+    public static class TestExtensionManager extends ExtensionManager<TestExtensionHandler> {
+
+        public TestExtensionManager() {
+            super(TestExtensionHandler.class);
+        }
+
+        @Override
+        public boolean continueOnHandled() {
+            return true;
+        }
+    }
+
+    public abstract static class AbstractTestExtensionHandler extends AbstractExtensionHandler implements TestExtensionHandler {
+
+        @Override
+        public ExtensionResultStatusType record(List<String> calls) {
+            return ExtensionResultStatusType.NOT_HANDLED;
+        }
+    }
+
+    public static class NotHandledExtensionHandler extends AbstractTestExtensionHandler {
+    }
+
+    public static class RecordingExtensionHandler extends AbstractTestExtensionHandler {
+
+        protected final String name;
+
+        public RecordingExtensionHandler(String name, int priority) {
+            this.name = name;
+            setPriority(priority);
+        }
+
+        @Override
+        public ExtensionResultStatusType record(List<String> calls) {
+            calls.add(name);
+            return ExtensionResultStatusType.HANDLED_CONTINUE;
+        }
+    }
+
+    public static class OtherRecordingExtensionHandler extends RecordingExtensionHandler {
+
+        public OtherRecordingExtensionHandler(String name, int priority) {
+            super(name, priority);
+        }
+    }
+}
@@ -0,0 +1,191 @@
+/*
+ * #%L
+ * BroadleafCommerce Common Libraries
+ * %%
+ * Copyright (C) 2009 - 2016 Broadleaf Commerce
+ * %%
+ * Licensed under the Broadleaf Fair Use License Agreement, Version 1.0
+ * (the "Fair Use License" located  at http://license.broadleafcommerce.org/fair_use_license-1.0.txt)
+ * unless the restrictions on use therein are violated and require payment to Broadleaf in which case
+ * the Broadleaf End User License Agreement (EULA), Version 1.1
+ * (the "Commercial License" located at http://license.broadleafcommerce.org/commercial_license-1.1.txt)
+ * shall apply.
+ * 
+ * Alternatively, the Commercial License may be replaced with a mutually agreed upon license (the "Custom License")
+ * between you and Broadleaf Commerce. You may not use this file except in compliance with the applicable license.
+ * #L%
+ */
+package org.broadleafcommerce.common.id.service;
+
+import org.broadleafcommerce.common.id.dao.IdGenerationDao;
+import org.broadleafcommerce.common.id.domain.IdGeneration;
+import org.broadleafcommerce.common.id.domain.IdGenerationImpl;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import junit.framework.TestCase;
+
+public class IdGenerationServiceImplTest extends TestCase {
+
+    protected static final String ID_TYPE = "test";
+
+    protected IdGenerationServiceImpl service;
+    protected TestIdGenerationDao dao;
+
+    @Override
+    protected void setUp() throws Exception {
+        dao = new TestIdGenerationDao();
+        service = new IdGenerationServiceImpl();
+        service.idGenerationDao = dao;
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        service.shutdown();
+    }
+
+    public void testPrefetchedBatchIsSwappedInAtTheEndOfTheCurrentBatch() throws Exception {
+        dao.batchSize = 4L;
+
+        // a batch of 4 with a 25% low water mark prefetches when the third id is handed out
+        assertEquals(Long.valueOf(1), service.findNextId(ID_TYPE));
+        assertEquals(Long.valueOf(2), service.findNextId(ID_TYPE));
+        assertNull(service.idTypeIdMap.get(ID_TYPE).next.get());
+        assertEquals(Long.valueOf(3), service.findNextId(ID_TYPE));
+
+        Future<?> prefetched = service.idTypeIdMap.get(ID_TYPE).next.get();
+        assertNotNull(prefetched);
+        prefetched.get();
+        assertEquals(1, service.getPrefetchCount());
+        assertEquals(2, dao.calls);
+
+        assertEquals(Long.valueOf(4), service.findNextId(ID_TYPE));
+        assertEquals(Long.valueOf(5), service.findNextId(ID_TYPE));
+        assertEquals(2, dao.calls);
+        assertEquals(2, service.getDatabaseFetchCount());
+        assertNull(service.idTypeIdMap.get(ID_TYPE).next.get());
+        assertEquals(5L, service.idTypeIdMap.get(ID_TYPE).current.start);
+    }
+
+    public void testPrefetchFailureFallsBackToFetchingOnTheCallingThread() throws Exception {
+        dao.batchSize = 4L;
+        dao.failingCall = 2;
+
+        // stop before the low water mark of the second batch so no further prefetch is started
+        List<Long> ids = new ArrayList<Long>();
+        for (int i = 0; i < 6; i++) {
+            ids.add(service.findNextId(ID_TYPE));
+        }
+
+        assertEquals(expectedIds(6), ids);
+        assertEquals(3, dao.calls);
+        assertEquals(2, service.getDatabaseFetchCount());
+        // the first batch and the one read after the failed prefetch were both read on the calling thread
+        assertEquals(2, service.getBlockedAllocationCount());
+    }
+
+    public void testConcurrentCallersGetEveryIdExactlyOnce() throws Exception {
+        dao.batchSize = 10L;
+        final int threads = 8;
+        final int idsPerThread = 500;
+        final CountDownLatch start = new CountDownLatch(1);
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<List<Long>>> results = new ArrayList<Future<List<Long>>>();
+            for (int i = 0; i < threads; i++) {
+                results.add(executor.submit(new Callable<List<Long>>() {
+                    @Override
+                    public List<Long> call() throws Exception {
+                        start.await();
+                        List<Long> ids = new ArrayList<Long>(idsPerThread);
+                        for (int j = 0; j < idsPerThread; j++) {
+                            ids.add(service.findNextId(ID_TYPE));
+                        }
+                        return ids;
+                    }
+                }));
+            }
+            start.countDown();
+
+            List<Long> ids = new ArrayList<Long>();
+            for (Future<List<Long>> result : results) {
+                ids.addAll(result.get());
+            }
+            Collections.sort(ids);
+
+            assertEquals(expectedIds(threads * idsPerThread), ids);
+            assertEquals(threads * idsPerThread, service.getIdsAllocated());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    public void testReportsDatabaseFetchCountAndLatency() throws Exception {
+        service.prefetchEnabled = false;
+        dao.batchSize = 2L;
+        dao.latencyMs = 10L;
+
+        for (int i = 0; i < 6; i++) {
+            service.findNextId(ID_TYPE);
+        }
+
+        assertEquals(3, dao.calls);
+        assertEquals(3, service.getDatabaseFetchCount());
+        assertEquals(0, service.getPrefetchCount());
+        assertEquals(3, service.getBlockedAllocationCount());
+        assertEquals(6, service.getIdsAllocated());
+        assertTrue(service.getAverageDatabaseFetchMs() >= dao.latencyMs);
+        assertTrue(service.getAverageBlockedAllocationMs() >= dao.latencyMs);
+    }
+
+    protected List<Long> expectedIds(int count) {
+        List<Long> ids = new ArrayList<Long>(count);
+        for (long id = 1; id <= count; id++) {
+            ids.add(id);
+        }
+        return ids;
+    }
+
+    /**
+     * Reserves consecutive batches starting at 1, the way {@link org.broadleafcommerce.common.id.dao.IdGenerationDaoImpl}
+     * does for a new id type
+     */
+    protected static class TestIdGenerationDao implements IdGenerationDao {
+
+        protected Long batchSize;
+        protected long latencyMs;
+        protected int failingCall = -1;
+        protected int calls;
+        protected long nextBatchStart = 1;
+
+        @Override
+        public IdGeneration findNextId(String idType) throws Exception {
+            return findNextId(idType, null);
+        }
+
+        @Override
+        public synchronized IdGeneration findNextId(String idType, Long size) throws Exception {
+            calls++;
+            if (latencyMs > 0) {
+                Thread.sleep(latencyMs);
+            }
+            if (calls == failingCall) {
+                throw new IllegalStateException("Unable to reach the database");
+            }
+            IdGeneration idGeneration = new IdGenerationImpl();
+            idGeneration.setType(idType);
+            idGeneration.setBatchStart(nextBatchStart);
+            idGeneration.setBatchSize(batchSize);
+            nextBatchStart += batchSize;
+            return idGeneration;
+        }
+    }
+}
@@ -0,0 +1,111 @@
+/*
+ * #%L
+ * BroadleafCommerce Common Libraries
+ * %%
+ * Copyright (C) 2009 - 2016 Broadleaf Commerce
+ * %%
+ * Licensed under the Broadleaf Fair Use License Agreement, Version 1.0
+ * (the "Fair Use License" located  at http://license.broadleafcommerce.org/fair_use_license-1.0.txt)
+ * unless the restrictions on use therein are violated and require payment to Broadleaf in which case
+ * the Broadleaf End User License Agreement (EULA), Version 1.1
+ * (the "Commercial License" located at http://license.broadleafcommerce.org/commercial_license-1.1.txt)
+ * shall apply.
+ * 
+ * Alternatively, the Commercial License may be replaced with a mutually agreed upon license (the "Custom License")
+ * between you and Broadleaf Commerce. You may not use this file except in compliance with the applicable license.
+ * #L%
+ */
+package org.broadleafcommerce.common.rule;
+
+import java.io.Serializable;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import junit.framework.TestCase;
+
+public class MvelExpressionCacheTest extends TestCase {
+
+    public void testCompilesOncePerKey() throws Exception {
+        final MvelExpressionCache cache = new MvelExpressionCache(100);
+        final AtomicInteger compilations = new AtomicInteger();
+        final CountDownLatch start = new CountDownLatch(1);
+        final Callable<Serializable> compiler = new Callable<Serializable>() {
+            @Override
+            public Serializable call() throws Exception {
+                compilations.incrementAndGet();
+                Thread.sleep(50);
+                return "compiled";
+            }
+        };
+
+        Thread[] threads = new Thread[8];
+        for (int i = 0; i < threads.length; i++) {
+            threads[i] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                    assertEquals("compiled", cache.getOrCompile("rule", compiler));
+                }
+            });
+            threads[i].start();
+        }
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertEquals("The expression should only be compiled once", 1, compilations.get());
+        assertEquals(1, cache.getMissCount());
+        assertEquals(7, cache.getHitCount());
+    }
+
+    public void testSizeBoundEvictsLeastRecentlyUsed() {
+        MvelExpressionCache cache = new MvelExpressionCache(2, 1);
+        cache.put("key1", "value1");
+        cache.put("key2", "value2");
+        cache.get("key1");
+        cache.put("key3", "value3");
+
+        assertEquals("The size() for the cache should be bounded at 2", 2, cache.size());
+        assertTrue("key1 was used most recently and should remain", cache.containsKey("key1"));
+        assertFalse("key2 was the least recently used and should be evicted", cache.containsKey("key2"));
+        assertEquals(1, cache.getEvictionCount());
+    }
+
+    public void testFailedCompilationIsNotCached() {
+        MvelExpressionCache cache = new MvelExpressionCache(10);
+        try {
+            cache.getOrCompile("bad", new Callable<Serializable>() {
+                @Override
+                public Serializable call() {
+                    throw new IllegalArgumentException("bad rule");
+                }
+            });
+            fail("The compilation failure should be rethrown");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+        assertFalse(cache.containsKey("bad"));
+    }
+
+    public void testEvaluateRuleUsesCache() {
+        MvelExpressionCache cache = new MvelExpressionCache(10);
+        Map<String, Object> vars = new HashMap<>();
+        vars.put("value", 5);
+
+        assertTrue(MvelHelper.evaluateRule("value > 1", vars, cache));
+        assertFalse(MvelHelper.evaluateRule("value > 10", vars, cache));
+        assertTrue(MvelHelper.evaluateRule("value > 1", vars, cache));
+
+        assertEquals(2, cache.size());
+        assertEquals(2, cache.getMissCount());
+        assertEquals(1, cache.getHitCount());
+    }
+}
@@ -19,12 +19,14 @@
 package org.broadleafcommerce.common.sitemap.service;
 
 import static org.hamcrest.CoreMatchers.containsString;
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertThat;
 
 import org.broadleafcommerce.common.site.domain.Site;
 import org.broadleafcommerce.common.site.domain.SiteImpl;
 import org.broadleafcommerce.common.sitemap.domain.CustomUrlSiteMapGeneratorConfiguration;
 import org.broadleafcommerce.common.sitemap.domain.CustomUrlSiteMapGeneratorConfigurationImpl;
+import org.broadleafcommerce.common.sitemap.domain.SiteMapGeneratorConfiguration;
 import org.broadleafcommerce.common.sitemap.domain.SiteMapUrlEntry;
 import org.broadleafcommerce.common.sitemap.domain.SiteMapUrlEntryImpl;
 import org.broadleafcommerce.common.sitemap.exception.SiteMapException;
@@ -91,6 +93,26 @@ public class CustomUrlSiteMapGeneratorTest extends SiteMapGeneratorTest {
         BroadleafRequestContext.setBroadleafRequestContext(null);
     }
     
+    @Test
+    public void testConcurrentGeneratorsWriteSeparateFiles() throws SiteMapException, IOException {
+        List<SiteMapGeneratorConfiguration> smgcList = new ArrayList<>();
+        smgcList.add(getConfiguration());
+        smgcList.add(getConfiguration());
+
+        siteMapService.setGeneratorThreads(2);
+        testGenerator(smgcList, new CustomUrlSiteMapGenerator(), 2);
+
+        // Each generator fills its own files, so 3 urls apiece at 2 per file makes 4 files
+        String index = convertFileToString(fileService.getResource("/sitemap_index.xml"));
+        int urlCount = 0;
+        for (int i = 1; i <= 4; i++) {
+            assertThat(index, containsString("http://www.heatclinic.com/sitemap" + i + ".xml"));
+            String contents = convertFileToString(fileService.getResource("/sitemap" + i + ".xml"));
+            urlCount += contents.split("<url>", -1).length - 1;
+        }
+        assertEquals(6, urlCount);
+    }
+
     public CustomUrlSiteMapGeneratorConfiguration getConfiguration() {
         SiteMapUrlEntry urlEntry1 = new SiteMapUrlEntryImpl();
         urlEntry1.setLastMod(new Date());
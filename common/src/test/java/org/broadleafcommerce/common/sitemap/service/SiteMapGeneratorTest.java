@@ -83,6 +83,7 @@ public class SiteMapGeneratorTest {
         fileService.removeResource("/sitemap1.xml");
         fileService.removeResource("/sitemap2.xml");
         fileService.removeResource("/sitemap3.xml");
+        fileService.removeResource("/sitemap4.xml");
         fileService.removeResource("/sitemap.xml");
     }
 
@@ -0,0 +1,142 @@
+/*
+ * #%L
+ * BroadleafCommerce Common Libraries
+ * %%
+ * Copyright (C) 2009 - 2016 Broadleaf Commerce
+ * %%
+ * Licensed under the Broadleaf Fair Use License Agreement, Version 1.0
+ * (the "Fair Use License" located  at http://license.broadleafcommerce.org/fair_use_license-1.0.txt)
+ * unless the restrictions on use therein are violated and require payment to Broadleaf in which case
+ * the Broadleaf End User License Agreement (EULA), Version 1.1
+ * (the "Commercial License" located at http://license.broadleafcommerce.org/commercial_license-1.1.txt)
+ * shall apply.
+ * 
+ * Alternatively, the Commercial License may be replaced with a mutually agreed upon license (the "Custom License")
+ * between you and Broadleaf Commerce. You may not use this file except in compliance with the applicable license.
+ * #L%
+ */
+package org.broadleafcommerce.test.common.cache;
+
+import org.broadleafcommerce.common.cache.CacheStat;
+import org.broadleafcommerce.common.cache.LatencyHistogram;
+import org.broadleafcommerce.common.cache.RollingLatencyHistogram;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import junit.framework.TestCase;
+
+public class LatencyHistogramTest extends TestCase {
+
+    public void testEmptyHistogram() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        assertEquals(0L, histogram.getCount());
+        assertEquals(0L, histogram.getValueAtPercentile(99D));
+        assertEquals(0D, histogram.getMean());
+    }
+
+    public void testPercentilesStayWithinBucketPrecision() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (long i = 1; i <= 10000; i++) {
+            histogram.record(i * 1000L);
+        }
+
+        assertEquals(10000L, histogram.getCount());
+        assertEquals(10000000L, histogram.getMax());
+        assertEquals(5000500D, histogram.getMean(), 0.001D);
+        assertWithinPrecision(5000000L, histogram.getValueAtPercentile(50D));
+        assertWithinPrecision(9900000L, histogram.getValueAtPercentile(99D));
+        assertEquals(10000000L, histogram.getValueAtPercentile(100D));
+        assertWithinPrecision(1000L, histogram.getValueAtPercentile(0D));
+    }
+
+    public void testSmallAndHugeValues() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(-5L);
+        histogram.record(3L);
+        histogram.record(Long.MAX_VALUE);
+
+        assertEquals(0L, histogram.getValueAtPercentile(10D));
+        assertEquals(3L, histogram.getValueAtPercentile(50D));
+        assertEquals(Long.MAX_VALUE, histogram.getValueAtPercentile(100D));
+    }
+
+    public void testHistogramsCanBeMerged() {
+        LatencyHistogram first = new LatencyHistogram();
+        LatencyHistogram second = new LatencyHistogram();
+        for (long i = 1; i <= 100; i++) {
+            first.record(i);
+            second.record(i + 100);
+        }
+        LatencyHistogram merged = new LatencyHistogram();
+        merged.add(first);
+        merged.add(second);
+
+        assertEquals(200L, merged.getCount());
+        assertEquals(200L, merged.getMax());
+        assertEquals(20100L, merged.getTotal());
+        assertWithinPrecision(100L, merged.getValueAtPercentile(50D));
+
+        RollingLatencyHistogram rolling = new RollingLatencyHistogram(60);
+        rolling.record(10L);
+        rolling.record(20L);
+        assertEquals(2L, rolling.getSnapshot().getCount());
+        assertEquals(20L, rolling.getSnapshot().getMax());
+    }
+
+    public void testConcurrentRecordsAreNotLost() throws Exception {
+        final LatencyHistogram histogram = new LatencyHistogram();
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<?>> futures = new ArrayList<Future<?>>();
+            for (int t = 0; t < 4; t++) {
+                final long offset = t * 10000L;
+                futures.add(executor.submit(new Runnable() {
+                    @Override
+                    public void run() {
+                        for (long i = 1; i <= 10000; i++) {
+                            histogram.record(offset + i);
+                        }
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertEquals(40000L, histogram.getCount());
+        assertEquals(40000L, histogram.getMax());
+        assertEquals(40000L * 40001L / 2, histogram.getTotal());
+        assertEquals(40000L, histogram.getValueAtPercentile(100D));
+        assertWithinPrecision(20000L, histogram.getValueAtPercentile(50D));
+    }
+
+    public void testCacheStatRatios() {
+        CacheStat stat = new CacheStat();
+        assertEquals(0D, stat.getHitRatio());
+        stat.incrementRequest();
+        stat.incrementRequest();
+        stat.incrementRequest();
+        stat.incrementRequest();
+        stat.incrementHit();
+        stat.addEvictions(2);
+
+        assertEquals(0.25D, stat.getHitRatio());
+        assertEquals("25.00", stat.getHitRate().toString());
+        assertEquals(Long.valueOf(2L), stat.getEvictionCount());
+        assertTrue(stat.advanceLastLogTime(stat.getLastLogTime() + 10, 5));
+        assertFalse(stat.advanceLastLogTime(stat.getLastLogTime() + 1, 5));
+    }
+
+    protected void assertWithinPrecision(long expected, long actual) {
+        assertTrue(actual + " is below " + expected, actual >= expected);
+        assertTrue(actual + " is too far above " + expected, actual <= expected + expected / 16);
+    }
+
+}
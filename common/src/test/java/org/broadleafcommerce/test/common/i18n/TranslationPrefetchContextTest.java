@@ -0,0 +1,101 @@
+/*
+ * #%L
+ * BroadleafCommerce Common Libraries
+ * %%
+ * Copyright (C) 2009 - 2016 Broadleaf Commerce
+ * %%
+ * Licensed under the Broadleaf Fair Use License Agreement, Version 1.0
+ * (the "Fair Use License" located  at http://license.broadleafcommerce.org/fair_use_license-1.0.txt)
+ * unless the restrictions on use therein are violated and require payment to Broadleaf in which case
+ * the Broadleaf End User License Agreement (EULA), Version 1.1
+ * (the "Commercial License" located at http://license.broadleafcommerce.org/commercial_license-1.1.txt)
+ * shall apply.
+ * 
+ * Alternatively, the Commercial License may be replaced with a mutually agreed upon license (the "Custom License")
+ * between you and Broadleaf Commerce. You may not use this file except in compliance with the applicable license.
+ * #L%
+ */
+package org.broadleafcommerce.test.common.i18n;
+
+import org.broadleafcommerce.common.i18n.domain.TranslatedEntity;
+import org.broadleafcommerce.common.i18n.domain.Translation;
+import org.broadleafcommerce.common.i18n.domain.TranslationImpl;
+import org.broadleafcommerce.common.i18n.service.TranslationPrefetchContext;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+public class TranslationPrefetchContextTest extends TestCase {
+
+    @Override
+    protected void tearDown() {
+        TranslationPrefetchContext.removeTranslationPrefetchContext();
+    }
+
+    public void testLookupReturnsEveryCandidateOfTheLanguage() {
+        List<Translation> translations = new ArrayList<Translation>();
+        translations.add(buildTranslation(TranslatedEntity.PRODUCT, "1", "name", "fr", "Chapeau"));
+        translations.add(buildTranslation(TranslatedEntity.PRODUCT, "1", "name", "fr_CA", "Tuque"));
+        translations.add(buildTranslation(TranslatedEntity.PRODUCT, "1", "name", "en", "Hat"));
+        translations.add(buildTranslation(TranslatedEntity.PRODUCT, "2", "name", "fr_FR", "Chemise"));
+
+        TranslationPrefetchContext context = TranslationPrefetchContext.getOrCreateTranslationPrefetchContext();
+        context.addTranslations(TranslatedEntity.PRODUCT, Arrays.asList("1", "2", "3"), translations);
+
+        assertEquals(Arrays.asList("Chapeau", "Tuque"), getValues(context.getTranslations(TranslatedEntity.PRODUCT, "1", "name", "fr")));
+        assertEquals(Arrays.asList("Hat"), getValues(context.getTranslations(TranslatedEntity.PRODUCT, "1", "name", "en")));
+        assertEquals(Arrays.asList("Chemise"), getValues(context.getTranslations(TranslatedEntity.PRODUCT, "2", "name", "fr")));
+        assertTrue(context.getTranslations(TranslatedEntity.PRODUCT, "1", "description", "fr").isEmpty());
+        assertTrue(context.getTranslations(TranslatedEntity.SKU, "1", "name", "fr").isEmpty());
+        assertTrue(context.getTranslations(TranslatedEntity.PRODUCT, "3", "name", "fr").isEmpty());
+        assertEquals(6, context.getHitCount());
+        assertEquals(4, context.getPrefetchedTranslationCount());
+
+        context.addTranslations(TranslatedEntity.PRODUCT, Arrays.asList("1"), translations.subList(0, 1));
+        assertEquals(Arrays.asList("Chapeau", "Tuque"), getValues(context.getTranslations(TranslatedEntity.PRODUCT, "1", "name", "fr")));
+        assertEquals(4, context.getPrefetchedTranslationCount());
+    }
+
+    public void testEntitiesWithoutTranslationsAreStillPrefetched() {
+        TranslationPrefetchContext context = TranslationPrefetchContext.getOrCreateTranslationPrefetchContext();
+        context.addTranslations(TranslatedEntity.CATEGORY, Arrays.asList("10", "11"), new ArrayList<Translation>());
+
+        assertTrue(context.isPrefetched(TranslatedEntity.CATEGORY, "11"));
+        assertFalse(context.isPrefetched(TranslatedEntity.PRODUCT, "11"));
+        assertEquals(Arrays.asList("12"), context.filterNotPrefetched(TranslatedEntity.CATEGORY, Arrays.asList("10", "12", "12", "11")));
+        assertEquals(2, context.getPrefetchedEntityCount());
+        assertEquals(1, context.getPrefetchCount());
+    }
+
+    public void testContextIsRemoved() {
+        TranslationPrefetchContext context = TranslationPrefetchContext.getOrCreateTranslationPrefetchContext();
+        assertSame(context, TranslationPrefetchContext.getOrCreateTranslationPrefetchContext());
+        assertTrue(TranslationPrefetchContext.hasTranslationPrefetchContext());
+
+        TranslationPrefetchContext.removeTranslationPrefetchContext();
+        assertFalse(TranslationPrefetchContext.hasTranslationPrefetchContext());
+        assertNull(TranslationPrefetchContext.getTranslationPrefetchContext());
+    }
+
+    protected List<String> getValues(List<Translation> translations) {
+        List<String> values = new ArrayList<String>();
+        for (Translation translation : translations) {
+            values.add(translation.getTranslatedValue());
+        }
+        return values;
+    }
+
+    protected Translation buildTranslation(TranslatedEntity entityType, String entityId, String fieldName,
+            String localeCode, String value) {
+        Translation translation = new TranslationImpl();
+        translation.setEntityType(entityType);
+        translation.setEntityId(entityId);
+        translation.setFieldName(fieldName);
+        translation.setLocaleCode(localeCode);
+        translation.setTranslatedValue(value);
+        return translation;
+    }
+}
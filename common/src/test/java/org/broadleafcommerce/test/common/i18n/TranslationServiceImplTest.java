@@ -0,0 +1,187 @@
+/*
+ * #%L
+ * BroadleafCommerce Common Libraries
+ * %%
+ * Copyright (C) 2009 - 2016 Broadleaf Commerce
+ * %%
+ * Licensed under the Broadleaf Fair Use License Agreement, Version 1.0
+ * (the "Fair Use License" located  at http://license.broadleafcommerce.org/fair_use_license-1.0.txt)
+ * unless the restrictions on use therein are violated and require payment to Broadleaf in which case
+ * the Broadleaf End User License Agreement (EULA), Version 1.1
+ * (the "Commercial License" located at http://license.broadleafcommerce.org/commercial_license-1.1.txt)
+ * shall apply.
+ * 
+ * Alternatively, the Commercial License may be replaced with a mutually agreed upon license (the "Custom License")
+ * between you and Broadleaf Commerce. You may not use this file except in compliance with the applicable license.
+ * #L%
+ */
+package org.broadleafcommerce.test.common.i18n;
+
+import org.broadleafcommerce.common.cache.StatisticsService;
+import org.broadleafcommerce.common.extension.ResultType;
+import org.broadleafcommerce.common.i18n.dao.TranslationDaoImpl;
+import org.broadleafcommerce.common.i18n.domain.TranslatedEntity;
+import org.broadleafcommerce.common.i18n.domain.Translation;
+import org.broadleafcommerce.common.i18n.domain.TranslationImpl;
+import org.broadleafcommerce.common.i18n.service.TranslationPrefetchContext;
+import org.broadleafcommerce.common.i18n.service.TranslationServiceImpl;
+import org.broadleafcommerce.common.web.BroadleafRequestContext;
+import org.easymock.EasyMock;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import junit.framework.TestCase;
+
+public class TranslationServiceImplTest extends TestCase {
+
+    protected static final Locale[] LOCALES = new Locale[] { Locale.CANADA_FRENCH, Locale.FRANCE, Locale.FRENCH,
+            Locale.US, Locale.ENGLISH, Locale.GERMANY };
+    protected static final String[] PROPERTIES = new String[] { "name", "description" };
+
+    protected TestTranslationService translationService;
+    protected TestTranslationDao dao;
+    protected List<TestEntity> entities;
+
+    @Override
+    protected void setUp() {
+        BroadleafRequestContext.setBroadleafRequestContext(new BroadleafRequestContext());
+
+        dao = new TestTranslationDao();
+        dao.translations.add(buildTranslation("1", "name", "fr_FR", "Chapeau"));
+        dao.translations.add(buildTranslation("2", "name", "fr", "Chemise"));
+        dao.translations.add(buildTranslation("2", "name", "fr_CA", "Chandail"));
+        dao.translations.add(buildTranslation("3", "name", "en", "Shoe"));
+        dao.translations.add(buildTranslation("4", "name", "fr_CA", "Tuque"));
+        dao.translations.add(buildTranslation("4", "name", "fr", "Bonnet"));
+        dao.translations.add(buildTranslation("4", "description", "en_US", "A warm hat"));
+
+        StatisticsService statisticsService = EasyMock.createNiceMock(StatisticsService.class);
+        EasyMock.replay(statisticsService);
+        translationService = new TestTranslationService(dao, statisticsService);
+
+        entities = new ArrayList<TestEntity>();
+        for (int i = 1; i <= 5; i++) {
+            entities.add(new TestEntity(String.valueOf(i)));
+        }
+    }
+
+    @Override
+    protected void tearDown() {
+        TranslationPrefetchContext.removeTranslationPrefetchContext();
+        BroadleafRequestContext.setBroadleafRequestContext(null);
+    }
+
+    public void testPrefetchedLookupsMatchSingleLookups() {
+        Map<String, String> expected = new HashMap<String, String>();
+        for (TestEntity entity : entities) {
+            for (String property : PROPERTIES) {
+                for (Locale locale : LOCALES) {
+                    expected.put(entity.id + property + locale, translationService.getTranslatedValue(entity, property, locale));
+                }
+            }
+        }
+        int singleReads = dao.singleReads;
+
+        translationService.prefetchTranslations(entities);
+        for (TestEntity entity : entities) {
+            for (String property : PROPERTIES) {
+                for (Locale locale : LOCALES) {
+                    assertEquals(entity.id + " " + property + " " + locale, expected.get(entity.id + property + locale),
+                            translationService.getTranslatedValue(entity, property, locale));
+                }
+            }
+        }
+        assertEquals(singleReads, dao.singleReads);
+        assertEquals(1, dao.bulkReads);
+    }
+
+    public void testPrefetchedLookupFallsBackToAnotherCountry() {
+        translationService.prefetchTranslations(entities);
+
+        assertEquals("Chapeau", translationService.getTranslatedValue(entities.get(0), "name", Locale.CANADA_FRENCH));
+        assertNull(translationService.getTranslatedValue(entities.get(0), "name", Locale.FRENCH));
+        assertEquals("Chandail", translationService.getTranslatedValue(entities.get(1), "name", Locale.CANADA_FRENCH));
+        assertEquals("Chemise", translationService.getTranslatedValue(entities.get(1), "name", Locale.FRANCE));
+        assertEquals("Bonnet", translationService.getTranslatedValue(entities.get(3), "name", Locale.FRENCH));
+        assertEquals(0, dao.singleReads);
+    }
+
+    protected Translation buildTranslation(String entityId, String fieldName, String localeCode, String value) {
+        Translation translation = new TranslationImpl();
+        translation.setEntityType(TranslatedEntity.PRODUCT);
+        translation.setEntityId(entityId);
+        translation.setFieldName(fieldName);
+        translation.setLocaleCode(localeCode);
+        translation.setTranslatedValue(value);
+        return translation;
+    }
+
+    protected static class TestEntity {
+
+        protected final String id;
+
+        public TestEntity(String id) {
+            this.id = id;
+        }
+    }
+
+    protected static class TestTranslationService extends TranslationServiceImpl {
+
+        public TestTranslationService(TestTranslationDao dao, StatisticsService statisticsService) {
+            this.dao = dao;
+            this.statisticsService = statisticsService;
+        }
+
+        @Override
+        protected TranslatedEntity getEntityType(Object entity) {
+            return TranslatedEntity.PRODUCT;
+        }
+    }
+
+    /**
+     * Reads translations from a list, the way the database query does, and leaves the choice between them to
+     * {@link #selectTranslation(String, String, List)}
+     */
+    protected static class TestTranslationDao extends TranslationDaoImpl {
+
+        protected final List<Translation> translations = new ArrayList<Translation>();
+        protected int singleReads;
+        protected int bulkReads;
+
+        @Override
+        public String getEntityId(TranslatedEntity entityType, Object entity) {
+            return ((TestEntity) entity).id;
+        }
+
+        @Override
+        public Translation readTranslation(TranslatedEntity entityType, String entityId, String fieldName,
+                String localeCode, String localeCountryCode, ResultType stage) {
+            singleReads++;
+            return selectTranslation(localeCode, localeCountryCode,
+                    find(entityType, Collections.singletonList(entityId), fieldName, localeCode));
+        }
+
+        @Override
+        public List<Translation> readAllTranslationEntries(TranslatedEntity entityType, ResultType stage, List<String> entityIds) {
+            bulkReads++;
+            return find(entityType, entityIds, null, null);
+        }
+
+        protected List<Translation> find(TranslatedEntity entityType, List<String> entityIds, String fieldName, String localeCode) {
+            List<Translation> response = new ArrayList<Translation>();
+            for (Translation translation : translations) {
+                if (translation.getEntityType() == entityType && entityIds.contains(translation.getEntityId())
+                        && (fieldName == null || fieldName.equals(translation.getFieldName()))
+                        && (localeCode == null || translation.getLocaleCode().startsWith(localeCode))) {
+                    response.add(translation);
+                }
+            }
+            return response;
+        }
+    }
+}
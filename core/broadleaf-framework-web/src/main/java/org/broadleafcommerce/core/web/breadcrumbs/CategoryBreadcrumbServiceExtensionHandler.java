@@ -27,10 +27,13 @@ import org.broadleafcommerce.common.breadcrumbs.service.BreadcrumbHandlerDefault
 import org.broadleafcommerce.common.breadcrumbs.service.BreadcrumbServiceExtensionManager;
 import org.broadleafcommerce.common.extension.ExtensionResultHolder;
 import org.broadleafcommerce.common.extension.ExtensionResultStatusType;
+import org.broadleafcommerce.common.time.SystemTime;
 import org.broadleafcommerce.common.web.BroadleafRequestContext;
 import org.broadleafcommerce.core.catalog.domain.Category;
 import org.broadleafcommerce.core.catalog.domain.Product;
 import org.broadleafcommerce.core.catalog.service.CatalogService;
+import org.broadleafcommerce.core.catalog.service.CategoryTreeService;
+import org.broadleafcommerce.core.catalog.service.CategoryTreeSnapshot;
 import org.springframework.stereotype.Service;
 
 import java.util.ArrayList;
@@ -51,6 +54,9 @@ public class CategoryBreadcrumbServiceExtensionHandler extends AbstractBreadcrum
     @Resource(name = "blBreadcrumbServiceExtensionManager")
     protected BreadcrumbServiceExtensionManager extensionManager;
 
+    @Resource(name = "blCategoryTreeService")
+    protected CategoryTreeService categoryTreeService;
+
     @PostConstruct
     public void init() {
         if (isEnabled()) {
@@ -106,6 +112,9 @@ public class CategoryBreadcrumbServiceExtensionHandler extends AbstractBreadcrum
     /**
      * Add the parent crumb for the passed in category.    
      * Recursively call to find all parents.
+     * <p/>
+     * When the category is part of the {@link CategoryTreeSnapshot}, the parents are read from the snapshot instead
+     * of walking {@link Category#getParentCategory()}.
      * 
      * @param parentCrumbs
      * @param category
@@ -115,6 +124,18 @@ public class CategoryBreadcrumbServiceExtensionHandler extends AbstractBreadcrum
     protected void addParentCrumbs(List<BreadcrumbDTO> parentCrumbs, Category category, String url,
             Map<String, String[]> params) {
 
+        CategoryTreeSnapshot snapshot = categoryTreeService.getSnapshot();
+        if (parentCrumbs.isEmpty() && category.getId() != null && snapshot != null
+                && snapshot.contains(category.getId())) {
+            for (long parentId : snapshot.getParentPath(category.getId(), SystemTime.asMillis(true))) {
+                Category parentCategory = catalogService.findCategoryById(parentId);
+                if (parentCategory != null) {
+                    parentCrumbs.add(buildCrumbForCategory(parentCategory, url, params));
+                }
+            }
+            return;
+        }
+
         Category parentCategory = category.getParentCategory();
         if (parentCategory != null && !parentCrumbs.contains(parentCategory)) { // prevent recursion
             BreadcrumbDTO dto = buildCrumbForCategory(parentCategory, url, params);
@@ -202,6 +223,16 @@ public class CategoryBreadcrumbServiceExtensionHandler extends AbstractBreadcrum
     protected Category getCategoryFromUrl(BroadleafRequestContext brc, String requestUrl,
             Map<String, String[]> params) {
 
+        CategoryTreeSnapshot snapshot = categoryTreeService.isUrlLookupSupported() ? categoryTreeService.getSnapshot() : null;
+        if (snapshot != null) {
+            Long categoryId = snapshot.findCategoryIdByUrl(requestUrl, SystemTime.asMillis(true));
+            if (categoryId != null) {
+                Category category = catalogService.findCategoryById(categoryId);
+                if (category != null) {
+                    return category;
+                }
+            }
+        }
         return catalogService.findCategoryByURI(requestUrl);
     }
 
@@ -0,0 +1,154 @@
+/*
+ * #%L
+ * BroadleafCommerce Framework Web
+ * %%
+ * Copyright (C) 2009 - 2016 Broadleaf Commerce
+ * %%
+ * Licensed under the Broadleaf Fair Use License Agreement, Version 1.0
+ * (the "Fair Use License" located  at http://license.broadleafcommerce.org/fair_use_license-1.0.txt)
+ * unless the restrictions on use therein are violated and require payment to Broadleaf in which case
+ * the Broadleaf End User License Agreement (EULA), Version 1.1
+ * (the "Commercial License" located at http://license.broadleafcommerce.org/commercial_license-1.1.txt)
+ * shall apply.
+ * 
+ * Alternatively, the Commercial License may be replaced with a mutually agreed upon license (the "Custom License")
+ * between you and Broadleaf Commerce. You may not use this file except in compliance with the applicable license.
+ * #L%
+ */
+package org.broadleafcommerce.core.web.controller;
+
+import org.broadleafcommerce.common.cache.CacheStat;
+import org.broadleafcommerce.common.cache.LatencyHistogram;
+import org.broadleafcommerce.common.cache.StatisticsService;
+import org.broadleafcommerce.common.time.SystemTime;
+import org.broadleafcommerce.common.web.controller.annotation.EnableFrameworkRestControllers;
+import org.broadleafcommerce.common.web.controller.annotation.FrameworkMapping;
+import org.broadleafcommerce.common.web.controller.annotation.FrameworkRestController;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.RequestMethod;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Exposes the cache statistics gathered by the {@link StatisticsService} so that they can be pulled by a monitoring
+ * system. {@code /statistics/caches/metrics} renders them in the Prometheus text exposition format and
+ * {@code /statistics/caches} renders the same values as a JSON snapshot. For every cache key this includes the number
+ * of requests and hits, the hit ratio, the number of evictions and percentiles of the time it took to load missed values.
+ * 
+ * Like every {@link FrameworkRestController}, this is only registered when the application opts in with
+ * {@link EnableFrameworkRestControllers}, and the application is responsible for securing the mapping. When no
+ * {@link StatisticsService} is configured, both mappings render an empty set of caches.
+ */
+@FrameworkRestController
+@FrameworkMapping("/statistics/caches")
+public class CacheStatisticsController {
+
+    protected static final String TEXT_FORMAT_CONTENT_TYPE = "text/plain;version=0.0.4;charset=UTF-8";
+    protected static final double[] PERCENTILES = new double[] { 50D, 90D, 99D, 99.9D };
+    protected static final String[] PERCENTILE_NAMES = new String[] { "p50", "p90", "p99", "p999" };
+    protected static final String[] QUANTILES = new String[] { "0.5", "0.9", "0.99", "0.999" };
+    protected static final double NANOS_PER_SECOND = 1000000000D;
+    protected static final double NANOS_PER_MILLI = 1000000D;
+
+    @Autowired(required = false)
+    @Qualifier("blStatisticsService")
+    protected StatisticsService statisticsService;
+
+    @FrameworkMapping(value = "/metrics", method = RequestMethod.GET, produces = TEXT_FORMAT_CONTENT_TYPE)
+    public String getMetrics() {
+        Map<String, CacheStat> stats = getCacheStats();
+        StringBuilder sb = new StringBuilder(512 + stats.size() * 1024);
+
+        writeHeader(sb, "blc_cache_requests_total", "counter", "Number of cache lookups");
+        for (Map.Entry<String, CacheStat> entry : stats.entrySet()) {
+            writeSample(sb, "blc_cache_requests_total", entry.getKey(), null, entry.getValue().getRequestCount());
+        }
+        writeHeader(sb, "blc_cache_hits_total", "counter", "Number of cache lookups that found a value");
+        for (Map.Entry<String, CacheStat> entry : stats.entrySet()) {
+            writeSample(sb, "blc_cache_hits_total", entry.getKey(), null, entry.getValue().getCacheHitCount());
+        }
+        writeHeader(sb, "blc_cache_hit_ratio", "gauge", "Ratio of cache lookups that found a value");
+        for (Map.Entry<String, CacheStat> entry : stats.entrySet()) {
+            writeSample(sb, "blc_cache_hit_ratio", entry.getKey(), null, entry.getValue().getHitRatio());
+        }
+        writeHeader(sb, "blc_cache_evictions_total", "counter", "Number of items explicitly removed from the cache");
+        for (Map.Entry<String, CacheStat> entry : stats.entrySet()) {
+            writeSample(sb, "blc_cache_evictions_total", entry.getKey(), null, entry.getValue().getEvictionCount());
+        }
+        writeHeader(sb, "blc_cache_load_seconds", "summary", "Time taken to load values that were not cached");
+        for (Map.Entry<String, CacheStat> entry : stats.entrySet()) {
+            LatencyHistogram loadTimes = entry.getValue().getLoadTimes();
+            for (int i = 0; i < PERCENTILES.length; i++) {
+                writeSample(sb, "blc_cache_load_seconds", entry.getKey(), QUANTILES[i],
+                        loadTimes.getValueAtPercentile(PERCENTILES[i]) / NANOS_PER_SECOND);
+            }
+            writeSample(sb, "blc_cache_load_seconds_sum", entry.getKey(), null, loadTimes.getTotal() / NANOS_PER_SECOND);
+            writeSample(sb, "blc_cache_load_seconds_count", entry.getKey(), null, loadTimes.getCount());
+        }
+        writeHeader(sb, "blc_cache_load_seconds_max", "gauge", "Longest time taken to load a value that was not cached");
+        for (Map.Entry<String, CacheStat> entry : stats.entrySet()) {
+            writeSample(sb, "blc_cache_load_seconds_max", entry.getKey(), null,
+                    entry.getValue().getLoadTimes().getMax() / NANOS_PER_SECOND);
+        }
+        return sb.toString();
+    }
+
+    @FrameworkMapping(method = RequestMethod.GET, produces = MediaType.APPLICATION_JSON_VALUE)
+    public Map<String, Object> getSnapshot() {
+        Map<String, Object> caches = new LinkedHashMap<String, Object>();
+        for (Map.Entry<String, CacheStat> entry : getCacheStats().entrySet()) {
+            CacheStat stat = entry.getValue();
+            LatencyHistogram loadTimes = stat.getLoadTimes();
+
+            Map<String, Object> loads = new LinkedHashMap<String, Object>();
+            loads.put("count", loadTimes.getCount());
+            loads.put("meanMillis", loadTimes.getMean() / NANOS_PER_MILLI);
+            for (int i = 0; i < PERCENTILES.length; i++) {
+                loads.put(PERCENTILE_NAMES[i] + "Millis", loadTimes.getValueAtPercentile(PERCENTILES[i]) / NANOS_PER_MILLI);
+            }
+            loads.put("maxMillis", loadTimes.getMax() / NANOS_PER_MILLI);
+
+            Map<String, Object> cache = new LinkedHashMap<String, Object>();
+            cache.put("requests", stat.getRequestCount());
+            cache.put("hits", stat.getCacheHitCount());
+            cache.put("hitRatio", stat.getHitRatio());
+            cache.put("evictions", stat.getEvictionCount());
+            cache.put("loads", loads);
+            caches.put(entry.getKey(), cache);
+        }
+
+        Map<String, Object> snapshot = new LinkedHashMap<String, Object>();
+        snapshot.put("timestamp", SystemTime.asMillis());
+        snapshot.put("caches", caches);
+        return snapshot;
+    }
+
+    protected Map<String, CacheStat> getCacheStats() {
+        if (statisticsService == null) {
+            return Collections.emptyMap();
+        }
+        return statisticsService.getCacheStats();
+    }
+
+    protected void writeHeader(StringBuilder sb, String name, String type, String help) {
+        sb.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        sb.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+    }
+
+    protected void writeSample(StringBuilder sb, String name, String cache, String quantile, Number value) {
+        sb.append(name).append("{cache=\"").append(escapeLabelValue(cache)).append('"');
+        if (quantile != null) {
+            sb.append(",quantile=\"").append(quantile).append('"');
+        }
+        sb.append("} ").append(value).append('\n');
+    }
+
+    protected String escapeLabelValue(String value) {
+        return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+
+}
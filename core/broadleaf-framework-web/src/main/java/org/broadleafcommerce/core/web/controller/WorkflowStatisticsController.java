@@ -0,0 +1,101 @@
+/*
+ * #%L
+ * BroadleafCommerce Framework Web
+ * %%
+ * Copyright (C) 2009 - 2016 Broadleaf Commerce
+ * %%
+ * Licensed under the Broadleaf Fair Use License Agreement, Version 1.0
+ * (the "Fair Use License" located  at http://license.broadleafcommerce.org/fair_use_license-1.0.txt)
+ * unless the restrictions on use therein are violated and require payment to Broadleaf in which case
+ * the Broadleaf End User License Agreement (EULA), Version 1.1
+ * (the "Commercial License" located at http://license.broadleafcommerce.org/commercial_license-1.1.txt)
+ * shall apply.
+ * 
+ * Alternatively, the Commercial License may be replaced with a mutually agreed upon license (the "Custom License")
+ * between you and Broadleaf Commerce. You may not use this file except in compliance with the applicable license.
+ * #L%
+ */
+package org.broadleafcommerce.core.web.controller;
+
+import org.broadleafcommerce.common.cache.LatencyHistogram;
+import org.broadleafcommerce.common.time.SystemTime;
+import org.broadleafcommerce.common.web.controller.annotation.EnableFrameworkRestControllers;
+import org.broadleafcommerce.common.web.controller.annotation.FrameworkMapping;
+import org.broadleafcommerce.common.web.controller.annotation.FrameworkRestController;
+import org.broadleafcommerce.core.workflow.statistics.ExecutionStatistics;
+import org.broadleafcommerce.core.workflow.statistics.WorkflowStatisticsService;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.RequestMethod;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import javax.annotation.Resource;
+
+/**
+ * Exposes the workflow statistics gathered by the {@link WorkflowStatisticsService} as a JSON snapshot. For every
+ * workflow bean this includes the number of runs and failures and percentiles of its wall time, CPU time and allocated
+ * bytes over the rolling window, followed by the same values for each of its activities.
+ * 
+ * Like every {@link FrameworkRestController}, this is only registered when the application opts in with
+ * {@link EnableFrameworkRestControllers}, and the application is responsible for securing the mapping.
+ */
+@FrameworkRestController
+@FrameworkMapping("/statistics/workflows")
+public class WorkflowStatisticsController {
+
+    protected static final double[] PERCENTILES = new double[] { 50D, 90D, 99D, 99.9D };
+    protected static final String[] PERCENTILE_NAMES = new String[] { "p50", "p90", "p99", "p999" };
+    protected static final double NANOS_PER_MILLI = 1000000D;
+
+    @Resource(name = "blWorkflowStatisticsService")
+    protected WorkflowStatisticsService workflowStatisticsService;
+
+    @FrameworkMapping(method = RequestMethod.GET, produces = MediaType.APPLICATION_JSON_VALUE)
+    public Map<String, Object> getSnapshot() {
+        Map<String, Object> workflows = new LinkedHashMap<String, Object>();
+        for (ExecutionStatistics statistics : workflowStatisticsService.getExecutionStatistics()) {
+            if (statistics.getActivityName() == null) {
+                Map<String, Object> workflow = buildExecution(statistics);
+                workflow.put("activities", new LinkedHashMap<String, Object>());
+                workflows.put(statistics.getWorkflowName(), workflow);
+            } else {
+                Map<String, Object> workflow = (Map<String, Object>) workflows.get(statistics.getWorkflowName());
+                if (workflow != null) {
+                    ((Map<String, Object>) workflow.get("activities")).put(statistics.getActivityName(), buildExecution(statistics));
+                }
+            }
+        }
+
+        Map<String, Object> snapshot = new LinkedHashMap<String, Object>();
+        snapshot.put("timestamp", SystemTime.asMillis());
+        snapshot.put("enabled", workflowStatisticsService.isEnabled());
+        snapshot.put("windowSeconds", workflowStatisticsService.getWindowSeconds());
+        snapshot.put("slowThresholdMillis", workflowStatisticsService.getSlowWorkflowThresholdMillis());
+        snapshot.put("slowWorkflows", workflowStatisticsService.getSlowWorkflowCount());
+        snapshot.put("workflows", workflows);
+        return snapshot;
+    }
+
+    protected Map<String, Object> buildExecution(ExecutionStatistics statistics) {
+        Map<String, Object> execution = new LinkedHashMap<String, Object>();
+        execution.put("executions", statistics.getExecutionCount());
+        execution.put("failures", statistics.getFailureCount());
+        execution.put("wall", buildPercentiles(statistics.getWallTimes().getSnapshot(), "Millis", NANOS_PER_MILLI));
+        execution.put("cpu", buildPercentiles(statistics.getCpuTimes().getSnapshot(), "Millis", NANOS_PER_MILLI));
+        execution.put("allocated", buildPercentiles(statistics.getAllocatedBytes().getSnapshot(), "Bytes", 1D));
+        return execution;
+    }
+
+    protected Map<String, Object> buildPercentiles(LatencyHistogram histogram, String unit, double divisor) {
+        Map<String, Object> percentiles = new LinkedHashMap<String, Object>();
+        percentiles.put("count", histogram.getCount());
+        percentiles.put("mean" + unit, histogram.getMean() / divisor);
+        for (int i = 0; i < PERCENTILES.length; i++) {
+            percentiles.put(PERCENTILE_NAMES[i] + unit, histogram.getValueAtPercentile(PERCENTILES[i]) / divisor);
+        }
+        percentiles.put("max" + unit, histogram.getMax() / divisor);
+        return percentiles;
+    }
+
+}
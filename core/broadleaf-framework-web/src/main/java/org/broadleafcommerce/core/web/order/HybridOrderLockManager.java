@@ -0,0 +1,304 @@
+/*
+ * #%L
+ * BroadleafCommerce Framework Web
+ * %%
+ * Copyright (C) 2009 - 2016 Broadleaf Commerce
+ * %%
+ * Licensed under the Broadleaf Fair Use License Agreement, Version 1.0
+ * (the "Fair Use License" located  at http://license.broadleafcommerce.org/fair_use_license-1.0.txt)
+ * unless the restrictions on use therein are violated and require payment to Broadleaf in which case
+ * the Broadleaf End User License Agreement (EULA), Version 1.1
+ * (the "Commercial License" located at http://license.broadleafcommerce.org/commercial_license-1.1.txt)
+ * shall apply.
+ * 
+ * Alternatively, the Commercial License may be replaced with a mutually agreed upon license (the "Custom License")
+ * between you and Broadleaf Commerce. You may not use this file except in compliance with the applicable license.
+ * #L%
+ */
+package org.broadleafcommerce.core.web.order;
+
+import org.broadleafcommerce.common.util.BLCSystemProperty;
+import org.broadleafcommerce.core.order.domain.NullOrderImpl;
+import org.broadleafcommerce.core.order.domain.Order;
+import org.broadleafcommerce.core.order.service.OrderLockManager;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedResource;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * An {@link OrderLockManager} that serializes requests for the same {@link Order} inside this JVM before it
+ * touches the database lock.
+ * <p>
+ * Threads on this node that want the same order queue on a fair, per-order-id permit. They are woken as soon as the
+ * holder releases it, instead of sleeping for "order.lock.databaseLockPollingIntervalMs" and retrying. Only the thread
+ * that holds the local permit goes on to acquire the database lock through {@link DatabaseOrderLockManager}. So the
+ * polling loop only runs when a thread on another node holds the order.
+ * <p>
+ * The local wait is bounded by "order.lock.localLockTimeoutMs". When that property is not set, the bound is the time
+ * the database lock manager would have spent polling: the retry count multiplied by the polling interval.
+ * <p>
+ * The lock objects returned by this manager record the local lock they own, and they can only be released once.
+ * Releasing the same lock object again is logged and ignored, so it can never hand out a second permit or drop a
+ * database lock that another request has since acquired. Orders without an id bypass the local lock.
+ * <p>
+ * Wait time, queue depth and timeout counts are exposed through JMX.
+ */
+@ManagedResource(objectName = "org.broadleafcommerce:name=OrderLockManager", description = "Order Lock Manager", currencyTimeLimit = 15)
+public class HybridOrderLockManager extends DatabaseOrderLockManager {
+
+    protected final ConcurrentMap<Long, LocalOrderLock> localLocks = new ConcurrentHashMap<>();
+
+    protected final LongAdder acquisitions = new LongAdder();
+    protected final LongAdder timeouts = new LongAdder();
+    protected final LongAdder totalWaitNanos = new LongAdder();
+    protected final AtomicLong maxWaitNanos = new AtomicLong();
+    protected final AtomicInteger queueDepth = new AtomicInteger();
+    protected final AtomicInteger maxQueueDepth = new AtomicInteger();
+
+    @Override
+    public Object acquireLock(Order order) {
+        if (!isLocallyLockable(order)) {
+            return super.acquireLock(order);
+        }
+
+        LocalOrderLock localLock = reserveLocalLock(order.getId());
+        long start = System.nanoTime();
+        boolean acquired = false;
+        recordQueueDepth(queueDepth.incrementAndGet());
+        try {
+            acquired = localLock.permit.tryAcquire(getLocalLockTimeoutMs(), TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        } finally {
+            queueDepth.decrementAndGet();
+            if (!acquired) {
+                releaseLocalLockReservation(order.getId(), localLock);
+            }
+        }
+
+        if (!acquired) {
+            timeouts.increment();
+            LOG.warn(String.format("Exceeded max wait time to acquire a local lock on current Order (%s)", order.getId()));
+            throw new RuntimeException("Exceeded max wait time to acquire a lock on current Order");
+        }
+        recordWait(System.nanoTime() - start);
+
+        try {
+            // Only cross-node contention remains at this point
+            super.acquireLock(order);
+        } catch (RuntimeException e) {
+            releaseLocalLock(order.getId(), localLock);
+            timeouts.increment();
+            throw e;
+        }
+        acquisitions.increment();
+        return new HybridOrderLock(order, localLock);
+    }
+
+    @Override
+    public Object acquireLockIfAvailable(Order order) {
+        if (!isLocallyLockable(order)) {
+            return super.acquireLockIfAvailable(order);
+        }
+
+        LocalOrderLock localLock = reserveLocalLock(order.getId());
+        if (!localLock.permit.tryAcquire()) {
+            releaseLocalLockReservation(order.getId(), localLock);
+            return null;
+        }
+
+        Object lockObject;
+        try {
+            lockObject = super.acquireLockIfAvailable(order);
+        } catch (RuntimeException e) {
+            releaseLocalLock(order.getId(), localLock);
+            throw e;
+        }
+        if (lockObject == null) {
+            releaseLocalLock(order.getId(), localLock);
+            return null;
+        }
+        acquisitions.increment();
+        return new HybridOrderLock(order, localLock);
+    }
+
+    @Override
+    public void releaseLock(Object lockObject) {
+        if (!(lockObject instanceof HybridOrderLock)) {
+            super.releaseLock(lockObject);
+            return;
+        }
+
+        HybridOrderLock lock = (HybridOrderLock) lockObject;
+        if (!lock.markReleased()) {
+            LOG.warn(String.format("Ignoring a repeated release of the lock on Order (%s)", lock.order.getId()));
+            return;
+        }
+        try {
+            super.releaseLock(lock.order);
+        } finally {
+            releaseLocalLock(lock.order.getId(), lock.localLock);
+        }
+    }
+
+    protected boolean isLocallyLockable(Order order) {
+        return order != null && !(order instanceof NullOrderImpl) && order.getId() != null;
+    }
+
+    /**
+     * Returns the local lock for the order and counts the caller as a user of it, so that it is not discarded while
+     * the caller waits for or holds it.
+     */
+    protected LocalOrderLock reserveLocalLock(Long orderId) {
+        while (true) {
+            LocalOrderLock localLock = localLocks.get(orderId);
+            if (localLock == null) {
+                LocalOrderLock created = new LocalOrderLock();
+                localLock = localLocks.putIfAbsent(orderId, created);
+                if (localLock == null) {
+                    localLock = created;
+                }
+            }
+            if (localLock.reserve()) {
+                return localLock;
+            }
+            // The lock was discarded by its last user between our get and reserve; try again with a fresh one
+            localLocks.remove(orderId, localLock);
+        }
+    }
+
+    protected void releaseLocalLock(Long orderId, LocalOrderLock localLock) {
+        localLock.permit.release();
+        releaseLocalLockReservation(orderId, localLock);
+    }
+
+    protected void releaseLocalLockReservation(Long orderId, LocalOrderLock localLock) {
+        if (localLock.unreserve()) {
+            localLocks.remove(orderId, localLock);
+        }
+    }
+
+    protected void recordWait(long waitNanos) {
+        totalWaitNanos.add(waitNanos);
+        long max = maxWaitNanos.get();
+        while (waitNanos > max && !maxWaitNanos.compareAndSet(max, waitNanos)) {
+            max = maxWaitNanos.get();
+        }
+    }
+
+    protected void recordQueueDepth(int depth) {
+        int max = maxQueueDepth.get();
+        while (depth > max && !maxQueueDepth.compareAndSet(max, depth)) {
+            max = maxQueueDepth.get();
+        }
+    }
+
+    protected long getLocalLockTimeoutMs() {
+        long defaultTimeout = getDatabaseLockPollingIntervalMs() * getDatabaseLockAcquisitionNumRetries();
+        return BLCSystemProperty.resolveLongSystemProperty("order.lock.localLockTimeoutMs", defaultTimeout);
+    }
+
+    @ManagedAttribute(description = "The number of order locks acquired", currencyTimeLimit = 15)
+    public long getAcquisitionCount() {
+        return acquisitions.sum();
+    }
+
+    @ManagedAttribute(description = "The number of order lock requests that timed out", currencyTimeLimit = 15)
+    public long getTimeoutCount() {
+        return timeouts.sum();
+    }
+
+    @ManagedAttribute(description = "The average time in milliseconds spent waiting for the local order lock", currencyTimeLimit = 15)
+    public double getAverageWaitMs() {
+        long count = acquisitions.sum();
+        return count == 0 ? 0D : totalWaitNanos.sum() / (double) count / 1000000D;
+    }
+
+    @ManagedAttribute(description = "The longest time in milliseconds spent waiting for the local order lock", currencyTimeLimit = 15)
+    public double getMaxWaitMs() {
+        return maxWaitNanos.get() / 1000000D;
+    }
+
+    @ManagedAttribute(description = "The number of threads currently waiting for a local order lock", currencyTimeLimit = 15)
+    public int getQueueDepth() {
+        return queueDepth.get();
+    }
+
+    @ManagedAttribute(description = "The largest number of threads that waited for local order locks at once", currencyTimeLimit = 15)
+    public int getMaxQueueDepth() {
+        return maxQueueDepth.get();
+    }
+
+    @ManagedAttribute(description = "The number of orders that currently have a local lock in use", currencyTimeLimit = 15)
+    public int getLocalLockCount() {
+        return localLocks.size();
+    }
+
+    /**
+     * The lock object handed to callers. It remembers the local lock that was acquired for the order, so that release
+     * never has to look it up again, and it can only be released once.
+     */
+    protected static class HybridOrderLock {
+
+        protected final Order order;
+        protected final LocalOrderLock localLock;
+        protected final AtomicBoolean released = new AtomicBoolean();
+
+        protected HybridOrderLock(Order order, LocalOrderLock localLock) {
+            this.order = order;
+            this.localLock = localLock;
+        }
+
+        /**
+         * @return true for the first caller only
+         */
+        protected boolean markReleased() {
+            return released.compareAndSet(false, true);
+        }
+
+        public Order getOrder() {
+            return order;
+        }
+    }
+
+    /**
+     * A fair, single permit lock plus a count of the threads using it. The lock is discarded once the count drops
+     * back to zero, and it can never be reserved again after that.
+     */
+    protected static class LocalOrderLock {
+
+        protected final Semaphore permit = new Semaphore(1, true);
+        protected final AtomicInteger users = new AtomicInteger();
+
+        protected boolean reserve() {
+            while (true) {
+                int current = users.get();
+                if (current < 0) {
+                    return false;
+                }
+                if (users.compareAndSet(current, current + 1)) {
+                    return true;
+                }
+            }
+        }
+
+        /**
+         * @return true if this was the last user and the lock is now discarded
+         */
+        protected boolean unreserve() {
+            if (users.decrementAndGet() == 0) {
+                return users.compareAndSet(0, -1);
+            }
+            return false;
+        }
+    }
+}
@@ -21,9 +21,13 @@ package org.broadleafcommerce.core.web.processor;
 import org.apache.commons.lang.StringUtils;
 import org.broadleafcommerce.common.extension.ExtensionResultHolder;
 import org.broadleafcommerce.common.extension.ExtensionResultStatusType;
+import org.broadleafcommerce.common.i18n.service.TranslationConsiderationContext;
+import org.broadleafcommerce.common.time.SystemTime;
 import org.broadleafcommerce.core.catalog.domain.Category;
 import org.broadleafcommerce.core.catalog.domain.CategoryXref;
 import org.broadleafcommerce.core.catalog.service.CatalogService;
+import org.broadleafcommerce.core.catalog.service.CategoryTreeService;
+import org.broadleafcommerce.core.catalog.service.CategoryTreeSnapshot;
 import org.broadleafcommerce.presentation.condition.ConditionalOnTemplating;
 import org.broadleafcommerce.presentation.dialect.AbstractBroadleafVariableModifierProcessor;
 import org.broadleafcommerce.presentation.model.BroadleafTemplateContext;
@@ -58,6 +62,9 @@ public class CategoriesProcessor extends AbstractBroadleafVariableModifierProces
     @Resource(name = "blCategoriesProcessorExtensionManager")
     protected CategoriesProcessorExtensionManager extensionManager;
 
+    @Resource(name = "blCategoryTreeService")
+    protected CategoryTreeService categoryTreeService;
+
     @Override
     public String getName() {
         return "categories";
@@ -88,6 +95,23 @@ public class CategoriesProcessor extends AbstractBroadleafVariableModifierProces
         // instead of the first category in the list
         List<Category> categories = catalogService.findCategoriesByName(parentCategory);
         if (categories != null && categories.size() > 0) {
+            CategoryTreeSnapshot snapshot = categoryTreeService.getSnapshot();
+            Long parentId = categories.get(0).getId();
+            if (snapshot != null && parentId != null && snapshot.contains(parentId)) {
+                int maxResults = StringUtils.isNotEmpty(unparsedMaxResults) ? Integer.parseInt(unparsedMaxResults) : -1;
+                long[] childIds = snapshot.getActiveChildIds(parentId, SystemTime.asMillis(true), maxResults);
+                List<Category> results = new ArrayList<>(childIds.length);
+                for (long childId : childIds) {
+                    Category child = catalogService.findCategoryById(childId);
+                    if (child != null) {
+                        results.add(child);
+                    }
+                }
+                prefetchTranslations(results);
+                newModelVars.put(resultVar, results);
+                return newModelVars;
+            }
+
             // gets child categories in order ONLY if they are in the xref table and active
             List<CategoryXref> subcategories = categories.get(0).getChildCategoryXrefs();
             List<Category> results = Collections.emptyList();
@@ -104,9 +128,19 @@ public class CategoriesProcessor extends AbstractBroadleafVariableModifierProces
                     results.add(xref.getSubCategory());
                 }
             }
+            prefetchTranslations(results);
             newModelVars.put(resultVar, results);
         }
         return newModelVars;
     }
 
+    /**
+     * Navigation menus render the name of every returned category, so load their translations in one go
+     */
+    protected void prefetchTranslations(List<Category> categories) {
+        if (!categories.isEmpty() && TranslationConsiderationContext.hasTranslation()) {
+            TranslationConsiderationContext.getTranslationService().prefetchTranslations(categories);
+        }
+    }
+
 }
@@ -0,0 +1,95 @@
+/*
+ * #%L
+ * BroadleafCommerce Framework Web
+ * %%
+ * Copyright (C) 2009 - 2016 Broadleaf Commerce
+ * %%
+ * Licensed under the Broadleaf Fair Use License Agreement, Version 1.0
+ * (the "Fair Use License" located  at http://license.broadleafcommerce.org/fair_use_license-1.0.txt)
+ * unless the restrictions on use therein are violated and require payment to Broadleaf in which case
+ * the Broadleaf End User License Agreement (EULA), Version 1.1
+ * (the "Commercial License" located at http://license.broadleafcommerce.org/commercial_license-1.1.txt)
+ * shall apply.
+ * 
+ * Alternatively, the Commercial License may be replaced with a mutually agreed upon license (the "Custom License")
+ * between you and Broadleaf Commerce. You may not use this file except in compliance with the applicable license.
+ * #L%
+ */
+package org.broadleafcommerce.core.web.controller;
+
+import org.broadleafcommerce.common.cache.CacheStat;
+import org.broadleafcommerce.common.cache.StatisticsService;
+import org.easymock.EasyMock;
+
+import java.util.Map;
+import java.util.TreeMap;
+
+import junit.framework.TestCase;
+
+public class CacheStatisticsControllerTest extends TestCase {
+
+    protected CacheStatisticsController controller;
+
+    @Override
+    protected void setUp() {
+        CacheStat stat = new CacheStat();
+        for (int i = 0; i < 4; i++) {
+            stat.incrementRequest();
+        }
+        stat.incrementHit();
+        stat.addEvictions(2);
+        stat.addLoadTime(2000000L);
+        stat.addLoadTime(2000000L);
+
+        Map<String, CacheStat> stats = new TreeMap<String, CacheStat>();
+        stats.put("blProducts \"main\"", stat);
+        StatisticsService statisticsService = EasyMock.createMock(StatisticsService.class);
+        EasyMock.expect(statisticsService.getCacheStats()).andReturn(stats).anyTimes();
+        EasyMock.replay(statisticsService);
+
+        controller = new CacheStatisticsController();
+        controller.statisticsService = statisticsService;
+    }
+
+    public void testMetricsAreRenderedInTheTextFormat() {
+        String metrics = controller.getMetrics();
+
+        assertTrue(metrics.contains("# TYPE blc_cache_requests_total counter\n"));
+        assertTrue(metrics.contains("blc_cache_requests_total{cache=\"blProducts \\\"main\\\"\"} 4\n"));
+        assertTrue(metrics.contains("blc_cache_hits_total{cache=\"blProducts \\\"main\\\"\"} 1\n"));
+        assertTrue(metrics.contains("blc_cache_hit_ratio{cache=\"blProducts \\\"main\\\"\"} 0.25\n"));
+        assertTrue(metrics.contains("blc_cache_evictions_total{cache=\"blProducts \\\"main\\\"\"} 2\n"));
+        assertTrue(metrics.contains("blc_cache_load_seconds{cache=\"blProducts \\\"main\\\"\",quantile=\"0.99\"} "));
+        assertTrue(metrics.contains("blc_cache_load_seconds_sum{cache=\"blProducts \\\"main\\\"\"} 0.004\n"));
+        assertTrue(metrics.contains("blc_cache_load_seconds_count{cache=\"blProducts \\\"main\\\"\"} 2\n"));
+        assertTrue(metrics.contains("blc_cache_load_seconds_max{cache=\"blProducts \\\"main\\\"\"} 0.002\n"));
+    }
+
+    public void testSnapshotContainsEveryCache() {
+        Map<String, Object> snapshot = controller.getSnapshot();
+        Map<String, Object> caches = (Map<String, Object>) snapshot.get("caches");
+        Map<String, Object> cache = (Map<String, Object>) caches.get("blProducts \"main\"");
+
+        assertTrue(snapshot.get("timestamp") instanceof Long);
+        assertEquals(4L, cache.get("requests"));
+        assertEquals(1L, cache.get("hits"));
+        assertEquals(0.25D, cache.get("hitRatio"));
+        assertEquals(2L, cache.get("evictions"));
+
+        Map<String, Object> loads = (Map<String, Object>) cache.get("loads");
+        assertEquals(2L, loads.get("count"));
+        assertEquals(2D, loads.get("meanMillis"));
+        assertEquals(2D, loads.get("maxMillis"));
+        double p50 = (Double) loads.get("p50Millis");
+        assertTrue(p50 >= 2D && p50 <= 2D + 2D / 16);
+    }
+
+    public void testMissingStatisticsServiceRendersNoCaches() {
+        controller.statisticsService = null;
+
+        assertEquals(0, ((Map<String, Object>) controller.getSnapshot().get("caches")).size());
+        assertFalse(controller.getMetrics().contains("{cache="));
+        assertTrue(controller.getMetrics().contains("# TYPE blc_cache_requests_total counter\n"));
+    }
+
+}
@@ -0,0 +1,180 @@
+/*
+ * #%L
+ * BroadleafCommerce Framework Web
+ * %%
+ * Copyright (C) 2009 - 2016 Broadleaf Commerce
+ * %%
+ * Licensed under the Broadleaf Fair Use License Agreement, Version 1.0
+ * (the "Fair Use License" located  at http://license.broadleafcommerce.org/fair_use_license-1.0.txt)
+ * unless the restrictions on use therein are violated and require payment to Broadleaf in which case
+ * the Broadleaf End User License Agreement (EULA), Version 1.1
+ * (the "Commercial License" located at http://license.broadleafcommerce.org/commercial_license-1.1.txt)
+ * shall apply.
+ * 
+ * Alternatively, the Commercial License may be replaced with a mutually agreed upon license (the "Custom License")
+ * between you and Broadleaf Commerce. You may not use this file except in compliance with the applicable license.
+ * #L%
+ */
+package org.broadleafcommerce.core.web.order;
+
+import org.broadleafcommerce.core.order.domain.Order;
+import org.broadleafcommerce.core.order.domain.OrderImpl;
+import org.broadleafcommerce.core.order.service.OrderService;
+import org.easymock.EasyMock;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import junit.framework.TestCase;
+
+public class HybridOrderLockManagerTest extends TestCase {
+
+    protected TestLockManager lockManager;
+    protected OrderService orderService;
+
+    @Override
+    protected void setUp() {
+        orderService = EasyMock.createMock(OrderService.class);
+        lockManager = new TestLockManager();
+        lockManager.orderService = orderService;
+    }
+
+    public void testRepeatedReleaseIsIgnored() {
+        Order order = buildOrder(1L);
+        EasyMock.expect(orderService.acquireLock(order)).andReturn(true).times(2);
+        EasyMock.expect(orderService.releaseLock(order)).andReturn(true).times(2);
+        EasyMock.replay(orderService);
+
+        Object lockObject = lockManager.acquireLock(order);
+        lockManager.releaseLock(lockObject);
+        lockManager.releaseLock(lockObject);
+        assertEquals(0, lockManager.getLocalLockCount());
+
+        // A repeated release must not have added a second permit
+        Object second = lockManager.acquireLockIfAvailable(order);
+        assertNotNull(second);
+        assertNull(lockManager.acquireLockIfAvailable(order));
+        lockManager.releaseLock(second);
+
+        EasyMock.verify(orderService);
+        assertEquals(0, lockManager.getLocalLockCount());
+    }
+
+    public void testOrderWithoutIdSkipsTheLocalLock() {
+        Order order = buildOrder(null);
+        EasyMock.expect(orderService.acquireLock(order)).andReturn(true);
+        EasyMock.expect(orderService.releaseLock(order)).andReturn(true);
+        EasyMock.replay(orderService);
+
+        Object lockObject = lockManager.acquireLock(order);
+        assertSame(order, lockObject);
+        assertEquals(0, lockManager.getLocalLockCount());
+        lockManager.releaseLock(lockObject);
+
+        EasyMock.verify(orderService);
+    }
+
+    public void testLocalWaitTimesOut() throws Exception {
+        final Order order = buildOrder(2L);
+        EasyMock.expect(orderService.acquireLock(order)).andReturn(true);
+        EasyMock.expect(orderService.releaseLock(order)).andReturn(true);
+        EasyMock.replay(orderService);
+
+        Object lockObject = lockManager.acquireLock(order);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<Object> waiter = executor.submit(new Callable<Object>() {
+                @Override
+                public Object call() {
+                    return lockManager.acquireLock(order);
+                }
+            });
+            try {
+                waiter.get(5, TimeUnit.SECONDS);
+                fail("The second request should have timed out waiting for the local lock");
+            } catch (ExecutionException e) {
+                assertTrue(e.getCause() instanceof RuntimeException);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals(1, lockManager.getTimeoutCount());
+
+        lockManager.releaseLock(lockObject);
+        EasyMock.verify(orderService);
+        assertEquals(0, lockManager.getLocalLockCount());
+    }
+
+    public void testConcurrentRequestsForTheSameOrderAreSerialized() throws Exception {
+        final Order order = buildOrder(3L);
+        final int threads = 8;
+        final int iterations = 50;
+        EasyMock.expect(orderService.acquireLock(order)).andReturn(true).times(threads * iterations);
+        EasyMock.expect(orderService.releaseLock(order)).andReturn(true).times(threads * iterations);
+        EasyMock.makeThreadSafe(orderService, true);
+        EasyMock.replay(orderService);
+
+        final AtomicInteger holders = new AtomicInteger();
+        final AtomicInteger maxHolders = new AtomicInteger();
+        final CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<Void>> futures = new ArrayList<>();
+            for (int i = 0; i < threads; i++) {
+                futures.add(executor.submit(new Callable<Void>() {
+                    @Override
+                    public Void call() throws Exception {
+                        start.await();
+                        for (int j = 0; j < iterations; j++) {
+                            Object lockObject = lockManager.acquireLock(order);
+                            try {
+                                int current = holders.incrementAndGet();
+                                maxHolders.set(Math.max(maxHolders.get(), current));
+                                Thread.yield();
+                                holders.decrementAndGet();
+                            } finally {
+                                lockManager.releaseLock(lockObject);
+                                // Releasing twice must never let a second thread in
+                                lockManager.releaseLock(lockObject);
+                            }
+                        }
+                        return null;
+                    }
+                }));
+            }
+            start.countDown();
+            for (Future<Void> future : futures) {
+                future.get(30, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertEquals(1, maxHolders.get());
+        assertEquals(threads * iterations, lockManager.getAcquisitionCount());
+        assertEquals(0, lockManager.getLocalLockCount());
+        EasyMock.verify(orderService);
+    }
+
+    protected Order buildOrder(Long id) {
+        Order order = new OrderImpl();
+        order.setId(id);
+        return order;
+    }
+
+    protected static class TestLockManager extends HybridOrderLockManager {
+
+        @Override
+        protected long getLocalLockTimeoutMs() {
+            return 200;
+        }
+    }
+}
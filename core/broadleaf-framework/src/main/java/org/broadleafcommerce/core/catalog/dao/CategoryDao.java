@@ -206,6 +206,24 @@ public interface CategoryDao {
 
     public Category findCategoryByURI(String uri);
 
+    /**
+     * Reads the id, url, url key, name, active start date and active end date of every category that is not archived,
+     * without loading the entities. Used to build a {@link org.broadleafcommerce.core.catalog.service.CategoryTreeSnapshot}.
+     *
+     * @return one row per category
+     */
+    @Nonnull
+    public List<Object[]> readAllCategoryTreeNodes();
+
+    /**
+     * Reads the parent category id, child category id and default reference flag of every category xref, in display
+     * order, without loading the entities. Used to build a {@link org.broadleafcommerce.core.catalog.service.CategoryTreeSnapshot}.
+     *
+     * @return one row per xref
+     */
+    @Nonnull
+    public List<Object[]> readAllCategoryTreeXrefs();
+
     /**
      * Returns the number of milliseconds that the current date/time will be cached for queries before refreshing.
      * This aids in query caching, otherwise every query that utilized current date would be different and caching
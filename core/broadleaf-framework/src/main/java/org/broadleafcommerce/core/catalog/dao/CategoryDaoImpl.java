@@ -252,6 +252,19 @@ public class CategoryDaoImpl implements CategoryDao {
         return query.getResultList();
     }
 
+    @Override
+    public List<Object[]> readAllCategoryTreeNodes() {
+        TypedQuery<Object[]> query = em.createNamedQuery("BC_READ_ALL_CATEGORY_TREE_NODES", Object[].class);
+        //don't cache - the rows are only read to build the category tree snapshot
+        return query.getResultList();
+    }
+
+    @Override
+    public List<Object[]> readAllCategoryTreeXrefs() {
+        TypedQuery<Object[]> query = em.createNamedQuery("BC_READ_ALL_CATEGORY_TREE_XREFS", Object[].class);
+        return query.getResultList();
+    }
+
     @Override
     public Long getCurrentDateResolution() {
         return currentDateResolution;
@@ -20,7 +20,9 @@ package org.broadleafcommerce.core.catalog.dao;
 import org.broadleafcommerce.core.catalog.domain.Sku;
 import org.broadleafcommerce.core.catalog.domain.SkuFee;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 
 /**
  * {@code SkuDao} provides persistence access to {@code Sku} instances
@@ -183,4 +185,18 @@ public interface SkuDao {
      * 
      */
     List<Sku> findSkuByURI(String uri);
+
+    /**
+     * Reads the current {@code quantityAvailable} column for each of the given skus straight from the database, in a
+     * single query (split into chunks for very large id lists), bypassing the entity and second level caches.
+     * <p>
+     * When {@code lockForUpdate} is true the rows are read with a pessimistic write lock, in ascending id order, so that
+     * concurrent checkouts touching overlapping skus always acquire their row locks in the same order. Locking requires
+     * an active transaction.
+     *
+     * @param skuIds the primary keys of the skus to read
+     * @param lockForUpdate whether to lock the sku rows until the end of the current transaction
+     * @return the quantity available keyed by sku id; skus that do not exist are absent from the map
+     */
+    Map<Long, Integer> readQuantitiesAvailable(Collection<Long> skuIds, boolean lockForUpdate);
 }
@@ -34,11 +34,16 @@ import org.hibernate.jpa.QueryHints;
 import org.springframework.stereotype.Repository;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
 
 import javax.annotation.Resource;
 import javax.persistence.EntityManager;
+import javax.persistence.LockModeType;
 import javax.persistence.NoResultException;
 import javax.persistence.PersistenceContext;
 import javax.persistence.Query;
@@ -70,6 +75,11 @@ public class SkuDaoImpl implements SkuDao {
     @Resource(name = "blSkuDaoExtensionManager")
     protected SkuDaoExtensionManager extensionManager;
 
+    /**
+     * Keeps the IN list of the bulk quantity queries under the limit some databases place on it
+     */
+    protected static final int QUANTITY_QUERY_CHUNK_SIZE = 500;
+
     protected Long currentDateResolution = 10000L;
     protected Date cachedDate = SystemTime.asDate();
 
@@ -165,6 +175,28 @@ public class SkuDaoImpl implements SkuDao {
         return query.getResultList();
     }
 
+    @Override
+    public Map<Long, Integer> readQuantitiesAvailable(Collection<Long> skuIds, boolean lockForUpdate) {
+        Map<Long, Integer> quantities = new HashMap<Long, Integer>();
+        if (skuIds == null || skuIds.isEmpty()) {
+            return quantities;
+        }
+        List<Long> sortedIds = new ArrayList<Long>(new TreeSet<Long>(skuIds));
+        for (int start = 0; start < sortedIds.size(); start += QUANTITY_QUERY_CHUNK_SIZE) {
+            List<Long> chunk = sortedIds.subList(start, Math.min(start + QUANTITY_QUERY_CHUNK_SIZE, sortedIds.size()));
+            TypedQuery<Object[]> query = em.createQuery("SELECT sku.id, sku.quantityAvailable FROM " + SkuImpl.class.getName()
+                    + " sku WHERE sku.id IN :skuIds ORDER BY sku.id", Object[].class);
+            query.setParameter("skuIds", chunk);
+            if (lockForUpdate) {
+                query.setLockMode(LockModeType.PESSIMISTIC_WRITE);
+            }
+            for (Object[] row : query.getResultList()) {
+                quantities.put((Long) row[0], (Integer) row[1]);
+            }
+        }
+        return quantities;
+    }
+
     @Override
     public void delete(Sku sku) {
         if (!em.contains(sku)) {
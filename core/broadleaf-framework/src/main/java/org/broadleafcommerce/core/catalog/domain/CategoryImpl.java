@@ -89,6 +89,7 @@ import javax.persistence.CascadeType;
 import javax.persistence.Column;
 import javax.persistence.Embedded;
 import javax.persistence.Entity;
+import javax.persistence.EntityListeners;
 import javax.persistence.GeneratedValue;
 import javax.persistence.Id;
 import javax.persistence.Inheritance;
@@ -107,6 +108,7 @@ import javax.persistence.Transient;
  * @author Jeff Fischer
  */
 @Entity
+@EntityListeners(value = { CategoryTreeChangeEntityListener.class })
 @Inheritance(strategy = InheritanceType.JOINED)
 @Table(name="BLC_CATEGORY")
 @Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region="blCategories")
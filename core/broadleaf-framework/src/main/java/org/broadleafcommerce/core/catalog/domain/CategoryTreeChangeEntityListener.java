@@ -0,0 +1,65 @@
+/*
+ * #%L
+ * BroadleafCommerce Framework
+ * %%
+ * Copyright (C) 2009 - 2016 Broadleaf Commerce
+ * %%
+ * Licensed under the Broadleaf Fair Use License Agreement, Version 1.0
+ * (the "Fair Use License" located  at http://license.broadleafcommerce.org/fair_use_license-1.0.txt)
+ * unless the restrictions on use therein are violated and require payment to Broadleaf in which case
+ * the Broadleaf End User License Agreement (EULA), Version 1.1
+ * (the "Commercial License" located at http://license.broadleafcommerce.org/commercial_license-1.1.txt)
+ * shall apply.
+ *
+ * Alternatively, the Commercial License may be replaced with a mutually agreed upon license (the "Custom License")
+ * between you and Broadleaf Commerce. You may not use this file except in compliance with the applicable license.
+ * #L%
+ */
+package org.broadleafcommerce.core.catalog.domain;
+
+import org.broadleafcommerce.common.util.ApplicationContextHolder;
+import org.broadleafcommerce.core.catalog.service.CategoryTreeService;
+import org.springframework.context.ApplicationContext;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.persistence.PostPersist;
+import javax.persistence.PostRemove;
+import javax.persistence.PostUpdate;
+
+/**
+ * Asks the {@link CategoryTreeService} to rebuild its snapshot once a transaction that saved or removed a
+ * {@link Category} or {@link CategoryXref} commits. Changes made on other nodes are picked up by the service's
+ * periodic refresh.
+ */
+public class CategoryTreeChangeEntityListener {
+
+    @PostPersist
+    @PostUpdate
+    @PostRemove
+    public void categoryTreeChanged(Object entity) {
+        final ApplicationContext context = ApplicationContextHolder.getApplicationContext();
+        if (context == null || !context.containsBean("blCategoryTreeService")) {
+            return;
+        }
+
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+                @Override
+                public void afterCompletion(int status) {
+                    if (status == TransactionSynchronization.STATUS_COMMITTED) {
+                        refresh(context);
+                    }
+                }
+            });
+        } else {
+            refresh(context);
+        }
+    }
+
+    protected void refresh(ApplicationContext context) {
+        context.getBean("blCategoryTreeService", CategoryTreeService.class).refresh();
+    }
+
+}
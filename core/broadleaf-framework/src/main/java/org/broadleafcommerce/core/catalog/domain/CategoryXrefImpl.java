@@ -34,6 +34,7 @@ import javax.persistence.*;
 import java.math.BigDecimal;
 
 @Entity
+@EntityListeners(value = { CategoryTreeChangeEntityListener.class })
 @Inheritance(strategy = InheritanceType.JOINED)
 @Table(name = "BLC_CATEGORY_XREF")
 @AdminPresentationClass(excludeFromPolymorphism = false)
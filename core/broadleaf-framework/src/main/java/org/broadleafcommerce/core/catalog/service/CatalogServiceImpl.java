@@ -20,6 +20,7 @@ package org.broadleafcommerce.core.catalog.service;
 import org.apache.commons.collections.MapUtils;
 import org.broadleafcommerce.common.extension.ExtensionResultHolder;
 import org.broadleafcommerce.common.extension.ExtensionResultStatusType;
+import org.broadleafcommerce.common.time.SystemTime;
 import org.broadleafcommerce.common.web.BroadleafRequestContext;
 import org.broadleafcommerce.core.catalog.dao.CategoryDao;
 import org.broadleafcommerce.core.catalog.dao.ProductDao;
@@ -64,6 +65,9 @@ public class CatalogServiceImpl implements CatalogService {
     @Resource(name = "blCatalogServiceExtensionManager")
     protected CatalogServiceExtensionManager extensionManager;
 
+    @Resource(name = "blCategoryTreeService")
+    protected CategoryTreeService categoryTreeService;
+
     @Override
     public Product findProductById(Long productId) {
         return productDao.readProductById(productId);
@@ -303,6 +307,10 @@ public class CatalogServiceImpl implements CatalogService {
     @Override
     @Deprecated
     public Map<String, List<Long>> getChildCategoryURLMapByCategoryId(Long categoryId) {
+        CategoryTreeSnapshot snapshot = categoryTreeService == null ? null : categoryTreeService.getSnapshot();
+        if (categoryId != null && snapshot != null && snapshot.contains(categoryId)) {
+            return snapshot.createChildCategoryURLMap(categoryId, SystemTime.asMillis(true));
+        }
         Category category = findCategoryById(categoryId);
         if (category != null) {
             return category.getChildCategoryURLMap();
@@ -0,0 +1,51 @@
+/*
+ * #%L
+ * BroadleafCommerce Framework
+ * %%
+ * Copyright (C) 2009 - 2016 Broadleaf Commerce
+ * %%
+ * Licensed under the Broadleaf Fair Use License Agreement, Version 1.0
+ * (the "Fair Use License" located  at http://license.broadleafcommerce.org/fair_use_license-1.0.txt)
+ * unless the restrictions on use therein are violated and require payment to Broadleaf in which case
+ * the Broadleaf End User License Agreement (EULA), Version 1.1
+ * (the "Commercial License" located at http://license.broadleafcommerce.org/commercial_license-1.1.txt)
+ * shall apply.
+ *
+ * Alternatively, the Commercial License may be replaced with a mutually agreed upon license (the "Custom License")
+ * between you and Broadleaf Commerce. You may not use this file except in compliance with the applicable license.
+ * #L%
+ */
+package org.broadleafcommerce.core.catalog.service;
+
+/**
+ * Holds the current {@link CategoryTreeSnapshot} for category navigation (breadcrumbs, child category menus, ancestor
+ * checks and url lookups). There is one snapshot per site and catalog. Each is rebuilt in the background and swapped
+ * in atomically, so readers never wait on a rebuild.
+ */
+public interface CategoryTreeService {
+
+    /**
+     * Returns the current snapshot of the category tree for the site and catalog of the current request, or null when
+     * callers should read the categories directly, either because the first snapshot is still being built, the
+     * snapshot is disabled, or the request is previewing a sandbox.
+     *
+     * @return the current snapshot or null
+     */
+    CategoryTreeSnapshot getSnapshot();
+
+    /**
+     * Whether category urls may be resolved through the snapshot. They may not when a
+     * {@link CatalogServiceExtensionHandler} or a {@link org.broadleafcommerce.core.catalog.dao.CategoryDaoExtensionHandler}
+     * is registered, because either can resolve urls differently from the default lookup in
+     * {@link CatalogService#findCategoryByURI(String)}.
+     *
+     * @return true if {@link CategoryTreeSnapshot#findCategoryIdByUrl(String, long)} may be used
+     */
+    boolean isUrlLookupSupported();
+
+    /**
+     * Schedules a rebuild of every snapshot. Requests made while a rebuild is already waiting are coalesced into it.
+     */
+    void refresh();
+
+}
@@ -0,0 +1,263 @@
+/*
+ * #%L
+ * BroadleafCommerce Framework
+ * %%
+ * Copyright (C) 2009 - 2016 Broadleaf Commerce
+ * %%
+ * Licensed under the Broadleaf Fair Use License Agreement, Version 1.0
+ * (the "Fair Use License" located  at http://license.broadleafcommerce.org/fair_use_license-1.0.txt)
+ * unless the restrictions on use therein are violated and require payment to Broadleaf in which case
+ * the Broadleaf End User License Agreement (EULA), Version 1.1
+ * (the "Commercial License" located at http://license.broadleafcommerce.org/commercial_license-1.1.txt)
+ * shall apply.
+ *
+ * Alternatively, the Commercial License may be replaced with a mutually agreed upon license (the "Custom License")
+ * between you and Broadleaf Commerce. You may not use this file except in compliance with the applicable license.
+ * #L%
+ */
+package org.broadleafcommerce.core.catalog.service;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.broadleafcommerce.common.site.domain.Catalog;
+import org.broadleafcommerce.common.site.domain.Site;
+import org.broadleafcommerce.common.util.StreamingTransactionCapable;
+import org.broadleafcommerce.common.web.BroadleafRequestContext;
+import org.broadleafcommerce.core.catalog.dao.CategoryDao;
+import org.broadleafcommerce.core.catalog.dao.CategoryDaoExtensionManager;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import javax.annotation.PreDestroy;
+import javax.annotation.Resource;
+
+/**
+ * Default {@link CategoryTreeService}. Snapshots are kept per site and catalog. The first call to
+ * {@link #getSnapshot()} for a site and catalog queues a build on a single background thread, which runs with a
+ * lightweight copy of that request's {@link BroadleafRequestContext} so the projection queries see the same site and
+ * catalog as the request. Every snapshot is then rebuilt each <code>category.tree.refresh.seconds</code>, which picks
+ * up changes saved on other nodes. Changes to categories and category xrefs saved on this node call
+ * {@link #refresh()} once their transaction commits.
+ *
+ * @see org.broadleafcommerce.core.catalog.domain.CategoryTreeChangeEntityListener
+ */
+@Service("blCategoryTreeService")
+public class CategoryTreeServiceImpl implements CategoryTreeService {
+
+    private static final Log LOG = LogFactory.getLog(CategoryTreeServiceImpl.class);
+
+    @Resource(name = "blCategoryDao")
+    protected CategoryDao categoryDao;
+
+    @Resource(name = "blStreamingTransactionCapableUtil")
+    protected StreamingTransactionCapable transactionUtil;
+
+    @Resource(name = "blCatalogServiceExtensionManager")
+    protected CatalogServiceExtensionManager catalogServiceExtensionManager;
+
+    @Resource(name = "blCategoryDaoExtensionManager")
+    protected CategoryDaoExtensionManager categoryDaoExtensionManager;
+
+    @Value("${category.tree.snapshot.enabled:true}")
+    protected boolean enabled = true;
+
+    @Value("${category.tree.refresh.seconds:600}")
+    protected int refreshSeconds = 600;
+
+    protected final ConcurrentMap<String, ScopedSnapshot> snapshots = new ConcurrentHashMap<String, ScopedSnapshot>();
+
+    protected volatile ScheduledExecutorService rebuildExecutor;
+
+    @Override
+    public CategoryTreeSnapshot getSnapshot() {
+        if (!enabled) {
+            return null;
+        }
+        BroadleafRequestContext context = BroadleafRequestContext.getBroadleafRequestContext();
+        if (context != null && !context.isProductionSandBox()) {
+            return null;
+        }
+        String key = getScopeKey(context);
+        ScopedSnapshot scoped = snapshots.get(key);
+        if (scoped == null) {
+            ScopedSnapshot created = new ScopedSnapshot(context == null ? null : context.createLightWeightClone());
+            scoped = snapshots.putIfAbsent(key, created);
+            if (scoped == null) {
+                scoped = created;
+                queueRebuild(getRebuildExecutor(), scoped);
+            }
+        }
+        return scoped.snapshot.get();
+    }
+
+    @Override
+    public boolean isUrlLookupSupported() {
+        return (catalogServiceExtensionManager == null || catalogServiceExtensionManager.getHandlers().isEmpty())
+                && (categoryDaoExtensionManager == null || categoryDaoExtensionManager.getHandlers().isEmpty());
+    }
+
+    @Override
+    public void refresh() {
+        ScheduledExecutorService executor = rebuildExecutor;
+        if (executor != null) {
+            for (ScopedSnapshot scoped : snapshots.values()) {
+                queueRebuild(executor, scoped);
+            }
+        }
+    }
+
+    /**
+     * Snapshots are kept apart by the ids of the request's site and catalog, since both can limit which categories
+     * the projection queries return
+     */
+    protected String getScopeKey(BroadleafRequestContext context) {
+        if (context == null) {
+            return "";
+        }
+        Site site = context.getNonPersistentSite();
+        Catalog catalog = context.getCurrentCatalog();
+        return (site == null ? "" : String.valueOf(site.getId())) + ":"
+                + (catalog == null ? "" : String.valueOf(catalog.getId()));
+    }
+
+    protected void queueRebuild(ScheduledExecutorService executor, final ScopedSnapshot scoped) {
+        if (scoped.rebuildQueued.compareAndSet(false, true)) {
+            try {
+                executor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        scoped.rebuildQueued.set(false);
+                        rebuild(scoped);
+                    }
+                });
+            } catch (RuntimeException e) {
+                scoped.rebuildQueued.set(false);
+                throw e;
+            }
+        }
+    }
+
+    protected void rebuild(final ScopedSnapshot scoped) {
+        if (scoped.contextTemplate != null) {
+            BroadleafRequestContext.setBroadleafRequestContext(scoped.contextTemplate.createLightWeightClone());
+        }
+        try {
+            Runnable operation = new Runnable() {
+                @Override
+                public void run() {
+                    long start = System.currentTimeMillis();
+                    CategoryTreeSnapshot newSnapshot = buildSnapshot();
+                    scoped.snapshot.set(newSnapshot);
+                    if (LOG.isDebugEnabled()) {
+                        LOG.debug("Built category tree snapshot of " + newSnapshot.size() + " categories in "
+                                + (System.currentTimeMillis() - start) + "ms");
+                    }
+                }
+            };
+            if (transactionUtil != null) {
+                transactionUtil.runOptionalEntityManagerInViewOperation(operation);
+            } else {
+                operation.run();
+            }
+        } catch (RuntimeException e) {
+            // keep serving the previous snapshot, the next scheduled rebuild will try again
+            LOG.error("Unable to rebuild the category tree snapshot", e);
+        } finally {
+            if (scoped.contextTemplate != null) {
+                BroadleafRequestContext.setBroadleafRequestContext(null);
+            }
+        }
+    }
+
+    protected CategoryTreeSnapshot buildSnapshot() {
+        CategoryTreeSnapshot.Builder builder = new CategoryTreeSnapshot.Builder();
+
+        List<Object[]> nodes = categoryDao.readAllCategoryTreeNodes();
+        for (Object[] node : nodes) {
+            builder.addCategory((Long) node[0], (String) node[1], (String) node[2], (String) node[3], (Date) node[4],
+                    (Date) node[5]);
+        }
+
+        List<Object[]> xrefs = categoryDao.readAllCategoryTreeXrefs();
+        for (Object[] xref : xrefs) {
+            builder.addXref((Long) xref[0], (Long) xref[1], Boolean.TRUE.equals(xref[2]));
+        }
+
+        return builder.build();
+    }
+
+    protected ScheduledExecutorService getRebuildExecutor() {
+        if (rebuildExecutor == null) {
+            synchronized (this) {
+                if (rebuildExecutor == null) {
+                    ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(1, new ThreadFactory() {
+                        @Override
+                        public Thread newThread(Runnable r) {
+                            Thread thread = new Thread(r, "blCategoryTreeRebuild");
+                            thread.setDaemon(true);
+                            return thread;
+                        }
+                    });
+                    if (refreshSeconds > 0) {
+                        executor.scheduleWithFixedDelay(new Runnable() {
+                            @Override
+                            public void run() {
+                                refresh();
+                            }
+                        }, refreshSeconds, refreshSeconds, TimeUnit.SECONDS);
+                    }
+                    rebuildExecutor = executor;
+                }
+            }
+        }
+        return rebuildExecutor;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (rebuildExecutor != null) {
+            rebuildExecutor.shutdownNow();
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public int getRefreshSeconds() {
+        return refreshSeconds;
+    }
+
+    public void setRefreshSeconds(int refreshSeconds) {
+        this.refreshSeconds = refreshSeconds;
+    }
+
+    /**
+     * The snapshot of one site and catalog, along with the request context its rebuilds run with
+     */
+    protected static class ScopedSnapshot {
+
+        protected final BroadleafRequestContext contextTemplate;
+        protected final AtomicReference<CategoryTreeSnapshot> snapshot = new AtomicReference<CategoryTreeSnapshot>();
+        protected final AtomicBoolean rebuildQueued = new AtomicBoolean();
+
+        protected ScopedSnapshot(BroadleafRequestContext contextTemplate) {
+            this.contextTemplate = contextTemplate;
+        }
+    }
+}
@@ -0,0 +1,418 @@
+/*
+ * #%L
+ * BroadleafCommerce Framework
+ * %%
+ * Copyright (C) 2009 - 2016 Broadleaf Commerce
+ * %%
+ * Licensed under the Broadleaf Fair Use License Agreement, Version 1.0
+ * (the "Fair Use License" located  at http://license.broadleafcommerce.org/fair_use_license-1.0.txt)
+ * unless the restrictions on use therein are violated and require payment to Broadleaf in which case
+ * the Broadleaf End User License Agreement (EULA), Version 1.1
+ * (the "Commercial License" located at http://license.broadleafcommerce.org/commercial_license-1.1.txt)
+ * shall apply.
+ *
+ * Alternatively, the Commercial License may be replaced with a mutually agreed upon license (the "Custom License")
+ * between you and Broadleaf Commerce. You may not use this file except in compliance with the applicable license.
+ * #L%
+ */
+package org.broadleafcommerce.core.catalog.service;
+
+import org.broadleafcommerce.common.util.UrlUtil;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * An immutable copy of the category DAG, held in primitive arrays so that navigation never touches Hibernate
+ * collections or the second-level cache. Categories are addressed by their position in the sorted {@link #ids}
+ * array, found with a binary search, and the child and parent xrefs of each position are stored as contiguous
+ * ranges of one shared array (compressed sparse rows).
+ * <p/>
+ * Archived categories are left out. Active dates are kept so that activity is checked against the time of the
+ * request rather than the time the snapshot was built, using the same rules as
+ * {@link org.broadleafcommerce.core.catalog.domain.CategoryImpl#isActive()}.
+ * <p/>
+ * Instances are built by a {@link Builder} and are safe to share between threads.
+ *
+ * @see CategoryTreeService
+ */
+public class CategoryTreeSnapshot {
+
+    protected final long[] ids;
+    protected final String[] urlKeys;
+    protected final long[] activeStarts;
+    protected final long[] activeEnds;
+    protected final int[] childOffsets;
+    protected final int[] children;
+    protected final int[] parentOffsets;
+    protected final int[] parents;
+    protected final boolean[] defaultParents;
+    protected final Map<String, int[]> urlIndexes;
+
+    protected CategoryTreeSnapshot(Builder builder) {
+        int size = builder.categoryCount;
+        int[] order = sortedOrder(builder.ids, size);
+
+        ids = new long[size];
+        urlKeys = new String[size];
+        activeStarts = new long[size];
+        activeEnds = new long[size];
+        for (int i = 0; i < size; i++) {
+            ids[i] = builder.ids[order[i]];
+            urlKeys[i] = builder.urlKeys[order[i]];
+            activeStarts[i] = builder.activeStarts[order[i]];
+            activeEnds[i] = builder.activeEnds[order[i]];
+        }
+
+        Map<String, List<Integer>> urls = new HashMap<String, List<Integer>>();
+        for (int i = 0; i < size; i++) {
+            String url = builder.urls[order[i]];
+            if (url != null) {
+                List<Integer> indexes = urls.get(url);
+                if (indexes == null) {
+                    indexes = new ArrayList<Integer>(1);
+                    urls.put(url, indexes);
+                }
+                indexes.add(i);
+            }
+        }
+        urlIndexes = new HashMap<String, int[]>(urls.size() * 2);
+        for (Map.Entry<String, List<Integer>> entry : urls.entrySet()) {
+            int[] indexes = new int[entry.getValue().size()];
+            for (int i = 0; i < indexes.length; i++) {
+                indexes[i] = entry.getValue().get(i);
+            }
+            urlIndexes.put(entry.getKey(), indexes);
+        }
+
+        // Xrefs whose ends were archived are dropped, the rest keep the order they were added in
+        int xrefCount = builder.xrefCount;
+        int[] xrefParents = new int[xrefCount];
+        int[] xrefChildren = new int[xrefCount];
+        boolean[] xrefDefaults = new boolean[xrefCount];
+        int kept = 0;
+        for (int x = 0; x < xrefCount; x++) {
+            int parent = indexOf(builder.xrefParentIds[x]);
+            int child = indexOf(builder.xrefChildIds[x]);
+            if (parent >= 0 && child >= 0) {
+                xrefParents[kept] = parent;
+                xrefChildren[kept] = child;
+                xrefDefaults[kept] = builder.xrefDefaults[x];
+                kept++;
+            }
+        }
+
+        childOffsets = new int[size + 1];
+        parentOffsets = new int[size + 1];
+        for (int x = 0; x < kept; x++) {
+            childOffsets[xrefParents[x] + 1]++;
+            parentOffsets[xrefChildren[x] + 1]++;
+        }
+        for (int i = 0; i < size; i++) {
+            childOffsets[i + 1] += childOffsets[i];
+            parentOffsets[i + 1] += parentOffsets[i];
+        }
+
+        children = new int[kept];
+        parents = new int[kept];
+        defaultParents = new boolean[kept];
+        int[] childFill = Arrays.copyOf(childOffsets, size);
+        int[] parentFill = Arrays.copyOf(parentOffsets, size);
+        for (int x = 0; x < kept; x++) {
+            children[childFill[xrefParents[x]]++] = xrefChildren[x];
+            int position = parentFill[xrefChildren[x]]++;
+            parents[position] = xrefParents[x];
+            defaultParents[position] = xrefDefaults[x];
+        }
+    }
+
+    /**
+     * @return the position of the category in this snapshot, or -1 if it is archived or was created after the
+     * snapshot was built
+     */
+    public int indexOf(long categoryId) {
+        int index = Arrays.binarySearch(ids, categoryId);
+        return index < 0 ? -1 : index;
+    }
+
+    public boolean contains(long categoryId) {
+        return indexOf(categoryId) >= 0;
+    }
+
+    public int size() {
+        return ids.length;
+    }
+
+    public boolean isActive(long categoryId, long now) {
+        int index = indexOf(categoryId);
+        return index >= 0 && isActiveAt(index, now);
+    }
+
+    /**
+     * Returns the ids of the active child categories in display order, the equivalent of
+     * {@link org.broadleafcommerce.core.catalog.domain.Category#getChildCategoryXrefs()}.
+     *
+     * @param categoryId the parent category
+     * @param now the current time in milliseconds
+     * @param limit the maximum number of ids to return, or a negative number for all of them
+     */
+    public long[] getActiveChildIds(long categoryId, long now, int limit) {
+        int index = indexOf(categoryId);
+        if (index < 0) {
+            return new long[0];
+        }
+        int start = childOffsets[index];
+        int end = childOffsets[index + 1];
+        long[] result = new long[limit < 0 ? end - start : Math.min(limit, end - start)];
+        int count = 0;
+        for (int c = start; c < end && count < result.length; c++) {
+            if (isActiveAt(children[c], now)) {
+                result[count++] = ids[children[c]];
+            }
+        }
+        return count == result.length ? result : Arrays.copyOf(result, count);
+    }
+
+    /**
+     * Returns the id of the parent category, the equivalent of
+     * {@link org.broadleafcommerce.core.catalog.domain.Category#getParentCategory()}: the first active parent marked
+     * as the default reference, otherwise the first active parent.
+     *
+     * @return the parent id, or null if there is no active parent
+     */
+    public Long getParentId(long categoryId, long now) {
+        int index = indexOf(categoryId);
+        if (index < 0) {
+            return null;
+        }
+        int parent = findParentIndex(index, now);
+        return parent < 0 ? null : ids[parent];
+    }
+
+    /**
+     * Follows {@link #getParentId(long, long)} up from the given category, stopping if a category repeats.
+     *
+     * @return the ancestor ids, starting with the root and ending with the category's parent
+     */
+    public long[] getParentPath(long categoryId, long now) {
+        int index = indexOf(categoryId);
+        if (index < 0) {
+            return new long[0];
+        }
+        BitSet visited = new BitSet(ids.length);
+        visited.set(index);
+        long[] path = new long[8];
+        int length = 0;
+        for (int parent = findParentIndex(index, now); parent >= 0 && !visited.get(parent);
+                parent = findParentIndex(parent, now)) {
+            visited.set(parent);
+            if (length == path.length) {
+                path = Arrays.copyOf(path, length * 2);
+            }
+            path[length++] = ids[parent];
+        }
+        long[] result = new long[length];
+        for (int i = 0; i < length; i++) {
+            result[i] = path[length - 1 - i];
+        }
+        return result;
+    }
+
+    /**
+     * @return whether <b>ancestorId</b> can be reached from <b>categoryId</b> through any parent xrefs, regardless
+     * of which categories are active
+     */
+    public boolean isAncestor(long ancestorId, long categoryId) {
+        int ancestor = indexOf(ancestorId);
+        int index = indexOf(categoryId);
+        if (ancestor < 0 || index < 0 || ancestor == index) {
+            return false;
+        }
+        BitSet visited = new BitSet(ids.length);
+        int[] stack = new int[16];
+        int top = 0;
+        stack[top++] = index;
+        visited.set(index);
+        while (top > 0) {
+            int current = stack[--top];
+            for (int p = parentOffsets[current]; p < parentOffsets[current + 1]; p++) {
+                int parent = parents[p];
+                if (parent == ancestor) {
+                    return true;
+                }
+                if (!visited.get(parent)) {
+                    visited.set(parent);
+                    if (top == stack.length) {
+                        stack = Arrays.copyOf(stack, top * 2);
+                    }
+                    stack[top++] = parent;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns the id of an active category with the given url, the equivalent of
+     * {@link org.broadleafcommerce.core.catalog.dao.CategoryDao#findCategoryByURI(String)}.
+     *
+     * @return the category id, or null if no active category has the url
+     */
+    public Long findCategoryIdByUrl(String url, long now) {
+        int[] indexes = url == null ? null : urlIndexes.get(url);
+        if (indexes != null) {
+            for (int index : indexes) {
+                if (isActiveAt(index, now)) {
+                    return ids[index];
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Builds the map of url paths to category id paths for the tree under the given category, the equivalent of
+     * {@link org.broadleafcommerce.core.catalog.domain.CategoryImpl#createChildCategoryURLMap()}. A category that is
+     * reached again below itself is not expanded a second time.
+     */
+    public Map<String, List<Long>> createChildCategoryURLMap(long categoryId, long now) {
+        Map<String, List<Long>> urlMap = new HashMap<String, List<Long>>(50);
+        int index = indexOf(categoryId);
+        if (index >= 0) {
+            fillInURLMap(urlMap, index, "", new long[0], new BitSet(ids.length), now);
+        }
+        return urlMap;
+    }
+
+    protected void fillInURLMap(Map<String, List<Long>> urlMap, int index, String startingPath, long[] startingIds,
+            BitSet path, long now) {
+        String currentPath = "";
+        if (!"/".equals(urlKeys[index])) {
+            currentPath = startingPath + "/" + urlKeys[index];
+        }
+
+        long[] currentIds = Arrays.copyOf(startingIds, startingIds.length + 1);
+        currentIds[startingIds.length] = ids[index];
+        List<Long> idList = new ArrayList<Long>(currentIds.length);
+        for (long id : currentIds) {
+            idList.add(id);
+        }
+        urlMap.put(currentPath, idList);
+
+        path.set(index);
+        for (int c = childOffsets[index]; c < childOffsets[index + 1]; c++) {
+            int child = children[c];
+            if (!path.get(child) && isActiveAt(child, now)) {
+                fillInURLMap(urlMap, child, currentPath, currentIds, path, now);
+            }
+        }
+        path.clear(index);
+    }
+
+    protected int findParentIndex(int index, long now) {
+        int fallback = -1;
+        for (int p = parentOffsets[index]; p < parentOffsets[index + 1]; p++) {
+            if (isActiveAt(parents[p], now)) {
+                if (defaultParents[p]) {
+                    return parents[p];
+                }
+                if (fallback < 0) {
+                    fallback = parents[p];
+                }
+            }
+        }
+        return fallback;
+    }
+
+    protected boolean isActiveAt(int index, long now) {
+        return activeStarts[index] < now && activeEnds[index] >= now;
+    }
+
+    protected static int[] sortedOrder(final long[] values, int size) {
+        Integer[] boxed = new Integer[size];
+        for (int i = 0; i < size; i++) {
+            boxed[i] = i;
+        }
+        Arrays.sort(boxed, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer o1, Integer o2) {
+                return Long.compare(values[o1], values[o2]);
+            }
+        });
+        int[] order = new int[size];
+        for (int i = 0; i < size; i++) {
+            order[i] = boxed[i];
+        }
+        return order;
+    }
+
+    /**
+     * Collects the categories and xrefs for a {@link CategoryTreeSnapshot}. Xrefs should be added in display order;
+     * that order is kept for both the children and the parents of each category.
+     */
+    public static class Builder {
+
+        protected int categoryCount;
+        protected long[] ids = new long[64];
+        protected String[] urls = new String[64];
+        protected String[] urlKeys = new String[64];
+        protected long[] activeStarts = new long[64];
+        protected long[] activeEnds = new long[64];
+
+        protected int xrefCount;
+        protected long[] xrefParentIds = new long[64];
+        protected long[] xrefChildIds = new long[64];
+        protected boolean[] xrefDefaults = new boolean[64];
+
+        /**
+         * @param urlKey the category's url key; when blank, one is generated from <b>name</b> as
+         * {@link org.broadleafcommerce.core.catalog.domain.CategoryImpl#getUrlKey()} does
+         */
+        public Builder addCategory(long id, String url, String urlKey, String name, Date activeStartDate,
+                Date activeEndDate) {
+            if (categoryCount == ids.length) {
+                int capacity = categoryCount * 2;
+                ids = Arrays.copyOf(ids, capacity);
+                urls = Arrays.copyOf(urls, capacity);
+                urlKeys = Arrays.copyOf(urlKeys, capacity);
+                activeStarts = Arrays.copyOf(activeStarts, capacity);
+                activeEnds = Arrays.copyOf(activeEnds, capacity);
+            }
+            if ((urlKey == null || "".equals(urlKey.trim())) && name != null) {
+                urlKey = UrlUtil.generateUrlKey(name);
+            }
+            ids[categoryCount] = id;
+            urls[categoryCount] = url;
+            urlKeys[categoryCount] = urlKey;
+            // A category with no start date is never active, one with no end date never expires
+            activeStarts[categoryCount] = activeStartDate == null ? Long.MAX_VALUE : activeStartDate.getTime();
+            activeEnds[categoryCount] = activeEndDate == null ? Long.MAX_VALUE : activeEndDate.getTime();
+            categoryCount++;
+            return this;
+        }
+
+        public Builder addXref(long parentId, long childId, boolean defaultReference) {
+            if (xrefCount == xrefParentIds.length) {
+                int capacity = xrefCount * 2;
+                xrefParentIds = Arrays.copyOf(xrefParentIds, capacity);
+                xrefChildIds = Arrays.copyOf(xrefChildIds, capacity);
+                xrefDefaults = Arrays.copyOf(xrefDefaults, capacity);
+            }
+            xrefParentIds[xrefCount] = parentId;
+            xrefChildIds[xrefCount] = childId;
+            xrefDefaults[xrefCount] = defaultReference;
+            xrefCount++;
+            return this;
+        }
+
+        public CategoryTreeSnapshot build() {
+            return new CategoryTreeSnapshot(this);
+        }
+    }
+}
@@ -28,6 +28,7 @@ import org.broadleafcommerce.common.event.BroadleafSystemEventDetail;
 import org.broadleafcommerce.common.extension.ExtensionResultHolder;
 import org.broadleafcommerce.common.extension.ExtensionResultStatusType;
 import org.broadleafcommerce.common.util.TransactionUtils;
+import org.broadleafcommerce.core.catalog.dao.SkuDao;
 import org.broadleafcommerce.core.catalog.domain.Sku;
 import org.broadleafcommerce.core.catalog.service.CatalogService;
 import org.broadleafcommerce.core.inventory.service.type.InventoryType;
@@ -43,12 +44,16 @@ import org.springframework.transaction.annotation.Transactional;
 import org.springframework.transaction.support.TransactionSynchronizationAdapter;
 import org.springframework.transaction.support.TransactionSynchronizationManager;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.Set;
 
 import javax.annotation.Resource;
 
@@ -60,6 +65,9 @@ public class InventoryServiceImpl implements ContextualInventoryService {
     @Resource(name = "blCatalogService")
     protected CatalogService catalogService;
     
+    @Resource(name = "blSkuDao")
+    protected SkuDao skuDao;
+
     @Resource(name = "blInventoryServiceExtensionManager")
     protected InventoryServiceExtensionManager extensionManager;
 
@@ -131,9 +139,22 @@ public class InventoryServiceImpl implements ContextualInventoryService {
 
     @Override
     public Map<Sku, Integer> retrieveQuantitiesAvailable(Collection<Sku> skus, Map<String, Object> context) {
+        return retrieveQuantitiesAvailable(skus, context, false);
+    }
+
+    /**
+     * Retrieves the quantities for all of the skus. Plain reads use the quantity already held by each sku. When
+     * {@code lockForUpdate} is true, the quantities are re-read in one query that keeps the sku rows locked for the rest
+     * of the current transaction.
+     * <p>
+     * When an extension handler supplies the quantities, nothing is read or locked here. A handler that supplies
+     * quantities for decrements and increments is responsible for guarding them against concurrent updates.
+     */
+    protected Map<Sku, Integer> retrieveQuantitiesAvailable(Collection<Sku> skus, Map<String, Object> context, boolean lockForUpdate) {
         ExtensionResultHolder<Map<Sku, Integer>> holder = new ExtensionResultHolder<Map<Sku, Integer>>();
         ExtensionResultStatusType res = extensionManager.getProxy().retrieveQuantitiesAvailable(skus, context, holder);
         if (ExtensionResultStatusType.NOT_HANDLED.equals(res)) {
+            Map<Long, Integer> persistedQuantities = lockForUpdate ? readQuantitiesAvailable(skus, true) : new HashMap<Long, Integer>();
             Map<Sku, Integer> inventories = new HashMap<>();
 
             for (Sku sku : skus) {
@@ -141,9 +162,7 @@ public class InventoryServiceImpl implements ContextualInventoryService {
                 if(checkBasicAvailablility(sku)) {
                     InventoryType skuInventoryType = sku.getInventoryType();
                     if(InventoryType.CHECK_QUANTITY.equals(skuInventoryType)) {
-                        if(sku.getQuantityAvailable() != null) {
-                            quantityAvailable = sku.getQuantityAvailable();
-                        }
+                        quantityAvailable = getQuantityAvailable(sku, persistedQuantities);
                     } else if(sku.getInventoryType() == null || InventoryType.ALWAYS_AVAILABLE.equals(skuInventoryType)) {
                         quantityAvailable = null;
                     }
@@ -157,6 +176,39 @@ public class InventoryServiceImpl implements ContextualInventoryService {
         }
     }
 
+    /**
+     * Reads the persisted quantity of every {@link InventoryType#CHECK_QUANTITY} sku in the collection with a single
+     * query, optionally locking the rows in id order for the rest of the transaction.
+     *
+     * @param skus the skus to read
+     * @param lockForUpdate whether to lock the rows; ignored when there is no active transaction
+     * @return the persisted quantity keyed by sku id
+     */
+    protected Map<Long, Integer> readQuantitiesAvailable(Collection<Sku> skus, boolean lockForUpdate) {
+        Set<Long> skuIds = new HashSet<>();
+        for (Sku sku : skus) {
+            if (sku != null && sku.getId() != null && InventoryType.CHECK_QUANTITY.equals(sku.getInventoryType())) {
+                skuIds.add(sku.getId());
+            }
+        }
+        if (skuIds.isEmpty()) {
+            return new HashMap<>();
+        }
+        return skuDao.readQuantitiesAvailable(skuIds, lockForUpdate && TransactionSynchronizationManager.isActualTransactionActive());
+    }
+
+    /**
+     * Returns the persisted quantity for the sku if it was read, falling back to the value held by the sku itself (for
+     * plain reads, or when the sku has not been saved yet). A null quantity is treated as zero.
+     */
+    protected Integer getQuantityAvailable(Sku sku, Map<Long, Integer> persistedQuantities) {
+        Integer quantityAvailable = sku.getId() == null ? null : persistedQuantities.get(sku.getId());
+        if (quantityAvailable == null) {
+            quantityAvailable = sku.getQuantityAvailable();
+        }
+        return quantityAvailable == null ? 0 : quantityAvailable;
+    }
+
     @Override
     public boolean isAvailable(Sku sku, int quantity, Map<String, Object> context) {
         if (quantity < 1) {
@@ -192,37 +244,68 @@ public class InventoryServiceImpl implements ContextualInventoryService {
         }
     }
 
+    /**
+     * Decrements all of the given skus together. The rows of the {@link InventoryType#CHECK_QUANTITY} skus are locked in
+     * id order and read in one query (unless an extension handler supplies the quantities, in which case no rows are
+     * locked, see {@link #retrieveQuantitiesAvailable(Collection, Map, boolean)}), every sku is checked
+     * against those quantities, and the new quantities are only written if all of them can be fulfilled. Otherwise a
+     * single {@link InventoryUnavailableException} reports each sku that fell short.
+     */
     protected void decrementSku(Map<Sku, Integer> skuQuantities, Map<String, Object> context) throws InventoryUnavailableException {
+        validateQuantities(skuQuantities);
+        Map<Sku, Integer> inventories = retrieveQuantitiesAvailable(skuQuantities.keySet(), context, true);
+
+        List<InventoryShortfall> shortfalls = new ArrayList<>();
+        Map<Sku, Integer> newInventories = new LinkedHashMap<>();
         for (Entry<Sku, Integer> entry : skuQuantities.entrySet()) {
             Sku sku = entry.getKey();
             Integer quantity = entry.getValue();
-            if (quantity == null || quantity < 1) {
-                throw new IllegalArgumentException("Quantity " + quantity + " is not valid. Must be greater than zero and not null.");
-            }
-
             if (checkBasicAvailablility(sku)) {
                 if (InventoryType.CHECK_QUANTITY.equals(sku.getInventoryType())) {
-                    Integer inventoryAvailable = retrieveQuantityAvailable(sku, context);
+                    Integer inventoryAvailable = inventories.get(sku);
                     if (inventoryAvailable == null) {
-                        return;
+                        continue;
                     }
                     if (inventoryAvailable < quantity) {
-                        throw new InventoryUnavailableException(
-                                "There was not enough inventory to fulfill this request.", sku.getId(), quantity, inventoryAvailable);
+                        shortfalls.add(new InventoryShortfall(sku.getId(), quantity, inventoryAvailable));
+                    } else {
+                        newInventories.put(sku, inventoryAvailable - quantity);
                     }
-                    int newInventory = inventoryAvailable - quantity;
-                    sku.setQuantityAvailable(newInventory);
-                    catalogService.saveSku(sku);
-                    invalidateSkuInventory(sku);
                 } else {
                     LOG.info("Not decrementing inventory as the Sku has been marked as always available");
                 }
             } else {
-                throw new InventoryUnavailableException("The Sku has been marked as unavailable", sku.getId(), quantity, 0);
+                shortfalls.add(new InventoryShortfall(sku.getId(), quantity, 0));
+            }
+        }
+
+        if (!shortfalls.isEmpty()) {
+            throw new InventoryUnavailableException("There was not enough inventory to fulfill this request.", shortfalls);
+        }
+        saveInventories(newInventories);
+    }
+
+    protected void validateQuantities(Map<Sku, Integer> skuQuantities) {
+        for (Integer quantity : skuQuantities.values()) {
+            if (quantity == null || quantity < 1) {
+                throw new IllegalArgumentException("Quantity " + quantity + " is not valid. Must be greater than zero and not null.");
             }
         }
     }
 
+    /**
+     * Writes the new quantity of each sku. The rows are already locked, so the updates are simply flushed together
+     * with the rest of the transaction.
+     */
+    protected void saveInventories(Map<Sku, Integer> newInventories) {
+        for (Entry<Sku, Integer> entry : newInventories.entrySet()) {
+            Sku sku = entry.getKey();
+            sku.setQuantityAvailable(entry.getValue());
+            catalogService.saveSku(sku);
+            invalidateSkuInventory(sku);
+        }
+    }
+
     @Override
     @Transactional(TransactionUtils.DEFAULT_TRANSACTION_MANAGER)
     public void incrementInventory(Sku sku, int quantity, Map<String, Object> context) {
@@ -241,25 +324,23 @@ public class InventoryServiceImpl implements ContextualInventoryService {
     }
 
     protected void incrementSku(Map<Sku, Integer> skuQuantities, Map<String, Object> context) {
+        validateQuantities(skuQuantities);
+        Map<Sku, Integer> inventories = retrieveQuantitiesAvailable(skuQuantities.keySet(), context, true);
+
+        Map<Sku, Integer> newInventories = new LinkedHashMap<>();
         for (Entry<Sku, Integer> entry : skuQuantities.entrySet()) {
             Sku sku = entry.getKey();
-            Integer quantity = entry.getValue();
-            if (quantity == null || quantity < 1) {
-                throw new IllegalArgumentException("Quantity " + quantity + " is not valid. Must be greater than zero and not null.");
-            }
             if (InventoryType.CHECK_QUANTITY.equals(sku.getInventoryType())) {
-                Integer currentInventoryAvailable = retrieveQuantityAvailable(sku, context);
+                Integer currentInventoryAvailable = inventories.get(sku);
                 if (currentInventoryAvailable == null) {
                     throw new IllegalArgumentException("The current inventory for this Sku is null");
                 }
-                int newInventory = currentInventoryAvailable + quantity;
-                sku.setQuantityAvailable(newInventory);
-                catalogService.saveSku(sku);
-                invalidateSkuInventory(sku);
+                newInventories.put(sku, currentInventoryAvailable + entry.getValue());
             } else {
                 LOG.info("Not incrementing inventory as the Sku has been marked as always available");
             }
         }
+        saveInventories(newInventories);
     }
 
     @Override
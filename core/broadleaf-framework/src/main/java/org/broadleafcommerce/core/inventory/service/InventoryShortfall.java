@@ -0,0 +1,60 @@
+/*
+ * #%L
+ * BroadleafCommerce Framework
+ * %%
+ * Copyright (C) 2009 - 2016 Broadleaf Commerce
+ * %%
+ * Licensed under the Broadleaf Fair Use License Agreement, Version 1.0
+ * (the "Fair Use License" located  at http://license.broadleafcommerce.org/fair_use_license-1.0.txt)
+ * unless the restrictions on use therein are violated and require payment to Broadleaf in which case
+ * the Broadleaf End User License Agreement (EULA), Version 1.1
+ * (the "Commercial License" located at http://license.broadleafcommerce.org/commercial_license-1.1.txt)
+ * shall apply.
+ * 
+ * Alternatively, the Commercial License may be replaced with a mutually agreed upon license (the "Custom License")
+ * between you and Broadleaf Commerce. You may not use this file except in compliance with the applicable license.
+ * #L%
+ */
+package org.broadleafcommerce.core.inventory.service;
+
+import java.io.Serializable;
+
+/**
+ * A single sku that could not be fulfilled during a bulk inventory operation, as reported by
+ * {@link InventoryUnavailableException#getShortfalls()}.
+ */
+public class InventoryShortfall implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    protected Long skuId;
+
+    protected Integer quantityRequested;
+
+    protected Integer quantityAvailable;
+
+    public InventoryShortfall(Long skuId, Integer quantityRequested, Integer quantityAvailable) {
+        this.skuId = skuId;
+        this.quantityRequested = quantityRequested;
+        this.quantityAvailable = quantityAvailable;
+    }
+
+    public Long getSkuId() {
+        return skuId;
+    }
+
+    public Integer getQuantityRequested() {
+        return quantityRequested;
+    }
+
+    public Integer getQuantityAvailable() {
+        return quantityAvailable;
+    }
+
+    @Override
+    public String toString() {
+        return "InventoryShortfall [skuId=" + skuId + ", quantityRequested=" + quantityRequested
+                + ", quantityAvailable=" + quantityAvailable + "]";
+    }
+
+}
@@ -18,6 +18,9 @@
 
 package org.broadleafcommerce.core.inventory.service;
 
+import java.util.ArrayList;
+import java.util.List;
+
 
 public class InventoryUnavailableException extends Exception {
 
@@ -29,6 +32,8 @@ public class InventoryUnavailableException extends Exception {
 
     protected Integer quantityAvailable;
 
+    protected List<InventoryShortfall> shortfalls = new ArrayList<InventoryShortfall>();
+
     public InventoryUnavailableException(String msg) {
         super(msg);
     }
@@ -47,6 +52,16 @@ public class InventoryUnavailableException extends Exception {
         this.quantityRequested = quantityRequested;
     }
     
+    /**
+     * Reports every sku that could not be fulfilled by a bulk operation. The sku and quantities of the first
+     * shortfall are also exposed through {@link #getSkuId()}, {@link #getQuantityRequested()} and
+     * {@link #getQuantityAvailable()} for callers that only handle a single sku.
+     */
+    public InventoryUnavailableException(String msg, List<InventoryShortfall> shortfalls) {
+        this(msg, shortfalls.get(0).getSkuId(), shortfalls.get(0).getQuantityRequested(), shortfalls.get(0).getQuantityAvailable());
+        this.shortfalls.addAll(shortfalls);
+    }
+
     public InventoryUnavailableException(String msg, Throwable cause) {
         super(msg, cause);
     }
@@ -75,4 +90,11 @@ public class InventoryUnavailableException extends Exception {
         this.quantityAvailable = quantityAvailable;
     }
 
+    /**
+     * @return every sku that could not be fulfilled, or an empty list if this exception was raised for a single sku
+     */
+    public List<InventoryShortfall> getShortfalls() {
+        return shortfalls;
+    }
+
 }
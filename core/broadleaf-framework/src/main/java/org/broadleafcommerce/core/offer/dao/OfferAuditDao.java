@@ -19,12 +19,15 @@ package org.broadleafcommerce.core.offer.dao;
 
 import org.broadleafcommerce.core.offer.domain.OfferAudit;
 import org.broadleafcommerce.core.offer.domain.OfferCode;
+import org.broadleafcommerce.core.offer.domain.OfferCustomerUsage;
 import org.broadleafcommerce.core.offer.service.OfferService;
 import org.broadleafcommerce.core.offer.service.workflow.RecordOfferUsageActivity;
 import org.broadleafcommerce.core.offer.service.workflow.VerifyCustomerMaxOfferUsesActivity;
 import org.broadleafcommerce.core.order.domain.Order;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 
 /**
  * DAO for auditing what went on with offers being added to an order
@@ -63,6 +66,18 @@ public interface OfferAuditDao {
      */
     Long countUsesByCustomer(Order order, Long customerId, Long offerId);
 
+    /**
+     * Counts how many times each of the given offers has been used by a customer, in a single grouped query. Uses
+     * are counted the same way as {@link #countUsesByCustomer(Order, Long, Long)}.
+     * 
+     * @param order
+     * @param customerId
+     * @param offerIds
+     * @return number of times each offer has been used by the customer, keyed by offer id. Offers that were never
+     * used are not included.
+     */
+    Map<Long, Long> countUsesByCustomer(Order order, Long customerId, Collection<Long> offerIds);
+
     /**
      * Counts how many times the an offer has been used by a customer
      *
@@ -85,6 +100,17 @@ public interface OfferAuditDao {
      */
     Long countOfferCodeUses(Order order, Long offerCodeId);
 
+    /**
+     * Counts how many times each of the given offer codes has been used in the system, in a single grouped query.
+     * Uses are counted the same way as {@link #countOfferCodeUses(Order, Long)}.
+     * 
+     * @param order
+     * @param offerCodeIds
+     * @return number of times each offer code has been used, keyed by offer code id. Codes that were never used are
+     * not included.
+     */
+    Map<Long, Long> countOfferCodeUses(Order order, Collection<Long> offerCodeIds);
+
     /**
      * Counts how many times the given offer code has been used in the system
      *
@@ -103,4 +129,23 @@ public interface OfferAuditDao {
      */
     List<OfferAudit> readOfferAuditsByOrderId(Long orderId);
 
+    /**
+     * Reads the {@link OfferCustomerUsage} counters of a customer for the given offers
+     * 
+     * @param customerId
+     * @param offerIds
+     * @return the use count of each offer, keyed by offer id. Offers without a counter are not included.
+     */
+    Map<Long, Long> readCustomerUsageCounts(Long customerId, Collection<Long> offerIds);
+
+    /**
+     * Adds the delta to the {@link OfferCustomerUsage} counter of a customer and offer, creating the counter if
+     * it does not exist yet
+     * 
+     * @param customerId
+     * @param offerId
+     * @param delta
+     */
+    void updateCustomerUsageCount(Long customerId, Long offerId, long delta);
+
 }
@@ -20,20 +20,30 @@ package org.broadleafcommerce.core.offer.dao;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.broadleafcommerce.common.persistence.EntityConfiguration;
+import org.broadleafcommerce.common.util.TransactionUtils;
 import org.broadleafcommerce.common.util.dao.TypedQueryBuilder;
 import org.broadleafcommerce.core.offer.domain.OfferAudit;
 import org.broadleafcommerce.core.offer.domain.OfferAuditImpl;
+import org.broadleafcommerce.core.offer.domain.OfferCustomerUsage;
+import org.broadleafcommerce.core.offer.domain.OfferCustomerUsageImpl;
 import org.broadleafcommerce.core.order.domain.Order;
 import org.broadleafcommerce.core.order.domain.OrderImpl;
 import org.broadleafcommerce.core.order.service.type.OrderStatus;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.TransactionStatus;
 
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import javax.annotation.Resource;
 import javax.persistence.EntityManager;
 import javax.persistence.PersistenceContext;
+import javax.persistence.PersistenceException;
 import javax.persistence.TypedQuery;
 import javax.persistence.criteria.CriteriaBuilder;
 import javax.persistence.criteria.CriteriaQuery;
@@ -51,6 +61,9 @@ public class OfferAuditDaoImpl implements OfferAuditDao {
     @Resource(name="blEntityConfiguration")
     protected EntityConfiguration entityConfiguration;
 
+    @Resource(name = TransactionUtils.DEFAULT_TRANSACTION_MANAGER)
+    protected PlatformTransactionManager transactionManager;
+
     @Override
     public OfferAudit create() {
         return ((OfferAudit) entityConfiguration.createEntityInstance(OfferAudit.class.getName()));
@@ -88,19 +101,9 @@ public class OfferAuditDaoImpl implements OfferAuditDao {
         List<Predicate> restrictions = new ArrayList<>();
         restrictions.add(
             builder.and(
-                builder.or(
-                    builder.notEqual(root.get("orderId"),  getOrderId(order)),
-                    builder.isNull(root.get("orderId"))
-                ),
+                buildOtherOrdersRestriction(builder, root, orderRoot, order),
                 builder.equal(root.get("customerId"), customerId),
-                builder.equal(root.get("offerId"), offerId),
-                builder.or(
-                        builder.isNull(root.get("orderId")),
-                        builder.and(
-                                builder.notEqual(orderRoot.get("status"),OrderStatus.CANCELLED.getType()),
-                                builder.equal(orderRoot.get("id"),root.get("orderId"))
-                        )
-                )
+                builder.equal(root.get("offerId"), offerId)
             )
         );
 
@@ -113,7 +116,58 @@ public class OfferAuditDaoImpl implements OfferAuditDao {
             return null;
         }
     }
-    
+
+    @Override
+    public Map<Long, Long> countUsesByCustomer(Order order, Long customerId, Collection<Long> offerIds) {
+        CriteriaBuilder builder = em.getCriteriaBuilder();
+        CriteriaQuery<Object[]> criteria = builder.createQuery(Object[].class);
+        Root<OfferAuditImpl> root = criteria.from(OfferAuditImpl.class);
+        Root<OrderImpl> orderRoot = criteria.from(OrderImpl.class);
+        criteria.multiselect(root.get("offerId"), builder.count(root));
+
+        List<Predicate> restrictions = new ArrayList<>();
+        restrictions.add(
+            builder.and(
+                buildOtherOrdersRestriction(builder, root, orderRoot, order),
+                builder.equal(root.get("customerId"), customerId),
+                root.get("offerId").in(offerIds)
+            )
+        );
+
+        criteria.where(restrictions.toArray(new Predicate[restrictions.size()]));
+        criteria.groupBy(root.get("offerId"));
+
+        return toCountMap(em.createQuery(criteria).getResultList());
+    }
+
+    /**
+     * Restricts the audits to those that were not recorded for the given order and whose order, if any, was not cancelled
+     */
+    protected Predicate buildOtherOrdersRestriction(CriteriaBuilder builder, Root<OfferAuditImpl> root, Root<OrderImpl> orderRoot,
+            Order order) {
+        return builder.and(
+            builder.or(
+                builder.notEqual(root.get("orderId"),  getOrderId(order)),
+                builder.isNull(root.get("orderId"))
+            ),
+            builder.or(
+                    builder.isNull(root.get("orderId")),
+                    builder.and(
+                            builder.notEqual(orderRoot.get("status"),OrderStatus.CANCELLED.getType()),
+                            builder.equal(orderRoot.get("id"),root.get("orderId"))
+                    )
+            )
+        );
+    }
+
+    protected Map<Long, Long> toCountMap(List<Object[]> results) {
+        Map<Long, Long> counts = new HashMap<>(results.size());
+        for (Object[] result : results) {
+            counts.put((Long) result[0], (Long) result[1]);
+        }
+        return counts;
+    }
+
     protected Long getOrderId(Order order) {
         return order.getId();
     }
@@ -140,18 +194,8 @@ public class OfferAuditDaoImpl implements OfferAuditDao {
         List<Predicate> restrictions = new ArrayList<>();
         restrictions.add(
             builder.and(
-                builder.or(
-                    builder.notEqual(root.get("orderId"),  getOrderId(order)),
-                    builder.isNull(root.get("orderId"))
-                ),
-                builder.equal(root.get("offerCodeId"), offerCodeId),
-                builder.or(
-                        builder.isNull(root.get("orderId")),
-                        builder.and(
-                                builder.notEqual(orderRoot.get("status"),OrderStatus.CANCELLED.getType()),
-                                builder.equal(orderRoot.get("id"),root.get("orderId"))
-                        )
-                )
+                buildOtherOrdersRestriction(builder, root, orderRoot, order),
+                builder.equal(root.get("offerCodeId"), offerCodeId)
             )
         );
 
@@ -164,6 +208,28 @@ public class OfferAuditDaoImpl implements OfferAuditDao {
             return null;
         }
     }
+
+    @Override
+    public Map<Long, Long> countOfferCodeUses(Order order, Collection<Long> offerCodeIds) {
+        CriteriaBuilder builder = em.getCriteriaBuilder();
+        CriteriaQuery<Object[]> criteria = builder.createQuery(Object[].class);
+        Root<OfferAuditImpl> root = criteria.from(OfferAuditImpl.class);
+        Root<OrderImpl> orderRoot = criteria.from(OrderImpl.class);
+        criteria.multiselect(root.get("offerCodeId"), builder.count(root));
+
+        List<Predicate> restrictions = new ArrayList<>();
+        restrictions.add(
+            builder.and(
+                buildOtherOrdersRestriction(builder, root, orderRoot, order),
+                root.get("offerCodeId").in(offerCodeIds)
+            )
+        );
+
+        criteria.where(restrictions.toArray(new Predicate[restrictions.size()]));
+        criteria.groupBy(root.get("offerCodeId"));
+
+        return toCountMap(em.createQuery(criteria).getResultList());
+    }
     
     @Deprecated
     @Override
@@ -184,4 +250,66 @@ public class OfferAuditDaoImpl implements OfferAuditDao {
         return query.getResultList();
     }
 
+    @Override
+    public Map<Long, Long> readCustomerUsageCounts(Long customerId, Collection<Long> offerIds) {
+        CriteriaBuilder builder = em.getCriteriaBuilder();
+        CriteriaQuery<Object[]> criteria = builder.createQuery(Object[].class);
+        Root<OfferCustomerUsageImpl> root = criteria.from(OfferCustomerUsageImpl.class);
+        criteria.multiselect(root.get("offerId"), root.get("useCount"));
+        criteria.where(
+            builder.equal(root.get("customerId"), customerId),
+            root.get("offerId").in(offerIds)
+        );
+
+        return toCountMap(em.createQuery(criteria).getResultList());
+    }
+
+    @Override
+    public void updateCustomerUsageCount(Long customerId, Long offerId, long delta) {
+        int rowsAffected = executeCustomerUsageUpdate(customerId, offerId, delta);
+
+        if (rowsAffected == 0 && delta > 0) {
+            createCustomerUsage(customerId, offerId);
+            rowsAffected = executeCustomerUsageUpdate(customerId, offerId, delta);
+            if (rowsAffected == 0) {
+                throw new IllegalStateException("Unable to create the offer usage counter for customer " + customerId
+                        + " and offer " + offerId);
+            }
+        }
+    }
+
+    protected int executeCustomerUsageUpdate(Long customerId, Long offerId, long delta) {
+        return em.createQuery("UPDATE " + OfferCustomerUsageImpl.class.getName() + " usage "
+                + "SET usage.useCount = usage.useCount + :delta "
+                + "WHERE usage.customerId = :customerId AND usage.offerId = :offerId")
+                .setParameter("delta", delta)
+                .setParameter("customerId", customerId)
+                .setParameter("offerId", offerId)
+                .executeUpdate();
+    }
+
+    /**
+     * Inserts an empty counter in its own transaction. When another transaction creates the same counter first, the
+     * unique constraint only rolls back this inner transaction and the caller updates the existing row instead.
+     */
+    protected void createCustomerUsage(Long customerId, Long offerId) {
+        TransactionStatus status = TransactionUtils.createTransaction("createOfferCustomerUsage",
+                TransactionDefinition.PROPAGATION_REQUIRES_NEW, transactionManager);
+        try {
+            OfferCustomerUsage usage = (OfferCustomerUsage) entityConfiguration.createEntityInstance(OfferCustomerUsage.class.getName());
+            usage.setCustomerId(customerId);
+            usage.setOfferId(offerId);
+            usage.setUseCount(0L);
+            em.persist(usage);
+            em.flush();
+            TransactionUtils.finalizeTransaction(status, transactionManager, false);
+        } catch (PersistenceException e) {
+            TransactionUtils.finalizeTransaction(status, transactionManager, true);
+            if (LOG.isDebugEnabled()) {
+                LOG.debug("The offer usage counter for customer " + customerId + " and offer " + offerId
+                        + " was created concurrently", e);
+            }
+        }
+    }
+
 }
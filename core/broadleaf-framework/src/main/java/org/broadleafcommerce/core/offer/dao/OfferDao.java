@@ -40,6 +40,14 @@ public interface OfferDao {
 
     List<Offer> readOffersByAutomaticDeliveryType();
 
+    /**
+     * Reads every unarchived offer that is currently within its start and end dates, regardless of how the
+     * offer is delivered.
+     *
+     * @return the active offers
+     */
+    List<Offer> readAllActiveOffers();
+
     Offer save(Offer offer);
 
     void delete(Offer offer);
@@ -158,6 +158,22 @@ public class OfferDaoImpl implements OfferDao {
 
     @Override
     public List<Offer> readOffersByAutomaticDeliveryType() {
+        return readActiveOffers(true);
+    }
+
+    @Override
+    public List<Offer> readAllActiveOffers() {
+        return readActiveOffers(false);
+    }
+
+    /**
+     * Reads the unarchived offers whose start and end dates include the current date, give or take a day for
+     * the date resolution.
+     *
+     * @param automaticallyAddedOnly whether to restrict the results to offers that are automatically added
+     * @return the matching offers
+     */
+    protected List<Offer> readActiveOffers(boolean automaticallyAddedOnly) {
         CriteriaBuilder builder = em.getCriteriaBuilder();
         CriteriaQuery<Offer> criteria = builder.createQuery(Offer.class);
         Root<OfferImpl> root = criteria.from(OfferImpl.class);
@@ -184,7 +200,9 @@ public class OfferDaoImpl implements OfferDao {
                         builder.equal(root.get("archiveStatus").get("archived"), 'N'),
                         builder.isNull(root.get("archiveStatus").get("archived"))));
 
-        restrictions.add(builder.equal(root.get("automaticallyAdded"), true));
+        if (automaticallyAddedOnly) {
+            restrictions.add(builder.equal(root.get("automaticallyAdded"), true));
+        }
 
         criteria.where(restrictions.toArray(new Predicate[restrictions.size()]));
         TypedQuery<Offer> query = em.createQuery(criteria);
@@ -0,0 +1,48 @@
+/*
+ * #%L
+ * BroadleafCommerce Framework
+ * %%
+ * Copyright (C) 2009 - 2016 Broadleaf Commerce
+ * %%
+ * Licensed under the Broadleaf Fair Use License Agreement, Version 1.0
+ * (the "Fair Use License" located  at http://license.broadleafcommerce.org/fair_use_license-1.0.txt)
+ * unless the restrictions on use therein are violated and require payment to Broadleaf in which case
+ * the Broadleaf End User License Agreement (EULA), Version 1.1
+ * (the "Commercial License" located at http://license.broadleafcommerce.org/commercial_license-1.1.txt)
+ * shall apply.
+ * 
+ * Alternatively, the Commercial License may be replaced with a mutually agreed upon license (the "Custom License")
+ * between you and Broadleaf Commerce. You may not use this file except in compliance with the applicable license.
+ * #L%
+ */
+package org.broadleafcommerce.core.offer.domain;
+
+import java.io.Serializable;
+
+/**
+ * Running count of how many times a customer has used an offer. These rows are only maintained when
+ * <code>offer.usage.counters.enabled</code> is true, in which case they are updated as {@link OfferAudit}s are
+ * saved and deleted and read instead of counting the audits of the customer.
+ */
+public interface OfferCustomerUsage extends Serializable {
+
+    public Long getId();
+
+    public void setId(Long id);
+
+    public Long getCustomerId();
+
+    public void setCustomerId(Long customerId);
+
+    public Long getOfferId();
+
+    public void setOfferId(Long offerId);
+
+    /**
+     * The number of {@link OfferAudit}s recorded for this customer and offer
+     */
+    public Long getUseCount();
+
+    public void setUseCount(Long useCount);
+
+}
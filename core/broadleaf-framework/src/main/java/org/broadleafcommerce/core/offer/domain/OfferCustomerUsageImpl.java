@@ -0,0 +1,127 @@
+/*
+ * #%L
+ * BroadleafCommerce Framework
+ * %%
+ * Copyright (C) 2009 - 2016 Broadleaf Commerce
+ * %%
+ * Licensed under the Broadleaf Fair Use License Agreement, Version 1.0
+ * (the "Fair Use License" located  at http://license.broadleafcommerce.org/fair_use_license-1.0.txt)
+ * unless the restrictions on use therein are violated and require payment to Broadleaf in which case
+ * the Broadleaf End User License Agreement (EULA), Version 1.1
+ * (the "Commercial License" located at http://license.broadleafcommerce.org/commercial_license-1.1.txt)
+ * shall apply.
+ * 
+ * Alternatively, the Commercial License may be replaced with a mutually agreed upon license (the "Custom License")
+ * between you and Broadleaf Commerce. You may not use this file except in compliance with the applicable license.
+ * #L%
+ */
+package org.broadleafcommerce.core.offer.domain;
+
+import org.apache.commons.lang3.builder.EqualsBuilder;
+import org.apache.commons.lang3.builder.HashCodeBuilder;
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.Parameter;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.GeneratedValue;
+import javax.persistence.Id;
+import javax.persistence.Inheritance;
+import javax.persistence.InheritanceType;
+import javax.persistence.Table;
+import javax.persistence.UniqueConstraint;
+
+@Entity
+@Table(name = "BLC_OFFER_CUSTOMER_USAGE",
+        uniqueConstraints = @UniqueConstraint(name = "OFFER_USAGE_CUSTOMER_OFFER", columnNames = { "CUSTOMER_ID", "OFFER_ID" }))
+@Inheritance(strategy = InheritanceType.JOINED)
+public class OfferCustomerUsageImpl implements OfferCustomerUsage {
+
+    public static final long serialVersionUID = 1L;
+
+    @Id
+    @GeneratedValue(generator = "OfferCustomerUsageId")
+    @GenericGenerator(
+        name="OfferCustomerUsageId",
+        strategy="org.broadleafcommerce.common.persistence.IdOverrideTableGenerator",
+        parameters = {
+            @Parameter(name="segment_value", value="OfferCustomerUsageImpl"),
+            @Parameter(name="entity_name", value="org.broadleafcommerce.core.offer.domain.OfferCustomerUsageImpl")
+        }
+    )
+    @Column(name = "OFFER_CUSTOMER_USAGE_ID")
+    protected Long id;
+
+    @Column(name = "CUSTOMER_ID", nullable = false)
+    protected Long customerId;
+
+    @Column(name = "OFFER_ID", nullable = false)
+    protected Long offerId;
+
+    @Column(name = "USE_COUNT", nullable = false)
+    protected Long useCount = 0L;
+
+    @Override
+    public Long getId() {
+        return id;
+    }
+
+    @Override
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    @Override
+    public Long getCustomerId() {
+        return customerId;
+    }
+
+    @Override
+    public void setCustomerId(Long customerId) {
+        this.customerId = customerId;
+    }
+
+    @Override
+    public Long getOfferId() {
+        return offerId;
+    }
+
+    @Override
+    public void setOfferId(Long offerId) {
+        this.offerId = offerId;
+    }
+
+    @Override
+    public Long getUseCount() {
+        return useCount;
+    }
+
+    @Override
+    public void setUseCount(Long useCount) {
+        this.useCount = useCount;
+    }
+
+    @Override
+    public int hashCode() {
+        return new HashCodeBuilder()
+            .append(customerId)
+            .append(offerId)
+            .build();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (o != null && getClass().isAssignableFrom(o.getClass())) {
+            OfferCustomerUsageImpl that = (OfferCustomerUsageImpl) o;
+
+            return new EqualsBuilder()
+                .append(this.id, that.id)
+                .append(this.customerId, that.customerId)
+                .append(this.offerId, that.offerId)
+                .build();
+        }
+
+        return false;
+    }
+
+}
@@ -21,7 +21,10 @@ import org.broadleafcommerce.core.offer.domain.Offer;
 import org.broadleafcommerce.core.offer.domain.OfferAudit;
 import org.broadleafcommerce.core.order.domain.Order;
 import org.broadleafcommerce.profile.core.domain.Customer;
+
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 
 
 /**
@@ -60,6 +63,19 @@ public interface OfferAuditService {
      */
     Long countUsesByCustomer(Order order, Long customerId, Long offerId);
 
+    /**
+     * Counts how many times each of the given offers has been used by a customer, the same way as
+     * {@link #countUsesByCustomer(Order, Long, Long)}. Counts that were not read yet during the current workflow
+     * are read in a single query and memoized for the rest of it.
+     *
+     * @param order
+     * @param customerId
+     * @param offerIds
+     * @return number of times each offer has been used by the customer, keyed by offer id
+     * @see OfferUsageCountContext
+     */
+    Map<Long, Long> countUsesByCustomer(Order order, Long customerId, Collection<Long> offerIds);
+
     /**
      * Counts how many times the an offer has been used by a customer
      *
@@ -82,6 +98,18 @@ public interface OfferAuditService {
      */
     Long countOfferCodeUses(Order order, Long offerCodeId);
 
+    /**
+     * Counts how many times each of the given offer codes has been used in the system, the same way as
+     * {@link #countOfferCodeUses(Order, Long)}. Counts that were not read yet during the current workflow are read
+     * in a single query and memoized for the rest of it.
+     *
+     * @param order
+     * @param offerCodeIds
+     * @return number of times each offer code has been used, keyed by offer code id
+     * @see OfferUsageCountContext
+     */
+    Map<Long, Long> countOfferCodeUses(Order order, Collection<Long> offerCodeIds);
+
     /**
      * Counts how many times the given offer code has been used in the system
      *
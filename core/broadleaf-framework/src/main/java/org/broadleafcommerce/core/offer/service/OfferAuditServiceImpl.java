@@ -20,11 +20,19 @@ package org.broadleafcommerce.core.offer.service;
 import org.broadleafcommerce.common.util.TransactionUtils;
 import org.broadleafcommerce.core.offer.dao.OfferAuditDao;
 import org.broadleafcommerce.core.offer.domain.OfferAudit;
+import org.broadleafcommerce.core.offer.domain.OfferCustomerUsage;
 import org.broadleafcommerce.core.order.domain.Order;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+
 import javax.annotation.Resource;
 
 
@@ -37,6 +45,13 @@ public class OfferAuditServiceImpl implements OfferAuditService {
     
     @Resource(name = "blOfferAuditDao")
     protected OfferAuditDao offerAuditDao;
+
+    /**
+     * If true, saving and deleting audits maintains per customer {@link OfferCustomerUsage} counters, which are read
+     * instead of counting the audits of the customer
+     */
+    @Value("${offer.usage.counters.enabled:false}")
+    protected boolean useCustomerUsageCounters = false;
     
     @Override
     public OfferAudit readAuditById(Long offerAuditId) {
@@ -46,13 +61,27 @@ public class OfferAuditServiceImpl implements OfferAuditService {
     @Override
     @Transactional(TransactionUtils.DEFAULT_TRANSACTION_MANAGER)
     public OfferAudit save(OfferAudit offerAudit) {
-        return offerAuditDao.save(offerAudit);
+        boolean isNew = offerAudit.getId() == null;
+        OfferAudit savedAudit = offerAuditDao.save(offerAudit);
+        if (isNew) {
+            updateCustomerUsageCount(savedAudit, 1L);
+        }
+        OfferUsageCountContext.removeOfferUsageCountContext();
+        return savedAudit;
     }
     
     @Override
     @Transactional(TransactionUtils.DEFAULT_TRANSACTION_MANAGER)
     public void delete(OfferAudit offerAudit) {
         offerAuditDao.delete(offerAudit);
+        updateCustomerUsageCount(offerAudit, -1L);
+        OfferUsageCountContext.removeOfferUsageCountContext();
+    }
+
+    protected void updateCustomerUsageCount(OfferAudit offerAudit, long delta) {
+        if (useCustomerUsageCounters && offerAudit.getCustomerId() != null && offerAudit.getOfferId() != null) {
+            offerAuditDao.updateCustomerUsageCount(offerAudit.getCustomerId(), offerAudit.getOfferId(), delta);
+        }
     }
 
     @Override
@@ -62,7 +91,55 @@ public class OfferAuditServiceImpl implements OfferAuditService {
 
     @Override
     public Long countUsesByCustomer(Order order, Long customerId, Long offerId) {
-        return offerAuditDao.countUsesByCustomer(order, customerId, offerId);
+        return countUsesByCustomer(order, customerId, Collections.singletonList(offerId)).get(offerId);
+    }
+
+    @Override
+    public Map<Long, Long> countUsesByCustomer(Order order, Long customerId, Collection<Long> offerIds) {
+        OfferUsageCountContext context = OfferUsageCountContext.getOfferUsageCountContext();
+        Map<Long, Long> counts = new HashMap<>(offerIds.size());
+        List<Long> unreadOfferIds = new ArrayList<>();
+        for (Long offerId : offerIds) {
+            Long count = context == null ? null : context.getCustomerUses(order, customerId, offerId);
+            if (count == null) {
+                unreadOfferIds.add(offerId);
+            } else {
+                counts.put(offerId, count);
+            }
+        }
+
+        if (!unreadOfferIds.isEmpty()) {
+            Map<Long, Long> readCounts = readUsesByCustomer(order, customerId, unreadOfferIds);
+            for (Long offerId : unreadOfferIds) {
+                Long count = readCounts.containsKey(offerId) ? readCounts.get(offerId) : 0L;
+                counts.put(offerId, count);
+                if (context != null) {
+                    context.putCustomerUses(order, customerId, offerId, count);
+                }
+            }
+        }
+        return counts;
+    }
+
+    /**
+     * Reads the uses of the given offers by the customer, either by counting their audits or from their counters
+     */
+    protected Map<Long, Long> readUsesByCustomer(Order order, Long customerId, List<Long> offerIds) {
+        if (!useCustomerUsageCounters) {
+            return offerAuditDao.countUsesByCustomer(order, customerId, offerIds);
+        }
+
+        Map<Long, Long> counts = offerAuditDao.readCustomerUsageCounts(customerId, offerIds);
+        if (!counts.isEmpty() && order.getId() != null) {
+            // the counters include the uses recorded for this order, which are not counted against it
+            for (OfferAudit audit : offerAuditDao.readOfferAuditsByOrderId(order.getId())) {
+                Long count = counts.get(audit.getOfferId());
+                if (count != null && customerId.equals(audit.getCustomerId())) {
+                    counts.put(audit.getOfferId(), count - 1);
+                }
+            }
+        }
+        return counts;
     }
     
     
@@ -74,7 +151,34 @@ public class OfferAuditServiceImpl implements OfferAuditService {
 
     @Override
     public Long countOfferCodeUses(Order order, Long offerCodeId) {
-        return offerAuditDao.countOfferCodeUses(order, offerCodeId);
+        return countOfferCodeUses(order, Collections.singletonList(offerCodeId)).get(offerCodeId);
+    }
+
+    @Override
+    public Map<Long, Long> countOfferCodeUses(Order order, Collection<Long> offerCodeIds) {
+        OfferUsageCountContext context = OfferUsageCountContext.getOfferUsageCountContext();
+        Map<Long, Long> counts = new HashMap<>(offerCodeIds.size());
+        List<Long> unreadOfferCodeIds = new ArrayList<>();
+        for (Long offerCodeId : offerCodeIds) {
+            Long count = context == null ? null : context.getOfferCodeUses(order, offerCodeId);
+            if (count == null) {
+                unreadOfferCodeIds.add(offerCodeId);
+            } else {
+                counts.put(offerCodeId, count);
+            }
+        }
+
+        if (!unreadOfferCodeIds.isEmpty()) {
+            Map<Long, Long> readCounts = offerAuditDao.countOfferCodeUses(order, unreadOfferCodeIds);
+            for (Long offerCodeId : unreadOfferCodeIds) {
+                Long count = readCounts.containsKey(offerCodeId) ? readCounts.get(offerCodeId) : 0L;
+                counts.put(offerCodeId, count);
+                if (context != null) {
+                    context.putOfferCodeUses(order, offerCodeId, count);
+                }
+            }
+        }
+        return counts;
     }
     
     @Deprecated
@@ -0,0 +1,607 @@
+/*
+ * #%L
+ * BroadleafCommerce Framework
+ * %%
+ * Copyright (C) 2009 - 2016 Broadleaf Commerce
+ * %%
+ * Licensed under the Broadleaf Fair Use License Agreement, Version 1.0
+ * (the "Fair Use License" located  at http://license.broadleafcommerce.org/fair_use_license-1.0.txt)
+ * unless the restrictions on use therein are violated and require payment to Broadleaf in which case
+ * the Broadleaf End User License Agreement (EULA), Version 1.1
+ * (the "Commercial License" located at http://license.broadleafcommerce.org/commercial_license-1.1.txt)
+ * shall apply.
+ *
+ * Alternatively, the Commercial License may be replaced with a mutually agreed upon license (the "Custom License")
+ * between you and Broadleaf Commerce. You may not use this file except in compliance with the applicable license.
+ * #L%
+ */
+package org.broadleafcommerce.core.offer.service;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.broadleafcommerce.common.rule.MvelHelper;
+import org.broadleafcommerce.core.offer.domain.Offer;
+import org.broadleafcommerce.core.offer.domain.OfferItemCriteria;
+import org.broadleafcommerce.core.offer.domain.OfferQualifyingCriteriaXref;
+import org.broadleafcommerce.core.offer.domain.OfferTargetCriteriaXref;
+import org.broadleafcommerce.core.offer.service.type.OfferType;
+import org.broadleafcommerce.core.order.domain.OrderItem;
+import org.broadleafcommerce.core.order.domain.OrderItemContainer;
+import org.mvel2.MVEL;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * An index over the item criteria of a list of offers that narrows the list to the offers that could still apply to
+ * the items in a cart, so that the offer processors don't run every offer's item rules against every item.
+ * <p/>
+ * Every qualifying item criteria, and every target item criteria of an {@link OfferType#ORDER_ITEM} offer, has to be
+ * met by at least one item for the offer to apply. Each of their match rules is split into its top level
+ * <code>&&</code> terms and the ones that compare an order item property with literals are indexed by literal:
+ * <ul>
+ *     <li><code>discreteOrderItem.?sku.?id==100</code></li>
+ *     <li><code>MvelHelper.toUpperCase(discreteOrderItem.?category.?name)==MvelHelper.toUpperCase("shoes")</code></li>
+ *     <li><code>([100,101] contains discreteOrderItem.?product.?id)</code></li>
+ *     <li><code>CollectionUtils.intersection(discreteOrderItem.?product.?allParentCategoryIds,[2001,2002]).size()>0</code></li>
+ * </ul>
+ * For a cart, each indexed property is evaluated once per item and an offer is dropped when one of its terms can't
+ * be met by any item. Offers without indexed terms are never dropped, and neither is an offer whose property can't be
+ * compared without MVEL's type coercion, so the result is always a superset of the offers that apply.
+ * <p/>
+ * The index doesn't hold on to the offers themselves. It remembers the ids and item rules it was built from, see
+ * {@link #isBuiltFrom(List)}, and reports candidates by their position in that list.
+ *
+ * @see OfferServiceImpl#removeOffersThatCannotApplyToOrderItems(List, List)
+ */
+public class OfferCandidateIndex {
+
+    private static final Log LOG = LogFactory.getLog(OfferCandidateIndex.class);
+
+    protected static final Object UNKNOWN = new Object();
+
+    protected static final Pattern ITEM_FIELD = Pattern.compile("^(orderItem|discreteOrderItem|bundleOrderItem)(\\.\\??[A-Za-z_][A-Za-z0-9_]*)+(\\.intValue\\(\\))?$");
+    protected static final Pattern UPPER_CASE_FIELD = Pattern.compile("^MvelHelper\\.toUpperCase\\((.+)\\)$");
+    protected static final Pattern STRING_LITERAL = Pattern.compile("^\"([^\"\\\\]*)\"$|^'([^'\\\\]*)'$");
+    protected static final Pattern UPPER_CASE_LITERAL = Pattern.compile("^MvelHelper\\.toUpperCase\\(\"([^\"\\\\]*)\"\\)$");
+    protected static final Pattern NUMBER_LITERAL = Pattern.compile("^(-?[0-9]{1,18})[lL]?$");
+    protected static final Pattern BOOLEAN_LITERAL = Pattern.compile("^(true|false)$");
+    protected static final Pattern INTERSECTION_TERM = Pattern.compile("^CollectionUtils\\.intersection\\((.+),\\s*\\[(.*)\\]\\)\\.size\\(\\)\\s*>\\s*0$", Pattern.DOTALL);
+
+    protected static final String CONTAINS_OPERATOR = "contains ";
+
+    protected final Long[] offerIds;
+    protected final String[][] offerSignatures;
+    protected final String[] fields;
+    protected final boolean[] collectionFields;
+    protected final Class<?>[] fieldLiteralTypes;
+    protected final List<Map<Object, BitSet>> buckets;
+    protected final BitSet[] fieldTerms;
+    protected final int[] termOffers;
+    protected final int indexedOfferCount;
+
+    public OfferCandidateIndex(List<Offer> offers) {
+        int size = offers.size();
+        offerIds = new Long[size];
+        offerSignatures = new String[size][];
+
+        Map<String, Integer> fieldIndexes = new LinkedHashMap<String, Integer>();
+        List<Boolean> collections = new ArrayList<Boolean>();
+        List<Class<?>> literalTypes = new ArrayList<Class<?>>();
+        List<Map<Object, BitSet>> valueBuckets = new ArrayList<Map<Object, BitSet>>();
+        List<BitSet> termsByField = new ArrayList<BitSet>();
+        List<Integer> owners = new ArrayList<Integer>();
+        BitSet indexedOffers = new BitSet(size);
+
+        for (int i = 0; i < size; i++) {
+            Offer offer = offers.get(i);
+            offerIds[i] = offer.getId();
+            offerSignatures[i] = buildSignature(offer);
+
+            for (String rule : getRequiredItemRules(offer)) {
+                List<String> terms = new ArrayList<String>();
+                splitConjunction(rule, terms);
+                for (String term : terms) {
+                    Discriminator discriminator = parseDiscriminator(term);
+                    if (discriminator == null) {
+                        continue;
+                    }
+
+                    String key = (discriminator.collection ? "*" : "") + discriminator.field;
+                    Integer field = fieldIndexes.get(key);
+                    if (field == null) {
+                        field = fieldIndexes.size();
+                        fieldIndexes.put(key, field);
+                        collections.add(discriminator.collection);
+                        literalTypes.add(discriminator.literalType);
+                        valueBuckets.add(new HashMap<Object, BitSet>());
+                        termsByField.add(new BitSet());
+                    } else if (literalTypes.get(field) != discriminator.literalType) {
+                        // MVEL would coerce one of the two literals, so only index the first type seen for a property
+                        continue;
+                    }
+
+                    int termIndex = owners.size();
+                    owners.add(i);
+                    termsByField.get(field).set(termIndex);
+                    for (Object value : discriminator.values) {
+                        BitSet bucket = valueBuckets.get(field).get(value);
+                        if (bucket == null) {
+                            bucket = new BitSet();
+                            valueBuckets.get(field).put(value, bucket);
+                        }
+                        bucket.set(termIndex);
+                    }
+                    indexedOffers.set(i);
+                }
+            }
+        }
+
+        fields = fieldIndexes.keySet().toArray(new String[fieldIndexes.size()]);
+        collectionFields = new boolean[fields.length];
+        for (int f = 0; f < fields.length; f++) {
+            collectionFields[f] = collections.get(f);
+            if (collectionFields[f]) {
+                fields[f] = fields[f].substring(1);
+            }
+        }
+        fieldLiteralTypes = literalTypes.toArray(new Class<?>[literalTypes.size()]);
+        buckets = valueBuckets;
+        fieldTerms = termsByField.toArray(new BitSet[termsByField.size()]);
+        termOffers = new int[owners.size()];
+        for (int t = 0; t < termOffers.length; t++) {
+            termOffers[t] = owners.get(t);
+        }
+        indexedOfferCount = indexedOffers.cardinality();
+
+        if (LOG.isDebugEnabled()) {
+            LOG.debug("Indexed " + indexedOfferCount + " of " + size + " offers on " + fields.length
+                    + " order item properties using " + termOffers.length + " item rule terms");
+        }
+    }
+
+    /**
+     * @return whether this index was built from the same offers, in the same order and with the same item rules, as
+     * the given list
+     */
+    public boolean isBuiltFrom(List<Offer> offers) {
+        if (offers.size() != offerIds.length) {
+            return false;
+        }
+        for (int i = 0; i < offerIds.length; i++) {
+            Offer offer = offers.get(i);
+            if (offerIds[i] == null || !offerIds[i].equals(offer.getId())
+                    || !Arrays.equals(offerSignatures[i], buildSignature(offer))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns the positions, in the list this index was built from, of the offers whose item criteria could still be
+     * met by the given items. Items inside bundles and child items are considered as well.
+     *
+     * @param orderItems the items in the cart
+     * @return the offers that were not ruled out
+     */
+    public BitSet findCandidates(List<OrderItem> orderItems) {
+        BitSet survivors = new BitSet(offerIds.length);
+        survivors.set(0, offerIds.length);
+        if (fields.length == 0) {
+            return survivors;
+        }
+
+        List<OrderItem> items = new ArrayList<OrderItem>();
+        collectOrderItems(orderItems, items, new IdentityHashMap<OrderItem, Boolean>());
+        List<Map<String, Object>> itemVars = new ArrayList<Map<String, Object>>(items.size());
+        for (OrderItem item : items) {
+            Map<String, Object> vars = new HashMap<String, Object>();
+            vars.put("orderItem", item);
+            vars.put("discreteOrderItem", item);
+            vars.put("bundleOrderItem", item);
+            itemVars.add(vars);
+        }
+
+        for (int f = 0; f < fields.length; f++) {
+            Set<Object> cartValues = collectCartValues(f, itemVars);
+            if (cartValues == null) {
+                continue;
+            }
+
+            BitSet unmet = (BitSet) fieldTerms[f].clone();
+            for (Object value : cartValues) {
+                BitSet bucket = buckets.get(f).get(value);
+                if (bucket != null) {
+                    unmet.andNot(bucket);
+                }
+            }
+            for (int t = unmet.nextSetBit(0); t >= 0; t = unmet.nextSetBit(t + 1)) {
+                survivors.clear(termOffers[t]);
+            }
+        }
+
+        return survivors;
+    }
+
+    public int size() {
+        return offerIds.length;
+    }
+
+    /**
+     * @return the number of offers that have at least one indexed item rule term
+     */
+    public int getIndexedOfferCount() {
+        return indexedOfferCount;
+    }
+
+    /**
+     * Returns the values that the items in the cart have for a property, or null if any of them can't be compared
+     * with the property's literals without MVEL's type coercion.
+     */
+    protected Set<Object> collectCartValues(int field, List<Map<String, Object>> itemVars) {
+        Set<Object> values = new HashSet<Object>();
+        for (Map<String, Object> vars : itemVars) {
+            Object value = evaluateField(fields[field], vars);
+            if (value == UNKNOWN) {
+                return null;
+            }
+            if (value == null) {
+                continue;
+            }
+            if (collectionFields[field]) {
+                if (!(value instanceof Collection)) {
+                    return null;
+                }
+                for (Object element : (Collection<?>) value) {
+                    if (element != null && !addValue(values, element, fieldLiteralTypes[field])) {
+                        return null;
+                    }
+                }
+            } else if (!addValue(values, value, fieldLiteralTypes[field])) {
+                return null;
+            }
+        }
+        return values;
+    }
+
+    protected boolean addValue(Set<Object> values, Object value, Class<?> literalType) {
+        Object normalized = normalize(value);
+        if (normalized == null || normalized.getClass() != literalType) {
+            return false;
+        }
+        values.add(normalized);
+        return true;
+    }
+
+    /**
+     * Evaluates an indexed property for one item, returning {@link #UNKNOWN} if MVEL can't evaluate it.
+     */
+    protected Object evaluateField(String field, Map<String, Object> vars) {
+        try {
+            Serializable exp = MvelHelper.compileRule(field, MvelHelper.getDefaultExpressionCache(), null);
+            return MVEL.executeExpression(exp, vars);
+        } catch (Exception e) {
+            if (LOG.isDebugEnabled()) {
+                LOG.debug("Unable to evaluate offer item rule property (" + field + "), not filtering on it", e);
+            }
+            return UNKNOWN;
+        }
+    }
+
+    protected static void collectOrderItems(Collection<? extends OrderItem> orderItems, List<OrderItem> items,
+            Map<OrderItem, Boolean> seen) {
+        if (orderItems == null) {
+            return;
+        }
+        for (OrderItem orderItem : orderItems) {
+            if (orderItem == null || seen.put(orderItem, Boolean.TRUE) != null) {
+                continue;
+            }
+            items.add(orderItem);
+            if (orderItem instanceof OrderItemContainer) {
+                collectOrderItems(((OrderItemContainer) orderItem).getOrderItems(), items, seen);
+            }
+            collectOrderItems(orderItem.getChildOrderItems(), items, seen);
+        }
+    }
+
+    /**
+     * Whole numbers are compared as longs, the way MVEL compares an id with an integer literal. Anything other than
+     * a whole number, string or boolean returns null.
+     */
+    protected static Object normalize(Object value) {
+        if (value instanceof Long || value instanceof Integer || value instanceof Short || value instanceof Byte) {
+            return ((Number) value).longValue();
+        }
+        if (value instanceof String || value instanceof Boolean) {
+            return value;
+        }
+        return null;
+    }
+
+    /**
+     * @return the match rules that at least one item must meet for the offer to apply
+     */
+    protected static List<String> getRequiredItemRules(Offer offer) {
+        List<String> rules = new ArrayList<String>();
+        if (offer.getQualifyingItemCriteriaXref() != null) {
+            for (OfferQualifyingCriteriaXref xref : offer.getQualifyingItemCriteriaXref()) {
+                addMatchRule(xref.getOfferItemCriteria(), rules);
+            }
+        }
+        if (OfferType.ORDER_ITEM.equals(offer.getType()) && offer.getTargetItemCriteriaXref() != null) {
+            for (OfferTargetCriteriaXref xref : offer.getTargetItemCriteriaXref()) {
+                addMatchRule(xref.getOfferItemCriteria(), rules);
+            }
+        }
+        return rules;
+    }
+
+    protected static void addMatchRule(OfferItemCriteria criteria, List<String> rules) {
+        if (criteria != null && criteria.getMatchRule() != null && criteria.getMatchRule().trim().length() > 0) {
+            rules.add(criteria.getMatchRule());
+        }
+    }
+
+    protected static String[] buildSignature(Offer offer) {
+        List<String> rules = getRequiredItemRules(offer);
+        String[] signature = rules.toArray(new String[rules.size()]);
+        Arrays.sort(signature);
+        return signature;
+    }
+
+    /**
+     * Adds the top level <code>&&</code> terms of the expression to <b>terms</b>. An expression that has a top level
+     * <code>||</code> is added as a single term.
+     */
+    protected static void splitConjunction(String expression, List<String> terms) {
+        String term = stripEnclosingParentheses(expression.trim());
+        List<Integer> ands = new ArrayList<Integer>();
+        int depth = 0;
+        char quote = 0;
+
+        for (int i = 0; i < term.length() - 1; i++) {
+            char c = term.charAt(i);
+            if (quote != 0) {
+                if (c == '\\') {
+                    i++;
+                } else if (c == quote) {
+                    quote = 0;
+                }
+            } else if (c == '"' || c == '\'') {
+                quote = c;
+            } else if (c == '(' || c == '[') {
+                depth++;
+            } else if (c == ')' || c == ']') {
+                depth--;
+            } else if (depth == 0 && c == '|' && term.charAt(i + 1) == '|') {
+                terms.add(term);
+                return;
+            } else if (depth == 0 && c == '&' && term.charAt(i + 1) == '&') {
+                ands.add(i);
+                i++;
+            }
+        }
+
+        if (ands.isEmpty()) {
+            terms.add(term);
+            return;
+        }
+
+        int start = 0;
+        for (Integer and : ands) {
+            splitConjunction(term.substring(start, and), terms);
+            start = and + 2;
+        }
+        splitConjunction(term.substring(start), terms);
+    }
+
+    protected static String stripEnclosingParentheses(String term) {
+        while (term.length() > 1 && term.charAt(0) == '(' && findClosing(term, 0) == term.length() - 1) {
+            term = term.substring(1, term.length() - 1).trim();
+        }
+        return term;
+    }
+
+    /**
+     * @return the position of the bracket that closes the one at <b>start</b>, or -1
+     */
+    protected static int findClosing(String term, int start) {
+        int depth = 0;
+        char quote = 0;
+        for (int i = start; i < term.length(); i++) {
+            char c = term.charAt(i);
+            if (quote != 0) {
+                if (c == '\\') {
+                    i++;
+                } else if (c == quote) {
+                    quote = 0;
+                }
+            } else if (c == '"' || c == '\'') {
+                quote = c;
+            } else if (c == '(' || c == '[') {
+                depth++;
+            } else if (c == ')' || c == ']') {
+                depth--;
+                if (depth == 0) {
+                    return i;
+                }
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Parses a single rule term that compares an order item property with literals, returning null if the term is
+     * anything else.
+     */
+    protected static Discriminator parseDiscriminator(String term) {
+        Matcher matcher = INTERSECTION_TERM.matcher(term);
+        if (matcher.matches()) {
+            return buildDiscriminator(matcher.group(1).trim(), matcher.group(2), true);
+        }
+
+        if (term.startsWith("[")) {
+            int close = findClosing(term, 0);
+            if (close < 0) {
+                return null;
+            }
+            String rest = term.substring(close + 1).trim();
+            if (!rest.startsWith(CONTAINS_OPERATOR)) {
+                return null;
+            }
+            return buildDiscriminator(rest.substring(CONTAINS_OPERATOR.length()).trim(), term.substring(1, close), false);
+        }
+
+        int operator = findTopLevelEquals(term);
+        if (operator < 0) {
+            return null;
+        }
+        return buildDiscriminator(term.substring(0, operator).trim(), term.substring(operator + 2), false);
+    }
+
+    protected static Discriminator buildDiscriminator(String field, String literals, boolean collection) {
+        if (!isItemField(field)) {
+            return null;
+        }
+        List<String> parts = new ArrayList<String>();
+        if (!splitLiterals(literals, parts) || parts.isEmpty()) {
+            return null;
+        }
+
+        Set<Object> values = new HashSet<Object>();
+        Class<?> literalType = null;
+        for (String part : parts) {
+            Object value = parseLiteral(part);
+            if (value == null || (literalType != null && value.getClass() != literalType)) {
+                return null;
+            }
+            literalType = value.getClass();
+            values.add(value);
+        }
+        return new Discriminator(field, values, literalType, collection);
+    }
+
+    /**
+     * @return the position of the only top level <code>==</code> in the term, or -1 if there isn't exactly one
+     * comparison and nothing else
+     */
+    protected static int findTopLevelEquals(String term) {
+        int depth = 0;
+        char quote = 0;
+        int found = -1;
+        for (int i = 0; i < term.length(); i++) {
+            char c = term.charAt(i);
+            if (quote != 0) {
+                if (c == '\\') {
+                    i++;
+                } else if (c == quote) {
+                    quote = 0;
+                }
+            } else if (c == '"' || c == '\'') {
+                quote = c;
+            } else if (c == '(' || c == '[') {
+                depth++;
+            } else if (c == ')' || c == ']') {
+                depth--;
+            } else if (depth == 0 && (c == '=' || c == '!' || c == '<' || c == '>' || c == '&' || c == '|')) {
+                if (found >= 0 || c != '=' || i + 1 >= term.length() || term.charAt(i + 1) != '=') {
+                    return -1;
+                }
+                found = i;
+                i++;
+            }
+        }
+        return found;
+    }
+
+    protected static boolean splitLiterals(String literals, List<String> parts) {
+        int depth = 0;
+        char quote = 0;
+        int start = 0;
+        for (int i = 0; i < literals.length(); i++) {
+            char c = literals.charAt(i);
+            if (quote != 0) {
+                if (c == '\\') {
+                    return false;
+                } else if (c == quote) {
+                    quote = 0;
+                }
+            } else if (c == '"' || c == '\'') {
+                quote = c;
+            } else if (c == '(' || c == '[') {
+                depth++;
+            } else if (c == ')' || c == ']') {
+                depth--;
+            } else if (depth == 0 && c == ',') {
+                parts.add(literals.substring(start, i).trim());
+                start = i + 1;
+            }
+        }
+        if (quote != 0 || depth != 0) {
+            return false;
+        }
+        parts.add(literals.substring(start).trim());
+        return true;
+    }
+
+    /**
+     * Only null safe or plain property paths from the order item are indexed, optionally upper cased, so that
+     * evaluating the property on its own can't mean anything different from evaluating it as part of the rule
+     */
+    protected static boolean isItemField(String field) {
+        Matcher matcher = UPPER_CASE_FIELD.matcher(field);
+        if (matcher.matches()) {
+            field = matcher.group(1).trim();
+        }
+        return ITEM_FIELD.matcher(field).matches();
+    }
+
+    protected static Object parseLiteral(String literal) {
+        Matcher matcher = STRING_LITERAL.matcher(literal);
+        if (matcher.matches()) {
+            return matcher.group(1) != null ? matcher.group(1) : matcher.group(2);
+        }
+        matcher = UPPER_CASE_LITERAL.matcher(literal);
+        if (matcher.matches()) {
+            return MvelHelper.toUpperCase(matcher.group(1));
+        }
+        matcher = NUMBER_LITERAL.matcher(literal);
+        if (matcher.matches()) {
+            return Long.valueOf(matcher.group(1));
+        }
+        matcher = BOOLEAN_LITERAL.matcher(literal);
+        if (matcher.matches()) {
+            return Boolean.valueOf(matcher.group(1));
+        }
+        return null;
+    }
+
+    protected static class Discriminator {
+
+        protected final String field;
+        protected final Set<Object> values;
+        protected final Class<?> literalType;
+        protected final boolean collection;
+
+        protected Discriminator(String field, Set<Object> values, Class<?> literalType, boolean collection) {
+            this.field = field;
+            this.values = values;
+            this.literalType = literalType;
+            this.collection = collection;
+        }
+    }
+}
@@ -0,0 +1,101 @@
+/*
+ * #%L
+ * BroadleafCommerce Framework
+ * %%
+ * Copyright (C) 2009 - 2016 Broadleaf Commerce
+ * %%
+ * Licensed under the Broadleaf Fair Use License Agreement, Version 1.0
+ * (the "Fair Use License" located  at http://license.broadleafcommerce.org/fair_use_license-1.0.txt)
+ * unless the restrictions on use therein are violated and require payment to Broadleaf in which case
+ * the Broadleaf End User License Agreement (EULA), Version 1.1
+ * (the "Commercial License" located at http://license.broadleafcommerce.org/commercial_license-1.1.txt)
+ * shall apply.
+ * 
+ * Alternatively, the Commercial License may be replaced with a mutually agreed upon license (the "Custom License")
+ * between you and Broadleaf Commerce. You may not use this file except in compliance with the applicable license.
+ * #L%
+ */
+package org.broadleafcommerce.core.offer.service;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.broadleafcommerce.common.rule.MvelRulePrewarmProvider;
+import org.broadleafcommerce.common.util.StringUtil;
+import org.broadleafcommerce.core.offer.dao.OfferDao;
+import org.broadleafcommerce.core.offer.domain.Offer;
+import org.broadleafcommerce.core.offer.domain.OfferOfferRuleXref;
+import org.broadleafcommerce.core.offer.domain.OfferQualifyingCriteriaXref;
+import org.broadleafcommerce.core.offer.domain.OfferTargetCriteriaXref;
+import org.broadleafcommerce.core.offer.service.processor.OrderOfferProcessor;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.annotation.Resource;
+
+/**
+ * Compiles the match rules, qualifying criteria and target criteria of every active offer into the offer processors'
+ * expression cache.
+ */
+@Service("blOfferMvelRulePrewarmProvider")
+public class OfferMvelRulePrewarmProvider implements MvelRulePrewarmProvider {
+
+    private static final Log LOG = LogFactory.getLog(OfferMvelRulePrewarmProvider.class);
+
+    @Resource(name = "blOfferDao")
+    protected OfferDao offerDao;
+
+    @Resource(name = "blOrderOfferProcessor")
+    protected OrderOfferProcessor orderOfferProcessor;
+
+    @Override
+    @Transactional(value = "blTransactionManager", readOnly = true)
+    public int prewarmRules() {
+        int count = 0;
+        for (Offer offer : offerDao.readAllActiveOffers()) {
+            for (String rule : collectRules(offer)) {
+                try {
+                    orderOfferProcessor.compileExpression(rule);
+                    count++;
+                } catch (RuntimeException e) {
+                    LOG.warn("Unable to compile rule for offer " + offer.getId() + ": " + StringUtil.sanitize(rule), e);
+                }
+            }
+        }
+        return count;
+    }
+
+    protected List<String> collectRules(Offer offer) {
+        List<String> rules = new ArrayList<>();
+        if (offer.getOfferMatchRulesXref() != null) {
+            for (OfferOfferRuleXref xref : offer.getOfferMatchRulesXref().values()) {
+                if (xref.getOfferRule() != null) {
+                    addRule(rules, xref.getOfferRule().getMatchRule());
+                }
+            }
+        }
+        if (offer.getQualifyingItemCriteriaXref() != null) {
+            for (OfferQualifyingCriteriaXref xref : offer.getQualifyingItemCriteriaXref()) {
+                if (xref.getOfferItemCriteria() != null) {
+                    addRule(rules, xref.getOfferItemCriteria().getMatchRule());
+                }
+            }
+        }
+        if (offer.getTargetItemCriteriaXref() != null) {
+            for (OfferTargetCriteriaXref xref : offer.getTargetItemCriteriaXref()) {
+                if (xref.getOfferItemCriteria() != null) {
+                    addRule(rules, xref.getOfferItemCriteria().getMatchRule());
+                }
+            }
+        }
+        return rules;
+    }
+
+    protected void addRule(List<String> rules, String rule) {
+        if (rule != null && rule.trim().length() != 0) {
+            rules.add(rule);
+        }
+    }
+}
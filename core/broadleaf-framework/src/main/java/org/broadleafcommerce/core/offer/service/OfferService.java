@@ -251,6 +251,28 @@ public interface OfferService {
      */
     @Deprecated
     boolean verifyMaxCustomerUsageThreshold(@Nonnull Customer customer, @Nonnull OfferCode code);
+
+    /**
+     * <p>Batched form of {@link #verifyMaxCustomerUsageThreshold(Order, Offer)}. The uses of all limited use offers are
+     * counted with a single query, and memoized for the rest of the current workflow. Each offer is then still checked
+     * through {@link #verifyMaxCustomerUsageThreshold(Order, Offer)}, which reads its count from memory.</p>
+     *
+     * @param order the order the offers are to be applied to
+     * @param offers the offers to check
+     * @return the offers the customer may use with their current order, in their original order
+     */
+    List<Offer> removeOffersOverMaxCustomerUsageThreshold(@Nonnull Order order, @Nonnull List<Offer> offers);
+
+    /**
+     * <p>Batched form of {@link #verifyMaxCustomerUsageThreshold(Order, OfferCode)}. The uses of all limited use codes,
+     * and the uses of their limited use offers, are each counted with a single query. Each code is then still checked
+     * through {@link #verifyMaxCustomerUsageThreshold(Order, OfferCode)}, which reads its counts from memory.</p>
+     *
+     * @param order the order the codes are to be applied to
+     * @param codes the codes to check
+     * @return the codes the customer may use with their current order, in their original order
+     */
+    List<OfferCode> removeOfferCodesOverMaxUsageThreshold(@Nonnull Order order, @Nonnull List<OfferCode> codes);
     
     /**
      * Returns a set of offers that have been used for this order by checking adjustments on the different levels like
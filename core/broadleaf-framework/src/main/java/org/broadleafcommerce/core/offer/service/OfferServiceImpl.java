@@ -51,10 +51,12 @@ import org.broadleafcommerce.core.order.domain.OrderItemPriceDetail;
 import org.broadleafcommerce.core.order.service.OrderService;
 import org.broadleafcommerce.core.pricing.service.exception.PricingException;
 import org.broadleafcommerce.profile.core.domain.Customer;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -122,6 +124,11 @@ public class OfferServiceImpl implements OfferService {
     @Resource(name="blOfferDuplicateModifier")
     protected EntityDuplicateModifier<Offer> offerDuplicateModifier;
 
+    @Value("${offer.candidate.index.enabled:true}")
+    protected boolean useOfferCandidateIndex = true;
+
+    protected volatile OfferCandidateIndex automaticOfferIndex;
+
     @Override
     public List<Offer> findAllOffers() {
         return offerDao.readAllOffers();
@@ -206,11 +213,14 @@ public class OfferServiceImpl implements OfferService {
             extensionManager.getProxy().addAdditionalOffersForCode(offers, orderOfferCode);
         }
         List<Offer> globalOffers = lookupAutomaticDeliveryOffers();
+        globalOffers = removeOffersThatCannotApplyToOrderItems(globalOffers, order.getOrderItems());
+        List<Offer> newGlobalOffers = new ArrayList<Offer>(globalOffers.size());
         for (Offer globalOffer : globalOffers) {
-            if (!offers.contains(globalOffer) && verifyMaxCustomerUsageThreshold(order, globalOffer)) {
-                offers.add(globalOffer);
+            if (!offers.contains(globalOffer) && !newGlobalOffers.contains(globalOffer)) {
+                newGlobalOffers.add(globalOffer);
             }
         }
+        offers.addAll(removeOffersOverMaxCustomerUsageThreshold(order, newGlobalOffers));
         
         if (extensionManager != null) {
             extensionManager.applyAdditionalFilters(offers, order);
@@ -231,10 +241,11 @@ public class OfferServiceImpl implements OfferService {
             Iterator<OfferCode> itr = offerCodes.iterator();
             while (itr.hasNext()) {
                 OfferCode offerCode = itr.next();
-                if (!offerCode.isActive() || !verifyMaxCustomerUsageThreshold(order, offerCode)) {
+                if (!offerCode.isActive()) {
                     itr.remove();
                 }
             }
+            return removeOfferCodesOverMaxUsageThreshold(order, offerCodes);
         }
         return offerCodes;
     }
@@ -280,6 +291,41 @@ public class OfferServiceImpl implements OfferService {
         return globalOffers;
     }
 
+    /**
+     * Removes the automatic delivery offers whose qualifying or target item criteria can't be met by any of the given
+     * items, using an {@link OfferCandidateIndex} that is rebuilt whenever the offers or their item rules change. The
+     * offers that remain still need their rules evaluated by the offer processors.
+     *
+     * @param offers the automatic delivery offers
+     * @param orderItems the items in the order
+     * @return the offers that could apply to the items
+     */
+    protected List<Offer> removeOffersThatCannotApplyToOrderItems(List<Offer> offers, List<OrderItem> orderItems) {
+        if (!useOfferCandidateIndex || offers == null || offers.isEmpty()) {
+            return offers;
+        }
+
+        OfferCandidateIndex index = automaticOfferIndex;
+        if (index == null || !index.isBuiltFrom(offers)) {
+            index = new OfferCandidateIndex(offers);
+            automaticOfferIndex = index;
+        }
+
+        BitSet candidates = index.findCandidates(orderItems);
+        if (candidates.cardinality() == offers.size()) {
+            return offers;
+        }
+        List<Offer> candidateOffers = new ArrayList<Offer>(candidates.cardinality());
+        for (int i = candidates.nextSetBit(0); i >= 0; i = candidates.nextSetBit(i + 1)) {
+            candidateOffers.add(offers.get(i));
+        }
+        if (LOG.isTraceEnabled()) {
+            LOG.trace("Item criteria ruled out " + (offers.size() - candidateOffers.size()) + " of " + offers.size()
+                    + " automatic delivery offers");
+        }
+        return candidateOffers;
+    }
+
     /**
      * Removes all out of date offerCodes based on the offerCode and its offer's start and end
      * date.  If an offerCode has a later start date, that offerCode will be removed.
@@ -546,6 +592,71 @@ public class OfferServiceImpl implements OfferService {
         return underCodeMaxUses && verifyMaxCustomerUsageThreshold(order, code.getOffer());
     }
 
+    @Override
+    public List<Offer> removeOffersOverMaxCustomerUsageThreshold(Order order, List<Offer> offers) {
+        List<Long> limitedOfferIds = new ArrayList<>();
+        for (Offer offer : offers) {
+            if (offer.isLimitedUsePerCustomer()) {
+                limitedOfferIds.add(offer.getId());
+            }
+        }
+
+        // the counts are read together and memoized, so that each check below reads its count from memory
+        boolean scoped = OfferUsageCountContext.startScope();
+        try {
+            if (!limitedOfferIds.isEmpty()) {
+                offerAuditService.countUsesByCustomer(order, order.getCustomer().getId(), limitedOfferIds);
+            }
+            List<Offer> response = new ArrayList<>(offers.size());
+            for (Offer offer : offers) {
+                if (verifyMaxCustomerUsageThreshold(order, offer)) {
+                    response.add(offer);
+                }
+            }
+            return response;
+        } finally {
+            if (scoped) {
+                OfferUsageCountContext.endScope();
+            }
+        }
+    }
+
+    @Override
+    public List<OfferCode> removeOfferCodesOverMaxUsageThreshold(Order order, List<OfferCode> codes) {
+        List<Long> limitedCodeIds = new ArrayList<>();
+        List<Long> limitedOfferIds = new ArrayList<>();
+        for (OfferCode code : codes) {
+            if (code.isLimitedUse()) {
+                limitedCodeIds.add(code.getId());
+            }
+            if (code.getOffer().isLimitedUsePerCustomer() && !limitedOfferIds.contains(code.getOffer().getId())) {
+                limitedOfferIds.add(code.getOffer().getId());
+            }
+        }
+
+        // the counts are read together and memoized, so that each check below reads its counts from memory
+        boolean scoped = OfferUsageCountContext.startScope();
+        try {
+            if (!limitedCodeIds.isEmpty()) {
+                offerAuditService.countOfferCodeUses(order, limitedCodeIds);
+            }
+            if (!limitedOfferIds.isEmpty()) {
+                offerAuditService.countUsesByCustomer(order, order.getCustomer().getId(), limitedOfferIds);
+            }
+            List<OfferCode> response = new ArrayList<>(codes.size());
+            for (OfferCode code : codes) {
+                if (verifyMaxCustomerUsageThreshold(order, code)) {
+                    response.add(code);
+                }
+            }
+            return response;
+        } finally {
+            if (scoped) {
+                OfferUsageCountContext.endScope();
+            }
+        }
+    }
+
     @Deprecated
     @Override
     public boolean verifyMaxCustomerUsageThreshold(Customer customer, OfferCode code) {
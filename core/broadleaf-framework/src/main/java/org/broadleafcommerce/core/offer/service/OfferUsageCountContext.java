@@ -0,0 +1,115 @@
+/*
+ * #%L
+ * BroadleafCommerce Framework
+ * %%
+ * Copyright (C) 2009 - 2016 Broadleaf Commerce
+ * %%
+ * Licensed under the Broadleaf Fair Use License Agreement, Version 1.0
+ * (the "Fair Use License" located  at http://license.broadleafcommerce.org/fair_use_license-1.0.txt)
+ * unless the restrictions on use therein are violated and require payment to Broadleaf in which case
+ * the Broadleaf End User License Agreement (EULA), Version 1.1
+ * (the "Commercial License" located at http://license.broadleafcommerce.org/commercial_license-1.1.txt)
+ * shall apply.
+ * 
+ * Alternatively, the Commercial License may be replaced with a mutually agreed upon license (the "Custom License")
+ * between you and Broadleaf Commerce. You may not use this file except in compliance with the applicable license.
+ * #L%
+ */
+package org.broadleafcommerce.core.offer.service;
+
+import org.broadleafcommerce.common.classloader.release.ThreadLocalManager;
+import org.broadleafcommerce.core.order.domain.Order;
+import org.broadleafcommerce.core.workflow.state.RollbackStateLocal;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Memoizes the offer and offer code usage counts read during a single workflow run, so that pricing an order reads
+ * the usage of each limited offer at most once no matter how many times the offer list is built. The context belongs
+ * to the {@link RollbackStateLocal} of the workflow that created it and is discarded as soon as another workflow runs
+ * on the thread. Outside of a workflow nothing is memoized, unless a scope is opened with {@link #startScope()}.
+ * <p>
+ * Counts exclude the uses recorded for the order being priced, so recording usage for that order does not make them
+ * stale. Any other change to the audits discards the context.
+ *
+ * @see OfferAuditService#countUsesByCustomer(Order, Long, java.util.Collection)
+ */
+public class OfferUsageCountContext {
+
+    private static final ThreadLocal<OfferUsageCountContext> offerUsageCountContext = ThreadLocalManager.createThreadLocal(OfferUsageCountContext.class, false);
+
+    /**
+     * @return the context of the workflow running on this thread, or null if no workflow is running
+     */
+    public static OfferUsageCountContext getOfferUsageCountContext() {
+        RollbackStateLocal workflow = RollbackStateLocal.getRollbackStateLocal();
+        OfferUsageCountContext context = offerUsageCountContext.get();
+        if (workflow == null) {
+            return context != null && context.workflow == null ? context : null;
+        }
+        if (context == null || context.workflow != workflow) {
+            context = new OfferUsageCountContext(workflow);
+            offerUsageCountContext.set(context);
+        }
+        return context;
+    }
+
+    public static void removeOfferUsageCountContext() {
+        ThreadLocalManager.remove(offerUsageCountContext);
+    }
+
+    /**
+     * Memoizes counts on this thread until {@link #endScope()} is called, even when no workflow is running. This lets a
+     * batched check read all counts at once and then answer each single count from memory.
+     *
+     * @return true if a scope was opened, false if counts are already memoized on this thread, in which case
+     * {@link #endScope()} must not be called
+     */
+    public static boolean startScope() {
+        if (getOfferUsageCountContext() != null) {
+            return false;
+        }
+        offerUsageCountContext.set(new OfferUsageCountContext(null));
+        return true;
+    }
+
+    public static void endScope() {
+        removeOfferUsageCountContext();
+    }
+
+    protected final RollbackStateLocal workflow;
+    protected final Map<String, Long> customerUses = new HashMap<>();
+    protected final Map<String, Long> offerCodeUses = new HashMap<>();
+
+    protected OfferUsageCountContext(RollbackStateLocal workflow) {
+        this.workflow = workflow;
+    }
+
+    /**
+     * @return the memoized number of uses, or null if they have not been read yet
+     */
+    public Long getCustomerUses(Order order, Long customerId, Long offerId) {
+        return customerUses.get(buildKey(order, customerId, offerId));
+    }
+
+    public void putCustomerUses(Order order, Long customerId, Long offerId, Long uses) {
+        customerUses.put(buildKey(order, customerId, offerId), uses);
+    }
+
+    /**
+     * @return the memoized number of uses, or null if they have not been read yet
+     */
+    public Long getOfferCodeUses(Order order, Long offerCodeId) {
+        return offerCodeUses.get(buildKey(order, null, offerCodeId));
+    }
+
+    public void putOfferCodeUses(Order order, Long offerCodeId, Long uses) {
+        offerCodeUses.put(buildKey(order, null, offerCodeId), uses);
+    }
+
+    protected String buildKey(Order order, Long customerId, Long id) {
+        return order.getId() + "_" + customerId + "_" + id;
+    }
+
+}
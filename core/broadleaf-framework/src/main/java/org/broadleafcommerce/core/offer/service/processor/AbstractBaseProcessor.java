@@ -18,12 +18,12 @@
 package org.broadleafcommerce.core.offer.service.processor;
 
 import org.apache.commons.collections.CollectionUtils;
-import org.apache.commons.collections4.map.LRUMap;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.broadleafcommerce.common.RequestDTO;
 import org.broadleafcommerce.common.TimeDTO;
 import org.broadleafcommerce.common.money.Money;
+import org.broadleafcommerce.common.rule.MvelExpressionCache;
 import org.broadleafcommerce.common.rule.MvelHelper;
 import org.broadleafcommerce.common.time.SystemTime;
 import org.broadleafcommerce.common.util.TypedPredicate;
@@ -68,7 +68,7 @@ import javax.annotation.Resource;
 public abstract class AbstractBaseProcessor implements BaseProcessor {
 
     private static final Log LOG = LogFactory.getLog(AbstractBaseProcessor.class);
-    private static final Map EXPRESSION_CACHE = new LRUMap(1000);
+    private static final MvelExpressionCache EXPRESSION_CACHE = new MvelExpressionCache(1000);
 
     @Resource(name = "blOfferTimeZoneProcessor")
     protected OfferTimeZoneProcessor offerTimeZoneProcessor;
@@ -265,13 +265,30 @@ public abstract class AbstractBaseProcessor implements BaseProcessor {
      * @return a Boolean object containing the result of executing the MVEL expression
      */
     public Boolean executeExpression(String expression, Map<String, Object> vars) {
-        Map<String, Class<?>> contextImports = new HashMap<>();
-
         expression = usePriceBeforeAdjustments(expression);
+        return MvelHelper.evaluateRule(expression, vars, EXPRESSION_CACHE, getContextImports());
+
+    }
+
+    @Override
+    public void compileExpression(String expression) {
+        if (expression != null && expression.trim().length() != 0) {
+            MvelHelper.compileRule(usePriceBeforeAdjustments(expression), EXPRESSION_CACHE, getContextImports());
+        }
+    }
+
+    /**
+     * @return the cache of compiled offer rule expressions shared by all offer processors
+     */
+    public static MvelExpressionCache getExpressionCache() {
+        return EXPRESSION_CACHE;
+    }
+
+    protected Map<String, Class<?>> getContextImports() {
+        Map<String, Class<?>> contextImports = new HashMap<>();
         contextImports.put("OfferType", OfferType.class);
         contextImports.put("FulfillmentType", FulfillmentType.class);
-        return MvelHelper.evaluateRule(expression, vars, EXPRESSION_CACHE, contextImports);
-
+        return contextImports;
     }
 
     protected String usePriceBeforeAdjustments(String expression) {
@@ -30,5 +30,14 @@ import java.util.List;
 public interface BaseProcessor {
     
     public List<Offer> filterOffers(List<Offer> offers, Customer customer);
+
+    /**
+     * Compiles and caches the passed in offer rule expression without evaluating it
+     *
+     * @param expression the MVEL match rule of an offer, item criteria or offer rule
+     */
+    default void compileExpression(String expression) {
+        // processors that do not cache compiled expressions have nothing to prewarm
+    }
     
 }
@@ -42,6 +42,7 @@ import org.broadleafcommerce.core.offer.service.type.OfferItemRestrictionRuleTyp
 import org.broadleafcommerce.core.offer.service.type.OfferType;
 import org.broadleafcommerce.core.order.domain.OrderItem;
 import org.broadleafcommerce.core.order.domain.dto.OrderItemHolder;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import java.math.BigDecimal;
@@ -68,6 +69,18 @@ public class ItemOfferProcessorImpl extends OrderOfferProcessorImpl implements I
     
     protected static final Log LOG = LogFactory.getLog(ItemOfferProcessorImpl.class);
 
+    /**
+     * Maximum number of distinct item offer permutations applied when searching for the best one. 0 means no limit.
+     */
+    @Value("${offer.item.permutation.search.maxPermutations:0}")
+    protected int permutationSearchMaxPermutations = 0;
+
+    /**
+     * Maximum time, in milliseconds, spent searching for the best item offer permutation. 0 means no limit.
+     */
+    @Value("${offer.item.permutation.search.maxMillis:0}")
+    protected long permutationSearchMaxMillis = 0L;
+
     /* (non-Javadoc)
      * @see org.broadleafcommerce.core.offer.service.processor.ItemOfferProcessor#filterItemLevelOffer(org.broadleafcommerce.core.order.domain.Order, java.util.List, java.util.List, org.broadleafcommerce.core.offer.domain.Offer)
      */
@@ -598,30 +611,43 @@ public class ItemOfferProcessorImpl extends OrderOfferProcessorImpl implements I
 
     }
 
+    /**
+     * Applies each permutation to the order and returns the one yielding the lowest subtotal, preferring the earliest
+     * permutation on ties. The search stops early once {@link #permutationSearchMaxPermutations} or
+     * {@link #permutationSearchMaxMillis} is exhausted, in which case the best permutation found so far is used and the
+     * result may differ from an unbounded search.
+     * <p>
+     * Every permutation is applied to the order from scratch. Common prefixes are not shared because the promotion state
+     * they build up (split price details, qualifier and target marks, offer uses) cannot be copied, and no bound on the
+     * savings of a partial ordering is admissible, so nothing is pruned.
+     *
+     * @param itemOffers the qualified item offers, already sorted by {@link ItemOfferComparator}
+     * @param order the order to apply the offers to; its price details are reset after every evaluation
+     * @return the best offer ordering
+     */
     protected List<PromotableCandidateItemOffer> determineBestPermutation(List<PromotableCandidateItemOffer> itemOffers, PromotableOrder order) {
         List<List<PromotableCandidateItemOffer>> permutations = buildItemOfferPermutations(itemOffers);
         removeDuplicatePermutations(permutations);
         List<PromotableCandidateItemOffer> bestOfferList = null;
         Money lowestSubtotal = null;
         if (permutations.size() > 1) {
+            long deadline = permutationSearchMaxMillis > 0 ? System.nanoTime() + permutationSearchMaxMillis * 1000000L : 0L;
+            int evaluated = 0;
             for (List<PromotableCandidateItemOffer> offerList : permutations) {
-                for (PromotableCandidateItemOffer offer : offerList) {
-                    offer.resetUses();
+                if (bestOfferList != null && isPermutationBudgetExhausted(evaluated, deadline)) {
+                    if (LOG.isDebugEnabled()) {
+                        LOG.debug(String.format("Item offer permutation search budget exhausted after %d of %d permutations",
+                                evaluated, permutations.size()));
+                    }
+                    break;
                 }
-                
-                applyAllItemOffers(offerList, order);
-                chooseSaleOrRetailAdjustments(order);
-                Money testSubtotal = order.calculateSubtotalWithAdjustments();
+                Money testSubtotal = evaluatePermutation(offerList, order);
+                evaluated++;
 
                 if (lowestSubtotal == null || testSubtotal.lessThan(lowestSubtotal)) {
                     lowestSubtotal = testSubtotal;
                     bestOfferList = offerList;
                 }
-
-                // clear price details
-                for (PromotableOrderItem item : order.getDiscountableOrderItems()) {
-                    item.resetPriceDetails();
-                }
             }
         } else {
             bestOfferList = permutations.get(0);
@@ -634,6 +660,37 @@ public class ItemOfferProcessorImpl extends OrderOfferProcessorImpl implements I
         return bestOfferList;
     }
 
+    /**
+     * Applies the given offer ordering to the order, records the resulting subtotal and then clears the price details
+     * so the order is ready for the next permutation.
+     *
+     * @param offerList the offer ordering to apply
+     * @param order the order
+     * @return the order subtotal with adjustments for this ordering
+     */
+    protected Money evaluatePermutation(List<PromotableCandidateItemOffer> offerList, PromotableOrder order) {
+        for (PromotableCandidateItemOffer offer : offerList) {
+            offer.resetUses();
+        }
+
+        applyAllItemOffers(offerList, order);
+        chooseSaleOrRetailAdjustments(order);
+        Money testSubtotal = order.calculateSubtotalWithAdjustments();
+
+        // clear price details
+        for (PromotableOrderItem item : order.getDiscountableOrderItems()) {
+            item.resetPriceDetails();
+        }
+        return testSubtotal;
+    }
+
+    protected boolean isPermutationBudgetExhausted(int evaluated, long deadline) {
+        if (permutationSearchMaxPermutations > 0 && evaluated >= permutationSearchMaxPermutations) {
+            return true;
+        }
+        return deadline != 0L && System.nanoTime() - deadline >= 0;
+    }
+
     protected void removeDuplicatePermutations(List<List<PromotableCandidateItemOffer>> permutations) {
         Set<List<Long>> offerIdListSet = new HashSet<>();
 
@@ -18,8 +18,8 @@
 package org.broadleafcommerce.core.pricing.service.workflow;
 
 import org.apache.commons.lang.StringUtils;
+import org.broadleafcommerce.common.rule.MvelExpressionCache;
 import org.broadleafcommerce.common.rule.MvelHelper;
-import org.broadleafcommerce.common.util.EfficientLRUMap;
 import org.broadleafcommerce.core.catalog.domain.SkuFee;
 import org.broadleafcommerce.core.catalog.service.type.SkuFeeType;
 import org.broadleafcommerce.core.order.domain.BundleOrderItem;
@@ -49,7 +49,7 @@ public class ConsolidateFulfillmentFeesActivity extends BaseActivity<ProcessCont
     public static final int ORDER = 2000;
     
     @SuppressWarnings("unchecked")
-    protected static final Map EXPRESSION_CACHE = new EfficientLRUMap(1000);
+    protected static final Map EXPRESSION_CACHE = new MvelExpressionCache(1000);
     
     @Resource(name = "blFulfillmentGroupService")
     protected FulfillmentGroupService fulfillmentGroupService;
@@ -110,11 +110,9 @@ public class ConsolidateFulfillmentFeesActivity extends BaseActivity<ProcessCont
         String feeExpression = fee.getExpression();
         
         if (StringUtils.isNotEmpty(feeExpression)) {
-            synchronized (EXPRESSION_CACHE) {
-                HashMap<String, Object> vars = new HashMap<>();
-                vars.put("fulfillmentGroup", fulfillmentGroup);
-                MvelHelper.evaluateRule(feeExpression, vars, EXPRESSION_CACHE);
-            }
+            HashMap<String, Object> vars = new HashMap<>();
+            vars.put("fulfillmentGroup", fulfillmentGroup);
+            MvelHelper.evaluateRule(feeExpression, vars, EXPRESSION_CACHE);
         }
         
         return appliesToFulfillmentGroup;
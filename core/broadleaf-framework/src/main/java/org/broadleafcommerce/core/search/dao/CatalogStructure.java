@@ -19,9 +19,14 @@ package org.broadleafcommerce.core.search.dao;
 
 import java.io.Serializable;
 import java.math.BigDecimal;
-import java.util.HashMap;
-import java.util.List;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.Map;
+import java.util.NoSuchElementException;
 import java.util.Set;
 
 /**
@@ -29,42 +34,666 @@ import java.util.Set;
  * <p>
  * (1) All the immediate parent categories for a given product
  * (2) All the immediate parent categories for a give category and
- * (3) All the child products for a given category
+ * (3) The display order of a product within each of its parent categories
+ * </p>
+ * <p>
+ * A single instance is filled page by page over the course of an entire reindex, so everything is kept in primitive,
+ * open-addressing hash tables rather than maps of boxed ids: parent ids are stored as {@code long[]}, and display orders
+ * are stored as longs, scaled by {@link #DISPLAY_ORDER_SCALE}, under the category/product id pair. Use
+ * {@link #getMemoryFootprint()} or {@link #toString()} to see how much memory the structure is holding on to.
  * </p>
  *
  * @author Jeff Fischer
  */
 public class CatalogStructure implements Serializable {
 
-    private static final long serialVersionUID = 1L;
+    private static final long serialVersionUID = 2L;
+
+    /**
+     * Display orders are multiplied by this value to keep up to 6 decimals when they are stored as longs
+     */
+    public static final long DISPLAY_ORDER_SCALE = 1000000L;
+
+    protected static final long[] NO_IDS = new long[0];
+
+    protected LongArrayMap parentCategoriesByProduct = new LongArrayMap();
+    protected LongArrayMap parentCategoriesByCategory = new LongArrayMap();
+    protected LongPairLongMap displayOrdersByCategoryProduct = new LongPairLongMap();
+
+    public boolean hasParentCategoriesForProduct(Long productId) {
+        return productId != null && parentCategoriesByProduct.containsKey(productId);
+    }
+
+    /**
+     * @return the ids of the immediate parent categories of the product, or null if the product hasn't been added
+     */
+    public long[] getParentCategoryIdsByProduct(Long productId) {
+        return productId == null ? null : parentCategoriesByProduct.get(productId);
+    }
+
+    public void putParentCategoriesForProduct(Long productId, Collection<Long> categoryIds) {
+        parentCategoriesByProduct.put(productId, toIdArray(categoryIds));
+    }
+
+    public boolean hasParentCategoriesForCategory(Long categoryId) {
+        return categoryId != null && parentCategoriesByCategory.containsKey(categoryId);
+    }
+
+    /**
+     * @return the ids of the immediate parent categories of the category, which is empty if the category hasn't been
+     * added or has no parents
+     */
+    public long[] getParentCategoryIdsByCategory(Long categoryId) {
+        long[] parents = categoryId == null ? null : parentCategoriesByCategory.get(categoryId);
+        return parents == null ? NO_IDS : parents;
+    }
+
+    public void putParentCategoriesForCategory(Long categoryId, Collection<Long> parentCategoryIds) {
+        parentCategoriesByCategory.put(categoryId, toIdArray(parentCategoryIds));
+    }
+
+    /**
+     * @return the display order of the product in the category multiplied by {@link #DISPLAY_ORDER_SCALE}, or null if
+     * there is none
+     */
+    public Long getDisplayOrder(Long categoryId, Long productId) {
+        if (categoryId == null || productId == null) {
+            return null;
+        }
+        return displayOrdersByCategoryProduct.get(categoryId, productId);
+    }
+
+    public void putDisplayOrder(Long categoryId, Long productId, BigDecimal displayOrder) {
+        if (categoryId == null || productId == null || displayOrder == null) {
+            return;
+        }
+        displayOrdersByCategoryProduct.put(categoryId, productId,
+                displayOrder.multiply(BigDecimal.valueOf(DISPLAY_ORDER_SCALE)).longValue());
+    }
 
-    protected Map<Long, Set<Long>> parentCategoriesByProduct = new HashMap<Long, Set<Long>>();
-    protected Map<Long, Set<Long>> parentCategoriesByCategory = new HashMap<Long, Set<Long>>();
-    protected Map<Long, List<Long>> productsByCategory = new HashMap<Long, List<Long>>();
-    protected Map<String, BigDecimal> displayOrdersByCategoryProduct = new HashMap<String, BigDecimal>();
+    public int getProductCount() {
+        return parentCategoriesByProduct.size();
+    }
+
+    public int getCategoryCount() {
+        return parentCategoriesByCategory.size();
+    }
+
+    public int getDisplayOrderCount() {
+        return displayOrdersByCategoryProduct.size();
+    }
+
+    /**
+     * @return an estimate, in bytes, of the heap held by this structure
+     */
+    public long getMemoryFootprint() {
+        return parentCategoriesByProduct.getMemoryFootprint() + parentCategoriesByCategory.getMemoryFootprint()
+                + displayOrdersByCategoryProduct.getMemoryFootprint();
+    }
 
+    /**
+     * @deprecated boxes on every access; use {@link #getParentCategoryIdsByProduct(Long)} and
+     * {@link #putParentCategoriesForProduct(Long, Collection)}. The returned map is a live view that writes through to
+     * this structure, but keys cannot be removed from it.
+     */
+    @Deprecated
     public Map<Long, Set<Long>> getParentCategoriesByProduct() {
-        return parentCategoriesByProduct;
+        return new ParentCategoriesView(parentCategoriesByProduct);
     }
 
+    /**
+     * @deprecated use {@link #putParentCategoriesForProduct(Long, Collection)}
+     */
+    @Deprecated
     public void setParentCategoriesByProduct(Map<Long, Set<Long>> parentCategoriesByProduct) {
-        this.parentCategoriesByProduct = parentCategoriesByProduct;
+        this.parentCategoriesByProduct = new LongArrayMap();
+        putAllSkippingNullKeys(getParentCategoriesByProduct(), parentCategoriesByProduct);
     }
 
+    /**
+     * @deprecated boxes on every access; use {@link #getParentCategoryIdsByCategory(Long)} and
+     * {@link #putParentCategoriesForCategory(Long, Collection)}. The returned map is a live view that writes through to
+     * this structure, but keys cannot be removed from it.
+     */
+    @Deprecated
     public Map<Long, Set<Long>> getParentCategoriesByCategory() {
-        return parentCategoriesByCategory;
+        return new ParentCategoriesView(parentCategoriesByCategory);
     }
 
+    /**
+     * @deprecated use {@link #putParentCategoriesForCategory(Long, Collection)}
+     */
+    @Deprecated
     public void setParentCategoriesByCategory(Map<Long, Set<Long>> parentCategoriesByCategory) {
-        this.parentCategoriesByCategory = parentCategoriesByCategory;
+        this.parentCategoriesByCategory = new LongArrayMap();
+        putAllSkippingNullKeys(getParentCategoriesByCategory(), parentCategoriesByCategory);
     }
 
+    /**
+     * @deprecated boxes on every access; use {@link #getDisplayOrder(Long, Long)} and
+     * {@link #putDisplayOrder(Long, Long, BigDecimal)}. The returned map is a live view, keyed by
+     * {@code "categoryId-productId"}, that writes through to this structure, but keys cannot be removed from it. Its
+     * values are the stored display orders, so they carry 6 decimals.
+     */
+    @Deprecated
     public Map<String, BigDecimal> getDisplayOrdersByCategoryProduct() {
-        return displayOrdersByCategoryProduct;
+        return new DisplayOrdersView();
     }
 
+    /**
+     * @deprecated use {@link #putDisplayOrder(Long, Long, BigDecimal)}
+     */
+    @Deprecated
     public void setDisplayOrdersByCategoryProduct(Map<String, BigDecimal> displayOrdersByCategoryProduct) {
-        this.displayOrdersByCategoryProduct = displayOrdersByCategoryProduct;
+        this.displayOrdersByCategoryProduct = new LongPairLongMap();
+        putAllSkippingNullKeys(getDisplayOrdersByCategoryProduct(), displayOrdersByCategoryProduct);
+    }
+
+    @Override
+    public String toString() {
+        return "CatalogStructure[products=" + getProductCount() + ", categories=" + getCategoryCount()
+                + ", displayOrders=" + getDisplayOrderCount() + ", approximateBytes=" + getMemoryFootprint() + "]";
+    }
+
+    protected static long[] toIdArray(Collection<Long> ids) {
+        if (ids == null || ids.isEmpty()) {
+            return NO_IDS;
+        }
+        long[] result = new long[ids.size()];
+        int size = 0;
+        for (Long id : ids) {
+            if (id != null) {
+                result[size++] = id;
+            }
+        }
+        return size == result.length ? result : Arrays.copyOf(result, size);
+    }
+
+    protected static <K, V> void putAllSkippingNullKeys(Map<K, V> target, Map<K, V> source) {
+        if (source == null) {
+            return;
+        }
+        for (Map.Entry<K, V> entry : source.entrySet()) {
+            if (entry.getKey() != null) {
+                target.put(entry.getKey(), entry.getValue());
+            }
+        }
+    }
+
+    /**
+     * @return the category and product ids of a legacy {@code "categoryId-productId"} display order key, or null if it
+     * isn't one
+     */
+    public static long[] parseDisplayOrderKey(String displayOrderKey) {
+        if (displayOrderKey == null) {
+            return null;
+        }
+        int separator = displayOrderKey.indexOf('-', 1);
+        if (separator < 0) {
+            return null;
+        }
+        try {
+            return new long[] { Long.parseLong(displayOrderKey.substring(0, separator)),
+                    Long.parseLong(displayOrderKey.substring(separator + 1)) };
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    protected static int mix(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    protected static int tableSizeFor(int expected) {
+        int capacity = 16;
+        while (capacity * 3 < expected * 4) {
+            capacity <<= 1;
+        }
+        return capacity;
+    }
+
+    /**
+     * Open-addressing hash table from a long id to a {@code long[]}, using linear probing. A null value marks an empty
+     * slot; keys are never removed.
+     */
+    protected static class LongArrayMap implements Serializable {
+
+        private static final long serialVersionUID = 1L;
+
+        protected long[] keys = new long[16];
+        protected long[][] values = new long[16][];
+        protected int size;
+
+        public int size() {
+            return size;
+        }
+
+        public boolean containsKey(long key) {
+            return values[indexOf(key)] != null;
+        }
+
+        public long[] get(long key) {
+            return values[indexOf(key)];
+        }
+
+        public void put(long key, long[] value) {
+            int index = indexOf(key);
+            if (values[index] == null) {
+                if ((size + 1) * 4 > keys.length * 3) {
+                    resize(keys.length << 1);
+                    index = indexOf(key);
+                }
+                keys[index] = key;
+                size++;
+            }
+            values[index] = value == null ? NO_IDS : value;
+        }
+
+        protected int indexOf(long key) {
+            int mask = keys.length - 1;
+            int index = mix(key) & mask;
+            while (values[index] != null && keys[index] != key) {
+                index = (index + 1) & mask;
+            }
+            return index;
+        }
+
+        protected void resize(int capacity) {
+            long[] oldKeys = keys;
+            long[][] oldValues = values;
+            keys = new long[capacity];
+            values = new long[capacity][];
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldValues[i] != null) {
+                    int index = indexOf(oldKeys[i]);
+                    keys[index] = oldKeys[i];
+                    values[index] = oldValues[i];
+                }
+            }
+        }
+
+        public long getMemoryFootprint() {
+            // key and reference per slot, plus an array header and the ids for every entry
+            long bytes = 32L + keys.length * 12L;
+            for (long[] value : values) {
+                if (value != null && value != NO_IDS) {
+                    bytes += 16L + value.length * 8L;
+                }
+            }
+            return bytes;
+        }
+
+        public long[] keys() {
+            long[] result = new long[size];
+            int count = 0;
+            for (int i = 0; i < keys.length; i++) {
+                if (values[i] != null) {
+                    result[count++] = keys[i];
+                }
+            }
+            return result;
+        }
+    }
+
+    /**
+     * Open-addressing hash table from a pair of long ids to a long, using linear probing. Both ids of a slot are kept
+     * next to each other in a single array.
+     */
+    protected static class LongPairLongMap implements Serializable {
+
+        private static final long serialVersionUID = 1L;
+
+        protected long[] keys = new long[32];
+        protected long[] values = new long[16];
+        protected boolean[] used = new boolean[16];
+        protected int size;
+
+        public int size() {
+            return size;
+        }
+
+        public Long get(long first, long second) {
+            int index = indexOf(first, second);
+            return used[index] ? values[index] : null;
+        }
+
+        public void put(long first, long second, long value) {
+            int index = indexOf(first, second);
+            if (!used[index]) {
+                if ((size + 1) * 4 > used.length * 3) {
+                    resize(used.length << 1);
+                    index = indexOf(first, second);
+                }
+                keys[index << 1] = first;
+                keys[(index << 1) + 1] = second;
+                used[index] = true;
+                size++;
+            }
+            values[index] = value;
+        }
+
+        protected int indexOf(long first, long second) {
+            int mask = used.length - 1;
+            int index = (mix(first) * 31 + mix(second)) & mask;
+            while (used[index] && (keys[index << 1] != first || keys[(index << 1) + 1] != second)) {
+                index = (index + 1) & mask;
+            }
+            return index;
+        }
+
+        protected void resize(int capacity) {
+            long[] oldKeys = keys;
+            long[] oldValues = values;
+            boolean[] oldUsed = used;
+            keys = new long[capacity << 1];
+            values = new long[capacity];
+            used = new boolean[capacity];
+            for (int i = 0; i < oldUsed.length; i++) {
+                if (oldUsed[i]) {
+                    int index = indexOf(oldKeys[i << 1], oldKeys[(i << 1) + 1]);
+                    keys[index << 1] = oldKeys[i << 1];
+                    keys[(index << 1) + 1] = oldKeys[(i << 1) + 1];
+                    values[index] = oldValues[i];
+                    used[index] = true;
+                }
+            }
+        }
+
+        public long getMemoryFootprint() {
+            return 48L + used.length * 25L;
+        }
+
+        /**
+         * @return the key pairs, two adjacent longs per entry
+         */
+        public long[] keys() {
+            long[] result = new long[size << 1];
+            int count = 0;
+            for (int i = 0; i < used.length; i++) {
+                if (used[i]) {
+                    result[count++] = keys[i << 1];
+                    result[count++] = keys[(i << 1) + 1];
+                }
+            }
+            return result;
+        }
+    }
+
+    /**
+     * Boxed, write-through view of a {@link LongArrayMap}, for the deprecated map accessors
+     */
+    protected static class ParentCategoriesView extends AbstractMap<Long, Set<Long>> {
+
+        protected final LongArrayMap map;
+
+        public ParentCategoriesView(LongArrayMap map) {
+            this.map = map;
+        }
+
+        @Override
+        public int size() {
+            return map.size();
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            return key instanceof Long && map.containsKey((Long) key);
+        }
+
+        @Override
+        public Set<Long> get(Object key) {
+            return containsKey(key) ? new IdSetView(map, (Long) key) : null;
+        }
+
+        @Override
+        public Set<Long> put(Long key, Set<Long> value) {
+            long[] previous = map.get(key);
+            map.put(key, toIdArray(value));
+            return previous == null ? null : toIdSet(previous);
+        }
+
+        @Override
+        public Set<Entry<Long, Set<Long>>> entrySet() {
+            return new AbstractSet<Entry<Long, Set<Long>>>() {
+
+                @Override
+                public int size() {
+                    return map.size();
+                }
+
+                @Override
+                public Iterator<Entry<Long, Set<Long>>> iterator() {
+                    final long[] keys = map.keys();
+                    return new Iterator<Entry<Long, Set<Long>>>() {
+
+                        protected int index;
+
+                        @Override
+                        public boolean hasNext() {
+                            return index < keys.length;
+                        }
+
+                        @Override
+                        public Entry<Long, Set<Long>> next() {
+                            if (!hasNext()) {
+                                throw new NoSuchElementException();
+                            }
+                            final Long key = keys[index++];
+                            return new SimpleEntry<Long, Set<Long>>(key, new IdSetView(map, key)) {
+
+                                private static final long serialVersionUID = 1L;
+
+                                @Override
+                                public Set<Long> setValue(Set<Long> value) {
+                                    super.setValue(value);
+                                    return put(key, value);
+                                }
+                            };
+                        }
+
+                        @Override
+                        public void remove() {
+                            throw new UnsupportedOperationException("Keys cannot be removed from a CatalogStructure");
+                        }
+                    };
+                }
+            };
+        }
+
+        protected static Set<Long> toIdSet(long[] ids) {
+            Set<Long> result = new LinkedHashSet<Long>();
+            for (long id : ids) {
+                result.add(id);
+            }
+            return result;
+        }
+    }
+
+    /**
+     * Boxed, write-through view of the ids stored under one key of a {@link LongArrayMap}
+     */
+    protected static class IdSetView extends AbstractSet<Long> {
+
+        protected final LongArrayMap map;
+        protected final long key;
+
+        public IdSetView(LongArrayMap map, long key) {
+            this.map = map;
+            this.key = key;
+        }
+
+        protected long[] getIds() {
+            long[] ids = map.get(key);
+            return ids == null ? NO_IDS : ids;
+        }
+
+        @Override
+        public int size() {
+            return getIds().length;
+        }
+
+        @Override
+        public boolean contains(Object o) {
+            return o instanceof Long && indexOf(getIds(), (Long) o) >= 0;
+        }
+
+        @Override
+        public boolean add(Long id) {
+            long[] ids = getIds();
+            if (id == null || indexOf(ids, id) >= 0) {
+                return false;
+            }
+            long[] added = Arrays.copyOf(ids, ids.length + 1);
+            added[ids.length] = id;
+            map.put(key, added);
+            return true;
+        }
+
+        @Override
+        public boolean remove(Object o) {
+            long[] ids = getIds();
+            int index = o instanceof Long ? indexOf(ids, (Long) o) : -1;
+            if (index < 0) {
+                return false;
+            }
+            long[] removed = new long[ids.length - 1];
+            System.arraycopy(ids, 0, removed, 0, index);
+            System.arraycopy(ids, index + 1, removed, index, ids.length - index - 1);
+            map.put(key, removed);
+            return true;
+        }
+
+        @Override
+        public Iterator<Long> iterator() {
+            final long[] ids = getIds();
+            return new Iterator<Long>() {
+
+                protected int index;
+
+                @Override
+                public boolean hasNext() {
+                    return index < ids.length;
+                }
+
+                @Override
+                public Long next() {
+                    if (!hasNext()) {
+                        throw new NoSuchElementException();
+                    }
+                    return ids[index++];
+                }
+
+                @Override
+                public void remove() {
+                    if (index == 0) {
+                        throw new IllegalStateException();
+                    }
+                    IdSetView.this.remove(ids[index - 1]);
+                }
+            };
+        }
+
+        protected static int indexOf(long[] ids, long id) {
+            for (int i = 0; i < ids.length; i++) {
+                if (ids[i] == id) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+    }
+
+    /**
+     * Boxed, write-through view of the display orders, keyed by {@code "categoryId-productId"}, for the deprecated map
+     * accessors
+     */
+    protected class DisplayOrdersView extends AbstractMap<String, BigDecimal> {
+
+        @Override
+        public int size() {
+            return displayOrdersByCategoryProduct.size();
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            return get(key) != null;
+        }
+
+        @Override
+        public BigDecimal get(Object key) {
+            long[] ids = key instanceof String ? parseDisplayOrderKey((String) key) : null;
+            if (ids == null) {
+                return null;
+            }
+            return toBigDecimal(displayOrdersByCategoryProduct.get(ids[0], ids[1]));
+        }
+
+        @Override
+        public BigDecimal put(String key, BigDecimal value) {
+            long[] ids = parseDisplayOrderKey(key);
+            if (ids == null) {
+                throw new IllegalArgumentException("Display orders are keyed by categoryId-productId, not " + key);
+            }
+            BigDecimal previous = get(key);
+            putDisplayOrder(ids[0], ids[1], value);
+            return previous;
+        }
+
+        @Override
+        public Set<Entry<String, BigDecimal>> entrySet() {
+            return new AbstractSet<Entry<String, BigDecimal>>() {
+
+                @Override
+                public int size() {
+                    return displayOrdersByCategoryProduct.size();
+                }
+
+                @Override
+                public Iterator<Entry<String, BigDecimal>> iterator() {
+                    final long[] keys = displayOrdersByCategoryProduct.keys();
+                    return new Iterator<Entry<String, BigDecimal>>() {
+
+                        protected int index;
+
+                        @Override
+                        public boolean hasNext() {
+                            return index < keys.length;
+                        }
+
+                        @Override
+                        public Entry<String, BigDecimal> next() {
+                            if (!hasNext()) {
+                                throw new NoSuchElementException();
+                            }
+                            long categoryId = keys[index++];
+                            long productId = keys[index++];
+                            final String key = categoryId + "-" + productId;
+                            BigDecimal value = toBigDecimal(displayOrdersByCategoryProduct.get(categoryId, productId));
+                            return new SimpleEntry<String, BigDecimal>(key, value) {
+
+                                private static final long serialVersionUID = 1L;
+
+                                @Override
+                                public BigDecimal setValue(BigDecimal value) {
+                                    super.setValue(value);
+                                    return put(key, value);
+                                }
+                            };
+                        }
+
+                        @Override
+                        public void remove() {
+                            throw new UnsupportedOperationException("Keys cannot be removed from a CatalogStructure");
+                        }
+                    };
+                }
+            };
+        }
+
+        protected BigDecimal toBigDecimal(Long scaled) {
+            return scaled == null ? null : BigDecimal.valueOf(scaled, 6);
+        }
     }
 
 }
@@ -85,7 +85,7 @@ public class SolrIndexDaoImpl implements SolrIndexDao {
                     if (reverse.containsKey(sandBoxProductVal)) {
                         sandBoxProductVal = reverse.get(sandBoxProductVal);
                     }
-                    if (!catalogStructure.getParentCategoriesByProduct().containsKey(sandBoxProductVal)) {
+                    if (!catalogStructure.hasParentCategoriesForProduct(sandBoxProductVal)) {
                         if (!parentCategoriesByProduct.containsKey(sandBoxProductVal)) {
                             parentCategoriesByProduct.put(sandBoxProductVal, new HashSet<Long>());
                         }
@@ -98,13 +98,13 @@ public class SolrIndexDaoImpl implements SolrIndexDao {
                         parentCategoriesByProduct.get(sandBoxProductVal).add(sandBoxVal);
                     }
 
-                    // Cache the display order bigdecimals
+                    // Cache the display order, scaled to a long
                     BigDecimal displayOrder = (item.getDisplayOrder() == null) ? new BigDecimal("100.00000") : item.getDisplayOrder();
-                    catalogStructure.getDisplayOrdersByCategoryProduct().put(item.getCategory() + "-" + item.getProduct(), displayOrder);
+                    catalogStructure.putDisplayOrder(item.getCategory(), item.getProduct(), displayOrder);
                 }
                 for (Map.Entry<Long, Set<Long>> entry : parentCategoriesByProduct.entrySet()) {
                     for (Long categoryId : entry.getValue()) {
-                        if (!catalogStructure.getParentCategoriesByCategory().containsKey(categoryId)) {
+                        if (!catalogStructure.hasParentCategoriesForCategory(categoryId)) {
                             Set<Long> hierarchy = new HashSet<>();
                             parentCategoriesByCategory.put(categoryId, hierarchy);
                         }
@@ -114,8 +114,15 @@ public class SolrIndexDaoImpl implements SolrIndexDao {
                 pos = (count * batchSize) < products.length ? (count * batchSize) : products.length;
             }
             readFullCategoryHierarchy(parentCategoriesByCategory, new HashSet<Long>());
-            catalogStructure.getParentCategoriesByProduct().putAll(parentCategoriesByProduct);
-            catalogStructure.getParentCategoriesByCategory().putAll(parentCategoriesByCategory);
+            // Only this page's products and categories are kept in boxed maps; fold them into the primitive structure
+            for (Map.Entry<Long, Set<Long>> entry : parentCategoriesByProduct.entrySet()) {
+                catalogStructure.putParentCategoriesForProduct(entry.getKey(), entry.getValue());
+            }
+            for (Map.Entry<Long, Set<Long>> entry : parentCategoriesByCategory.entrySet()) {
+                if (!catalogStructure.hasParentCategoriesForCategory(entry.getKey())) {
+                    catalogStructure.putParentCategoriesForCategory(entry.getKey(), entry.getValue());
+                }
+            }
         } finally {
             context.setInternalIgnoreFilters(oldIgnoreFilters);
         }
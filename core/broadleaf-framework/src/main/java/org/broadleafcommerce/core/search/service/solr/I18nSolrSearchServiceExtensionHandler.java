@@ -18,16 +18,20 @@
 package org.broadleafcommerce.core.search.service.solr;
 
 import org.broadleafcommerce.common.extension.ExtensionResultStatusType;
+import org.broadleafcommerce.common.i18n.service.TranslationConsiderationContext;
 import org.broadleafcommerce.common.i18n.service.TranslationService;
 import org.broadleafcommerce.common.locale.domain.Locale;
 import org.broadleafcommerce.common.locale.service.LocaleService;
 import org.broadleafcommerce.common.util.BLCSystemProperty;
 import org.broadleafcommerce.common.web.BroadleafRequestContext;
+import org.broadleafcommerce.core.catalog.domain.Product;
+import org.broadleafcommerce.core.catalog.domain.Sku;
 import org.broadleafcommerce.core.search.domain.Field;
 import org.broadleafcommerce.core.search.domain.IndexField;
 import org.broadleafcommerce.core.search.domain.solr.FieldType;
 import org.springframework.stereotype.Service;
 
+import java.util.ArrayList;
 import java.util.List;
 
 import javax.annotation.PostConstruct;
@@ -68,7 +72,7 @@ public class I18nSolrSearchServiceExtensionHandler extends AbstractSolrSearchSer
             }
         }
         if (shouldAdd) {
-            extensionManager.getHandlers().add(this);
+            extensionManager.registerHandler(this);
         }
     }
 
@@ -105,6 +109,27 @@ public class I18nSolrSearchServiceExtensionHandler extends AbstractSolrSearchSer
         return ExtensionResultStatusType.NOT_HANDLED;
     }
 
+    /**
+     * Prefetches the translations of the products and their default skus in the current search result page, so that
+     * rendering their translated fields does not look each one up separately.
+     */
+    @Override
+    public ExtensionResultStatusType batchFetchCatalogData(List<Product> products) {
+        if (products == null || products.isEmpty() || !TranslationConsiderationContext.hasTranslation()) {
+            return ExtensionResultStatusType.NOT_HANDLED;
+        }
+        List<Object> entities = new ArrayList<Object>(products.size() * 2);
+        for (Product product : products) {
+            entities.add(product);
+            Sku defaultSku = product.getDefaultSku();
+            if (defaultSku != null) {
+                entities.add(defaultSku);
+            }
+        }
+        translationService.prefetchTranslations(entities);
+        return ExtensionResultStatusType.HANDLED_CONTINUE;
+    }
+
     @Override
     public int getPriority() {
         return 1000;
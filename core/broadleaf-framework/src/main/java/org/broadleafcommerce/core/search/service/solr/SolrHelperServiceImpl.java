@@ -140,6 +140,9 @@ public class SolrHelperServiceImpl implements SolrHelperService {
     @Resource(name = "blGenericEntityDao")
     protected GenericEntityDao genericEntityDao;
 
+    @Resource(name = "blSolrSearchResultCache")
+    protected SolrSearchResultCache searchResultCache;
+
     /**
      * This should only ever be called when using the Solr reindex service to do a full reindex.
      * @throws SecurityException
@@ -178,6 +181,7 @@ public class SolrHelperServiceImpl implements SolrHelperService {
                 //Essentially "swap cores" here by reassigning the aliases
                 CollectionAdminRequest.createAlias(queryAlias, reindexCollectionName).process(primaryCloudClient);
                 CollectionAdminRequest.createAlias(reindexAlias, primaryCollectionName).process(reindexCloudClient);
+                searchResultCache.invalidateAll();
             } catch (Exception e) {
                 LOG.error("An exception occured swapping cores.", e);
                 throw new ServiceException("Unable to swap SolrCloud collections after a full reindex.", e);
@@ -199,6 +203,7 @@ public class SolrHelperServiceImpl implements SolrHelperService {
 
                     try {
                         solrConfiguration.getAdminServer().request(car);
+                        searchResultCache.invalidateAll();
                     } catch (Exception e) {
                         LOG.error(e);
                         throw new ServiceException("Unable to swap cores", e);
@@ -0,0 +1,84 @@
+/*
+ * #%L
+ * BroadleafCommerce Framework
+ * %%
+ * Copyright (C) 2009 - 2016 Broadleaf Commerce
+ * %%
+ * Licensed under the Broadleaf Fair Use License Agreement, Version 1.0
+ * (the "Fair Use License" located  at http://license.broadleafcommerce.org/fair_use_license-1.0.txt)
+ * unless the restrictions on use therein are violated and require payment to Broadleaf in which case
+ * the Broadleaf End User License Agreement (EULA), Version 1.1
+ * (the "Commercial License" located at http://license.broadleafcommerce.org/commercial_license-1.1.txt)
+ * shall apply.
+ * 
+ * Alternatively, the Commercial License may be replaced with a mutually agreed upon license (the "Custom License")
+ * between you and Broadleaf Commerce. You may not use this file except in compliance with the applicable license.
+ * #L%
+ */
+package org.broadleafcommerce.core.search.service.solr;
+
+import org.apache.solr.client.solrj.SolrQuery;
+import org.apache.solr.client.solrj.response.QueryResponse;
+
+/**
+ * Caches the responses of catalog searches in the application tier so that repeated browses of the same category page,
+ * with the same filters, sort and paging, don't have to go back to Solr. Since searches only request the indexable id
+ * field, a cached response holds nothing more than the page of product ids, the total number of results and the facet
+ * counts; products are still read through the {@link org.broadleafcommerce.core.catalog.dao.ProductDao} on every hit.
+ * 
+ * Cached responses are dropped whenever this node commits to the index or swaps the active cores. Changes committed
+ * by other nodes are picked up once cached responses expire.
+ * 
+ * @see SolrSearchServiceImpl
+ */
+public interface SolrSearchResultCache {
+
+    /**
+     * @return whether or not search responses should be cached at all
+     */
+    public boolean isEnabled();
+
+    /**
+     * Builds the key under which the response to the given, fully built query is cached. Parameters whose order does
+     * not affect the results (such as filter queries and facet fields) are sorted, and the current locale, site and
+     * sandbox are included.
+     * 
+     * @param collection the collection the query is executed against
+     * @param query the query that is about to be executed
+     * @return the cache key
+     */
+    public String buildCacheKey(String collection, SolrQuery query);
+
+    /**
+     * The generation is incremented every time the cache is invalidated. Callers should read it before executing the
+     * query and hand it back to {@link #putResponse(String, QueryResponse, long)} so that a response read before an
+     * index commit can't be cached after it.
+     * 
+     * @return the current generation of the cache
+     */
+    public long getGeneration();
+
+    /**
+     * Returns a copy of the cached response. Each call returns a new response, so callers may modify it without
+     * affecting later hits.
+     * 
+     * @param key the key returned by {@link #buildCacheKey(String, SolrQuery)}
+     * @return the cached response, or null if there isn't one
+     */
+    public QueryResponse getResponse(String key);
+
+    /**
+     * Caches a copy of the given response unless the cache has been invalidated since the given generation was read.
+     * 
+     * @param key the key returned by {@link #buildCacheKey(String, SolrQuery)}
+     * @param response the response that Solr returned for the query
+     * @param generation the value of {@link #getGeneration()} before the query was executed
+     */
+    public void putResponse(String key, QueryResponse response, long generation);
+
+    /**
+     * Drops every cached response. This is called after changes are committed to the index and after cores are swapped.
+     */
+    public void invalidateAll();
+
+}
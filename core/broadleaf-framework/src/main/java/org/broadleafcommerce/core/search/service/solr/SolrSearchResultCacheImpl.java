@@ -0,0 +1,238 @@
+/*
+ * #%L
+ * BroadleafCommerce Framework
+ * %%
+ * Copyright (C) 2009 - 2016 Broadleaf Commerce
+ * %%
+ * Licensed under the Broadleaf Fair Use License Agreement, Version 1.0
+ * (the "Fair Use License" located  at http://license.broadleafcommerce.org/fair_use_license-1.0.txt)
+ * unless the restrictions on use therein are violated and require payment to Broadleaf in which case
+ * the Broadleaf End User License Agreement (EULA), Version 1.1
+ * (the "Commercial License" located at http://license.broadleafcommerce.org/commercial_license-1.1.txt)
+ * shall apply.
+ * 
+ * Alternatively, the Commercial License may be replaced with a mutually agreed upon license (the "Custom License")
+ * between you and Broadleaf Commerce. You may not use this file except in compliance with the applicable license.
+ * #L%
+ */
+package org.broadleafcommerce.core.search.service.solr;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.solr.client.solrj.SolrQuery;
+import org.apache.solr.client.solrj.response.QueryResponse;
+import org.apache.solr.common.params.CommonParams;
+import org.apache.solr.common.params.FacetParams;
+import org.apache.solr.common.util.JavaBinCodec;
+import org.apache.solr.common.util.NamedList;
+import org.broadleafcommerce.common.locale.domain.Locale;
+import org.broadleafcommerce.common.site.domain.Site;
+import org.broadleafcommerce.common.web.BroadleafRequestContext;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedOperation;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.stereotype.Service;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Default {@link SolrSearchResultCache} backed by a size bounded Guava cache whose entries expire a fixed number of
+ * seconds after they are written. Responses are held in Solr's javabin format, and every hit decodes a new
+ * {@link QueryResponse}, so callers never share the objects of a cached response.
+ */
+@Service("blSolrSearchResultCache")
+@ManagedResource(objectName = "org.broadleafcommerce:name=SolrSearchResultCache", description = "Solr Search Result Cache", currencyTimeLimit = 15)
+public class SolrSearchResultCacheImpl implements SolrSearchResultCache {
+
+    private static final Log LOG = LogFactory.getLog(SolrSearchResultCacheImpl.class);
+
+    /**
+     * Parameters that may be repeated and whose order does not change the response
+     */
+    protected static final Set<String> UNORDERED_PARAMETERS = new TreeSet<String>(Arrays.asList(CommonParams.FQ,
+            FacetParams.FACET_FIELD, FacetParams.FACET_QUERY));
+
+    @Value("${solr.search.result.cache.enabled:true}")
+    protected boolean enabled = true;
+
+    @Value("${solr.search.result.cache.maxElements:5000}")
+    protected long maxElements = 5000;
+
+    @Value("${solr.search.result.cache.ttlSeconds:60}")
+    protected long ttlSeconds = 60;
+
+    protected final AtomicLong generation = new AtomicLong();
+    protected final LongAdder invalidations = new LongAdder();
+    protected volatile Cache<String, byte[]> cache;
+
+    @Override
+    public boolean isEnabled() {
+        return enabled && maxElements > 0 && ttlSeconds > 0;
+    }
+
+    @Override
+    public String buildCacheKey(String collection, SolrQuery query) {
+        StringBuilder key = new StringBuilder(256);
+        key.append(collection);
+
+        BroadleafRequestContext context = BroadleafRequestContext.getBroadleafRequestContext();
+        if (context != null) {
+            Locale locale = context.getLocale();
+            Site site = context.getNonPersistentSite();
+            key.append('|').append(locale == null ? null : locale.getLocaleCode());
+            key.append('|').append(site == null ? null : site.getId());
+            key.append('|').append(context.getSandBoxId());
+        }
+
+        for (String name : new TreeSet<String>(query.getParameterNames())) {
+            String[] values = query.getParams(name);
+            if (values == null) {
+                continue;
+            }
+            if (values.length > 1 && UNORDERED_PARAMETERS.contains(name)) {
+                values = values.clone();
+                Arrays.sort(values);
+            }
+            key.append('\n').append(name);
+            for (String value : values) {
+                key.append('\u0001').append(value);
+            }
+        }
+        return key.toString();
+    }
+
+    @Override
+    public long getGeneration() {
+        return generation.get();
+    }
+
+    @Override
+    public QueryResponse getResponse(String key) {
+        Cache<String, byte[]> cache = getCache();
+        byte[] encoded = cache.getIfPresent(key);
+        if (encoded == null) {
+            return null;
+        }
+        try {
+            return decodeResponse(encoded);
+        } catch (IOException e) {
+            LOG.warn("Unable to read a cached search response, it will be fetched from Solr again", e);
+            cache.invalidate(key);
+            return null;
+        }
+    }
+
+    @Override
+    public void putResponse(String key, QueryResponse response, long generation) {
+        if (response == null || response.getResponse() == null || generation != this.generation.get()) {
+            return;
+        }
+        byte[] encoded;
+        try {
+            encoded = encodeResponse(response);
+        } catch (IOException e) {
+            LOG.warn("Unable to cache a search response", e);
+            return;
+        }
+        Cache<String, byte[]> cache = getCache();
+        cache.put(key, encoded);
+        if (generation != this.generation.get()) {
+            // The index changed while we were caching; the response may already be stale
+            cache.invalidate(key);
+        }
+    }
+
+    @Override
+    @ManagedOperation(description = "Drops every cached search response")
+    public void invalidateAll() {
+        generation.incrementAndGet();
+        invalidations.increment();
+        Cache<String, byte[]> cache = this.cache;
+        if (cache != null) {
+            cache.invalidateAll();
+        }
+        if (LOG.isDebugEnabled()) {
+            LOG.debug("Invalidated the Solr search result cache");
+        }
+    }
+
+    protected byte[] encodeResponse(QueryResponse response) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(1024);
+        new JavaBinCodec().marshal(response.getResponse(), out);
+        return out.toByteArray();
+    }
+
+    @SuppressWarnings("unchecked")
+    protected QueryResponse decodeResponse(byte[] encoded) throws IOException {
+        NamedList<Object> response = (NamedList<Object>) new JavaBinCodec().unmarshal(new ByteArrayInputStream(encoded));
+        return new QueryResponse(response, null);
+    }
+
+    protected Cache<String, byte[]> getCache() {
+        Cache<String, byte[]> cache = this.cache;
+        if (cache == null) {
+            synchronized (this) {
+                cache = this.cache;
+                if (cache == null) {
+                    cache = CacheBuilder.newBuilder()
+                            .maximumSize(maxElements)
+                            .expireAfterWrite(ttlSeconds, TimeUnit.SECONDS)
+                            .recordStats()
+                            .build();
+                    this.cache = cache;
+                }
+            }
+        }
+        return cache;
+    }
+
+    protected CacheStats getStats() {
+        Cache<String, byte[]> cache = this.cache;
+        return cache == null ? new CacheStats(0, 0, 0, 0, 0, 0) : cache.stats();
+    }
+
+    @ManagedAttribute(description = "The number of searches answered from the cache", currencyTimeLimit = 15)
+    public long getHitCount() {
+        return getStats().hitCount();
+    }
+
+    @ManagedAttribute(description = "The number of searches that had to be sent to Solr", currencyTimeLimit = 15)
+    public long getMissCount() {
+        return getStats().missCount();
+    }
+
+    @ManagedAttribute(description = "The ratio of searches answered from the cache", currencyTimeLimit = 15)
+    public double getHitRate() {
+        return getStats().hitRate();
+    }
+
+    @ManagedAttribute(description = "The number of responses evicted because of the size bound or expiration", currencyTimeLimit = 15)
+    public long getEvictionCount() {
+        return getStats().evictionCount();
+    }
+
+    @ManagedAttribute(description = "The number of times the cache was invalidated by an index commit or core swap", currencyTimeLimit = 15)
+    public long getInvalidationCount() {
+        return invalidations.sum();
+    }
+
+    @ManagedAttribute(description = "The number of cached responses", currencyTimeLimit = 15)
+    public long getSize() {
+        Cache<String, byte[]> cache = this.cache;
+        return cache == null ? 0 : cache.size();
+    }
+
+}
@@ -106,6 +106,9 @@ public class SolrSearchServiceImpl implements SearchService, DisposableBean {
     @Resource(name = "blSolrSearchServiceExtensionManager")
     protected SolrSearchServiceExtensionManager extensionManager;
 
+    @Resource(name = "blSolrSearchResultCache")
+    protected SolrSearchResultCache searchResultCache;
+
     @Autowired
     protected Environment environment;
 
@@ -245,7 +248,7 @@ public class SolrSearchServiceImpl implements SearchService, DisposableBean {
         List<SolrDocument> responseDocuments;
         int numResults = 0;
         try {
-            response = solrConfiguration.getServer().query(solrConfiguration.getQueryCollectionName(), solrQuery, getSolrQueryMethod());
+            response = querySolr(solrQuery);
             responseDocuments = getResponseDocuments(response);
             numResults = (int) response.getResults().getNumFound();
 
@@ -279,6 +282,33 @@ public class SolrSearchServiceImpl implements SearchService, DisposableBean {
         return result;
     }
 
+    /**
+     * Executes the fully built query against the query collection. Unless debug info was requested, responses are
+     * served from and stored in the {@link SolrSearchResultCache}.
+     * 
+     * @param solrQuery
+     * @return the response for the query
+     * @throws SolrServerException
+     * @throws IOException
+     */
+    protected QueryResponse querySolr(SolrQuery solrQuery) throws SolrServerException, IOException {
+        String collection = solrConfiguration.getQueryCollectionName();
+        if (!searchResultCache.isEnabled() || shouldShowDebugQuery()) {
+            return solrConfiguration.getServer().query(collection, solrQuery, getSolrQueryMethod());
+        }
+
+        String cacheKey = searchResultCache.buildCacheKey(collection, solrQuery);
+        QueryResponse response = searchResultCache.getResponse(cacheKey);
+        if (response == null) {
+            long generation = searchResultCache.getGeneration();
+            response = solrConfiguration.getServer().query(collection, solrQuery, getSolrQueryMethod());
+            searchResultCache.putResponse(cacheKey, response, generation);
+        } else if (LOG.isTraceEnabled()) {
+            LOG.trace("Serving search results from the search result cache");
+        }
+        return response;
+    }
+
     protected void filterEmptyFacets(List<SearchFacetDTO> facets) {
         Iterator<SearchFacetDTO> iter = facets.iterator();
         while (iter.hasNext()) {
@@ -20,9 +20,8 @@ package org.broadleafcommerce.core.search.service.solr.index;
 import org.broadleafcommerce.common.extension.ExtensionResultStatusType;
 import org.broadleafcommerce.common.extension.ResultType;
 import org.broadleafcommerce.common.i18n.domain.TranslatedEntity;
-import org.broadleafcommerce.common.i18n.domain.Translation;
-import org.broadleafcommerce.common.i18n.service.TranslationBatchReadCache;
 import org.broadleafcommerce.common.i18n.service.TranslationConsiderationContext;
+import org.broadleafcommerce.common.i18n.service.TranslationPrefetchContext;
 import org.broadleafcommerce.common.i18n.service.TranslationService;
 import org.broadleafcommerce.common.locale.domain.Locale;
 import org.broadleafcommerce.common.locale.service.LocaleService;
@@ -192,13 +191,12 @@ public class I18nSolrIndexServiceExtensionHandler extends AbstractSolrIndexServi
     }
 
     protected void addEntitiesToTranslationCache(List<String> entityIds, TranslatedEntity translatedEntity) {
-        List<Translation> translations = translationService.findAllTranslationEntries(translatedEntity, ResultType.STANDARD, entityIds);
-        TranslationBatchReadCache.addToCache(translations);
+        translationService.prefetchTranslations(translatedEntity, entityIds, ResultType.STANDARD);
     }
 
     @Override
     public ExtensionResultStatusType endBatchEvent(List<? extends Indexable> indexables) {
-        TranslationBatchReadCache.clearCache();
+        TranslationPrefetchContext.removeTranslationPrefetchContext();
         return ExtensionResultStatusType.HANDLED_CONTINUE;
     }
 
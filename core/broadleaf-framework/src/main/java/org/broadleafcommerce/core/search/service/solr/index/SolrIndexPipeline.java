@@ -0,0 +1,346 @@
+/*
+ * #%L
+ * BroadleafCommerce Framework
+ * %%
+ * Copyright (C) 2009 - 2016 Broadleaf Commerce
+ * %%
+ * Licensed under the Broadleaf Fair Use License Agreement, Version 1.0
+ * (the "Fair Use License" located  at http://license.broadleafcommerce.org/fair_use_license-1.0.txt)
+ * unless the restrictions on use therein are violated and require payment to Broadleaf in which case
+ * the Broadleaf End User License Agreement (EULA), Version 1.1
+ * (the "Commercial License" located at http://license.broadleafcommerce.org/commercial_license-1.1.txt)
+ * shall apply.
+ * 
+ * Alternatively, the Commercial License may be replaced with a mutually agreed upon license (the "Custom License")
+ * between you and Broadleaf Commerce. You may not use this file except in compliance with the applicable license.
+ * #L%
+ */
+package org.broadleafcommerce.core.search.service.solr.index;
+
+import org.apache.commons.collections.CollectionUtils;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.solr.client.solrj.SolrClient;
+import org.apache.solr.client.solrj.SolrServerException;
+import org.apache.solr.common.SolrInputDocument;
+import org.broadleafcommerce.common.exception.ServiceException;
+import org.broadleafcommerce.common.util.StopWatch;
+import org.broadleafcommerce.common.util.TransactionUtils;
+import org.broadleafcommerce.common.web.BroadleafRequestContext;
+import org.broadleafcommerce.core.catalog.domain.Indexable;
+import org.broadleafcommerce.core.search.dao.CatalogStructure;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.TransactionStatus;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Executes a {@link SolrIndexOperation} as a pipeline instead of one page at a time on the calling thread.
+ * <p>
+ * A fixed number of builder threads share the keyset cursor of the operation. Each builder reads the next page while
+ * holding the reader lock, which keeps paging strictly ordered by id, then releases the lock and builds the Solr
+ * documents for that page. Every page is read and built inside a transaction owned by the builder thread, so each
+ * builder works against its own EntityManager and its own {@link CatalogStructure} cache.
+ * <p>
+ * Built documents are handed to a single writer thread through a bounded queue. The writer batches them into larger
+ * Solr adds. The bounded queue provides the backpressure: when Solr falls behind, builders block instead of piling
+ * documents up on the heap.
+ *
+ * @see SolrIndexServiceImpl#executeSolrIndexOperation(SolrIndexOperation)
+ */
+public class SolrIndexPipeline {
+
+    private static final Log LOG = LogFactory.getLog(SolrIndexPipeline.class);
+
+    protected static final Collection<SolrInputDocument> END_OF_PAGES = Collections.emptyList();
+
+    protected final SolrIndexServiceImpl indexService;
+    protected final SolrIndexOperation operation;
+    protected final PlatformTransactionManager transactionManager;
+    protected final int pageSize;
+    protected final int builderThreads;
+    protected final int writerBatchSize;
+    protected final BlockingQueue<Collection<SolrInputDocument>> documentQueue;
+
+    protected final Object readLock = new Object();
+    protected Long lastId;
+    protected long remainingNumItemsToIndex;
+    protected int page = 1;
+    protected long totalPages;
+
+    protected final AtomicLong documentsWritten = new AtomicLong();
+    protected volatile Throwable failure;
+
+    public SolrIndexPipeline(SolrIndexServiceImpl indexService, SolrIndexOperation operation,
+            PlatformTransactionManager transactionManager, int pageSize, int builderThreads, int queueCapacity,
+            int writerBatchSize) {
+        this.indexService = indexService;
+        this.operation = operation;
+        this.transactionManager = transactionManager;
+        this.pageSize = pageSize;
+        this.builderThreads = Math.max(1, builderThreads);
+        this.writerBatchSize = Math.max(1, writerBatchSize);
+        this.documentQueue = new ArrayBlockingQueue<>(Math.max(1, queueCapacity));
+    }
+
+    /**
+     * Runs the pipeline to completion. The calling thread only coordinates; it returns once every page has been read,
+     * built and written, or rethrows the first failure raised by any stage.
+     *
+     * @param pack the thread state captured by {@link SolrIndexService#saveState()} on the calling thread
+     * @param numItemsToIndex the result of {@link SolrIndexOperation#countIndexables()}
+     * @param totalPages the number of pages expected, used only for logging
+     */
+    public void execute(final Object[] pack, Long numItemsToIndex, long totalPages) throws ServiceException {
+        this.remainingNumItemsToIndex = numItemsToIndex;
+        this.totalPages = totalPages;
+
+        StopWatch s = new StopWatch();
+        ExecutorService executor = Executors.newFixedThreadPool(builderThreads + 1, new PipelineThreadFactory());
+        try {
+            Future<?> writer = executor.submit(new Callable<Void>() {
+                @Override
+                public Void call() throws Exception {
+                    runWriter();
+                    return null;
+                }
+            });
+
+            List<Future<?>> builders = new ArrayList<>();
+            for (int i = 0; i < builderThreads; i++) {
+                builders.add(executor.submit(new Callable<Void>() {
+                    @Override
+                    public Void call() throws Exception {
+                        runBuilder(pack);
+                        return null;
+                    }
+                }));
+            }
+
+            for (Future<?> builder : builders) {
+                await(builder);
+            }
+            enqueue(END_OF_PAGES);
+            await(writer);
+        } finally {
+            executor.shutdownNow();
+        }
+
+        if (failure != null) {
+            if (failure instanceof ServiceException) {
+                throw (ServiceException) failure;
+            }
+            if (failure instanceof RuntimeException) {
+                throw (RuntimeException) failure;
+            }
+            throw new ServiceException("Could not rebuild index", failure);
+        }
+
+        LOG.info(String.format("Pipelined indexing wrote %s documents using %s builder threads in %s",
+                documentsWritten.get(), builderThreads, s.toLapString()));
+    }
+
+    protected void runBuilder(Object[] pack) throws ServiceException {
+        indexService.restoreState(pack);
+        BroadleafRequestContext context = (BroadleafRequestContext) pack[0];
+        if (context != null) {
+            // Builders must not share mutable request state such as internalIgnoreFilters
+            BroadleafRequestContext.setBroadleafRequestContext(context.createLightWeightClone());
+        }
+        SolrIndexCachedOperation.setCache(new CatalogStructure());
+        try {
+            while (buildNextPage()) {
+                // keep pulling pages until the cursor is exhausted or another stage failed
+            }
+        } catch (ServiceException e) {
+            fail(e);
+        } catch (RuntimeException e) {
+            fail(e);
+        } finally {
+            SolrIndexCachedOperation.clearCache();
+            indexService.restoreState(new Object[4]);
+        }
+    }
+
+    /**
+     * Reads the next page under the reader lock and builds its documents in the builder's own transaction.
+     *
+     * @return false once there is nothing left to read or the pipeline has failed
+     */
+    protected boolean buildNextPage() throws ServiceException {
+        if (failure != null) {
+            return false;
+        }
+        TransactionStatus status = TransactionUtils.createTransaction("pipelinedIndexPage",
+                TransactionDefinition.PROPAGATION_REQUIRED, transactionManager, true);
+        try {
+            List<? extends Indexable> indexables = readNextPage();
+            if (indexables == null) {
+                TransactionUtils.finalizeTransaction(status, transactionManager, false);
+                return false;
+            }
+
+            if (CollectionUtils.isNotEmpty(indexables)) {
+                Collection<SolrInputDocument> documents;
+                try {
+                    operation.beforeBuildPage();
+
+                    documents = indexService.buildPipelinedPage(operation, indexables);
+                } finally {
+                    operation.afterBuildPage();
+                }
+
+                if (CollectionUtils.isNotEmpty(documents)) {
+                    enqueue(documents);
+                }
+            }
+
+            TransactionUtils.finalizeTransaction(status, transactionManager, false);
+            return true;
+        } catch (ServiceException e) {
+            TransactionUtils.finalizeTransaction(status, transactionManager, true);
+            throw e;
+        } catch (RuntimeException e) {
+            TransactionUtils.finalizeTransaction(status, transactionManager, true);
+            throw e;
+        }
+    }
+
+    /**
+     * @return the next page of indexables, or null if every page has already been handed out
+     */
+    protected List<? extends Indexable> readNextPage() throws ServiceException {
+        synchronized (readLock) {
+            if (failure != null || remainingNumItemsToIndex <= 0) {
+                return null;
+            }
+            LOG.info(indexService.buildPageNumberMessage(page, totalPages));
+
+            List<? extends Indexable> indexables;
+            try {
+                operation.beforeReadIndexables();
+                indexables = operation.readIndexables(pageSize, lastId);
+            } finally {
+                operation.afterReadIndexables();
+            }
+
+            page++;
+            remainingNumItemsToIndex -= pageSize;
+            if (CollectionUtils.isEmpty(indexables)) {
+                remainingNumItemsToIndex = 0;
+            } else {
+                lastId = indexables.get(indexables.size() - 1).getId();
+            }
+            return indexables;
+        }
+    }
+
+    protected void runWriter() throws ServiceException {
+        String collection = operation.getSolrCollectionForIndexing();
+        SolrClient server = operation.getSolrServerForIndexing();
+        List<SolrInputDocument> batch = new ArrayList<>(writerBatchSize);
+        try {
+            while (failure == null) {
+                Collection<SolrInputDocument> documents = documentQueue.poll(1, TimeUnit.SECONDS);
+                if (documents == END_OF_PAGES) {
+                    flush(collection, server, batch);
+                    return;
+                }
+                if (documents != null) {
+                    batch.addAll(documents);
+                    if (batch.size() >= writerBatchSize) {
+                        flush(collection, server, batch);
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            fail(e);
+        } catch (SolrServerException e) {
+            fail(new ServiceException("Could not rebuild index", e));
+        } catch (IOException e) {
+            fail(new ServiceException("Could not rebuild index", e));
+        } catch (ServiceException e) {
+            fail(e);
+        } catch (RuntimeException e) {
+            fail(e);
+        }
+    }
+
+    protected void flush(String collection, SolrClient server, List<SolrInputDocument> batch)
+            throws SolrServerException, IOException, ServiceException {
+        if (batch.isEmpty() || server == null) {
+            batch.clear();
+            return;
+        }
+        server.add(collection, batch);
+        indexService.commit(collection, server);
+        documentsWritten.addAndGet(batch.size());
+        batch.clear();
+    }
+
+    /**
+     * Blocks until the writer accepts the documents. Gives up if any stage has failed so that builders cannot hang
+     * on a queue nobody is draining.
+     */
+    protected void enqueue(Collection<SolrInputDocument> documents) {
+        try {
+            while (!documentQueue.offer(documents, 1, TimeUnit.SECONDS)) {
+                if (failure != null) {
+                    return;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            fail(e);
+        }
+    }
+
+    protected void await(Future<?> future) {
+        try {
+            future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            fail(e);
+        } catch (ExecutionException e) {
+            fail(e.getCause());
+        }
+    }
+
+    protected void fail(Throwable t) {
+        synchronized (readLock) {
+            if (failure == null) {
+                LOG.error("Pipelined Solr index operation failed", t);
+                failure = t;
+            }
+        }
+    }
+
+    protected static class PipelineThreadFactory implements ThreadFactory {
+
+        protected final AtomicInteger threadNumber = new AtomicInteger(1);
+
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, "blSolrIndexPipeline-" + threadNumber.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
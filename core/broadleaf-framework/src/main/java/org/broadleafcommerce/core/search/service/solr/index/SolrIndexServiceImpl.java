@@ -58,6 +58,7 @@ import org.broadleafcommerce.core.search.domain.IndexFieldType;
 import org.broadleafcommerce.core.search.domain.solr.FieldType;
 import org.broadleafcommerce.core.search.service.solr.SolrConfiguration;
 import org.broadleafcommerce.core.search.service.solr.SolrHelperService;
+import org.broadleafcommerce.core.search.service.solr.SolrSearchResultCache;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
@@ -68,7 +69,6 @@ import org.springframework.transaction.TransactionStatus;
 
 import java.io.IOException;
 import java.lang.reflect.InvocationTargetException;
-import java.math.BigDecimal;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
@@ -115,6 +115,18 @@ public class SolrIndexServiceImpl implements SolrIndexService {
     @Value("${solr.index.waitFlush}")
     protected boolean waitFlush;
 
+    @Value("${solr.index.pipeline.enabled:false}")
+    protected boolean pipelineEnabled;
+
+    @Value("${solr.index.pipeline.builderThreads:4}")
+    protected int pipelineBuilderThreads;
+
+    @Value("${solr.index.pipeline.queueCapacity:8}")
+    protected int pipelineQueueCapacity;
+
+    @Value("${solr.index.pipeline.writerBatchSize:1000}")
+    protected int pipelineWriterBatchSize;
+
     @Resource(name = "blProductDao")
     protected ProductDao productDao;
 
@@ -148,12 +160,18 @@ public class SolrIndexServiceImpl implements SolrIndexService {
     @Resource(name = "blIndexFieldDao")
     protected IndexFieldDao indexFieldDao;
 
+    @Resource(name = "blSolrSearchResultCache")
+    protected SolrSearchResultCache searchResultCache;
+
     @Override
     public void performCachedOperation(SolrIndexCachedOperation.CacheOperation cacheOperation) throws ServiceException {
         try {
             CatalogStructure cache = new CatalogStructure();
             SolrIndexCachedOperation.setCache(cache);
             cacheOperation.execute();
+            if (LOG.isDebugEnabled()) {
+                LOG.debug("Finished cached operation with " + cache);
+            }
         } finally {
             SolrIndexCachedOperation.clearCache();
         }
@@ -193,23 +211,35 @@ public class SolrIndexServiceImpl implements SolrIndexService {
 
     @Override
     public SolrIndexOperation getReindexOperation() {
-        return new GlobalSolrFullReIndexOperation(this, solrConfiguration, shs, errorOnConcurrentReIndex) {
+        return new ReindexOperation();
+    }
 
-            @Override
-            public List<? extends Indexable> readIndexables(int pageSize, Long lastId) {
-                return readAllActiveIndexables(pageSize, lastId);
-            }
+    /**
+     * The default full reindex operation. Only this exact class is eligible for {@link SolrIndexPipeline} execution, since
+     * the pipeline builds pages through {@link #buildPipelinedPage(SolrIndexOperation, List)} instead of
+     * {@link SolrIndexOperation#buildPage(List)}.
+     */
+    protected class ReindexOperation extends GlobalSolrFullReIndexOperation {
 
-            @Override
-            public Long countIndexables() {
-                return countIndexableItems();
-            }
+        public ReindexOperation() {
+            super(SolrIndexServiceImpl.this, SolrIndexServiceImpl.this.solrConfiguration, SolrIndexServiceImpl.this.shs,
+                    SolrIndexServiceImpl.this.errorOnConcurrentReIndex);
+        }
 
-            @Override
-            public void buildPage(List<? extends Indexable> indexables) throws ServiceException {
-                buildIncrementalIndex(getSolrCollectionForIndexing(), indexables, getSolrServerForIndexing());
-            }
-        };
+        @Override
+        public List<? extends Indexable> readIndexables(int pageSize, Long lastId) {
+            return readAllActiveIndexables(pageSize, lastId);
+        }
+
+        @Override
+        public Long countIndexables() {
+            return countIndexableItems();
+        }
+
+        @Override
+        public void buildPage(List<? extends Indexable> indexables) throws ServiceException {
+            buildIncrementalIndex(getSolrCollectionForIndexing(), indexables, getSolrServerForIndexing());
+        }
     }
 
     @Override
@@ -220,7 +250,7 @@ public class SolrIndexServiceImpl implements SolrIndexService {
             LOG.info("Executing Indexing operation");
             StopWatch s = new StopWatch();
 
-            Object[] pack = saveState();
+            final Object[] pack = saveState();
             try {
                 final Long numItemsToIndex;
                 try {
@@ -238,10 +268,15 @@ public class SolrIndexServiceImpl implements SolrIndexService {
 
                     @Override
                     public void execute() throws ServiceException {
+                        Long totalPages = getTotalPageCount(numItemsToIndex);
+                        if (isPipelineEnabled(operation)) {
+                            createIndexPipeline(operation).execute(pack, numItemsToIndex, totalPages);
+                            return;
+                        }
+
                         int page = 1;
                         Long lastId = null;
                         Long remainingNumItemsToIndex = numItemsToIndex;
-                        Long totalPages = getTotalPageCount(numItemsToIndex);
 
                         while (remainingNumItemsToIndex > 0) {
                             String pageNumberMessage = buildPageNumberMessage(page, totalPages);
@@ -264,6 +299,35 @@ public class SolrIndexServiceImpl implements SolrIndexService {
         }
     }
 
+    /**
+     * Whether the given operation should be executed by a {@link SolrIndexPipeline} rather than page by page on the
+     * calling thread. Controlled by the "solr.index.pipeline.enabled" property, and limited to the default
+     * {@link ReindexOperation}: custom operations, including subclasses that override
+     * {@link SolrIndexOperation#buildPage(List)}, always run page by page so that their buildPage is honored.
+     */
+    protected boolean isPipelineEnabled(SolrIndexOperation operation) {
+        return pipelineEnabled && pipelineBuilderThreads > 1 && operation != null
+                && operation.getClass() == ReindexOperation.class;
+    }
+
+    protected SolrIndexPipeline createIndexPipeline(SolrIndexOperation operation) {
+        return new SolrIndexPipeline(this, operation, transactionManager, pageSize, pipelineBuilderThreads,
+                pipelineQueueCapacity, pipelineWriterBatchSize);
+    }
+
+    /**
+     * Builds the documents for one page of a pipelined operation without sending them to Solr. The pipeline's writer
+     * is responsible for adding and committing them in larger batches, which is why
+     * {@link SolrIndexOperation#buildPage(List)} is not used here.
+     *
+     * @param operation the operation being executed
+     * @param indexables the page read by the calling builder thread
+     * @return the documents to hand to the writer
+     */
+    protected Collection<SolrInputDocument> buildPipelinedPage(SolrIndexOperation operation, List<? extends Indexable> indexables) throws ServiceException {
+        return buildIncrementalIndex(operation.getSolrCollectionForIndexing(), indexables, null);
+    }
+
     protected long getTotalPageCount(Long numItemsToIndex) {
         long numPagesToIndex = numItemsToIndex / pageSize;
         boolean hasRemainingItemsToIndex = numItemsToIndex % pageSize != 0;
@@ -321,6 +385,7 @@ public class SolrIndexServiceImpl implements SolrIndexService {
 
             //Explicitly do a hard commit here since we just deleted the entire index
             server.commit(collection);
+            invalidateSearchResultCache(collection, server);
         } catch (Exception e) {
             if (ServiceException.class.isAssignableFrom(e.getClass())) {
                 throw (ServiceException) e;
@@ -336,6 +401,7 @@ public class SolrIndexServiceImpl implements SolrIndexService {
             LOG.debug("Deleting by query: " + deleteQuery);
             server.deleteByQuery(collection, deleteQuery);
             server.commit(collection);
+            invalidateSearchResultCache(collection, server);
         } catch (Exception e) {
             throw new ServiceException("Could not delete documents", e);
         }
@@ -565,17 +631,18 @@ public class SolrIndexServiceImpl implements SolrIndexService {
         extensionManager.getProxy().attachAdditionalBasicFields(indexable, document, shs);
 
         Long cacheKey = this.shs.getCurrentProductId(indexable); // current
-        if (!cache.getParentCategoriesByProduct().containsKey(cacheKey)) {
+        if (!cache.hasParentCategoriesForProduct(cacheKey)) {
             cacheKey = sandBoxHelper.getOriginalId(cacheKey); // parent
-            if (!cache.getParentCategoriesByProduct().containsKey(cacheKey)) {
+            if (!cache.hasParentCategoriesForProduct(cacheKey)) {
                 cacheKey = shs.getIndexableId(indexable); // master
             }
         }
 
         // TODO: figure this out more generally; this doesn't work for CMS content
         // The explicit categories are the ones defined by the product itself
-        if (cache.getParentCategoriesByProduct().containsKey(cacheKey)) {
-            for (Long categoryId : cache.getParentCategoriesByProduct().get(cacheKey)) {
+        long[] parentCategoryIds = cache.getParentCategoryIdsByProduct(cacheKey);
+        if (parentCategoryIds != null) {
+            for (Long categoryId : parentCategoryIds) {
                 document.addField(shs.getExplicitCategoryFieldName(), shs.getCategoryId(categoryId));
 
                 // Make sure that we're always referencing the parent for the sort field
@@ -617,7 +684,7 @@ public class SolrIndexServiceImpl implements SolrIndexService {
             document.addField(shs.getCategoryFieldName(), catIdToAdd);
         }
 
-        Set<Long> parents = cache.getParentCategoriesByCategory().get(categoryId);
+        long[] parents = cache.getParentCategoryIdsByCategory(categoryId);
         for (Long parent : parents) {
             if (!indexedParents.contains(parent)) {
                 indexedParents.add(parent);
@@ -725,6 +792,24 @@ public class SolrIndexServiceImpl implements SolrIndexService {
         shs.optimizeIndex(collection, server);
     }
 
+    /**
+     * Drops the cached search responses after a commit to the given collection, unless the collection is only the
+     * reindex collection. Searches never read the reindex collection, and swapping it in invalidates the cache.
+     */
+    protected void invalidateSearchResultCache(String collection, SolrClient server) {
+        if (!isReindexOnlyCollection(collection, server)) {
+            searchResultCache.invalidateAll();
+        }
+    }
+
+    protected boolean isReindexOnlyCollection(String collection, SolrClient server) {
+        if (solrConfiguration.isSolrCloudMode()) {
+            return collection != null && collection.equals(solrConfiguration.getReindexCollectionName())
+                    && !collection.equals(solrConfiguration.getQueryCollectionName());
+        }
+        return server != null && server == solrConfiguration.getReindexServer() && server != solrConfiguration.getServer();
+    }
+
     @Override
     public void commit(String collection, SolrClient server) throws ServiceException, IOException {
         if (this.commit) {
@@ -747,6 +832,7 @@ public class SolrIndexServiceImpl implements SolrIndexService {
             }
 
             server.commit(collection, waitFlush, waitSearcher, softCommit);
+            invalidateSearchResultCache(collection, server);
         } catch (SolrServerException e) {
             throw new ServiceException("Could not commit changes to Solr index", e);
         }
@@ -762,21 +848,30 @@ public class SolrIndexServiceImpl implements SolrIndexService {
     }
 
     /**
-     *  We multiply the BigDecimal by 1,000,000 to maintain any possible decimals in use the
-     *  displayOrder value.
+     *  The display order is stored multiplied by 1,000,000 ({@link CatalogStructure#DISPLAY_ORDER_SCALE}) to maintain
+     *  any possible decimals in use the displayOrder value.
+     *
+     * @param cache
+     * @param categoryId
+     * @param productId
+     * @return
+     */
+    protected Long convertDisplayOrderToLong(CatalogStructure cache, Long categoryId, Long productId) {
+        return cache.getDisplayOrder(categoryId, productId);
+    }
+
+    /**
+     * Looks up the display order of a product in a category while indexing. Override this method to change the
+     * category sort value; the default parses the {@code "categoryId-productId"} key and reads the display order
+     * through {@link #convertDisplayOrderToLong(CatalogStructure, Long, Long)}.
      *
      * @param cache
      * @param displayOrderKey
      * @return
      */
     protected Long convertDisplayOrderToLong(CatalogStructure cache, String displayOrderKey) {
-        BigDecimal displayOrder = cache.getDisplayOrdersByCategoryProduct().get(displayOrderKey);
-
-        if (displayOrder == null) {
-            return null;
-        }
-
-        return displayOrder.multiply(BigDecimal.valueOf(1000000)).longValue();
+        long[] ids = CatalogStructure.parseDisplayOrderKey(displayOrderKey);
+        return ids == null ? null : convertDisplayOrderToLong(cache, ids[0], ids[1]);
     }
 
     @Override
@@ -0,0 +1,222 @@
+/*
+ * #%L
+ * BroadleafCommerce Framework
+ * %%
+ * Copyright (C) 2009 - 2016 Broadleaf Commerce
+ * %%
+ * Licensed under the Broadleaf Fair Use License Agreement, Version 1.0
+ * (the "Fair Use License" located  at http://license.broadleafcommerce.org/fair_use_license-1.0.txt)
+ * unless the restrictions on use therein are violated and require payment to Broadleaf in which case
+ * the Broadleaf End User License Agreement (EULA), Version 1.1
+ * (the "Commercial License" located at http://license.broadleafcommerce.org/commercial_license-1.1.txt)
+ * shall apply.
+ * 
+ * Alternatively, the Commercial License may be replaced with a mutually agreed upon license (the "Custom License")
+ * between you and Broadleaf Commerce. You may not use this file except in compliance with the applicable license.
+ * #L%
+ */
+package org.broadleafcommerce.core.store.service;
+
+import org.broadleafcommerce.core.store.domain.Store;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Immutable, in-memory grid index over the latitude and longitude of a set of {@link Store}s.
+ * <p>
+ * Stores are bucketed into cells of {@code cellDegrees} by {@code cellDegrees}. A radius query only computes distances
+ * for the stores in the cells that overlap the bounding box of the search circle. Coordinates are kept in primitive
+ * arrays with their sines and cosines precomputed, so a query does no database access and allocates little beyond its
+ * result.
+ * <p>
+ * Distances use the same great-circle formula (in miles) that {@link StoreServiceImpl} has always used, so results
+ * match the previous full scan. Stores without a latitude or longitude are not indexed.
+ */
+public class StoreLocationIndex {
+
+    public static final double EARTH_RADIUS_MILES = 3959;
+
+    /**
+     * The degrees to radians factor used by the original store distance calculation, kept for identical results
+     */
+    protected static final double DEGREES_TO_RADIANS = 57.3;
+
+    protected static final double MILES_PER_DEGREE_LATITUDE = 69.2;
+
+    protected final double cellDegrees;
+    protected final int rows;
+    protected final int columns;
+    protected final Store[] stores;
+    protected final double[] sinLatitudes;
+    protected final double[] cosLatitudes;
+    protected final double[] longitudes;
+    protected final Map<Integer, int[]> cells;
+    protected final long createdTime = System.currentTimeMillis();
+
+    public StoreLocationIndex(List<Store> allStores, double cellDegrees) {
+        this.cellDegrees = cellDegrees;
+        this.rows = (int) Math.ceil(180D / cellDegrees) + 1;
+        this.columns = (int) Math.ceil(360D / cellDegrees);
+
+        List<Store> located = new ArrayList<>();
+        for (Store store : allStores) {
+            if (store.getLatitude() != null && store.getLongitude() != null) {
+                located.add(store);
+            }
+        }
+
+        stores = located.toArray(new Store[located.size()]);
+        sinLatitudes = new double[stores.length];
+        cosLatitudes = new double[stores.length];
+        longitudes = new double[stores.length];
+
+        Map<Integer, List<Integer>> buckets = new HashMap<>();
+        for (int i = 0; i < stores.length; i++) {
+            double latitude = stores[i].getLatitude();
+            double longitude = stores[i].getLongitude();
+            sinLatitudes[i] = Math.sin(latitude / DEGREES_TO_RADIANS);
+            cosLatitudes[i] = Math.cos(latitude / DEGREES_TO_RADIANS);
+            longitudes[i] = longitude / DEGREES_TO_RADIANS;
+
+            Integer cell = cellKey(row(latitude), column(longitude));
+            List<Integer> bucket = buckets.get(cell);
+            if (bucket == null) {
+                bucket = new ArrayList<>();
+                buckets.put(cell, bucket);
+            }
+            bucket.add(i);
+        }
+
+        cells = new HashMap<>();
+        for (Map.Entry<Integer, List<Integer>> entry : buckets.entrySet()) {
+            int[] indexes = new int[entry.getValue().size()];
+            for (int i = 0; i < indexes.length; i++) {
+                indexes[i] = entry.getValue().get(i);
+            }
+            cells.put(entry.getKey(), indexes);
+        }
+    }
+
+    /**
+     * @return every indexed store whose distance from the given point is at most {@code distance} miles, mapped to
+     * that distance
+     */
+    public Map<Store, Double> findStoresWithinDistance(double latitude, double longitude, double distance) {
+        Map<Store, Double> matchingStores = new HashMap<>();
+        double sinLatitude = Math.sin(latitude / DEGREES_TO_RADIANS);
+        double cosLatitude = Math.cos(latitude / DEGREES_TO_RADIANS);
+        double radLongitude = longitude / DEGREES_TO_RADIANS;
+
+        // Pad the box slightly so that rounding in the distance formula can never exclude a store on the boundary
+        double latitudeDelta = distance / MILES_PER_DEGREE_LATITUDE * 1.01D + cellDegrees / 1000D;
+        int minRow = row(Math.max(-90D, latitude - latitudeDelta));
+        int maxRow = row(Math.min(90D, latitude + latitudeDelta));
+
+        double widestLatitude = Math.min(90D, Math.abs(latitude) + latitudeDelta);
+        double cosWidest = Math.cos(Math.toRadians(widestLatitude));
+        int minColumn;
+        int columnSpan;
+        if (cosWidest < 0.01D || latitudeDelta / cosWidest >= 180D) {
+            minColumn = 0;
+            columnSpan = columns;
+        } else {
+            double longitudeDelta = latitudeDelta / cosWidest;
+            minColumn = column(longitude - longitudeDelta);
+            columnSpan = Math.min(columns, column(longitude + longitudeDelta) - minColumn + 1);
+            if (columnSpan <= 0) {
+                // the box wraps around the antimeridian
+                columnSpan = Math.min(columns, column(longitude + longitudeDelta) + columns - minColumn + 1);
+            }
+        }
+
+        for (int row = minRow; row <= maxRow; row++) {
+            for (int offset = 0; offset < columnSpan; offset++) {
+                int[] indexes = cells.get(cellKey(row, (minColumn + offset) % columns));
+                if (indexes == null) {
+                    continue;
+                }
+                for (int index : indexes) {
+                    double storeDistance = distance(sinLatitude, cosLatitude, radLongitude, index);
+                    if (storeDistance <= distance) {
+                        matchingStores.put(stores[index], storeDistance);
+                    }
+                }
+            }
+        }
+        return matchingStores;
+    }
+
+    /**
+     * @return up to {@code count} indexed stores closest to the given point, mapped to their distance in miles and
+     * ordered from nearest to farthest
+     */
+    public Map<Store, Double> findNearestStores(double latitude, double longitude, int count) {
+        Map<Store, Double> nearest = new LinkedHashMap<>();
+        if (count <= 0 || stores.length == 0) {
+            return nearest;
+        }
+
+        // Grow the search circle until it holds enough stores; half the earth's circumference covers everything
+        double maxDistance = Math.PI * EARTH_RADIUS_MILES;
+        double distance = Math.max(cellDegrees * MILES_PER_DEGREE_LATITUDE, 1D);
+        Map<Store, Double> candidates = findStoresWithinDistance(latitude, longitude, distance);
+        while (candidates.size() < Math.min(count, stores.length) && distance < maxDistance) {
+            distance *= 2;
+            candidates = findStoresWithinDistance(latitude, longitude, distance);
+        }
+
+        List<Map.Entry<Store, Double>> sorted = new ArrayList<>(candidates.entrySet());
+        Collections.sort(sorted, new Comparator<Map.Entry<Store, Double>>() {
+            @Override
+            public int compare(Map.Entry<Store, Double> o1, Map.Entry<Store, Double> o2) {
+                return Double.compare(o1.getValue(), o2.getValue());
+            }
+        });
+        for (Map.Entry<Store, Double> entry : sorted.subList(0, Math.min(count, sorted.size()))) {
+            nearest.put(entry.getKey(), entry.getValue());
+        }
+        return nearest;
+    }
+
+    public int size() {
+        return stores.length;
+    }
+
+    public List<Store> getStores() {
+        return Collections.unmodifiableList(Arrays.asList(stores));
+    }
+
+    /**
+     * @return the time, in milliseconds since the epoch, at which this index was built
+     */
+    public long getCreatedTime() {
+        return createdTime;
+    }
+
+    protected double distance(double sinLatitude, double cosLatitude, double radLongitude, int index) {
+        double cosAngle = (sinLatitude * sinLatitudes[index])
+                + (cosLatitude * cosLatitudes[index] * Math.cos(longitudes[index] - radLongitude));
+        // Guard against rounding pushing identical points just outside the domain of acos
+        return EARTH_RADIUS_MILES * Math.acos(Math.max(-1D, Math.min(1D, cosAngle)));
+    }
+
+    protected int row(double latitude) {
+        return (int) Math.floor((latitude + 90D) / cellDegrees);
+    }
+
+    protected int column(double longitude) {
+        double normalized = ((longitude + 180D) % 360D + 360D) % 360D;
+        return Math.min(columns - 1, (int) Math.floor(normalized / cellDegrees));
+    }
+
+    protected Integer cellKey(int row, int column) {
+        return row * columns + column;
+    }
+}
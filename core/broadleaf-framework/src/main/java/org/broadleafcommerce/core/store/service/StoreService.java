@@ -42,8 +42,23 @@ public interface StoreService {
 
     public Map<Store,Double> findStoresByAddress(Address searchAddress, double distance);
 
+    /**
+     * Finds the stores closest to the postal code of the passed in address.
+     *
+     * @param searchAddress
+     * @param count the maximum number of stores to return
+     * @return the stores mapped to their distance in miles, ordered from nearest to farthest
+     */
+    public Map<Store,Double> findNearestStoresByAddress(Address searchAddress, int count);
+
     public List<Store> readAllStores();
 
     public List<Store> readAllStoresByState(String state);
 
+    /**
+     * Discards the in-memory store location index used by {@link #findStoresByAddress(Address, double)} and
+     * {@link #findNearestStoresByAddress(Address, int)} so that the next search rebuilds it from the database.
+     */
+    public void invalidateLocationIndex();
+
 }
@@ -23,10 +23,13 @@ import java.util.Map;
 
 import javax.annotation.Resource;
 
+import org.broadleafcommerce.common.util.EfficientLRUMap;
 import org.broadleafcommerce.core.store.dao.StoreDao;
 import org.broadleafcommerce.core.store.domain.Store;
+import org.broadleafcommerce.core.store.domain.StoreChangeEntityListener;
 import org.broadleafcommerce.core.store.domain.ZipCode;
 import org.broadleafcommerce.profile.core.domain.Address;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -40,6 +43,22 @@ public class StoreServiceImpl implements StoreService {
     @Resource(name = "blZipCodeService")
     private ZipCodeService zipCodeService;
 
+    /**
+     * How long the in-memory store location index is used before it is rebuilt from the database. Saving or removing a
+     * store on this node discards it once the transaction commits, through {@link StoreChangeEntityListener}.
+     */
+    @Value("${store.location.index.ttlSeconds:300}")
+    protected long locationIndexTtlSeconds = 300;
+
+    @Value("${store.location.index.cellDegrees:0.5}")
+    protected double locationIndexCellDegrees = 0.5;
+
+    protected static final double[] NO_CENTROID = new double[0];
+
+    protected final Map<Integer, double[]> zipCodeCentroids = new EfficientLRUMap<Integer, double[]>(10000);
+
+    protected volatile StoreLocationIndex locationIndex;
+
     public Store readStoreById(Long id) {
         return storeDao.readStoreById(id);
     }
@@ -67,26 +86,57 @@ public class StoreServiceImpl implements StoreService {
     }
 
     public Map<Store, Double> findStoresByAddress(Address searchAddress, double distance) {
-        Map<Store, Double> matchingStores = new HashMap<Store, Double>();
-        for (Store store : readAllStores()) {
-            Double storeDistance = findStoreDistance(store, Integer.parseInt(searchAddress.getPostalCode()));
-            if (storeDistance != null && storeDistance <= distance) {
-                matchingStores.put(store, storeDistance);
+        double[] centroid = findZipCodeCentroid(Integer.parseInt(searchAddress.getPostalCode()));
+        if (centroid == null) {
+            return new HashMap<Store, Double>();
+        }
+        return getLocationIndex().findStoresWithinDistance(centroid[0], centroid[1], distance);
+    }
+
+    @Override
+    public Map<Store, Double> findNearestStoresByAddress(Address searchAddress, int count) {
+        double[] centroid = findZipCodeCentroid(Integer.parseInt(searchAddress.getPostalCode()));
+        if (centroid == null) {
+            return new HashMap<Store, Double>();
+        }
+        return getLocationIndex().findNearestStores(centroid[0], centroid[1], count);
+    }
+
+    @Override
+    public void invalidateLocationIndex() {
+        locationIndex = null;
+    }
+
+    protected StoreLocationIndex getLocationIndex() {
+        StoreLocationIndex index = locationIndex;
+        if (index == null || isExpired(index)) {
+            synchronized (this) {
+                index = locationIndex;
+                if (index == null || isExpired(index)) {
+                    index = new StoreLocationIndex(readAllStores(), locationIndexCellDegrees);
+                    locationIndex = index;
+                }
             }
         }
+        return index;
+    }
 
-        return matchingStores;
+    protected boolean isExpired(StoreLocationIndex index) {
+        return locationIndexTtlSeconds >= 0
+                && System.currentTimeMillis() - index.getCreatedTime() > locationIndexTtlSeconds * 1000L;
     }
 
-    private Double findStoreDistance(Store store, Integer zip) {
-        ZipCode zipCode = zipCodeService.findZipCodeByZipCode(zip);
-        if (zipCode == null) {
-            return null;
+    /**
+     * @return the latitude and longitude of the given zip code, or null if it is unknown. Lookups, including misses,
+     * are cached since zip code centroids do not change.
+     */
+    protected double[] findZipCodeCentroid(Integer zip) {
+        double[] centroid = zipCodeCentroids.get(zip);
+        if (centroid == null) {
+            ZipCode zipCode = zipCodeService.findZipCodeByZipCode(zip);
+            centroid = zipCode == null ? NO_CENTROID : new double[] { zipCode.getZipLatitude(), zipCode.getZipLongitude() };
+            zipCodeCentroids.put(zip, centroid);
         }
-        // A constant used to convert from degrees to radians.
-        double degreesToRadians = 57.3;
-        double storeDistance = 3959 * Math.acos((Math.sin(zipCode.getZipLatitude() / degreesToRadians) * Math.sin(store.getLatitude() / degreesToRadians))
-                + (Math.cos(zipCode.getZipLatitude() / degreesToRadians) * Math.cos(store.getLatitude() / degreesToRadians) * Math.cos((store.getLongitude() / degreesToRadians) - (zipCode.getZipLongitude() / degreesToRadians))));
-        return storeDistance;
+        return centroid == NO_CENTROID ? null : centroid;
     }
 }
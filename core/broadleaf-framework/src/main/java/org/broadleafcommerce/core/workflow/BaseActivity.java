@@ -21,8 +21,9 @@ import org.broadleafcommerce.core.workflow.state.RollbackHandler;
 import org.springframework.core.Ordered;
 
 import java.util.Map;
+import java.util.Set;
 
-public abstract class BaseActivity<T extends ProcessContext<?>> implements Activity<T> {
+public abstract class BaseActivity<T extends ProcessContext<?>> implements Activity<T>, DependencyAwareActivity {
     
     protected ErrorHandler errorHandler;
     protected String beanName;
@@ -32,6 +33,8 @@ public abstract class BaseActivity<T extends ProcessContext<?>> implements Activ
     protected Map<String, Object> stateConfiguration;
     protected boolean automaticallyRegisterRollbackHandler = false;
     protected int order = Ordered.LOWEST_PRECEDENCE;
+    protected Set<String> readDependencies;
+    protected Set<String> writeDependencies;
     
     @Override
     public boolean shouldExecute(T context) {
@@ -107,4 +110,22 @@ public abstract class BaseActivity<T extends ProcessContext<?>> implements Activ
         this.order = order;
     }
 
+    @Override
+    public Set<String> getReadDependencies() {
+        return readDependencies;
+    }
+
+    public void setReadDependencies(Set<String> readDependencies) {
+        this.readDependencies = readDependencies;
+    }
+
+    @Override
+    public Set<String> getWriteDependencies() {
+        return writeDependencies;
+    }
+
+    public void setWriteDependencies(Set<String> writeDependencies) {
+        this.writeDependencies = writeDependencies;
+    }
+
 }
@@ -22,6 +22,7 @@ import org.apache.commons.collections.Transformer;
 import org.broadleafcommerce.common.logging.LifeCycleEvent;
 import org.broadleafcommerce.common.logging.SupportLogManager;
 import org.broadleafcommerce.common.logging.SupportLogger;
+import org.broadleafcommerce.core.workflow.statistics.WorkflowStatisticsService;
 import org.springframework.beans.BeansException;
 import org.springframework.beans.factory.BeanFactory;
 import org.springframework.beans.factory.BeanFactoryAware;
@@ -58,6 +59,8 @@ public abstract class BaseProcessor<U, T> implements BeanNameAware, BeanFactoryA
     
     protected ErrorHandler defaultErrorHandler;
 
+    protected WorkflowStatisticsService workflowStatisticsService;
+
     @Value("${workflow.auto.rollback.on.error}")
     private boolean autoRollbackOnError = true;
     
@@ -233,4 +236,19 @@ public abstract class BaseProcessor<U, T> implements BeanNameAware, BeanFactoryA
     public BeanFactory getBeanFactory() {
         return beanFactory;
     }
+
+    /**
+     * @return the service activity timings are recorded with, looked up from the bean factory on first use. Null if
+     * this processor is not managed by Spring or the service is not defined, in which case nothing is recorded.
+     */
+    public WorkflowStatisticsService getWorkflowStatisticsService() {
+        if (workflowStatisticsService == null && beanFactory != null && beanFactory.containsBean("blWorkflowStatisticsService")) {
+            workflowStatisticsService = beanFactory.getBean("blWorkflowStatisticsService", WorkflowStatisticsService.class);
+        }
+        return workflowStatisticsService;
+    }
+
+    public void setWorkflowStatisticsService(WorkflowStatisticsService workflowStatisticsService) {
+        this.workflowStatisticsService = workflowStatisticsService;
+    }
 }
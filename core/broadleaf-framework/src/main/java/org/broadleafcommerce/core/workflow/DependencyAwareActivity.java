@@ -0,0 +1,45 @@
+/*
+ * #%L
+ * BroadleafCommerce Framework
+ * %%
+ * Copyright (C) 2009 - 2016 Broadleaf Commerce
+ * %%
+ * Licensed under the Broadleaf Fair Use License Agreement, Version 1.0
+ * (the "Fair Use License" located  at http://license.broadleafcommerce.org/fair_use_license-1.0.txt)
+ * unless the restrictions on use therein are violated and require payment to Broadleaf in which case
+ * the Broadleaf End User License Agreement (EULA), Version 1.1
+ * (the "Commercial License" located at http://license.broadleafcommerce.org/commercial_license-1.1.txt)
+ * shall apply.
+ * 
+ * Alternatively, the Commercial License may be replaced with a mutually agreed upon license (the "Custom License")
+ * between you and Broadleaf Commerce. You may not use this file except in compliance with the applicable license.
+ * #L%
+ */
+package org.broadleafcommerce.core.workflow;
+
+import java.util.Set;
+
+/**
+ * Allows an {@link Activity} to declare which parts of the {@link ProcessContext} it reads and writes. The names are
+ * free-form labels agreed upon by the activities of a workflow (for example "order.taxes" or "order.fulfillmentGroups").
+ * {@link ParallelSequenceProcessor} uses them to run adjacent activities that do not touch each other's data at the
+ * same time.
+ * <p>
+ * An activity that does not implement this interface, or returns null from {@link #getWriteDependencies()}, is assumed
+ * to read and write everything, so it always runs on its own.
+ *
+ * @see ParallelSequenceProcessor
+ */
+public interface DependencyAwareActivity {
+
+    /**
+     * @return the labels of the context data this activity reads, or null if it reads nothing beyond what it writes
+     */
+    Set<String> getReadDependencies();
+
+    /**
+     * @return the labels of the context data this activity modifies, or null if undeclared
+     */
+    Set<String> getWriteDependencies();
+
+}
@@ -0,0 +1,374 @@
+/*
+ * #%L
+ * BroadleafCommerce Framework
+ * %%
+ * Copyright (C) 2009 - 2016 Broadleaf Commerce
+ * %%
+ * Licensed under the Broadleaf Fair Use License Agreement, Version 1.0
+ * (the "Fair Use License" located  at http://license.broadleafcommerce.org/fair_use_license-1.0.txt)
+ * unless the restrictions on use therein are violated and require payment to Broadleaf in which case
+ * the Broadleaf End User License Agreement (EULA), Version 1.1
+ * (the "Commercial License" located at http://license.broadleafcommerce.org/commercial_license-1.1.txt)
+ * shall apply.
+ * 
+ * Alternatively, the Commercial License may be replaced with a mutually agreed upon license (the "Custom License")
+ * between you and Broadleaf Commerce. You may not use this file except in compliance with the applicable license.
+ * #L%
+ */
+package org.broadleafcommerce.core.workflow;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.broadleafcommerce.common.classloader.release.ThreadLocalManager;
+import org.broadleafcommerce.common.web.BroadleafRequestContext;
+import org.broadleafcommerce.core.workflow.state.RollbackStateLocal;
+import org.broadleafcommerce.core.workflow.statistics.WorkflowExecution;
+import org.springframework.beans.factory.annotation.Value;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.annotation.PreDestroy;
+
+/**
+ * A {@link SequenceProcessor} that runs adjacent activities at the same time when they have declared, through
+ * {@link DependencyAwareActivity}, that they do not read or write each other's {@link ProcessContext} data. Typical
+ * candidates are independent, I/O bound steps such as tax calculation and shipping estimation.
+ * <p>
+ * The ordered activities are split into groups of adjacent, mutually independent activities. Activities without
+ * declared dependencies always form a group of their own, so a workflow with no declarations behaves exactly like a
+ * {@link SequenceProcessor}. Within a group:
+ * <ul>
+ *     <li>{@link Activity#shouldExecute(ProcessContext)} is evaluated for every member before any of them runs</li>
+ *     <li>the first member runs on the calling thread, the others on the executor, all against the same context</li>
+ *     <li>once all of them are done, the rollback handlers of every member that completed are registered, since they
+ *     did run. Then the first failure in the configured activity order is handled, which rolls back the whole group
+ *     once, and the error handlers of any later failures are called without rolling back again. Finally, a stop
+ *     request from any member ends the workflow</li>
+ * </ul>
+ * Activities run on the executor see the {@link BroadleafRequestContext} and rollback state of the calling thread, but
+ * not its transaction or persistence context. Only declare activities as independent if that is safe for them.
+ * <p>
+ * The executor can be provided through {@link #setExecutorService(ExecutorService)}. Otherwise a pool of
+ * {@code workflow.parallel.threads} daemon threads is created for this processor. When the pool is saturated, the
+ * activity runs on the calling thread instead.
+ *
+ * @see DependencyAwareActivity
+ */
+public class ParallelSequenceProcessor<U, T> extends SequenceProcessor<U, T> {
+
+    private static final Log LOG = LogFactory.getLog(ParallelSequenceProcessor.class);
+
+    @Value("${workflow.parallel.threads:4}")
+    protected int parallelThreads = 4;
+
+    protected volatile ExecutorService executorService;
+    protected boolean ownsExecutorService = false;
+
+    protected volatile List<List<Activity<ProcessContext<U>>>> activityGroups;
+    protected volatile List<Activity<ProcessContext<U>>> activityGroupsSource;
+
+    @Override
+    protected ProcessContext<U> runActivities(List<Activity<ProcessContext<U>>> activities, ProcessContext<U> context,
+            RollbackStateLocal rollbackStateLocal) throws WorkflowException {
+        groups:
+        for (List<Activity<ProcessContext<U>>> group : getActivityGroups(activities)) {
+            List<Activity<ProcessContext<U>>> executing = new ArrayList<Activity<ProcessContext<U>>>(group.size());
+            for (Activity<ProcessContext<U>> activity : group) {
+                if (activity.shouldExecute(context)) {
+                    executing.add(activity);
+                } else {
+                    LOG.debug("Not executing activity: " + activity.getBeanName() + " based on the context: " + context);
+                }
+            }
+            if (executing.isEmpty()) {
+                continue;
+            }
+            int size = executing.size();
+            List<ProcessContext<U>> results = new ArrayList<ProcessContext<U>>(Collections.<ProcessContext<U>>nCopies(size, null));
+            List<Throwable> errors = new ArrayList<Throwable>(Collections.<Throwable>nCopies(size, null));
+            executeGroup(executing, context, results, errors);
+
+            int failed = -1;
+            int last = -1;
+            for (int i = 0; i < size; i++) {
+                if (errors.get(i) == null) {
+                    context = results.get(i);
+                    last = i;
+                } else if (failed < 0) {
+                    failed = i;
+                }
+            }
+
+            // every member that completed did run, whatever happened to the others, so its state is registered before
+            // a failure is rolled back or a stop request ends the workflow. A lone activity that stops the process is
+            // not registered, exactly as in SequenceProcessor.
+            if (size > 1 || (context != null && !context.isStopped())) {
+                for (int i = 0; i < size; i++) {
+                    if (errors.get(i) == null) {
+                        registerRollbackHandler(executing.get(i), results.get(i));
+                    }
+                }
+            }
+
+            if (failed >= 0) {
+                if (handleActivityError(context, executing.get(failed), errors.get(failed), rollbackStateLocal)) {
+                    break groups;
+                }
+                for (int i = failed + 1; i < size; i++) {
+                    if (errors.get(i) != null && handleGroupMemberError(context, executing.get(i), errors.get(i))) {
+                        break groups;
+                    }
+                }
+            }
+
+            //ensure its ok to continue the process
+            if (processShouldStop(context, executing.get(last < 0 ? failed : last))) {
+                break groups;
+            }
+
+            // as in SequenceProcessor, a failed activity whose error handler lets the workflow continue is registered too
+            if (failed >= 0) {
+                for (int i = failed; i < size; i++) {
+                    if (errors.get(i) != null) {
+                        registerRollbackHandler(executing.get(i), context);
+                    }
+                }
+            }
+        }
+        return context;
+    }
+
+    /**
+     * Hands the failure of a group member other than the first failed one to its error handler. The group has already
+     * been rolled back for the first failure, so this does not roll back again.
+     *
+     * @return true if the default error handler was used, in which case the workflow does not continue
+     */
+    protected boolean handleGroupMemberError(ProcessContext<U> context, Activity<ProcessContext<U>> activity,
+            Throwable activityException) throws WorkflowException {
+        ErrorHandler errorHandler = activity.getErrorHandler();
+        if (errorHandler == null) {
+            getDefaultErrorHandler().handleError(context, activityException);
+            return true;
+        }
+        errorHandler.handleError(context, activityException);
+        return false;
+    }
+
+    /**
+     * Runs the members of a group concurrently against the same context and waits for all of them. The result or
+     * failure of each member is stored at its index.
+     */
+    protected void executeGroup(List<Activity<ProcessContext<U>>> group, final ProcessContext<U> context,
+            List<ProcessContext<U>> results, List<Throwable> errors) {
+        final Thread callingThread = Thread.currentThread();
+        final BroadleafRequestContext requestContext = BroadleafRequestContext.getBroadleafRequestContext();
+        final RollbackStateLocal rollbackStateLocal = RollbackStateLocal.getRollbackStateLocal();
+        final WorkflowExecution execution = WorkflowExecution.getCurrentExecution();
+
+        List<Future<ProcessContext<U>>> futures = new ArrayList<Future<ProcessContext<U>>>(group.size());
+        futures.add(null);
+        for (int i = 1; i < group.size(); i++) {
+            final Activity<ProcessContext<U>> activity = group.get(i);
+            Callable<ProcessContext<U>> task = new Callable<ProcessContext<U>>() {
+
+                @Override
+                public ProcessContext<U> call() throws Exception {
+                    if (Thread.currentThread() == callingThread) {
+                        return executeActivity(activity, context);
+                    }
+                    BroadleafRequestContext.setBroadleafRequestContext(requestContext);
+                    RollbackStateLocal.setRollbackStateLocal(rollbackStateLocal);
+                    if (execution != null) {
+                        WorkflowExecution.setCurrentExecution(execution);
+                    }
+                    try {
+                        return executeActivity(activity, context);
+                    } finally {
+                        ThreadLocalManager.remove();
+                    }
+                }
+            };
+            try {
+                futures.add(getExecutorService().submit(task));
+            } catch (RejectedExecutionException e) {
+                // the pool is saturated, run it here instead
+                FutureTask<ProcessContext<U>> futureTask = new FutureTask<ProcessContext<U>>(task);
+                futureTask.run();
+                futures.add(futureTask);
+            }
+        }
+
+        if (LOG.isDebugEnabled()) {
+            if (group.size() == 1) {
+                LOG.debug("running activity:" + group.get(0).getBeanName() + " using arguments:" + context);
+            } else {
+                LOG.debug("running activity:" + group.get(0).getBeanName() + " using arguments:" + context
+                        + " in parallel with " + (group.size() - 1) + " other activities");
+            }
+        }
+        try {
+            results.set(0, executeActivity(group.get(0), context));
+        } catch (Throwable activityException) {
+            errors.set(0, activityException);
+        }
+
+        for (int i = 1; i < group.size(); i++) {
+            try {
+                results.set(i, futures.get(i).get());
+            } catch (ExecutionException e) {
+                errors.set(i, e.getCause());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                errors.set(i, e);
+            }
+        }
+    }
+
+    protected List<List<Activity<ProcessContext<U>>>> getActivityGroups(List<Activity<ProcessContext<U>>> activities) {
+        if (activityGroups == null || activityGroupsSource != activities) {
+            List<List<Activity<ProcessContext<U>>>> groups = buildActivityGroups(activities);
+            if (LOG.isDebugEnabled()) {
+                LOG.debug("Activity groups for the " + getBeanName() + " workflow: " + describeActivityGroups(groups));
+            }
+            activityGroups = groups;
+            activityGroupsSource = activities;
+        }
+        return activityGroups;
+    }
+
+    /**
+     * Splits the ordered activities into groups of adjacent activities that do not depend on each other
+     */
+    protected List<List<Activity<ProcessContext<U>>>> buildActivityGroups(List<Activity<ProcessContext<U>>> activities) {
+        List<List<Activity<ProcessContext<U>>>> groups = new ArrayList<List<Activity<ProcessContext<U>>>>();
+        List<Activity<ProcessContext<U>>> current = null;
+        for (Activity<ProcessContext<U>> activity : activities) {
+            boolean independent = current != null;
+            if (current != null) {
+                for (Activity<ProcessContext<U>> member : current) {
+                    if (!isIndependent(member, activity)) {
+                        independent = false;
+                        break;
+                    }
+                }
+            }
+            if (!independent) {
+                current = new ArrayList<Activity<ProcessContext<U>>>();
+                groups.add(current);
+            }
+            current.add(activity);
+        }
+        return groups;
+    }
+
+    /**
+     * Two activities are independent if both declared their dependencies and neither writes anything the other one
+     * reads or writes
+     */
+    protected boolean isIndependent(Activity<ProcessContext<U>> first, Activity<ProcessContext<U>> second) {
+        if (!(first instanceof DependencyAwareActivity) || !(second instanceof DependencyAwareActivity)) {
+            return false;
+        }
+        DependencyAwareActivity a = (DependencyAwareActivity) first;
+        DependencyAwareActivity b = (DependencyAwareActivity) second;
+        if (a.getWriteDependencies() == null || b.getWriteDependencies() == null) {
+            return false;
+        }
+        return !intersects(a.getWriteDependencies(), b.getWriteDependencies())
+                && !intersects(a.getWriteDependencies(), b.getReadDependencies())
+                && !intersects(b.getWriteDependencies(), a.getReadDependencies());
+    }
+
+    protected boolean intersects(Set<String> first, Set<String> second) {
+        if (first == null || second == null) {
+            return false;
+        }
+        for (String item : first) {
+            if (second.contains(item)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    protected String describeActivityGroups(List<List<Activity<ProcessContext<U>>>> groups) {
+        StringBuilder sb = new StringBuilder();
+        for (List<Activity<ProcessContext<U>>> group : groups) {
+            if (sb.length() > 0) {
+                sb.append(", ");
+            }
+            sb.append('[');
+            for (int i = 0; i < group.size(); i++) {
+                if (i > 0) {
+                    sb.append(" | ");
+                }
+                sb.append(group.get(i).getBeanName());
+            }
+            sb.append(']');
+        }
+        return sb.toString();
+    }
+
+    public ExecutorService getExecutorService() {
+        if (executorService == null) {
+            synchronized (this) {
+                if (executorService == null) {
+                    executorService = createExecutorService(Math.max(1, parallelThreads), getBeanName());
+                    ownsExecutorService = true;
+                }
+            }
+        }
+        return executorService;
+    }
+
+    public void setExecutorService(ExecutorService executorService) {
+        this.executorService = executorService;
+        this.ownsExecutorService = false;
+    }
+
+    public int getParallelThreads() {
+        return parallelThreads;
+    }
+
+    public void setParallelThreads(int parallelThreads) {
+        this.parallelThreads = parallelThreads;
+    }
+
+    protected ExecutorService createExecutorService(int threads, final String threadName) {
+        final AtomicInteger threadCount = new AtomicInteger();
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                new SynchronousQueue<Runnable>(), new ThreadFactory() {
+                    @Override
+                    public Thread newThread(Runnable r) {
+                        Thread thread = new Thread(r, threadName + "-" + threadCount.incrementAndGet());
+                        thread.setDaemon(true);
+                        return thread;
+                    }
+                });
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (executorService != null && ownsExecutorService) {
+            executorService.shutdownNow();
+        }
+    }
+
+}
@@ -23,6 +23,9 @@ import org.broadleafcommerce.core.workflow.state.ActivityStateManager;
 import org.broadleafcommerce.core.workflow.state.ActivityStateManagerImpl;
 import org.broadleafcommerce.core.workflow.state.RollbackFailureException;
 import org.broadleafcommerce.core.workflow.state.RollbackStateLocal;
+import org.broadleafcommerce.core.workflow.statistics.WorkflowExecution;
+import org.broadleafcommerce.core.workflow.statistics.WorkflowExecution.ActivityExecution;
+import org.broadleafcommerce.core.workflow.statistics.WorkflowStatisticsService;
 
 import java.util.List;
 
@@ -57,6 +60,12 @@ public class SequenceProcessor<U, T> extends BaseProcessor<U, T> {
         rollbackStateLocal.setThreadId(String.valueOf(Thread.currentThread().getId()));
         rollbackStateLocal.setWorkflowId(getBeanName());
         RollbackStateLocal.setRollbackStateLocal(rollbackStateLocal);
+
+        WorkflowStatisticsService statisticsService = getWorkflowStatisticsService();
+        WorkflowExecution execution = null;
+        if (statisticsService != null && getBeanName() != null) {
+            execution = statisticsService.startWorkflow(getBeanName());
+        }
         
         try {
             //retrieve injected by Spring
@@ -65,69 +74,128 @@ public class SequenceProcessor<U, T> extends BaseProcessor<U, T> {
             //retrieve a new instance of the Workflow ProcessContext
             context = createContext(seedData);
 
-            for (Activity<ProcessContext<U>> activity : activities) {
-                if (activity.shouldExecute(context)) {
-                    if (LOG.isDebugEnabled()) {
-                        LOG.debug("running activity:" + activity.getBeanName() + " using arguments:" + context);
-                    }
-    
-                    try {
-                        context = activity.execute(context);
-                    } catch (Throwable activityException) {
-                        RollbackFailureException rollbackFailure = null;
-                        if (getAutoRollbackOnError()) {
-                            LOG.info(String.format("Exception ocurred in %s, executing rollback handlers", rollbackStateLocal.getWorkflowId()));
-                            
-                            try {
-                                ActivityStateManagerImpl.getStateManager().rollbackAllState();
-                            } catch (Throwable rollbackException) {
-                                LOG.fatal(String.format("There was an exception rolling back %s", rollbackStateLocal.getWorkflowId()), rollbackException);
-                                
-                                if (rollbackException instanceof RollbackFailureException) {
-                                    rollbackFailure = (RollbackFailureException) rollbackException;
-                                } else {
-                                    rollbackFailure = new RollbackFailureException(rollbackException);
-                                }
-                                
-                                LOG.error(String.format("The original cause of the rollback for %s was", rollbackStateLocal.getWorkflowId()), activityException);
-                                rollbackFailure.setOriginalWorkflowException(activityException);
-                                throw rollbackFailure;
-                            }
-                        }
-                        
-                        ErrorHandler errorHandler = activity.getErrorHandler();
-                        if (errorHandler == null) {
-                            getDefaultErrorHandler().handleError(context, activityException);
-                            break;
-                        } else {
-                            errorHandler.handleError(context, activityException);
-                        }
-                    }
-    
-                    //ensure its ok to continue the process
-                    if (processShouldStop(context, activity)) {
-                        break;
-                    }
-    
-                    //register the RollbackHandler
-                    if (activity.getRollbackHandler() != null && activity.getAutomaticallyRegisterRollbackHandler()) {
-                        ActivityStateManagerImpl.getStateManager().registerState(activity, context, activity.getRollbackRegion(), activity.getRollbackHandler(), activity.getStateConfiguration());
-                    }
-                } else {
-                    LOG.debug("Not executing activity: " + activity.getBeanName() + " based on the context: " + context);
-                }
-            }
+            context = runActivities(activities, context, rollbackStateLocal);
         } finally {
             rollbackStateLocal = RollbackStateLocal.getRollbackStateLocal();
             if (rollbackStateLocal != null && rollbackStateLocal.getWorkflowId().equals(getBeanName())) {
                 activityStateManager.clearAllState();
             }
+            if (execution != null) {
+                statisticsService.endWorkflow(execution);
+            }
         }
         LOG.debug(getBeanName() + " processor is done.");
 
         return (P) context;
     }
 
+    /**
+     * Runs the given activities in order against the context, stopping when the context is stopped or an activity failure
+     * is handled by the default error handler.
+     *
+     * @param activities the ordered activities of this workflow
+     * @param context the freshly created process context
+     * @param rollbackStateLocal the rollback state of this workflow execution
+     * @return the resulting process context
+     */
+    protected ProcessContext<U> runActivities(List<Activity<ProcessContext<U>>> activities, ProcessContext<U> context,
+            RollbackStateLocal rollbackStateLocal) throws WorkflowException {
+        for (Activity<ProcessContext<U>> activity : activities) {
+            if (activity.shouldExecute(context)) {
+                if (LOG.isDebugEnabled()) {
+                    LOG.debug("running activity:" + activity.getBeanName() + " using arguments:" + context);
+                }
+
+                try {
+                    context = executeActivity(activity, context);
+                } catch (Throwable activityException) {
+                    if (handleActivityError(context, activity, activityException, rollbackStateLocal)) {
+                        break;
+                    }
+                }
+
+                //ensure its ok to continue the process
+                if (processShouldStop(context, activity)) {
+                    break;
+                }
+
+                registerRollbackHandler(activity, context);
+            } else {
+                LOG.debug("Not executing activity: " + activity.getBeanName() + " based on the context: " + context);
+            }
+        }
+        return context;
+    }
+
+    /**
+     * Executes a single activity. This is the single place every activity of the workflow is run through, so it is also
+     * where the activity is measured if this workflow run is being recorded.
+     */
+    protected ProcessContext<U> executeActivity(Activity<ProcessContext<U>> activity, ProcessContext<U> context) throws Exception {
+        WorkflowExecution execution = WorkflowExecution.getCurrentExecution();
+        WorkflowStatisticsService statisticsService = getWorkflowStatisticsService();
+        if (execution == null || statisticsService == null || !execution.getWorkflowName().equals(getBeanName())) {
+            return activity.execute(context);
+        }
+        ActivityExecution activityExecution = statisticsService.startActivity(execution, activity.getBeanName());
+        boolean failed = true;
+        try {
+            ProcessContext<U> response = activity.execute(context);
+            failed = false;
+            return response;
+        } finally {
+            statisticsService.endActivity(execution, activityExecution, failed);
+        }
+    }
+
+    /**
+     * Rolls back all registered state (if configured to do so) and hands the failure to the error handler of the activity,
+     * or the default error handler of the workflow.
+     *
+     * @return true if the default error handler was used, in which case the workflow does not continue
+     */
+    protected boolean handleActivityError(ProcessContext<U> context, Activity<ProcessContext<U>> activity,
+            Throwable activityException, RollbackStateLocal rollbackStateLocal) throws WorkflowException {
+        RollbackFailureException rollbackFailure = null;
+        if (getAutoRollbackOnError()) {
+            LOG.info(String.format("Exception ocurred in %s, executing rollback handlers", rollbackStateLocal.getWorkflowId()));
+
+            try {
+                ActivityStateManagerImpl.getStateManager().rollbackAllState();
+            } catch (Throwable rollbackException) {
+                LOG.fatal(String.format("There was an exception rolling back %s", rollbackStateLocal.getWorkflowId()), rollbackException);
+
+                if (rollbackException instanceof RollbackFailureException) {
+                    rollbackFailure = (RollbackFailureException) rollbackException;
+                } else {
+                    rollbackFailure = new RollbackFailureException(rollbackException);
+                }
+
+                LOG.error(String.format("The original cause of the rollback for %s was", rollbackStateLocal.getWorkflowId()), activityException);
+                rollbackFailure.setOriginalWorkflowException(activityException);
+                throw rollbackFailure;
+            }
+        }
+
+        ErrorHandler errorHandler = activity.getErrorHandler();
+        if (errorHandler == null) {
+            getDefaultErrorHandler().handleError(context, activityException);
+            return true;
+        } else {
+            errorHandler.handleError(context, activityException);
+        }
+        return false;
+    }
+
+    /**
+     * Registers the RollbackHandler of the activity, if it has one and wants it registered automatically
+     */
+    protected void registerRollbackHandler(Activity<ProcessContext<U>> activity, ProcessContext<U> context) {
+        if (activity.getRollbackHandler() != null && activity.getAutomaticallyRegisterRollbackHandler()) {
+            ActivityStateManagerImpl.getStateManager().registerState(activity, context, activity.getRollbackRegion(), activity.getRollbackHandler(), activity.getStateConfiguration());
+        }
+    }
+
     /**
      * Determine if the process should stop
      *
@@ -32,7 +32,8 @@ public class RollbackStateLocal {
     private static final ThreadLocal<Stack> THREAD_LOCAL = ThreadLocalManager.createThreadLocal(Stack.class, true);
 
     public static RollbackStateLocal getRollbackStateLocal() {
-        return (RollbackStateLocal) THREAD_LOCAL.get().peek();
+        Stack localState = THREAD_LOCAL.get();
+        return localState.isEmpty() ? null : (RollbackStateLocal) localState.peek();
     }
 
     public static void setRollbackStateLocal(RollbackStateLocal rollbackStateLocal) {
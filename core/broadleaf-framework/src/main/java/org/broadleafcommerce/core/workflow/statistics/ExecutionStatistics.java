@@ -0,0 +1,94 @@
+/*
+ * #%L
+ * BroadleafCommerce Framework
+ * %%
+ * Copyright (C) 2009 - 2016 Broadleaf Commerce
+ * %%
+ * Licensed under the Broadleaf Fair Use License Agreement, Version 1.0
+ * (the "Fair Use License" located  at http://license.broadleafcommerce.org/fair_use_license-1.0.txt)
+ * unless the restrictions on use therein are violated and require payment to Broadleaf in which case
+ * the Broadleaf End User License Agreement (EULA), Version 1.1
+ * (the "Commercial License" located at http://license.broadleafcommerce.org/commercial_license-1.1.txt)
+ * shall apply.
+ * 
+ * Alternatively, the Commercial License may be replaced with a mutually agreed upon license (the "Custom License")
+ * between you and Broadleaf Commerce. You may not use this file except in compliance with the applicable license.
+ * #L%
+ */
+package org.broadleafcommerce.core.workflow.statistics;
+
+import org.broadleafcommerce.common.cache.RollingLatencyHistogram;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Rolling aggregates of the executions of either a single activity of a workflow, or of the workflow as a whole, in
+ * which case {@link #getActivityName()} is null.
+ */
+public class ExecutionStatistics {
+
+    protected final String workflowName;
+    protected final String activityName;
+    protected final LongAdder executionCount = new LongAdder();
+    protected final LongAdder failureCount = new LongAdder();
+    protected final RollingLatencyHistogram wallTimes;
+    protected final RollingLatencyHistogram cpuTimes;
+    protected final RollingLatencyHistogram allocatedBytes;
+
+    public ExecutionStatistics(String workflowName, String activityName, long windowSeconds) {
+        this.workflowName = workflowName;
+        this.activityName = activityName;
+        this.wallTimes = new RollingLatencyHistogram(windowSeconds);
+        this.cpuTimes = new RollingLatencyHistogram(windowSeconds);
+        this.allocatedBytes = new RollingLatencyHistogram(windowSeconds);
+    }
+
+    public void record(long wallNanos, long cpuNanos, long allocated, boolean failed) {
+        executionCount.increment();
+        if (failed) {
+            failureCount.increment();
+        }
+        wallTimes.record(wallNanos);
+        if (cpuNanos >= 0) {
+            cpuTimes.record(cpuNanos);
+        }
+        if (allocated >= 0) {
+            allocatedBytes.record(allocated);
+        }
+    }
+
+    public String getWorkflowName() {
+        return workflowName;
+    }
+
+    public String getActivityName() {
+        return activityName;
+    }
+
+    /**
+     * @return the number of executions since startup
+     */
+    public long getExecutionCount() {
+        return executionCount.sum();
+    }
+
+    /**
+     * @return the number of executions that threw an exception since startup
+     */
+    public long getFailureCount() {
+        return failureCount.sum();
+    }
+
+    public RollingLatencyHistogram getWallTimes() {
+        return wallTimes;
+    }
+
+    public RollingLatencyHistogram getCpuTimes() {
+        return cpuTimes;
+    }
+
+    public RollingLatencyHistogram getAllocatedBytes() {
+        return allocatedBytes;
+    }
+
+}
@@ -0,0 +1,167 @@
+/*
+ * #%L
+ * BroadleafCommerce Framework
+ * %%
+ * Copyright (C) 2009 - 2016 Broadleaf Commerce
+ * %%
+ * Licensed under the Broadleaf Fair Use License Agreement, Version 1.0
+ * (the "Fair Use License" located  at http://license.broadleafcommerce.org/fair_use_license-1.0.txt)
+ * unless the restrictions on use therein are violated and require payment to Broadleaf in which case
+ * the Broadleaf End User License Agreement (EULA), Version 1.1
+ * (the "Commercial License" located at http://license.broadleafcommerce.org/commercial_license-1.1.txt)
+ * shall apply.
+ * 
+ * Alternatively, the Commercial License may be replaced with a mutually agreed upon license (the "Custom License")
+ * between you and Broadleaf Commerce. You may not use this file except in compliance with the applicable license.
+ * #L%
+ */
+package org.broadleafcommerce.core.workflow.statistics;
+
+import org.broadleafcommerce.common.classloader.release.ThreadLocalManager;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Stack;
+
+/**
+ * The measurements taken during a single run of a workflow. The execution of the innermost running workflow is kept
+ * on the current thread, so that nested workflows are measured separately.
+ *
+ * @see WorkflowStatisticsService
+ */
+public class WorkflowExecution {
+
+    private static final ThreadLocal<Stack> THREAD_LOCAL = ThreadLocalManager.createThreadLocal(Stack.class, true);
+
+    public static WorkflowExecution getCurrentExecution() {
+        Stack executions = THREAD_LOCAL.get();
+        return executions.isEmpty() ? null : (WorkflowExecution) executions.peek();
+    }
+
+    public static void setCurrentExecution(WorkflowExecution execution) {
+        THREAD_LOCAL.get().push(execution);
+    }
+
+    public static void clearCurrentExecution() {
+        Stack executions = THREAD_LOCAL.get();
+        if (!executions.isEmpty()) {
+            executions.pop();
+        }
+    }
+
+    protected final String workflowName;
+    protected final long startNanos;
+    protected long wallNanos = -1L;
+    protected final List<ActivityExecution> activityExecutions = Collections.synchronizedList(new ArrayList<ActivityExecution>());
+
+    public WorkflowExecution(String workflowName) {
+        this.workflowName = workflowName;
+        this.startNanos = System.nanoTime();
+    }
+
+    public String getWorkflowName() {
+        return workflowName;
+    }
+
+    public long getStartNanos() {
+        return startNanos;
+    }
+
+    /**
+     * @return the wall time of the whole workflow in nanoseconds, or -1 while it is still running
+     */
+    public long getWallNanos() {
+        return wallNanos;
+    }
+
+    public void setWallNanos(long wallNanos) {
+        this.wallNanos = wallNanos;
+    }
+
+    public List<ActivityExecution> getActivityExecutions() {
+        synchronized (activityExecutions) {
+            return new ArrayList<ActivityExecution>(activityExecutions);
+        }
+    }
+
+    public void addActivityExecution(ActivityExecution activityExecution) {
+        activityExecutions.add(activityExecution);
+    }
+
+    /**
+     * The cost of running one activity. The CPU time and allocated bytes are -1 when the JVM cannot measure them.
+     */
+    public static class ActivityExecution {
+
+        protected final String activityName;
+        protected final String threadName;
+        protected final long startNanos;
+        protected final long startCpuNanos;
+        protected final long startAllocatedBytes;
+        protected long wallNanos;
+        protected long cpuNanos = -1L;
+        protected long allocatedBytes = -1L;
+        protected boolean failed;
+
+        public ActivityExecution(String activityName, long startCpuNanos, long startAllocatedBytes) {
+            this.activityName = activityName;
+            this.threadName = Thread.currentThread().getName();
+            this.startCpuNanos = startCpuNanos;
+            this.startAllocatedBytes = startAllocatedBytes;
+            this.startNanos = System.nanoTime();
+        }
+
+        public String getActivityName() {
+            return activityName;
+        }
+
+        public String getThreadName() {
+            return threadName;
+        }
+
+        public long getStartNanos() {
+            return startNanos;
+        }
+
+        public long getStartCpuNanos() {
+            return startCpuNanos;
+        }
+
+        public long getStartAllocatedBytes() {
+            return startAllocatedBytes;
+        }
+
+        public long getWallNanos() {
+            return wallNanos;
+        }
+
+        public void setWallNanos(long wallNanos) {
+            this.wallNanos = wallNanos;
+        }
+
+        public long getCpuNanos() {
+            return cpuNanos;
+        }
+
+        public void setCpuNanos(long cpuNanos) {
+            this.cpuNanos = cpuNanos;
+        }
+
+        public long getAllocatedBytes() {
+            return allocatedBytes;
+        }
+
+        public void setAllocatedBytes(long allocatedBytes) {
+            this.allocatedBytes = allocatedBytes;
+        }
+
+        public boolean isFailed() {
+            return failed;
+        }
+
+        public void setFailed(boolean failed) {
+            this.failed = failed;
+        }
+    }
+}
@@ -0,0 +1,77 @@
+/*
+ * #%L
+ * BroadleafCommerce Framework
+ * %%
+ * Copyright (C) 2009 - 2016 Broadleaf Commerce
+ * %%
+ * Licensed under the Broadleaf Fair Use License Agreement, Version 1.0
+ * (the "Fair Use License" located  at http://license.broadleafcommerce.org/fair_use_license-1.0.txt)
+ * unless the restrictions on use therein are violated and require payment to Broadleaf in which case
+ * the Broadleaf End User License Agreement (EULA), Version 1.1
+ * (the "Commercial License" located at http://license.broadleafcommerce.org/commercial_license-1.1.txt)
+ * shall apply.
+ * 
+ * Alternatively, the Commercial License may be replaced with a mutually agreed upon license (the "Custom License")
+ * between you and Broadleaf Commerce. You may not use this file except in compliance with the applicable license.
+ * #L%
+ */
+package org.broadleafcommerce.core.workflow.statistics;
+
+import org.broadleafcommerce.core.workflow.BaseProcessor;
+
+import java.util.List;
+
+/**
+ * Records the wall time, CPU time and allocated bytes of every activity a workflow runs, keeping rolling percentiles
+ * per workflow and activity bean name. Workflows that take longer than a configured threshold have their activity
+ * breakdown logged.
+ *
+ * @see BaseProcessor#getWorkflowStatisticsService()
+ */
+public interface WorkflowStatisticsService {
+
+    boolean isEnabled();
+
+    /**
+     * Starts measuring a workflow run and makes it the current execution of this thread.
+     *
+     * @return the new execution, or null if statistics are disabled
+     */
+    WorkflowExecution startWorkflow(String workflowName);
+
+    /**
+     * Records the total of a workflow run started with {@link #startWorkflow(String)}, logs its breakdown if it was
+     * slow, and removes it from the current thread.
+     */
+    void endWorkflow(WorkflowExecution execution);
+
+    /**
+     * Starts measuring an activity on the current thread
+     */
+    WorkflowExecution.ActivityExecution startActivity(WorkflowExecution execution, String activityName);
+
+    /**
+     * Records an activity started with {@link #startActivity(WorkflowExecution, String)}. Must be called on the same
+     * thread the activity was started on.
+     */
+    void endActivity(WorkflowExecution execution, WorkflowExecution.ActivityExecution activityExecution, boolean failed);
+
+    /**
+     * @return the statistics of every workflow, followed by those of its activities
+     */
+    List<ExecutionStatistics> getExecutionStatistics();
+
+    /**
+     * @return the number of workflow runs that exceeded the slow workflow threshold since startup
+     */
+    long getSlowWorkflowCount();
+
+    /**
+     * @return the wall time in milliseconds above which the activity breakdown of a workflow run is logged, or 0 if
+     * that is disabled
+     */
+    long getSlowWorkflowThresholdMillis();
+
+    long getWindowSeconds();
+
+}
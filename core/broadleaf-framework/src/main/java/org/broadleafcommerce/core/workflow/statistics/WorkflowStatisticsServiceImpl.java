@@ -0,0 +1,319 @@
+/*
+ * #%L
+ * BroadleafCommerce Framework
+ * %%
+ * Copyright (C) 2009 - 2016 Broadleaf Commerce
+ * %%
+ * Licensed under the Broadleaf Fair Use License Agreement, Version 1.0
+ * (the "Fair Use License" located  at http://license.broadleafcommerce.org/fair_use_license-1.0.txt)
+ * unless the restrictions on use therein are violated and require payment to Broadleaf in which case
+ * the Broadleaf End User License Agreement (EULA), Version 1.1
+ * (the "Commercial License" located at http://license.broadleafcommerce.org/commercial_license-1.1.txt)
+ * shall apply.
+ * 
+ * Alternatively, the Commercial License may be replaced with a mutually agreed upon license (the "Custom License")
+ * between you and Broadleaf Commerce. You may not use this file except in compliance with the applicable license.
+ * #L%
+ */
+package org.broadleafcommerce.core.workflow.statistics;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.broadleafcommerce.common.cache.LatencyHistogram;
+import org.broadleafcommerce.core.workflow.statistics.WorkflowExecution.ActivityExecution;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedOperation;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.stereotype.Service;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+@Service("blWorkflowStatisticsService")
+@ManagedResource(objectName = "org.broadleafcommerce:name=WorkflowStatistics", description = "Workflow Statistics", currencyTimeLimit = 15)
+public class WorkflowStatisticsServiceImpl implements WorkflowStatisticsService {
+
+    private static final Log LOG = LogFactory.getLog(WorkflowStatisticsServiceImpl.class);
+
+    protected static final double NANOS_PER_MILLI = 1000000D;
+
+    @Value("${workflow.statistics.enabled:true}")
+    protected boolean enabled = true;
+
+    @Value("${workflow.statistics.windowSeconds:300}")
+    protected long windowSeconds = 300;
+
+    @Value("${workflow.statistics.slowThresholdMillis:2000}")
+    protected long slowWorkflowThresholdMillis = 2000;
+
+    protected final ConcurrentMap<String, WorkflowStatistics> workflows = new ConcurrentHashMap<String, WorkflowStatistics>();
+    protected final LongAdder slowWorkflowCount = new LongAdder();
+
+    protected final ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+    protected volatile boolean cpuTimeSupported = isCpuTimeSupported(threadMXBean);
+    protected volatile boolean allocationSupported = isAllocationSupported(threadMXBean);
+
+    @Override
+    @ManagedAttribute(description = "Whether workflow activities are measured", currencyTimeLimit = 15)
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    @ManagedAttribute(description = "Whether workflow activities are measured")
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    @Override
+    public WorkflowExecution startWorkflow(String workflowName) {
+        if (!enabled) {
+            return null;
+        }
+        WorkflowExecution execution = new WorkflowExecution(workflowName);
+        WorkflowExecution.setCurrentExecution(execution);
+        return execution;
+    }
+
+    @Override
+    public void endWorkflow(WorkflowExecution execution) {
+        if (WorkflowExecution.getCurrentExecution() == execution) {
+            WorkflowExecution.clearCurrentExecution();
+        }
+        execution.setWallNanos(System.nanoTime() - execution.getStartNanos());
+
+        long cpuNanos = -1L;
+        long allocated = -1L;
+        boolean failed = false;
+        for (ActivityExecution activityExecution : execution.getActivityExecutions()) {
+            if (activityExecution.getCpuNanos() >= 0) {
+                cpuNanos = Math.max(0L, cpuNanos) + activityExecution.getCpuNanos();
+            }
+            if (activityExecution.getAllocatedBytes() >= 0) {
+                allocated = Math.max(0L, allocated) + activityExecution.getAllocatedBytes();
+            }
+            failed |= activityExecution.isFailed();
+        }
+        getWorkflowStatistics(execution.getWorkflowName()).total.record(execution.getWallNanos(), cpuNanos, allocated, failed);
+
+        if (slowWorkflowThresholdMillis > 0 && execution.getWallNanos() > TimeUnit.MILLISECONDS.toNanos(slowWorkflowThresholdMillis)) {
+            slowWorkflowCount.increment();
+            LOG.warn(buildSlowWorkflowMessage(execution));
+        }
+    }
+
+    @Override
+    public ActivityExecution startActivity(WorkflowExecution execution, String activityName) {
+        return new ActivityExecution(activityName, getCurrentThreadCpuTime(), getCurrentThreadAllocatedBytes());
+    }
+
+    @Override
+    public void endActivity(WorkflowExecution execution, ActivityExecution activityExecution, boolean failed) {
+        activityExecution.setWallNanos(System.nanoTime() - activityExecution.getStartNanos());
+        if (activityExecution.getStartCpuNanos() >= 0) {
+            long cpuTime = getCurrentThreadCpuTime();
+            if (cpuTime >= 0) {
+                activityExecution.setCpuNanos(cpuTime - activityExecution.getStartCpuNanos());
+            }
+        }
+        if (activityExecution.getStartAllocatedBytes() >= 0) {
+            long allocated = getCurrentThreadAllocatedBytes();
+            if (allocated >= 0) {
+                activityExecution.setAllocatedBytes(allocated - activityExecution.getStartAllocatedBytes());
+            }
+        }
+        activityExecution.setFailed(failed);
+        execution.addActivityExecution(activityExecution);
+
+        getWorkflowStatistics(execution.getWorkflowName()).getActivity(activityExecution.getActivityName())
+                .record(activityExecution.getWallNanos(), activityExecution.getCpuNanos(), activityExecution.getAllocatedBytes(), failed);
+    }
+
+    @Override
+    public List<ExecutionStatistics> getExecutionStatistics() {
+        List<ExecutionStatistics> response = new ArrayList<ExecutionStatistics>();
+        for (WorkflowStatistics workflow : workflows.values()) {
+            response.add(workflow.total);
+            response.addAll(workflow.activities);
+        }
+        return response;
+    }
+
+    @Override
+    @ManagedAttribute(description = "The number of workflow runs that exceeded the slow workflow threshold", currencyTimeLimit = 15)
+    public long getSlowWorkflowCount() {
+        return slowWorkflowCount.sum();
+    }
+
+    @Override
+    @ManagedAttribute(description = "The wall time in milliseconds above which a workflow run logs its activity breakdown, 0 to disable", currencyTimeLimit = 15)
+    public long getSlowWorkflowThresholdMillis() {
+        return slowWorkflowThresholdMillis;
+    }
+
+    @ManagedAttribute(description = "The wall time in milliseconds above which a workflow run logs its activity breakdown, 0 to disable")
+    public void setSlowWorkflowThresholdMillis(long slowWorkflowThresholdMillis) {
+        this.slowWorkflowThresholdMillis = slowWorkflowThresholdMillis;
+    }
+
+    @Override
+    @ManagedAttribute(description = "The length in seconds of the windows the percentiles are rolled over", currencyTimeLimit = 15)
+    public long getWindowSeconds() {
+        return windowSeconds;
+    }
+
+    /**
+     * @return a one line summary of every workflow and activity, keyed by workflow bean name and activity bean name
+     */
+    @ManagedAttribute(description = "Rolling percentiles of the wall time, CPU time and allocations of every workflow activity", currencyTimeLimit = 15)
+    public Map<String, String> getActivitySummaries() {
+        Map<String, String> response = new LinkedHashMap<String, String>();
+        for (ExecutionStatistics statistics : getExecutionStatistics()) {
+            String key = statistics.getActivityName() == null ? statistics.getWorkflowName()
+                    : statistics.getWorkflowName() + "." + statistics.getActivityName();
+            response.put(key, buildSummary(statistics));
+        }
+        return response;
+    }
+
+    @ManagedOperation(description = "Discards all workflow statistics")
+    public void reset() {
+        workflows.clear();
+        slowWorkflowCount.reset();
+    }
+
+    protected WorkflowStatistics getWorkflowStatistics(String workflowName) {
+        WorkflowStatistics workflow = workflows.get(workflowName);
+        if (workflow == null) {
+            workflow = new WorkflowStatistics(workflowName);
+            WorkflowStatistics existing = workflows.putIfAbsent(workflowName, workflow);
+            if (existing != null) {
+                workflow = existing;
+            }
+        }
+        return workflow;
+    }
+
+    protected String buildSlowWorkflowMessage(WorkflowExecution execution) {
+        StringBuilder sb = new StringBuilder();
+        sb.append("Workflow ").append(execution.getWorkflowName()).append(" took ")
+                .append(formatMillis(execution.getWallNanos())).append(" (threshold ")
+                .append(slowWorkflowThresholdMillis).append("ms):");
+        for (ActivityExecution activityExecution : execution.getActivityExecutions()) {
+            sb.append("\n  ").append(activityExecution.getActivityName())
+                    .append(" wall=").append(formatMillis(activityExecution.getWallNanos()));
+            if (activityExecution.getCpuNanos() >= 0) {
+                sb.append(" cpu=").append(formatMillis(activityExecution.getCpuNanos()));
+            }
+            if (activityExecution.getAllocatedBytes() >= 0) {
+                sb.append(" allocated=").append(activityExecution.getAllocatedBytes() / 1024).append("KB");
+            }
+            sb.append(" thread=").append(activityExecution.getThreadName());
+            if (activityExecution.isFailed()) {
+                sb.append(" FAILED");
+            }
+        }
+        return sb.toString();
+    }
+
+    protected String buildSummary(ExecutionStatistics statistics) {
+        LatencyHistogram wall = statistics.getWallTimes().getSnapshot();
+        LatencyHistogram cpu = statistics.getCpuTimes().getSnapshot();
+        LatencyHistogram allocated = statistics.getAllocatedBytes().getSnapshot();
+        StringBuilder sb = new StringBuilder();
+        sb.append("executions=").append(statistics.getExecutionCount())
+                .append(" failures=").append(statistics.getFailureCount())
+                .append(" wall p50=").append(formatMillis(wall.getValueAtPercentile(50D)))
+                .append(" p99=").append(formatMillis(wall.getValueAtPercentile(99D)))
+                .append(" max=").append(formatMillis(wall.getMax()));
+        if (cpu.getCount() > 0) {
+            sb.append(" cpu p50=").append(formatMillis(cpu.getValueAtPercentile(50D)))
+                    .append(" p99=").append(formatMillis(cpu.getValueAtPercentile(99D)));
+        }
+        if (allocated.getCount() > 0) {
+            sb.append(" allocated p50=").append(allocated.getValueAtPercentile(50D) / 1024).append("KB")
+                    .append(" p99=").append(allocated.getValueAtPercentile(99D) / 1024).append("KB");
+        }
+        return sb.toString();
+    }
+
+    protected String formatMillis(long nanos) {
+        return String.format("%.2fms", nanos / NANOS_PER_MILLI);
+    }
+
+    protected long getCurrentThreadCpuTime() {
+        if (!cpuTimeSupported) {
+            return -1L;
+        }
+        try {
+            return threadMXBean.getCurrentThreadCpuTime();
+        } catch (UnsupportedOperationException e) {
+            cpuTimeSupported = false;
+            return -1L;
+        }
+    }
+
+    protected long getCurrentThreadAllocatedBytes() {
+        if (!allocationSupported) {
+            return -1L;
+        }
+        try {
+            return ((com.sun.management.ThreadMXBean) threadMXBean).getThreadAllocatedBytes(Thread.currentThread().getId());
+        } catch (UnsupportedOperationException e) {
+            allocationSupported = false;
+            return -1L;
+        }
+    }
+
+    protected static boolean isCpuTimeSupported(ThreadMXBean threadMXBean) {
+        return threadMXBean.isCurrentThreadCpuTimeSupported() && threadMXBean.isThreadCpuTimeEnabled();
+    }
+
+    /**
+     * Allocated bytes can only be measured on JVMs that provide the com.sun.management extension of ThreadMXBean
+     */
+    protected static boolean isAllocationSupported(ThreadMXBean threadMXBean) {
+        try {
+            return threadMXBean instanceof com.sun.management.ThreadMXBean
+                    && ((com.sun.management.ThreadMXBean) threadMXBean).isThreadAllocatedMemorySupported()
+                    && ((com.sun.management.ThreadMXBean) threadMXBean).isThreadAllocatedMemoryEnabled();
+        } catch (NoClassDefFoundError e) {
+            return false;
+        }
+    }
+
+    protected class WorkflowStatistics {
+
+        protected final ExecutionStatistics total;
+        protected final ConcurrentMap<String, ExecutionStatistics> activityMap = new ConcurrentHashMap<String, ExecutionStatistics>();
+        protected final List<ExecutionStatistics> activities = new CopyOnWriteArrayList<ExecutionStatistics>();
+
+        protected WorkflowStatistics(String workflowName) {
+            this.total = new ExecutionStatistics(workflowName, null, windowSeconds);
+        }
+
+        protected ExecutionStatistics getActivity(String activityName) {
+            ExecutionStatistics statistics = activityMap.get(activityName);
+            if (statistics == null) {
+                statistics = new ExecutionStatistics(total.getWorkflowName(), activityName, windowSeconds);
+                ExecutionStatistics existing = activityMap.putIfAbsent(activityName, statistics);
+                if (existing == null) {
+                    activities.add(statistics);
+                } else {
+                    statistics = existing;
+                }
+            }
+            return statistics;
+        }
+    }
+
+}
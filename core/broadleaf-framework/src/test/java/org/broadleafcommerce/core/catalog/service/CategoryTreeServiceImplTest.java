@@ -0,0 +1,172 @@
+/*
+ * #%L
+ * BroadleafCommerce Framework
+ * %%
+ * Copyright (C) 2009 - 2016 Broadleaf Commerce
+ * %%
+ * Licensed under the Broadleaf Fair Use License Agreement, Version 1.0
+ * (the "Fair Use License" located  at http://license.broadleafcommerce.org/fair_use_license-1.0.txt)
+ * unless the restrictions on use therein are violated and require payment to Broadleaf in which case
+ * the Broadleaf End User License Agreement (EULA), Version 1.1
+ * (the "Commercial License" located at http://license.broadleafcommerce.org/commercial_license-1.1.txt)
+ * shall apply.
+ *
+ * Alternatively, the Commercial License may be replaced with a mutually agreed upon license (the "Custom License")
+ * between you and Broadleaf Commerce. You may not use this file except in compliance with the applicable license.
+ * #L%
+ */
+package org.broadleafcommerce.core.catalog.service;
+
+import org.broadleafcommerce.common.site.domain.Catalog;
+import org.broadleafcommerce.common.site.domain.CatalogImpl;
+import org.broadleafcommerce.common.site.domain.Site;
+import org.broadleafcommerce.common.site.domain.SiteImpl;
+import org.broadleafcommerce.common.web.BroadleafRequestContext;
+import org.broadleafcommerce.core.catalog.dao.AbstractCategoryDaoExtensionHandler;
+import org.broadleafcommerce.core.catalog.dao.CategoryDaoExtensionManager;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+public class CategoryTreeServiceImplTest {
+
+    protected TestCategoryTreeService service;
+
+    @Before
+    public void setUp() {
+        service = new TestCategoryTreeService();
+        service.setRefreshSeconds(0);
+    }
+
+    @After
+    public void tearDown() {
+        service.shutdown();
+        BroadleafRequestContext.setBroadleafRequestContext(null);
+    }
+
+    @Test
+    public void testSnapshotsAreKeptPerSiteAndCatalog() throws Exception {
+        CategoryTreeSnapshot site1 = awaitSnapshot(1L, 10L);
+        CategoryTreeSnapshot site2 = awaitSnapshot(2L, 10L);
+        CategoryTreeSnapshot site1OtherCatalog = awaitSnapshot(1L, 20L);
+
+        Assert.assertTrue(site1.contains(1010L));
+        Assert.assertTrue(site2.contains(2010L));
+        Assert.assertTrue(site1OtherCatalog.contains(1020L));
+        Assert.assertFalse(site1.contains(2010L));
+        Assert.assertSame(site1, awaitSnapshot(1L, 10L));
+        Assert.assertEquals(3, service.builds.size());
+    }
+
+    @Test
+    public void testSnapshotIsBuiltWithTheRequestContext() throws Exception {
+        awaitSnapshot(3L, 30L);
+
+        BuildContext build = service.builds.get(0);
+        Assert.assertNotSame(Thread.currentThread(), build.thread);
+        Assert.assertEquals(Long.valueOf(3L), build.siteId);
+        Assert.assertEquals(Long.valueOf(30L), build.catalogId);
+    }
+
+    @Test
+    public void testRefreshRebuildsEverySnapshot() throws Exception {
+        CategoryTreeSnapshot site1 = awaitSnapshot(1L, 10L);
+        CategoryTreeSnapshot site2 = awaitSnapshot(2L, 10L);
+
+        service.refresh();
+        long deadline = System.currentTimeMillis() + 5000;
+        while (service.builds.size() < 4 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+        }
+
+        Assert.assertEquals(4, service.builds.size());
+        Assert.assertNotSame(site1, awaitSnapshot(1L, 10L));
+        Assert.assertNotSame(site2, awaitSnapshot(2L, 10L));
+    }
+
+    @Test
+    public void testUrlLookupIsNotSupportedWithExtensionHandlers() {
+        service.catalogServiceExtensionManager = new CatalogServiceExtensionManager();
+        service.categoryDaoExtensionManager = new CategoryDaoExtensionManager();
+        Assert.assertTrue(service.isUrlLookupSupported());
+
+        service.categoryDaoExtensionManager.registerHandler(new AbstractCategoryDaoExtensionHandler() {
+
+            @Override
+            public Long getCurrentDateResolution() {
+                return null;
+            }
+
+            @Override
+            public void setCurrentDateResolution(Long currentDateResolution) {
+            }
+        });
+        Assert.assertFalse(service.isUrlLookupSupported());
+
+        service.categoryDaoExtensionManager = new CategoryDaoExtensionManager();
+        service.catalogServiceExtensionManager.registerHandler(new AbstractCatalogServiceExtensionHandler() {
+        });
+        Assert.assertFalse(service.isUrlLookupSupported());
+    }
+
+    /**
+     * Asks for the snapshot as a request for the given site and catalog would, until its first build is in
+     */
+    protected CategoryTreeSnapshot awaitSnapshot(Long siteId, Long catalogId) throws InterruptedException {
+        Site site = new SiteImpl();
+        site.setId(siteId);
+        Catalog catalog = new CatalogImpl();
+        catalog.setId(catalogId);
+        BroadleafRequestContext context = new BroadleafRequestContext();
+        context.setNonPersistentSite(site);
+        context.setCurrentCatalog(catalog);
+        BroadleafRequestContext.setBroadleafRequestContext(context);
+
+        long deadline = System.currentTimeMillis() + 5000;
+        while (System.currentTimeMillis() < deadline) {
+            CategoryTreeSnapshot snapshot = service.getSnapshot();
+            if (snapshot != null) {
+                return snapshot;
+            }
+            Thread.sleep(20);
+        }
+        Assert.fail("The category tree snapshot was never built");
+        return null;
+    }
+
+    protected static class BuildContext {
+
+        protected final Thread thread = Thread.currentThread();
+        protected final Long siteId;
+        protected final Long catalogId;
+
+        protected BuildContext(BroadleafRequestContext context) {
+            siteId = context == null || context.getNonPersistentSite() == null ? null
+                    : context.getNonPersistentSite().getId();
+            catalogId = context == null || context.getCurrentCatalog() == null ? null
+                    : context.getCurrentCatalog().getId();
+        }
+    }
+
+    /**
+     * Builds a snapshot holding a single category whose id is made from the site and catalog of the build's context
+     */
+    protected static class TestCategoryTreeService extends CategoryTreeServiceImpl {
+
+        protected final List<BuildContext> builds = new CopyOnWriteArrayList<BuildContext>();
+
+        @Override
+        protected CategoryTreeSnapshot buildSnapshot() {
+            BuildContext build = new BuildContext(BroadleafRequestContext.getBroadleafRequestContext());
+            builds.add(build);
+            long id = build.siteId == null ? 0 : build.siteId * 1000 + build.catalogId;
+            return new CategoryTreeSnapshot.Builder()
+                    .addCategory(id, "/" + id, String.valueOf(id), "Category " + id, null, null)
+                    .build();
+        }
+    }
+}
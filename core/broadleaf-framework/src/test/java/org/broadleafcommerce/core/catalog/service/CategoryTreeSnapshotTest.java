@@ -0,0 +1,102 @@
+/*
+ * #%L
+ * BroadleafCommerce Framework
+ * %%
+ * Copyright (C) 2009 - 2016 Broadleaf Commerce
+ * %%
+ * Licensed under the Broadleaf Fair Use License Agreement, Version 1.0
+ * (the "Fair Use License" located  at http://license.broadleafcommerce.org/fair_use_license-1.0.txt)
+ * unless the restrictions on use therein are violated and require payment to Broadleaf in which case
+ * the Broadleaf End User License Agreement (EULA), Version 1.1
+ * (the "Commercial License" located at http://license.broadleafcommerce.org/commercial_license-1.1.txt)
+ * shall apply.
+ *
+ * Alternatively, the Commercial License may be replaced with a mutually agreed upon license (the "Custom License")
+ * between you and Broadleaf Commerce. You may not use this file except in compliance with the applicable license.
+ * #L%
+ */
+package org.broadleafcommerce.core.catalog.service;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+
+public class CategoryTreeSnapshotTest {
+
+    protected static final long NOW = 1000000L;
+    protected static final Date STARTED = new Date(NOW - 1000);
+    protected static final Date ENDED = new Date(NOW - 500);
+
+    /**
+     * Builds root(1) with children shoes(2), hats(3, ended) and sale(4); shoes has boots(5), which is also under
+     * sale as its default parent.
+     */
+    protected CategoryTreeSnapshot buildSnapshot() {
+        return new CategoryTreeSnapshot.Builder()
+                .addCategory(5L, "/shoes/boots", null, "Boots", STARTED, null)
+                .addCategory(1L, "/", "/", "Root", STARTED, null)
+                .addCategory(2L, "/shoes", "shoes", "Shoes", STARTED, null)
+                .addCategory(3L, "/hats", "hats", "Hats", STARTED, ENDED)
+                .addCategory(4L, "/sale", "sale", "Sale", STARTED, null)
+                .addXref(1L, 4L, true)
+                .addXref(1L, 3L, true)
+                .addXref(1L, 2L, true)
+                .addXref(2L, 5L, false)
+                .addXref(4L, 5L, true)
+                .addXref(99L, 2L, true)
+                .build();
+    }
+
+    @Test
+    public void testActiveChildrenKeepDisplayOrder() {
+        CategoryTreeSnapshot snapshot = buildSnapshot();
+
+        Assert.assertEquals(5, snapshot.size());
+        Assert.assertArrayEquals(new long[] { 4L, 2L }, snapshot.getActiveChildIds(1L, NOW, -1));
+        Assert.assertArrayEquals(new long[] { 4L }, snapshot.getActiveChildIds(1L, NOW, 1));
+        Assert.assertArrayEquals(new long[0], snapshot.getActiveChildIds(42L, NOW, -1));
+        Assert.assertFalse(snapshot.isActive(3L, NOW));
+        Assert.assertTrue(snapshot.isActive(3L, NOW - 700));
+    }
+
+    @Test
+    public void testParentPathPrefersDefaultReference() {
+        CategoryTreeSnapshot snapshot = buildSnapshot();
+
+        Assert.assertEquals(Long.valueOf(4L), snapshot.getParentId(5L, NOW));
+        Assert.assertArrayEquals(new long[] { 1L, 4L }, snapshot.getParentPath(5L, NOW));
+        Assert.assertArrayEquals(new long[0], snapshot.getParentPath(1L, NOW));
+        Assert.assertNull(snapshot.getParentId(1L, NOW));
+    }
+
+    @Test
+    public void testAncestorsFollowEveryParent() {
+        CategoryTreeSnapshot snapshot = buildSnapshot();
+
+        Assert.assertTrue(snapshot.isAncestor(2L, 5L));
+        Assert.assertTrue(snapshot.isAncestor(1L, 5L));
+        Assert.assertFalse(snapshot.isAncestor(5L, 1L));
+        Assert.assertFalse(snapshot.isAncestor(3L, 5L));
+        Assert.assertFalse(snapshot.isAncestor(5L, 5L));
+    }
+
+    @Test
+    public void testUrlLookupsSkipInactiveCategories() {
+        CategoryTreeSnapshot snapshot = buildSnapshot();
+
+        Assert.assertEquals(Long.valueOf(2L), snapshot.findCategoryIdByUrl("/shoes", NOW));
+        Assert.assertNull(snapshot.findCategoryIdByUrl("/hats", NOW));
+        Assert.assertNull(snapshot.findCategoryIdByUrl("/missing", NOW));
+
+        Map<String, List<Long>> urlMap = snapshot.createChildCategoryURLMap(1L, NOW);
+        Assert.assertEquals(Arrays.asList(1L), urlMap.get(""));
+        Assert.assertEquals(Arrays.asList(1L, 2L, 5L), urlMap.get("/shoes/boots"));
+        Assert.assertEquals(Arrays.asList(1L, 4L, 5L), urlMap.get("/sale/boots"));
+        Assert.assertFalse(urlMap.containsKey("/hats"));
+        Assert.assertEquals(5, urlMap.size());
+    }
+}
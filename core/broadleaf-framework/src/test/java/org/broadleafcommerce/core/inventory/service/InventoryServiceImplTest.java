@@ -0,0 +1,164 @@
+/*
+ * #%L
+ * BroadleafCommerce Framework
+ * %%
+ * Copyright (C) 2009 - 2016 Broadleaf Commerce
+ * %%
+ * Licensed under the Broadleaf Fair Use License Agreement, Version 1.0
+ * (the "Fair Use License" located  at http://license.broadleafcommerce.org/fair_use_license-1.0.txt)
+ * unless the restrictions on use therein are violated and require payment to Broadleaf in which case
+ * the Broadleaf End User License Agreement (EULA), Version 1.1
+ * (the "Commercial License" located at http://license.broadleafcommerce.org/commercial_license-1.1.txt)
+ * shall apply.
+ * 
+ * Alternatively, the Commercial License may be replaced with a mutually agreed upon license (the "Custom License")
+ * between you and Broadleaf Commerce. You may not use this file except in compliance with the applicable license.
+ * #L%
+ */
+package org.broadleafcommerce.core.inventory.service;
+
+import org.broadleafcommerce.common.extension.ExtensionResultHolder;
+import org.broadleafcommerce.common.extension.ExtensionResultStatusType;
+import org.broadleafcommerce.core.catalog.dao.SkuDao;
+import org.broadleafcommerce.core.catalog.domain.Sku;
+import org.broadleafcommerce.core.catalog.domain.SkuImpl;
+import org.broadleafcommerce.core.catalog.service.CatalogService;
+import org.broadleafcommerce.core.inventory.service.type.InventoryType;
+import org.easymock.EasyMock;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+import junit.framework.TestCase;
+
+public class InventoryServiceImplTest extends TestCase {
+
+    protected InventoryServiceImpl inventoryService;
+    protected SkuDao skuDaoMock;
+    protected CatalogService catalogServiceMock;
+
+    @Override
+    protected void setUp() {
+        skuDaoMock = EasyMock.createMock(SkuDao.class);
+        catalogServiceMock = EasyMock.createMock(CatalogService.class);
+        inventoryService = new InventoryServiceImpl() {
+
+            @Override
+            protected void invalidateSkuInventory(Sku sku) {
+                // no second level cache in a unit test
+            }
+        };
+        inventoryService.skuDao = skuDaoMock;
+        inventoryService.catalogService = catalogServiceMock;
+        inventoryService.extensionManager = new InventoryServiceExtensionManager();
+        TransactionSynchronizationManager.setActualTransactionActive(true);
+    }
+
+    @Override
+    protected void tearDown() {
+        TransactionSynchronizationManager.setActualTransactionActive(false);
+    }
+
+    public void testPlainReadUsesTheQuantityOfTheSku() {
+        Sku sku = buildSku(1L, 7);
+        EasyMock.replay(skuDaoMock, catalogServiceMock);
+
+        assertEquals(Integer.valueOf(7), inventoryService.retrieveQuantityAvailable(sku));
+        assertTrue(inventoryService.isAvailable(sku, 7));
+        assertFalse(inventoryService.isAvailable(sku, 8));
+
+        EasyMock.verify(skuDaoMock, catalogServiceMock);
+    }
+
+    public void testDecrementLocksAndUsesThePersistedQuantities() throws Exception {
+        Sku first = buildSku(1L, 10);
+        Sku second = buildSku(2L, 10);
+        Map<Long, Integer> persisted = new HashMap<Long, Integer>();
+        persisted.put(1L, 3);
+        persisted.put(2L, 5);
+        EasyMock.expect(skuDaoMock.readQuantitiesAvailable(ids(1L, 2L), true)).andReturn(persisted);
+        EasyMock.expect(catalogServiceMock.saveSku(first)).andReturn(first);
+        EasyMock.expect(catalogServiceMock.saveSku(second)).andReturn(second);
+        EasyMock.replay(skuDaoMock, catalogServiceMock);
+
+        Map<Sku, Integer> quantities = new LinkedHashMap<Sku, Integer>();
+        quantities.put(first, 2);
+        quantities.put(second, 5);
+        inventoryService.decrementInventory(quantities);
+
+        assertEquals(Integer.valueOf(1), first.getQuantityAvailable());
+        assertEquals(Integer.valueOf(0), second.getQuantityAvailable());
+        EasyMock.verify(skuDaoMock, catalogServiceMock);
+    }
+
+    public void testShortfallWritesNothing() throws Exception {
+        Sku first = buildSku(1L, 10);
+        Sku second = buildSku(2L, 10);
+        Map<Long, Integer> persisted = new HashMap<Long, Integer>();
+        persisted.put(1L, 1);
+        persisted.put(2L, 5);
+        EasyMock.expect(skuDaoMock.readQuantitiesAvailable(ids(1L, 2L), true)).andReturn(persisted);
+        EasyMock.replay(skuDaoMock, catalogServiceMock);
+
+        Map<Sku, Integer> quantities = new LinkedHashMap<Sku, Integer>();
+        quantities.put(first, 2);
+        quantities.put(second, 1);
+        try {
+            inventoryService.decrementInventory(quantities);
+            fail("The first sku does not have enough inventory");
+        } catch (InventoryUnavailableException e) {
+            assertEquals(1, e.getShortfalls().size());
+            assertEquals(Long.valueOf(1L), e.getShortfalls().get(0).getSkuId());
+            assertEquals(Integer.valueOf(1), e.getShortfalls().get(0).getQuantityAvailable());
+        }
+
+        assertEquals(Integer.valueOf(10), first.getQuantityAvailable());
+        assertEquals(Integer.valueOf(10), second.getQuantityAvailable());
+        EasyMock.verify(skuDaoMock, catalogServiceMock);
+    }
+
+    public void testExtensionHandlerQuantitiesAreNotLocked() throws Exception {
+        final Sku sku = buildSku(1L, 10);
+        inventoryService.extensionManager.registerHandler(new AbstractInventoryServiceExtensionHandler() {
+
+            @Override
+            public ExtensionResultStatusType retrieveQuantitiesAvailable(Collection<Sku> skus, Map<String, Object> context,
+                    ExtensionResultHolder<Map<Sku, Integer>> result) {
+                Map<Sku, Integer> quantities = new HashMap<Sku, Integer>();
+                quantities.put(sku, 4);
+                result.setResult(quantities);
+                return ExtensionResultStatusType.HANDLED;
+            }
+        });
+        EasyMock.expect(catalogServiceMock.saveSku(sku)).andReturn(sku);
+        EasyMock.replay(skuDaoMock, catalogServiceMock);
+
+        inventoryService.decrementInventory(sku, 3);
+
+        assertEquals(Integer.valueOf(1), sku.getQuantityAvailable());
+        EasyMock.verify(skuDaoMock, catalogServiceMock);
+    }
+
+    protected Sku buildSku(Long id, Integer quantityAvailable) {
+        Sku sku = new SkuImpl();
+        sku.setId(id);
+        sku.setActiveStartDate(new Date(System.currentTimeMillis() - 86400000L));
+        sku.setInventoryType(InventoryType.CHECK_QUANTITY);
+        sku.setQuantityAvailable(quantityAvailable);
+        return sku;
+    }
+
+    protected Set<Long> ids(Long... ids) {
+        Set<Long> result = new HashSet<Long>();
+        for (Long id : ids) {
+            result.add(id);
+        }
+        return result;
+    }
+}
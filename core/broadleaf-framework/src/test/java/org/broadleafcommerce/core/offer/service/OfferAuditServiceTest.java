@@ -0,0 +1,109 @@
+/*
+ * #%L
+ * BroadleafCommerce Framework
+ * %%
+ * Copyright (C) 2009 - 2016 Broadleaf Commerce
+ * %%
+ * Licensed under the Broadleaf Fair Use License Agreement, Version 1.0
+ * (the "Fair Use License" located  at http://license.broadleafcommerce.org/fair_use_license-1.0.txt)
+ * unless the restrictions on use therein are violated and require payment to Broadleaf in which case
+ * the Broadleaf End User License Agreement (EULA), Version 1.1
+ * (the "Commercial License" located at http://license.broadleafcommerce.org/commercial_license-1.1.txt)
+ * shall apply.
+ * 
+ * Alternatively, the Commercial License may be replaced with a mutually agreed upon license (the "Custom License")
+ * between you and Broadleaf Commerce. You may not use this file except in compliance with the applicable license.
+ * #L%
+ */
+package org.broadleafcommerce.core.offer.service;
+
+import org.broadleafcommerce.common.classloader.release.ThreadLocalManager;
+import org.broadleafcommerce.core.offer.dao.OfferAuditDao;
+import org.broadleafcommerce.core.offer.domain.OfferAudit;
+import org.broadleafcommerce.core.offer.domain.OfferAuditImpl;
+import org.broadleafcommerce.core.order.domain.Order;
+import org.broadleafcommerce.core.order.domain.OrderImpl;
+import org.broadleafcommerce.core.workflow.state.RollbackStateLocal;
+import org.easymock.EasyMock;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import junit.framework.TestCase;
+
+public class OfferAuditServiceTest extends TestCase {
+
+    protected OfferAuditServiceImpl offerAuditService;
+    protected OfferAuditDao offerAuditDaoMock;
+    protected Order order;
+
+    @Override
+    protected void setUp() throws Exception {
+        offerAuditDaoMock = EasyMock.createMock(OfferAuditDao.class);
+        offerAuditService = new OfferAuditServiceImpl();
+        offerAuditService.offerAuditDao = offerAuditDaoMock;
+        order = new OrderImpl();
+        order.setId(10L);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        ThreadLocalManager.remove();
+    }
+
+    public void testCountsAreReadTogetherAndMemoizedForTheWorkflow() {
+        List<Long> offerIds = Arrays.asList(1L, 2L);
+        EasyMock.expect(offerAuditDaoMock.countUsesByCustomer(order, 5L, offerIds)).andReturn(buildCounts(1L, 2L));
+        EasyMock.replay(offerAuditDaoMock);
+
+        RollbackStateLocal.setRollbackStateLocal(new RollbackStateLocal());
+        Map<Long, Long> counts = offerAuditService.countUsesByCustomer(order, 5L, offerIds);
+
+        assertEquals(Long.valueOf(2L), counts.get(1L));
+        assertEquals(Long.valueOf(0L), counts.get(2L));
+        assertEquals(Long.valueOf(2L), offerAuditService.countUsesByCustomer(order, 5L, 1L));
+        assertEquals(Long.valueOf(0L), offerAuditService.countUsesByCustomer(order, 5L, 2L));
+        EasyMock.verify(offerAuditDaoMock);
+    }
+
+    public void testCountsAreReadAgainByTheNextWorkflow() {
+        List<Long> offerIds = Collections.singletonList(1L);
+        EasyMock.expect(offerAuditDaoMock.countUsesByCustomer(order, 5L, offerIds)).andReturn(buildCounts(1L, 1L));
+        EasyMock.expect(offerAuditDaoMock.countUsesByCustomer(order, 5L, offerIds)).andReturn(buildCounts(1L, 2L));
+        EasyMock.replay(offerAuditDaoMock);
+
+        RollbackStateLocal.setRollbackStateLocal(new RollbackStateLocal());
+        assertEquals(Long.valueOf(1L), offerAuditService.countUsesByCustomer(order, 5L, 1L));
+        RollbackStateLocal.clearRollbackStateLocal();
+        RollbackStateLocal.setRollbackStateLocal(new RollbackStateLocal());
+        assertEquals(Long.valueOf(2L), offerAuditService.countUsesByCustomer(order, 5L, 1L));
+        EasyMock.verify(offerAuditDaoMock);
+    }
+
+    public void testCountersExcludeUsesOfTheCurrentOrder() {
+        offerAuditService.useCustomerUsageCounters = true;
+        List<Long> offerIds = Arrays.asList(1L, 2L);
+        OfferAudit audit = new OfferAuditImpl();
+        audit.setOfferId(1L);
+        audit.setCustomerId(5L);
+        audit.setOrderId(10L);
+        EasyMock.expect(offerAuditDaoMock.readCustomerUsageCounts(5L, offerIds)).andReturn(buildCounts(1L, 3L));
+        EasyMock.expect(offerAuditDaoMock.readOfferAuditsByOrderId(10L)).andReturn(Collections.singletonList(audit));
+        EasyMock.replay(offerAuditDaoMock);
+
+        Map<Long, Long> counts = offerAuditService.countUsesByCustomer(order, 5L, offerIds);
+
+        assertEquals(Long.valueOf(2L), counts.get(1L));
+        assertEquals(Long.valueOf(0L), counts.get(2L));
+        EasyMock.verify(offerAuditDaoMock);
+    }
+
+    protected Map<Long, Long> buildCounts(Long id, Long count) {
+        Map<Long, Long> counts = new HashMap<Long, Long>();
+        counts.put(id, count);
+        return counts;
+    }
+}
@@ -0,0 +1,128 @@
+/*
+ * #%L
+ * BroadleafCommerce Framework
+ * %%
+ * Copyright (C) 2009 - 2016 Broadleaf Commerce
+ * %%
+ * Licensed under the Broadleaf Fair Use License Agreement, Version 1.0
+ * (the "Fair Use License" located  at http://license.broadleafcommerce.org/fair_use_license-1.0.txt)
+ * unless the restrictions on use therein are violated and require payment to Broadleaf in which case
+ * the Broadleaf End User License Agreement (EULA), Version 1.1
+ * (the "Commercial License" located at http://license.broadleafcommerce.org/commercial_license-1.1.txt)
+ * shall apply.
+ *
+ * Alternatively, the Commercial License may be replaced with a mutually agreed upon license (the "Custom License")
+ * between you and Broadleaf Commerce. You may not use this file except in compliance with the applicable license.
+ * #L%
+ */
+package org.broadleafcommerce.core.offer.service;
+
+import org.broadleafcommerce.core.offer.domain.Offer;
+import org.broadleafcommerce.core.offer.domain.OfferImpl;
+import org.broadleafcommerce.core.offer.domain.OfferItemCriteria;
+import org.broadleafcommerce.core.offer.domain.OfferItemCriteriaImpl;
+import org.broadleafcommerce.core.offer.domain.OfferQualifyingCriteriaXref;
+import org.broadleafcommerce.core.offer.domain.OfferQualifyingCriteriaXrefImpl;
+import org.broadleafcommerce.core.offer.domain.OfferTargetCriteriaXref;
+import org.broadleafcommerce.core.offer.domain.OfferTargetCriteriaXrefImpl;
+import org.broadleafcommerce.core.offer.service.type.OfferType;
+import org.broadleafcommerce.core.order.domain.OrderItem;
+import org.broadleafcommerce.core.order.domain.OrderItemImpl;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import junit.framework.TestCase;
+
+public class OfferCandidateIndexTest extends TestCase {
+
+    protected List<Offer> buildOffers() {
+        List<Offer> offers = new ArrayList<Offer>();
+        offers.add(buildOffer(1L, OfferType.ORDER_ITEM, null, "orderItem.?id==1"));
+        offers.add(buildOffer(2L, OfferType.ORDER_ITEM, null,
+                "MvelHelper.toUpperCase(orderItem.?name)==MvelHelper.toUpperCase(\"hat\")"));
+        offers.add(buildOffer(3L, OfferType.ORDER, "([2,3] contains orderItem.?id)&&orderItem.?quantity>1", null));
+        offers.add(buildOffer(4L, OfferType.ORDER, null, null));
+        offers.add(buildOffer(5L, OfferType.ORDER_ITEM, null, "orderItem.?id==1||orderItem.?id==2"));
+        offers.add(buildOffer(6L, OfferType.ORDER, null, "orderItem.?id==99"));
+        return offers;
+    }
+
+    public void testOffersForOtherItemsAreRuledOut() {
+        OfferCandidateIndex index = new OfferCandidateIndex(buildOffers());
+
+        assertEquals(6, index.size());
+        assertEquals(3, index.getIndexedOfferCount());
+        assertEquals(Arrays.asList(3L, 4L, 5L, 6L), findCandidateIds(index, buildOrderItem(3L, "Shoe")));
+        assertEquals(Arrays.asList(1L, 2L, 4L, 5L, 6L), findCandidateIds(index, buildOrderItem(1L, "Hat")));
+        assertEquals(Arrays.asList(4L, 5L, 6L), findCandidateIds(index));
+    }
+
+    public void testChildItemsAreConsidered() {
+        OfferCandidateIndex index = new OfferCandidateIndex(buildOffers());
+
+        OrderItem parent = buildOrderItem(10L, "Outfit");
+        parent.getChildOrderItems().add(buildOrderItem(2L, "Hat"));
+
+        assertEquals(Arrays.asList(2L, 3L, 4L, 5L, 6L), findCandidateIds(index, parent));
+    }
+
+    public void testIndexIsRebuiltWhenRulesChange() {
+        List<Offer> offers = buildOffers();
+        OfferCandidateIndex index = new OfferCandidateIndex(offers);
+        assertTrue(index.isBuiltFrom(buildOffers()));
+
+        offers.get(0).getTargetItemCriteriaXref().iterator().next().getOfferItemCriteria().setMatchRule("orderItem.?id==3");
+        assertFalse(index.isBuiltFrom(offers));
+        assertFalse(index.isBuiltFrom(offers.subList(1, offers.size())));
+    }
+
+    protected Offer buildOffer(Long id, OfferType type, String qualifyingRule, String targetRule) {
+        Offer offer = new OfferImpl();
+        offer.setId(id);
+        offer.setType(type);
+        if (qualifyingRule != null) {
+            OfferQualifyingCriteriaXref xref = new OfferQualifyingCriteriaXrefImpl();
+            xref.setOfferItemCriteria(buildCriteria(qualifyingRule));
+            Set<OfferQualifyingCriteriaXref> xrefs = new HashSet<OfferQualifyingCriteriaXref>();
+            xrefs.add(xref);
+            offer.setQualifyingItemCriteriaXref(xrefs);
+        }
+        if (targetRule != null) {
+            OfferTargetCriteriaXref xref = new OfferTargetCriteriaXrefImpl();
+            xref.setOfferItemCriteria(buildCriteria(targetRule));
+            Set<OfferTargetCriteriaXref> xrefs = new HashSet<OfferTargetCriteriaXref>();
+            xrefs.add(xref);
+            offer.setTargetItemCriteriaXref(xrefs);
+        }
+        return offer;
+    }
+
+    protected OfferItemCriteria buildCriteria(String matchRule) {
+        OfferItemCriteria criteria = new OfferItemCriteriaImpl();
+        criteria.setQuantity(1);
+        criteria.setMatchRule(matchRule);
+        return criteria;
+    }
+
+    protected OrderItem buildOrderItem(Long id, String name) {
+        OrderItem orderItem = new OrderItemImpl();
+        orderItem.setId(id);
+        orderItem.setName(name);
+        return orderItem;
+    }
+
+    protected List<Long> findCandidateIds(OfferCandidateIndex index, OrderItem... orderItems) {
+        List<Offer> offers = buildOffers();
+        BitSet candidates = index.findCandidates(Arrays.asList(orderItems));
+        List<Long> ids = new ArrayList<Long>();
+        for (int i = candidates.nextSetBit(0); i >= 0; i = candidates.nextSetBit(i + 1)) {
+            ids.add(offers.get(i).getId());
+        }
+        return ids;
+    }
+}
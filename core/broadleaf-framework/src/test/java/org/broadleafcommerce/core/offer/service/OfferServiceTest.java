@@ -19,6 +19,7 @@ package org.broadleafcommerce.core.offer.service;
 
 import org.broadleafcommerce.common.money.Money;
 import org.broadleafcommerce.core.offer.dao.CustomerOfferDao;
+import org.broadleafcommerce.core.offer.dao.OfferAuditDao;
 import org.broadleafcommerce.core.offer.dao.OfferCodeDao;
 import org.broadleafcommerce.core.offer.dao.OfferDao;
 import org.broadleafcommerce.core.offer.domain.CandidateItemOffer;
@@ -28,6 +29,7 @@ import org.broadleafcommerce.core.offer.domain.CandidateOrderOfferImpl;
 import org.broadleafcommerce.core.offer.domain.CustomerOffer;
 import org.broadleafcommerce.core.offer.domain.Offer;
 import org.broadleafcommerce.core.offer.domain.OfferCode;
+import org.broadleafcommerce.core.offer.domain.OfferCodeImpl;
 import org.broadleafcommerce.core.offer.domain.OfferImpl;
 import org.broadleafcommerce.core.offer.domain.OfferOfferRuleXref;
 import org.broadleafcommerce.core.offer.domain.OfferOfferRuleXrefImpl;
@@ -49,6 +51,7 @@ import org.broadleafcommerce.core.order.dao.FulfillmentGroupItemDao;
 import org.broadleafcommerce.core.order.dao.OrderItemDao;
 import org.broadleafcommerce.core.order.domain.FulfillmentGroupItem;
 import org.broadleafcommerce.core.order.domain.Order;
+import org.broadleafcommerce.core.order.domain.OrderImpl;
 import org.broadleafcommerce.core.order.domain.OrderItem;
 import org.broadleafcommerce.core.order.domain.OrderItemPriceDetail;
 import org.broadleafcommerce.core.order.domain.OrderItemPriceDetailImpl;
@@ -61,12 +64,16 @@ import org.broadleafcommerce.core.order.service.OrderMultishipOptionService;
 import org.broadleafcommerce.core.order.service.OrderService;
 import org.broadleafcommerce.core.order.service.call.FulfillmentGroupItemRequest;
 import org.broadleafcommerce.profile.core.domain.Customer;
+import org.broadleafcommerce.profile.core.domain.CustomerImpl;
 import org.easymock.EasyMock;
 import org.easymock.IAnswer;
 
 import java.math.BigDecimal;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.TimeZone;
 
 import junit.framework.TestCase;
@@ -458,6 +465,106 @@ public class OfferServiceTest extends TestCase {
         verify();
     }
 
+    public void testRemoveOffersOverMaxCustomerUsageThreshold() throws Exception {
+        OfferAuditDao offerAuditDaoMock = buildUsageAuditService(offerService);
+        Order order = buildUsageOrder();
+        Offer unlimited = buildUsageOffer(1L, null);
+        Offer usedUp = buildUsageOffer(2L, 2L);
+        Offer available = buildUsageOffer(3L, 2L);
+
+        EasyMock.expect(offerAuditDaoMock.countUsesByCustomer(order, 5L, Arrays.asList(2L, 3L)))
+                .andReturn(buildUsageCounts(2L, 2L, 3L, 1L));
+        EasyMock.replay(offerAuditDaoMock);
+
+        List<Offer> offers = offerService.removeOffersOverMaxCustomerUsageThreshold(order, Arrays.asList(unlimited, usedUp, available));
+
+        assertEquals(Arrays.asList(unlimited, available), offers);
+        assertNull(OfferUsageCountContext.getOfferUsageCountContext());
+        EasyMock.verify(offerAuditDaoMock);
+    }
+
+    public void testRemoveOfferCodesOverMaxUsageThreshold() throws Exception {
+        OfferAuditDao offerAuditDaoMock = buildUsageAuditService(offerService);
+        Order order = buildUsageOrder();
+        OfferCode codeUsedUp = buildUsageOfferCode(10L, 1, buildUsageOffer(1L, null));
+        OfferCode offerUsedUp = buildUsageOfferCode(11L, 5, buildUsageOffer(2L, 1L));
+        OfferCode offerAvailable = buildUsageOfferCode(12L, 0, buildUsageOffer(3L, 2L));
+        OfferCode unlimited = buildUsageOfferCode(13L, 0, buildUsageOffer(4L, null));
+
+        EasyMock.expect(offerAuditDaoMock.countOfferCodeUses(order, Arrays.asList(10L, 11L)))
+                .andReturn(buildUsageCounts(10L, 1L, 11L, 0L));
+        EasyMock.expect(offerAuditDaoMock.countUsesByCustomer(order, 5L, Arrays.asList(2L, 3L)))
+                .andReturn(buildUsageCounts(2L, 1L, 3L, 1L));
+        EasyMock.replay(offerAuditDaoMock);
+
+        List<OfferCode> codes = offerService.removeOfferCodesOverMaxUsageThreshold(order,
+                Arrays.asList(codeUsedUp, offerUsedUp, offerAvailable, unlimited));
+
+        assertEquals(Arrays.asList(offerAvailable, unlimited), codes);
+        EasyMock.verify(offerAuditDaoMock);
+    }
+
+    public void testBatchedUsageChecksGoThroughThePublicChecks() throws Exception {
+        OfferServiceImpl customizedOfferService = new OfferServiceImpl() {
+            @Override
+            public boolean verifyMaxCustomerUsageThreshold(Order order, Offer offer) {
+                return !offer.getId().equals(1L) && super.verifyMaxCustomerUsageThreshold(order, offer);
+            }
+        };
+        OfferAuditDao offerAuditDaoMock = buildUsageAuditService(customizedOfferService);
+        Order order = buildUsageOrder();
+        Offer rejected = buildUsageOffer(1L, null);
+        Offer accepted = buildUsageOffer(2L, null);
+        EasyMock.replay(offerAuditDaoMock);
+
+        assertEquals(Arrays.asList(accepted),
+                customizedOfferService.removeOffersOverMaxCustomerUsageThreshold(order, Arrays.asList(rejected, accepted)));
+        OfferCode rejectedCode = buildUsageOfferCode(10L, 0, rejected);
+        OfferCode acceptedCode = buildUsageOfferCode(11L, 0, accepted);
+        assertEquals(Arrays.asList(acceptedCode),
+                customizedOfferService.removeOfferCodesOverMaxUsageThreshold(order, Arrays.asList(rejectedCode, acceptedCode)));
+        EasyMock.verify(offerAuditDaoMock);
+    }
+
+    protected OfferAuditDao buildUsageAuditService(OfferServiceImpl service) {
+        OfferAuditDao offerAuditDaoMock = EasyMock.createMock(OfferAuditDao.class);
+        OfferAuditServiceImpl offerAuditService = new OfferAuditServiceImpl();
+        offerAuditService.offerAuditDao = offerAuditDaoMock;
+        service.offerAuditService = offerAuditService;
+        return offerAuditDaoMock;
+    }
+
+    protected Order buildUsageOrder() {
+        Customer customer = new CustomerImpl();
+        customer.setId(5L);
+        Order order = new OrderImpl();
+        order.setId(20L);
+        order.setCustomer(customer);
+        return order;
+    }
+
+    protected Offer buildUsageOffer(Long id, Long maxUsesPerCustomer) {
+        Offer offer = new OfferImpl();
+        offer.setId(id);
+        offer.setMaxUsesPerCustomer(maxUsesPerCustomer);
+        return offer;
+    }
+
+    protected OfferCode buildUsageOfferCode(Long id, int maxUses, Offer offer) {
+        OfferCode code = new OfferCodeImpl();
+        code.setId(id);
+        code.setMaxUses(maxUses);
+        code.setOffer(offer);
+        return code;
+    }
+
+    protected Map<Long, Long> buildUsageCounts(Long firstId, Long firstCount, Long secondId, Long secondCount) {
+        Map<Long, Long> counts = new HashMap<Long, Long>();
+        counts.put(firstId, firstCount);
+        counts.put(secondId, secondCount);
+        return counts;
+    }
+
     public class CandidateItemOfferAnswer implements IAnswer<CandidateItemOffer> {
 
         @Override
@@ -35,6 +35,7 @@ import org.broadleafcommerce.core.offer.service.OfferServiceImpl;
 import org.broadleafcommerce.core.offer.service.OfferServiceUtilitiesImpl;
 import org.broadleafcommerce.core.offer.service.discount.CandidatePromotionItems;
 import org.broadleafcommerce.core.offer.service.discount.domain.PromotableCandidateItemOffer;
+import org.broadleafcommerce.core.offer.service.discount.domain.PromotableCandidateItemOfferImpl;
 import org.broadleafcommerce.core.offer.service.discount.domain.PromotableItemFactoryImpl;
 import org.broadleafcommerce.core.offer.service.discount.domain.PromotableOrder;
 import org.broadleafcommerce.core.offer.service.discount.domain.PromotableOrderItem;
@@ -57,7 +58,10 @@ import org.easymock.EasyMock;
 import org.easymock.IAnswer;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.TimeZone;
 
 import junit.framework.TestCase;
@@ -604,6 +608,89 @@ public class ItemOfferProcessorTest extends TestCase {
         verify();
     }
 
+    public void testBestPermutationMatchesExhaustiveSearch() throws Exception {
+        PromotableOrder promotableOrder = EasyMock.createMock(PromotableOrder.class);
+        List<PromotableCandidateItemOffer> candidates = new ArrayList<PromotableCandidateItemOffer>();
+        for (long id = 1; id <= 3; id++) {
+            Offer offer = new OfferImpl();
+            offer.setId(id);
+            candidates.add(new PromotableCandidateItemOfferImpl(promotableOrder, offer));
+        }
+        PromotableCandidateItemOffer one = candidates.get(0);
+        PromotableCandidateItemOffer two = candidates.get(1);
+        PromotableCandidateItemOffer three = candidates.get(2);
+
+        final List<List<PromotableCandidateItemOffer>> permutations = new ArrayList<List<PromotableCandidateItemOffer>>();
+        permutations.add(Arrays.asList(one, two, three));
+        permutations.add(Arrays.asList(one, three, two));
+        permutations.add(Arrays.asList(two, one, three));
+        permutations.add(Arrays.asList(one, two, three));
+        permutations.add(Arrays.asList(two, three, one));
+        permutations.add(Arrays.asList(three, one, two));
+        permutations.add(Arrays.asList(three, two, one));
+
+        final Map<List<Long>, Money> subtotals = new HashMap<List<Long>, Money>();
+        subtotals.put(Arrays.asList(1L, 2L, 3L), new Money(90D));
+        subtotals.put(Arrays.asList(1L, 3L, 2L), new Money(85D));
+        subtotals.put(Arrays.asList(2L, 1L, 3L), new Money(80D));
+        subtotals.put(Arrays.asList(2L, 3L, 1L), new Money(80D));
+        subtotals.put(Arrays.asList(3L, 1L, 2L), new Money(95D));
+        subtotals.put(Arrays.asList(3L, 2L, 1L), new Money(82D));
+
+        final List<List<Long>> evaluated = new ArrayList<List<Long>>();
+        ItemOfferProcessorImpl processor = new ItemOfferProcessorImpl() {
+
+            @Override
+            protected List<List<PromotableCandidateItemOffer>> buildItemOfferPermutations(List<PromotableCandidateItemOffer> offers) {
+                return new ArrayList<List<PromotableCandidateItemOffer>>(permutations);
+            }
+
+            @Override
+            protected Money evaluatePermutation(List<PromotableCandidateItemOffer> offerList, PromotableOrder order) {
+                List<Long> ids = convertToIdList(offerList);
+                evaluated.add(ids);
+                return subtotals.get(ids);
+            }
+        };
+
+        // The exhaustive answer: the lowest subtotal, earliest permutation on ties
+        List<Long> expected = null;
+        for (List<PromotableCandidateItemOffer> permutation : permutations) {
+            List<Long> ids = processor.convertToIdList(permutation);
+            if (expected == null || subtotals.get(ids).lessThan(subtotals.get(expected))) {
+                expected = ids;
+            }
+        }
+        assertEquals(Arrays.asList(2L, 1L, 3L), expected);
+
+        assertEquals(expected, processor.convertToIdList(processor.determineBestPermutation(candidates, promotableOrder)));
+        assertEquals(6, evaluated.size());
+
+        // A budget that covers every distinct permutation picks the same ordering
+        evaluated.clear();
+        processor.permutationSearchMaxPermutations = 6;
+        assertEquals(expected, processor.convertToIdList(processor.determineBestPermutation(candidates, promotableOrder)));
+        assertEquals(6, evaluated.size());
+
+        // A smaller budget picks the best of the permutations it reached
+        evaluated.clear();
+        processor.permutationSearchMaxPermutations = 2;
+        assertEquals(Arrays.asList(1L, 3L, 2L), processor.convertToIdList(processor.determineBestPermutation(candidates, promotableOrder)));
+        assertEquals(2, evaluated.size());
+    }
+
+    public void testPermutationSearchBudget() throws Exception {
+        assertFalse(itemProcessor.isPermutationBudgetExhausted(100, 0L));
+
+        itemProcessor.permutationSearchMaxPermutations = 2;
+        assertFalse(itemProcessor.isPermutationBudgetExhausted(1, 0L));
+        assertTrue(itemProcessor.isPermutationBudgetExhausted(2, 0L));
+
+        itemProcessor.permutationSearchMaxPermutations = 0;
+        assertTrue(itemProcessor.isPermutationBudgetExhausted(1, System.nanoTime() - 1));
+        assertFalse(itemProcessor.isPermutationBudgetExhausted(1, System.nanoTime() + 60000000000L));
+    }
+
     public class Answer implements IAnswer<CandidateItemOffer> {
 
         @Override
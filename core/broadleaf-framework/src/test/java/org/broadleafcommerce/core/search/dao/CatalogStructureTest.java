@@ -0,0 +1,129 @@
+/*
+ * #%L
+ * BroadleafCommerce Framework
+ * %%
+ * Copyright (C) 2009 - 2016 Broadleaf Commerce
+ * %%
+ * Licensed under the Broadleaf Fair Use License Agreement, Version 1.0
+ * (the "Fair Use License" located  at http://license.broadleafcommerce.org/fair_use_license-1.0.txt)
+ * unless the restrictions on use therein are violated and require payment to Broadleaf in which case
+ * the Broadleaf End User License Agreement (EULA), Version 1.1
+ * (the "Commercial License" located at http://license.broadleafcommerce.org/commercial_license-1.1.txt)
+ * shall apply.
+ *
+ * Alternatively, the Commercial License may be replaced with a mutually agreed upon license (the "Custom License")
+ * between you and Broadleaf Commerce. You may not use this file except in compliance with the applicable license.
+ * #L%
+ */
+package org.broadleafcommerce.core.search.dao;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+public class CatalogStructureTest {
+
+    @Test
+    public void testParentCategoriesSurviveGrowth() {
+        CatalogStructure structure = new CatalogStructure();
+        for (long productId = 1; productId <= 10000; productId++) {
+            structure.putParentCategoriesForProduct(productId, Arrays.asList(productId % 7, productId % 11 + 100));
+        }
+        structure.putParentCategoriesForProduct(20000L, Collections.<Long>emptyList());
+
+        Assert.assertEquals(10001, structure.getProductCount());
+        Assert.assertArrayEquals(new long[] { 1234 % 7, 1234 % 11 + 100 }, structure.getParentCategoryIdsByProduct(1234L));
+        Assert.assertTrue(structure.hasParentCategoriesForProduct(20000L));
+        Assert.assertEquals(0, structure.getParentCategoryIdsByProduct(20000L).length);
+        Assert.assertFalse(structure.hasParentCategoriesForProduct(10001L));
+        Assert.assertNull(structure.getParentCategoryIdsByProduct(10001L));
+        Assert.assertFalse(structure.hasParentCategoriesForProduct(null));
+    }
+
+    @Test
+    public void testCategoriesWithoutParentsAreEmpty() {
+        CatalogStructure structure = new CatalogStructure();
+        structure.putParentCategoriesForCategory(2L, Arrays.asList(1L));
+        structure.putParentCategoriesForCategory(1L, null);
+
+        Assert.assertArrayEquals(new long[] { 1L }, structure.getParentCategoryIdsByCategory(2L));
+        Assert.assertEquals(0, structure.getParentCategoryIdsByCategory(1L).length);
+        Assert.assertEquals(0, structure.getParentCategoryIdsByCategory(3L).length);
+        Assert.assertTrue(structure.hasParentCategoriesForCategory(1L));
+        Assert.assertEquals(Collections.singleton(1L), structure.getParentCategoriesByCategory().get(2L));
+    }
+
+    @Test
+    public void testDisplayOrdersAreScaledPerCategoryAndProduct() {
+        CatalogStructure structure = new CatalogStructure();
+        long largeId = 1L << 40;
+        for (long productId = 1; productId <= 5000; productId++) {
+            structure.putDisplayOrder(2001L, productId, new BigDecimal(productId));
+        }
+        structure.putDisplayOrder(largeId, 7L, new BigDecimal("1.5"));
+        structure.putDisplayOrder(7L, largeId, new BigDecimal("2.0000001"));
+
+        Assert.assertEquals(5002, structure.getDisplayOrderCount());
+        Assert.assertEquals(Long.valueOf(42000000L), structure.getDisplayOrder(2001L, 42L));
+        Assert.assertEquals(Long.valueOf(1500000L), structure.getDisplayOrder(largeId, 7L));
+        Assert.assertEquals(Long.valueOf(2000000L), structure.getDisplayOrder(7L, largeId));
+        Assert.assertNull(structure.getDisplayOrder(42L, 2001L));
+        Assert.assertNull(structure.getDisplayOrder(null, 42L));
+        Assert.assertTrue(structure.getMemoryFootprint() > 0);
+    }
+
+    @Test
+    public void testDeprecatedParentMapsWriteThrough() {
+        CatalogStructure structure = new CatalogStructure();
+        Map<Long, Set<Long>> parentCategoriesByProduct = structure.getParentCategoriesByProduct();
+        parentCategoriesByProduct.put(1L, new HashSet<Long>(Arrays.asList(10L)));
+        parentCategoriesByProduct.get(1L).add(11L);
+        parentCategoriesByProduct.get(1L).remove(10L);
+
+        Assert.assertArrayEquals(new long[] { 11L }, structure.getParentCategoryIdsByProduct(1L));
+        Assert.assertEquals(Collections.singleton(11L), structure.getParentCategoriesByProduct().get(1L));
+        Assert.assertNull(parentCategoriesByProduct.get(2L));
+
+        Map<Long, Set<Long>> parentCategoriesByCategory = new HashMap<Long, Set<Long>>();
+        parentCategoriesByCategory.put(2L, Collections.singleton(1L));
+        parentCategoriesByCategory.put(null, Collections.singleton(3L));
+        structure.setParentCategoriesByCategory(parentCategoriesByCategory);
+
+        Assert.assertEquals(1, structure.getCategoryCount());
+        Assert.assertArrayEquals(new long[] { 1L }, structure.getParentCategoryIdsByCategory(2L));
+        for (Map.Entry<Long, Set<Long>> entry : structure.getParentCategoriesByCategory().entrySet()) {
+            entry.setValue(Collections.singleton(4L));
+        }
+        Assert.assertArrayEquals(new long[] { 4L }, structure.getParentCategoryIdsByCategory(2L));
+    }
+
+    @Test
+    public void testDeprecatedDisplayOrderMapWritesThrough() {
+        CatalogStructure structure = new CatalogStructure();
+        structure.getDisplayOrdersByCategoryProduct().put("2001-42", new BigDecimal("1.5"));
+
+        Assert.assertEquals(Long.valueOf(1500000L), structure.getDisplayOrder(2001L, 42L));
+        Assert.assertEquals(0, new BigDecimal("1.5").compareTo(structure.getDisplayOrdersByCategoryProduct().get("2001-42")));
+        Assert.assertNull(structure.getDisplayOrdersByCategoryProduct().get("42-2001"));
+        Assert.assertNull(structure.getDisplayOrdersByCategoryProduct().get("2001"));
+
+        Map<String, BigDecimal> displayOrders = new HashMap<String, BigDecimal>();
+        displayOrders.put("-3-7", new BigDecimal("2"));
+        structure.setDisplayOrdersByCategoryProduct(displayOrders);
+
+        Assert.assertEquals(1, structure.getDisplayOrderCount());
+        Assert.assertNull(structure.getDisplayOrder(2001L, 42L));
+        Assert.assertEquals(Long.valueOf(2000000L), structure.getDisplayOrder(-3L, 7L));
+        Assert.assertEquals("-3-7", structure.getDisplayOrdersByCategoryProduct().keySet().iterator().next());
+        Assert.assertArrayEquals(new long[] { -3L, 7L }, CatalogStructure.parseDisplayOrderKey("-3-7"));
+        Assert.assertNull(CatalogStructure.parseDisplayOrderKey("3-x"));
+    }
+
+}
@@ -0,0 +1,186 @@
+/*
+ * #%L
+ * BroadleafCommerce Framework
+ * %%
+ * Copyright (C) 2009 - 2016 Broadleaf Commerce
+ * %%
+ * Licensed under the Broadleaf Fair Use License Agreement, Version 1.0
+ * (the "Fair Use License" located  at http://license.broadleafcommerce.org/fair_use_license-1.0.txt)
+ * unless the restrictions on use therein are violated and require payment to Broadleaf in which case
+ * the Broadleaf End User License Agreement (EULA), Version 1.1
+ * (the "Commercial License" located at http://license.broadleafcommerce.org/commercial_license-1.1.txt)
+ * shall apply.
+ *
+ * Alternatively, the Commercial License may be replaced with a mutually agreed upon license (the "Custom License")
+ * between you and Broadleaf Commerce. You may not use this file except in compliance with the applicable license.
+ * #L%
+ */
+package org.broadleafcommerce.core.search.service.solr;
+
+import org.apache.solr.client.solrj.SolrQuery;
+import org.apache.solr.client.solrj.response.QueryResponse;
+import org.apache.solr.common.SolrDocument;
+import org.apache.solr.common.SolrDocumentList;
+import org.apache.solr.common.util.NamedList;
+import org.broadleafcommerce.common.site.domain.Site;
+import org.broadleafcommerce.common.site.domain.SiteImpl;
+import org.broadleafcommerce.common.web.BroadleafRequestContext;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.ForwardingCache;
+
+public class SolrSearchResultCacheImplTest {
+
+    protected SolrSearchResultCacheImpl cache = new SolrSearchResultCacheImpl();
+
+    @After
+    public void tearDown() {
+        BroadleafRequestContext.setBroadleafRequestContext(null);
+    }
+
+    @Test
+    public void testUnorderedParametersDoNotChangeTheKey() {
+        SolrQuery query = new SolrQuery("*:*");
+        query.addFilterQuery("category:1", "color:red", "size:m");
+        query.addFacetField("color", "size");
+
+        SolrQuery reordered = new SolrQuery("*:*");
+        reordered.addFacetField("size", "color");
+        reordered.addFilterQuery("size:m", "category:1", "color:red");
+
+        Assert.assertEquals(cache.buildCacheKey("catalog", query), cache.buildCacheKey("catalog", reordered));
+    }
+
+    @Test
+    public void testResultChangingParametersChangeTheKey() {
+        SolrQuery query = new SolrQuery("*:*");
+        query.addFilterQuery("category:1", "color:red");
+        query.setStart(0);
+        query.addSort("price", SolrQuery.ORDER.asc);
+        query.addSort("name", SolrQuery.ORDER.asc);
+        String key = cache.buildCacheKey("catalog", query);
+
+        SolrQuery otherFilter = query.getCopy();
+        otherFilter.removeFilterQuery("color:red");
+        otherFilter.addFilterQuery("color:blue");
+        Assert.assertNotEquals(key, cache.buildCacheKey("catalog", otherFilter));
+
+        SolrQuery otherPage = query.getCopy();
+        otherPage.setStart(20);
+        Assert.assertNotEquals(key, cache.buildCacheKey("catalog", otherPage));
+
+        SolrQuery otherSort = new SolrQuery("*:*");
+        otherSort.addFilterQuery("category:1", "color:red");
+        otherSort.setStart(0);
+        otherSort.addSort("name", SolrQuery.ORDER.asc);
+        otherSort.addSort("price", SolrQuery.ORDER.asc);
+        Assert.assertNotEquals(key, cache.buildCacheKey("catalog", otherSort));
+
+        Assert.assertNotEquals(key, cache.buildCacheKey("catalog_reindex", query));
+    }
+
+    @Test
+    public void testSiteIsPartOfTheKey() {
+        SolrQuery query = new SolrQuery("*:*");
+
+        setSite(1L);
+        String site1 = cache.buildCacheKey("catalog", query);
+        setSite(2L);
+        String site2 = cache.buildCacheKey("catalog", query);
+
+        Assert.assertNotEquals(site1, site2);
+    }
+
+    @Test
+    public void testHitsReturnCopies() {
+        cache.putResponse("key", createResponse(1L, 2L), cache.getGeneration());
+
+        QueryResponse first = cache.getResponse("key");
+        first.getResults().clear();
+        QueryResponse second = cache.getResponse("key");
+
+        Assert.assertNotSame(first, second);
+        Assert.assertEquals(2, second.getResults().size());
+        Assert.assertEquals(2L, second.getResults().getNumFound());
+        Assert.assertEquals(1L, second.getResults().get(0).getFieldValue("id"));
+    }
+
+    @Test
+    public void testResponseReadBeforeInvalidationIsNotCached() {
+        long generation = cache.getGeneration();
+        cache.invalidateAll();
+        cache.putResponse("key", createResponse(1L), generation);
+
+        Assert.assertNull(cache.getResponse("key"));
+    }
+
+    @Test
+    public void testInvalidationRacingPutDropsResponse() {
+        RacingSearchResultCache racing = new RacingSearchResultCache();
+        racing.putResponse("key", createResponse(1L), racing.getGeneration());
+
+        Assert.assertEquals(1, racing.invalidations.sum());
+        Assert.assertNull(racing.getResponse("key"));
+
+        // Without a racing commit, the response is kept
+        racing.putResponse("key", createResponse(1L), racing.getGeneration());
+        Assert.assertNotNull(racing.getResponse("key"));
+    }
+
+    protected QueryResponse createResponse(long... ids) {
+        SolrDocumentList documents = new SolrDocumentList();
+        for (long id : ids) {
+            SolrDocument document = new SolrDocument();
+            document.setField("id", id);
+            documents.add(document);
+        }
+        documents.setNumFound(ids.length);
+        NamedList<Object> response = new NamedList<Object>();
+        response.add("response", documents);
+        return new QueryResponse(response, null);
+    }
+
+    protected void setSite(Long siteId) {
+        Site site = new SiteImpl();
+        site.setId(siteId);
+        BroadleafRequestContext context = new BroadleafRequestContext();
+        context.setNonPersistentSite(site);
+        BroadleafRequestContext.setBroadleafRequestContext(context);
+    }
+
+    /**
+     * Commits to the index once, after the generation check of the first put but before its response is stored
+     */
+    protected static class RacingSearchResultCache extends SolrSearchResultCacheImpl {
+
+        protected boolean raced;
+
+        @Override
+        protected Cache<String, byte[]> getCache() {
+            if (cache == null) {
+                final Cache<String, byte[]> delegate = CacheBuilder.newBuilder().build();
+                cache = new ForwardingCache<String, byte[]>() {
+
+                    @Override
+                    protected Cache<String, byte[]> delegate() {
+                        return delegate;
+                    }
+
+                    @Override
+                    public void put(String key, byte[] value) {
+                        if (!raced) {
+                            raced = true;
+                            RacingSearchResultCache.this.invalidateAll();
+                        }
+                        super.put(key, value);
+                    }
+                };
+            }
+            return cache;
+        }
+    }
+}
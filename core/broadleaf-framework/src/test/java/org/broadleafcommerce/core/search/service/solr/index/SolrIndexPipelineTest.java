@@ -0,0 +1,313 @@
+/*
+ * #%L
+ * BroadleafCommerce Framework
+ * %%
+ * Copyright (C) 2009 - 2016 Broadleaf Commerce
+ * %%
+ * Licensed under the Broadleaf Fair Use License Agreement, Version 1.0
+ * (the "Fair Use License" located  at http://license.broadleafcommerce.org/fair_use_license-1.0.txt)
+ * unless the restrictions on use therein are violated and require payment to Broadleaf in which case
+ * the Broadleaf End User License Agreement (EULA), Version 1.1
+ * (the "Commercial License" located at http://license.broadleafcommerce.org/commercial_license-1.1.txt)
+ * shall apply.
+ *
+ * Alternatively, the Commercial License may be replaced with a mutually agreed upon license (the "Custom License")
+ * between you and Broadleaf Commerce. You may not use this file except in compliance with the applicable license.
+ * #L%
+ */
+package org.broadleafcommerce.core.search.service.solr.index;
+
+import org.apache.solr.client.solrj.SolrClient;
+import org.apache.solr.client.solrj.SolrServerException;
+import org.apache.solr.common.SolrInputDocument;
+import org.broadleafcommerce.common.exception.ServiceException;
+import org.broadleafcommerce.core.catalog.domain.Indexable;
+import org.broadleafcommerce.core.search.domain.FieldEntity;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import junit.framework.TestCase;
+
+public class SolrIndexPipelineTest extends TestCase {
+
+    protected static final int PAGE_SIZE = 10;
+
+    protected TestIndexService indexService;
+    protected TestOperation operation;
+    protected TestTransactionManager transactionManager;
+    protected List<Long> written;
+
+    @Override
+    protected void setUp() {
+        indexService = new TestIndexService();
+        operation = new TestOperation(95);
+        transactionManager = new TestTransactionManager();
+        written = Collections.synchronizedList(new ArrayList<Long>());
+    }
+
+    public void testEveryPageIsReadOnceInIdOrder() throws Exception {
+        new TestPipeline(4).execute(new Object[4], 95L, 10L);
+
+        assertEquals(10, operation.cursors.size());
+        for (int i = 1; i < operation.cursors.size(); i++) {
+            assertTrue(operation.cursors.get(i) > operation.cursors.get(i - 1));
+        }
+        assertEquals(95, written.size());
+        assertEquals(95, new HashSet<Long>(written).size());
+        assertEquals(0, transactionManager.rollbacks.get());
+    }
+
+    public void testBuilderFailureIsRethrown() throws Exception {
+        ServiceException expected = new ServiceException("cannot build");
+        indexService.failOnId = 42L;
+        indexService.failure = expected;
+
+        try {
+            new TestPipeline(4).execute(new Object[4], 95L, 10L);
+            fail("The builder failure should have been rethrown");
+        } catch (ServiceException e) {
+            assertSame(expected, e);
+        }
+        assertTrue(transactionManager.rollbacks.get() >= 1);
+        assertFalse(written.contains(42L));
+    }
+
+    public void testWriterFailureIsRethrown() throws Exception {
+        SolrIndexPipeline pipeline = new TestPipeline(4) {
+            @Override
+            protected void flush(String collection, SolrClient server, List<SolrInputDocument> batch) throws IOException {
+                throw new IOException("solr is down");
+            }
+        };
+
+        try {
+            pipeline.execute(new Object[4], 95L, 10L);
+            fail("The writer failure should have been rethrown");
+        } catch (ServiceException e) {
+            assertTrue(e.getCause() instanceof IOException);
+        }
+    }
+
+    public void testThreadsAreReleased() throws Exception {
+        new TestPipeline(4).execute(new Object[4], 95L, 10L);
+        assertNoPipelineThreads();
+
+        indexService.failOnId = 1L;
+        indexService.failure = new ServiceException("cannot build");
+        try {
+            new TestPipeline(4).execute(new Object[4], 95L, 10L);
+            fail("The builder failure should have been rethrown");
+        } catch (ServiceException e) {
+            // expected
+        }
+        assertNoPipelineThreads();
+    }
+
+    public void testOnlyTheDefaultReindexOperationIsPipelined() {
+        indexService.pipelineEnabled = true;
+        indexService.pipelineBuilderThreads = 4;
+
+        assertTrue(indexService.isPipelineEnabled(indexService.getReindexOperation()));
+        assertFalse(indexService.isPipelineEnabled(operation));
+        assertFalse(indexService.isPipelineEnabled(indexService.new ReindexOperation() {
+            @Override
+            public void buildPage(List<? extends Indexable> indexables) {
+                // a customized page build must not be bypassed by the pipeline
+            }
+        }));
+
+        indexService.pipelineEnabled = false;
+        assertFalse(indexService.isPipelineEnabled(indexService.getReindexOperation()));
+    }
+
+    protected void assertNoPipelineThreads() throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (System.currentTimeMillis() < deadline) {
+            if (!hasPipelineThreads()) {
+                return;
+            }
+            Thread.sleep(50);
+        }
+        fail("Pipeline threads are still running");
+    }
+
+    protected boolean hasPipelineThreads() {
+        for (Thread thread : Thread.getAllStackTraces().keySet()) {
+            if (thread.isAlive() && thread.getName().startsWith("blSolrIndexPipeline-")) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    protected class TestPipeline extends SolrIndexPipeline {
+
+        public TestPipeline(int builderThreads) {
+            super(SolrIndexPipelineTest.this.indexService, SolrIndexPipelineTest.this.operation,
+                    SolrIndexPipelineTest.this.transactionManager, PAGE_SIZE, builderThreads, 2, 25);
+        }
+
+        @Override
+        protected void flush(String collection, SolrClient server, List<SolrInputDocument> batch)
+                throws SolrServerException, IOException, ServiceException {
+            for (SolrInputDocument document : batch) {
+                written.add((Long) document.getFieldValue("id"));
+            }
+            batch.clear();
+        }
+    }
+
+    protected static class TestIndexService extends SolrIndexServiceImpl {
+
+        protected volatile Long failOnId;
+        protected volatile ServiceException failure;
+
+        @Override
+        public void restoreState(Object[] pack) {
+            // nothing to restore in a unit test
+        }
+
+        @Override
+        protected String buildPageNumberMessage(int page, Long totalPages) {
+            return "Building page number " + page + " of " + totalPages;
+        }
+
+        @Override
+        protected Collection<SolrInputDocument> buildPipelinedPage(SolrIndexOperation operation, List<? extends Indexable> indexables) throws ServiceException {
+            List<SolrInputDocument> documents = new ArrayList<SolrInputDocument>();
+            for (Indexable indexable : indexables) {
+                if (indexable.getId().equals(failOnId)) {
+                    throw failure;
+                }
+                SolrInputDocument document = new SolrInputDocument();
+                document.addField("id", indexable.getId());
+                documents.add(document);
+            }
+            return documents;
+        }
+    }
+
+    protected static class TestOperation implements SolrIndexOperation {
+
+        protected final long itemCount;
+        protected final List<Long> cursors = Collections.synchronizedList(new ArrayList<Long>());
+
+        public TestOperation(long itemCount) {
+            this.itemCount = itemCount;
+        }
+
+        @Override
+        public List<? extends Indexable> readIndexables(int pageSize, Long lastId) {
+            long start = lastId == null ? 1 : lastId + 1;
+            cursors.add(start);
+            List<Indexable> page = new ArrayList<Indexable>();
+            for (long id = start; id <= itemCount && page.size() < pageSize; id++) {
+                page.add(new TestIndexable(id));
+            }
+            return page;
+        }
+
+        @Override
+        public boolean obtainLock() {
+            return true;
+        }
+
+        @Override
+        public SolrClient getSolrServerForIndexing() {
+            return null;
+        }
+
+        @Override
+        public String getSolrCollectionForIndexing() {
+            return "test";
+        }
+
+        @Override
+        public void beforeCountIndexables() {
+        }
+
+        @Override
+        public Long countIndexables() {
+            return itemCount;
+        }
+
+        @Override
+        public void afterCountIndexables() {
+        }
+
+        @Override
+        public void beforeReadIndexables() {
+        }
+
+        @Override
+        public void afterReadIndexables() {
+        }
+
+        @Override
+        public void beforeBuildPage() {
+        }
+
+        @Override
+        public void buildPage(List<? extends Indexable> indexables) {
+            throw new UnsupportedOperationException("The pipeline builds pages through the index service");
+        }
+
+        @Override
+        public void afterBuildPage() {
+        }
+
+        @Override
+        public void releaseLock() {
+        }
+    }
+
+    protected static class TestIndexable implements Indexable {
+
+        protected final Long id;
+
+        public TestIndexable(Long id) {
+            this.id = id;
+        }
+
+        @Override
+        public Long getId() {
+            return id;
+        }
+
+        @Override
+        public FieldEntity getFieldEntityType() {
+            return FieldEntity.PRODUCT;
+        }
+    }
+
+    protected static class TestTransactionManager implements PlatformTransactionManager {
+
+        protected final AtomicInteger commits = new AtomicInteger();
+        protected final AtomicInteger rollbacks = new AtomicInteger();
+
+        @Override
+        public TransactionStatus getTransaction(TransactionDefinition definition) {
+            return new SimpleTransactionStatus();
+        }
+
+        @Override
+        public void commit(TransactionStatus status) {
+            commits.incrementAndGet();
+        }
+
+        @Override
+        public void rollback(TransactionStatus status) {
+            rollbacks.incrementAndGet();
+        }
+    }
+}
@@ -0,0 +1,93 @@
+/*
+ * #%L
+ * BroadleafCommerce Framework
+ * %%
+ * Copyright (C) 2009 - 2016 Broadleaf Commerce
+ * %%
+ * Licensed under the Broadleaf Fair Use License Agreement, Version 1.0
+ * (the "Fair Use License" located  at http://license.broadleafcommerce.org/fair_use_license-1.0.txt)
+ * unless the restrictions on use therein are violated and require payment to Broadleaf in which case
+ * the Broadleaf End User License Agreement (EULA), Version 1.1
+ * (the "Commercial License" located at http://license.broadleafcommerce.org/commercial_license-1.1.txt)
+ * shall apply.
+ * 
+ * Alternatively, the Commercial License may be replaced with a mutually agreed upon license (the "Custom License")
+ * between you and Broadleaf Commerce. You may not use this file except in compliance with the applicable license.
+ * #L%
+ */
+package org.broadleafcommerce.core.store.service;
+
+import junit.framework.TestCase;
+
+import org.broadleafcommerce.core.store.domain.Store;
+import org.broadleafcommerce.core.store.domain.StoreImpl;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+public class StoreLocationIndexTest extends TestCase {
+
+    protected List<Store> stores = new ArrayList<Store>();
+
+    @Override
+    protected void setUp() throws Exception {
+        stores.add(buildStore(1L, "Dallas", 32.7767, -96.7970));
+        stores.add(buildStore(2L, "Fort Worth", 32.7555, -97.3308));
+        stores.add(buildStore(3L, "Austin", 30.2672, -97.7431));
+        stores.add(buildStore(4L, "New York", 40.7128, -74.0060));
+        stores.add(buildStore(5L, "No Location", null, null));
+        stores.add(buildStore(6L, "Fiji", -17.7134, 179.9));
+        stores.add(buildStore(7L, "Samoa", -13.7590, -179.9));
+    }
+
+    public void testRadiusMatchesFullScan() {
+        StoreLocationIndex index = new StoreLocationIndex(stores, 0.5);
+        assertEquals("Stores without coordinates should not be indexed", 6, index.size());
+
+        for (double distance : new double[] { 1, 50, 200, 2000, 13000 }) {
+            Map<Store, Double> results = index.findStoresWithinDistance(32.7767, -96.7970, distance);
+            int expected = 0;
+            for (Store store : index.getStores()) {
+                if (scanDistance(32.7767, -96.7970, store) <= distance) {
+                    expected++;
+                    assertTrue(store.getName() + " should be within " + distance, results.containsKey(store));
+                }
+            }
+            assertEquals(expected, results.size());
+        }
+    }
+
+    public void testRadiusAcrossAntimeridian() {
+        StoreLocationIndex index = new StoreLocationIndex(stores, 0.5);
+        Map<Store, Double> results = index.findStoresWithinDistance(-16D, 179.5, 500);
+        assertEquals("Both stores on either side of the antimeridian should be found", 2, results.size());
+    }
+
+    public void testNearestStoresAreOrdered() {
+        StoreLocationIndex index = new StoreLocationIndex(stores, 0.5);
+        Map<Store, Double> results = index.findNearestStores(32.7767, -96.7970, 3);
+        assertEquals(3, results.size());
+
+        Iterator<Store> it = results.keySet().iterator();
+        assertEquals("Dallas", it.next().getName());
+        assertEquals("Fort Worth", it.next().getName());
+        assertEquals("Austin", it.next().getName());
+    }
+
+    protected double scanDistance(double latitude, double longitude, Store store) {
+        double degreesToRadians = 57.3;
+        return 3959 * Math.acos((Math.sin(latitude / degreesToRadians) * Math.sin(store.getLatitude() / degreesToRadians))
+                + (Math.cos(latitude / degreesToRadians) * Math.cos(store.getLatitude() / degreesToRadians) * Math.cos((store.getLongitude() / degreesToRadians) - (longitude / degreesToRadians))));
+    }
+
+    protected Store buildStore(Long id, String name, Double latitude, Double longitude) {
+        Store store = new StoreImpl();
+        store.setId(id);
+        store.setName(name);
+        store.setLatitude(latitude);
+        store.setLongitude(longitude);
+        return store;
+    }
+}
@@ -0,0 +1,232 @@
+/*
+ * #%L
+ * BroadleafCommerce Framework
+ * %%
+ * Copyright (C) 2009 - 2016 Broadleaf Commerce
+ * %%
+ * Licensed under the Broadleaf Fair Use License Agreement, Version 1.0
+ * (the "Fair Use License" located  at http://license.broadleafcommerce.org/fair_use_license-1.0.txt)
+ * unless the restrictions on use therein are violated and require payment to Broadleaf in which case
+ * the Broadleaf End User License Agreement (EULA), Version 1.1
+ * (the "Commercial License" located at http://license.broadleafcommerce.org/commercial_license-1.1.txt)
+ * shall apply.
+ * 
+ * Alternatively, the Commercial License may be replaced with a mutually agreed upon license (the "Custom License")
+ * between you and Broadleaf Commerce. You may not use this file except in compliance with the applicable license.
+ * #L%
+ */
+package org.broadleafcommerce.core.workflow;
+
+import org.broadleafcommerce.core.workflow.state.ActivityStateManagerImpl;
+import org.broadleafcommerce.core.workflow.state.RollbackFailureException;
+import org.broadleafcommerce.core.workflow.state.RollbackHandler;
+import org.broadleafcommerce.core.workflow.state.RollbackStateLocal;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import junit.framework.TestCase;
+
+public class ParallelSequenceProcessorTest extends TestCase {
+
+    protected ParallelSequenceProcessor<Object, Object> processor;
+    protected ExecutorService executorService;
+    protected List<String> log;
+
+    @Override
+    protected void setUp() {
+        new ActivityStateManagerImpl<ProcessContext<Object>>().init();
+        executorService = Executors.newFixedThreadPool(2);
+        processor = new ParallelSequenceProcessor<Object, Object>();
+        processor.setBeanName("testWorkflow");
+        processor.setExecutorService(executorService);
+        log = Collections.synchronizedList(new ArrayList<String>());
+
+        RollbackStateLocal rollbackStateLocal = new RollbackStateLocal();
+        rollbackStateLocal.setThreadId(String.valueOf(Thread.currentThread().getId()));
+        rollbackStateLocal.setWorkflowId("testWorkflow");
+        RollbackStateLocal.setRollbackStateLocal(rollbackStateLocal);
+    }
+
+    @Override
+    protected void tearDown() {
+        ActivityStateManagerImpl.getStateManager().clearAllState();
+        executorService.shutdownNow();
+    }
+
+    public void testIndependentActivitiesAreGrouped() {
+        List<Activity<ProcessContext<Object>>> activities = new ArrayList<Activity<ProcessContext<Object>>>();
+        activities.add(buildActivity("tax", null, "taxes"));
+        activities.add(buildActivity("shipping", "order", "fulfillment"));
+        activities.add(buildActivity("undeclared", null, null));
+        activities.add(buildActivity("total", "taxes", "total"));
+        activities.add(buildActivity("payment", null, "payments"));
+        activities.add(buildActivity("audit", "payments", "audit"));
+
+        assertEquals("[tax | shipping], [undeclared], [total | payment], [audit]",
+                processor.describeActivityGroups(processor.buildActivityGroups(activities)));
+    }
+
+    public void testGroupRunsConcurrently() throws Exception {
+        final CountDownLatch latch = new CountDownLatch(2);
+        TestActivity tax = new TestActivity("tax", latch);
+        tax.setWriteDependencies(new HashSet<String>(Arrays.asList("taxes")));
+        TestActivity shipping = new TestActivity("shipping", latch);
+        shipping.setWriteDependencies(new HashSet<String>(Arrays.asList("fulfillment")));
+        List<Activity<ProcessContext<Object>>> activities = new ArrayList<Activity<ProcessContext<Object>>>();
+        activities.add(tax);
+        activities.add(shipping);
+        activities.add(buildActivity("total", null, null));
+
+        ProcessContext<Object> context = new DefaultProcessContextImpl<Object>();
+        assertSame(context, processor.runActivities(activities, context, RollbackStateLocal.getRollbackStateLocal()));
+        assertEquals(Arrays.asList("total"), log.subList(2, 3));
+        assertTrue(log.containsAll(Arrays.asList("tax", "shipping")));
+    }
+
+    public void testSuccessfulGroupMembersAreRolledBack() throws Exception {
+        TestActivity failing = new TestActivity("failing", null);
+        failing.setWriteDependencies(new HashSet<String>(Arrays.asList("taxes")));
+        failing.fail = true;
+        TestActivity succeeding = new TestActivity("succeeding", null);
+        succeeding.setWriteDependencies(new HashSet<String>(Arrays.asList("fulfillment")));
+        succeeding.setRollbackHandler(new RollbackHandler<ProcessContext<Object>>() {
+            @Override
+            public void rollbackState(Activity<ProcessContext<Object>> activity, ProcessContext<Object> processContext,
+                    Map<String, Object> stateConfiguration) throws RollbackFailureException {
+                log.add("rollback " + activity.getBeanName());
+            }
+        });
+        succeeding.setAutomaticallyRegisterRollbackHandler(true);
+        processor.setDefaultErrorHandler(new SilentErrorHandler());
+
+        List<Activity<ProcessContext<Object>>> activities = new ArrayList<Activity<ProcessContext<Object>>>();
+        activities.add(failing);
+        activities.add(succeeding);
+        activities.add(buildActivity("never", null, null));
+
+        try {
+            processor.runActivities(activities, new DefaultProcessContextImpl<Object>(), RollbackStateLocal.getRollbackStateLocal());
+            fail("the default error handler should rethrow the failure");
+        } catch (WorkflowException e) {
+            assertEquals("failing on purpose", e.getCause().getMessage());
+        }
+        assertTrue(log.contains("rollback succeeding"));
+        assertFalse(log.contains("never"));
+    }
+
+    public void testEveryFailureIsHandledAndTheGroupIsRolledBackOnce() throws Exception {
+        TestActivity succeeding = buildRollbackActivity("succeeding", "fulfillment");
+        TestActivity first = buildRollbackActivity("first", "taxes");
+        first.fail = true;
+        first.setErrorHandler(new LoggingErrorHandler());
+        TestActivity second = buildRollbackActivity("second", "payments");
+        second.fail = true;
+        second.setErrorHandler(new LoggingErrorHandler());
+
+        List<Activity<ProcessContext<Object>>> activities = new ArrayList<Activity<ProcessContext<Object>>>();
+        activities.add(succeeding);
+        activities.add(first);
+        activities.add(second);
+        activities.add(buildActivity("after", null, null));
+
+        processor.runActivities(activities, new DefaultProcessContextImpl<Object>(), RollbackStateLocal.getRollbackStateLocal());
+
+        assertEquals(1, Collections.frequency(log, "rollback succeeding"));
+        assertEquals(2, Collections.frequency(log, "handled failing on purpose"));
+        assertTrue(log.contains("after"));
+    }
+
+    public void testMembersCompletedBeforeAStopAreRegistered() throws Exception {
+        TestActivity stopper = buildRollbackActivity("stopper", "taxes");
+        stopper.stop = true;
+
+        List<Activity<ProcessContext<Object>>> activities = new ArrayList<Activity<ProcessContext<Object>>>();
+        activities.add(buildRollbackActivity("a", "fulfillment"));
+        activities.add(stopper);
+        activities.add(buildRollbackActivity("c", "payments"));
+        activities.add(buildActivity("never", null, null));
+
+        ProcessContext<Object> context = processor.runActivities(activities, new DefaultProcessContextImpl<Object>(),
+                RollbackStateLocal.getRollbackStateLocal());
+        assertTrue(context.isStopped());
+        assertFalse(log.contains("never"));
+
+        ActivityStateManagerImpl.getStateManager().rollbackAllState();
+        assertTrue(log.contains("rollback a"));
+        assertTrue(log.contains("rollback c"));
+    }
+
+    protected TestActivity buildRollbackActivity(String name, String writes) {
+        TestActivity activity = new TestActivity(name, null);
+        activity.setWriteDependencies(new HashSet<String>(Arrays.asList(writes)));
+        activity.setRollbackHandler(new RollbackHandler<ProcessContext<Object>>() {
+            @Override
+            public void rollbackState(Activity<ProcessContext<Object>> activity, ProcessContext<Object> processContext,
+                    Map<String, Object> stateConfiguration) throws RollbackFailureException {
+                log.add("rollback " + activity.getBeanName());
+            }
+        });
+        activity.setAutomaticallyRegisterRollbackHandler(true);
+        return activity;
+    }
+
+    protected Activity<ProcessContext<Object>> buildActivity(String name, String reads, String writes) {
+        TestActivity activity = new TestActivity(name, null);
+        if (reads != null) {
+            activity.setReadDependencies(new HashSet<String>(Arrays.asList(reads)));
+        }
+        if (writes != null) {
+            activity.setWriteDependencies(new HashSet<String>(Arrays.asList(writes)));
+        }
+        return activity;
+    }
+
+    protected class TestActivity extends BaseActivity<ProcessContext<Object>> {
+
+        protected CountDownLatch latch;
+        protected boolean fail = false;
+        protected boolean stop = false;
+
+        public TestActivity(String name, CountDownLatch latch) {
+            setBeanName(name);
+            this.latch = latch;
+        }
+
+        @Override
+        public ProcessContext<Object> execute(ProcessContext<Object> context) throws Exception {
+            if (latch != null) {
+                latch.countDown();
+                assertTrue("activities in a group should run concurrently", latch.await(10, TimeUnit.SECONDS));
+            }
+            if (fail) {
+                throw new IllegalStateException("failing on purpose");
+            }
+            if (stop) {
+                context.stopProcess();
+            }
+            log.add(getBeanName());
+            return context;
+        }
+    }
+
+    protected class LoggingErrorHandler implements ErrorHandler {
+
+        @Override
+        public void handleError(ProcessContext context, Throwable th) throws WorkflowException {
+            log.add("handled " + th.getMessage());
+        }
+
+        @Override
+        public void setBeanName(String name) {
+        }
+    }
+}
@@ -0,0 +1,80 @@
+/*
+ * #%L
+ * BroadleafCommerce Framework
+ * %%
+ * Copyright (C) 2009 - 2016 Broadleaf Commerce
+ * %%
+ * Licensed under the Broadleaf Fair Use License Agreement, Version 1.0
+ * (the "Fair Use License" located  at http://license.broadleafcommerce.org/fair_use_license-1.0.txt)
+ * unless the restrictions on use therein are violated and require payment to Broadleaf in which case
+ * the Broadleaf End User License Agreement (EULA), Version 1.1
+ * (the "Commercial License" located at http://license.broadleafcommerce.org/commercial_license-1.1.txt)
+ * shall apply.
+ * 
+ * Alternatively, the Commercial License may be replaced with a mutually agreed upon license (the "Custom License")
+ * between you and Broadleaf Commerce. You may not use this file except in compliance with the applicable license.
+ * #L%
+ */
+package org.broadleafcommerce.core.workflow.statistics;
+
+import org.broadleafcommerce.core.workflow.statistics.WorkflowExecution.ActivityExecution;
+
+import java.util.List;
+import java.util.Map;
+
+import junit.framework.TestCase;
+
+public class WorkflowStatisticsServiceImplTest extends TestCase {
+
+    public void testActivitiesAreRecordedPerWorkflow() {
+        WorkflowStatisticsServiceImpl service = new WorkflowStatisticsServiceImpl();
+
+        WorkflowExecution execution = service.startWorkflow("blCheckoutWorkflow");
+        assertSame(execution, WorkflowExecution.getCurrentExecution());
+        ActivityExecution tax = service.startActivity(execution, "blTaxActivity");
+        service.endActivity(execution, tax, false);
+        ActivityExecution payment = service.startActivity(execution, "blPaymentActivity");
+        service.endActivity(execution, payment, true);
+        service.endWorkflow(execution);
+        assertNull(WorkflowExecution.getCurrentExecution());
+
+        List<ExecutionStatistics> statistics = service.getExecutionStatistics();
+        assertEquals(3, statistics.size());
+        assertNull(statistics.get(0).getActivityName());
+        assertEquals(1, statistics.get(0).getExecutionCount());
+        assertEquals(1, statistics.get(0).getFailureCount());
+        assertEquals("blTaxActivity", statistics.get(1).getActivityName());
+        assertEquals(0, statistics.get(1).getFailureCount());
+        assertEquals("blPaymentActivity", statistics.get(2).getActivityName());
+        assertEquals(1, statistics.get(2).getFailureCount());
+        assertEquals(2, execution.getActivityExecutions().size());
+
+        Map<String, String> summaries = service.getActivitySummaries();
+        assertTrue(summaries.containsKey("blCheckoutWorkflow.blTaxActivity"));
+    }
+
+    public void testSlowWorkflowsAreCounted() throws Exception {
+        WorkflowStatisticsServiceImpl service = new WorkflowStatisticsServiceImpl();
+        service.setSlowWorkflowThresholdMillis(1);
+
+        WorkflowExecution execution = service.startWorkflow("blCheckoutWorkflow");
+        ActivityExecution activity = service.startActivity(execution, "blSlowActivity");
+        Thread.sleep(5);
+        service.endActivity(execution, activity, false);
+        service.endWorkflow(execution);
+
+        assertEquals(1, service.getSlowWorkflowCount());
+        assertTrue(activity.getWallNanos() >= 5000000L);
+        service.reset();
+        assertEquals(0, service.getSlowWorkflowCount());
+        assertTrue(service.getExecutionStatistics().isEmpty());
+    }
+
+    public void testNothingIsRecordedWhenDisabled() {
+        WorkflowStatisticsServiceImpl service = new WorkflowStatisticsServiceImpl();
+        service.setEnabled(false);
+
+        assertNull(service.startWorkflow("blCheckoutWorkflow"));
+        assertNull(WorkflowExecution.getCurrentExecution());
+    }
+}